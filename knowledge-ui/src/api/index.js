@@ -8,7 +8,7 @@ export const chatApi = {
   createSession: () => request.post('/chat/session'),
 
   // 获取会话列表
-  listSessions: () => request.get('/chat/session/list'),
+  listSessions: (cursor, size = 20) => request.get('/chat/session/list', { params: { cursor, size } }),
 
   // 删除会话
   deleteSession: (id) => request.delete(`/chat/session/${id}`),
@@ -19,18 +19,14 @@ export const chatApi = {
   // 发送消息（同步）
   sendMessage: (sessionId, data) => request.post(`/chat/${sessionId}/send`, data),
 
-  // 发送消息（流式SSE）
+  // 发送消息（流式SSE），网络中断时按 Last-Event-ID 续传
   sendMessageStream: (sessionId, data, onMessage, onError, onComplete) => {
     const controller = new AbortController()
+    const state = { lastEventId: 0, assistantMessageId: null, finished: false }
+    const maxRetries = 3
 
-    fetch(`/api/chat/${sessionId}/send/stream`, {
-      method: 'POST',
-      headers: {
-        'Content-Type': 'application/json',
-      },
-      body: JSON.stringify(data),
-      signal: controller.signal
-    }).then(async response => {
+    // 读取SSE响应，记录事件ID
+    const readStream = async (response) => {
       if (!response.ok) {
         throw new Error(`HTTP error! status: ${response.status}`)
       }
@@ -50,13 +46,21 @@ export const chatApi = {
         buffer = lines.pop() || ''
 
         for (const line of lines) {
-          if (line.startsWith('data:')) {
+          if (line.startsWith('id:')) {
+            state.lastEventId = Number(line.slice(3).trim()) || state.lastEventId
+          } else if (line.startsWith('data:')) {
             const jsonStr = line.slice(5).trim()
             if (jsonStr) {
               try {
                 const data = JSON.parse(jsonStr)
+                if (data.type === 'init') {
+                  state.assistantMessageId = data.assistantMessageId
+                }
+                if (['done', 'cancelled', 'error', 'rejected', 'expired'].includes(data.type)) {
+                  state.finished = true
+                }
                 onMessage && onMessage(data)
-                if (data.type === 'done') {
+                if (data.type === 'done' || data.type === 'cancelled') {
                   onComplete && onComplete(data)
                 }
               } catch (e) {
@@ -66,7 +70,44 @@ export const chatApi = {
           }
         }
       }
-    }).catch(error => {
+    }
+
+    // 断线重连：服务端从回放缓冲补发缺失的事件，不重新生成
+    const resume = async (attempt) => {
+      await new Promise(resolve => setTimeout(resolve, 500 * attempt))
+      const response = await fetch(`/api/chat/stream/${state.assistantMessageId}/resume`, {
+        headers: { 'Last-Event-ID': String(state.lastEventId) },
+        signal: controller.signal
+      })
+      await readStream(response)
+    }
+
+    const run = async () => {
+      try {
+        await readStream(await fetch(`/api/chat/${sessionId}/send/stream`, {
+          method: 'POST',
+          headers: {
+            'Content-Type': 'application/json',
+          },
+          body: JSON.stringify(data),
+          signal: controller.signal
+        }))
+      } catch (error) {
+        if (error.name === 'AbortError' || !state.assistantMessageId) throw error
+      }
+      for (let attempt = 1; !state.finished && state.assistantMessageId && attempt <= maxRetries; attempt++) {
+        try {
+          await resume(attempt)
+        } catch (error) {
+          if (error.name === 'AbortError') throw error
+        }
+      }
+      if (!state.finished) {
+        throw new Error('流式连接中断')
+      }
+    }
+
+    run().catch(error => {
       if (error.name !== 'AbortError') {
         onError && onError(error)
       }
@@ -76,13 +117,18 @@ export const chatApi = {
     return () => controller.abort()
   },
 
-  // 获取消息历史
-  getMessages: (sessionId) => request.get(`/chat/${sessionId}/messages`),
+  // 获取消息历史（游标分页，cursor为空表示最新一页）
+  getMessages: (sessionId, cursor, size = 20) =>
+    request.get(`/chat/${sessionId}/messages`, { params: { cursor, size } }),
+
+  // 获取消息的RAG上下文（展开来源时加载）
+  getRagContext: (messageId) => request.get(`/chat/message/${messageId}/rag-context`),
 
   // 上传附件
-  uploadAttachment: (file) => {
+  uploadAttachment: (file, sessionId) => {
     const formData = new FormData()
     formData.append('file', file)
+    if (sessionId) formData.append('sessionId', sessionId)
     return request.post('/chat/upload', formData, {
       headers: { 'Content-Type': 'multipart/form-data' }
     })
@@ -197,7 +243,8 @@ export const documentApi = {
   reparse: (id) => request.post(`/document/${id}/reparse`),
 
   // 生成摘要
-  generateSummary: (id) => request.post(`/document/${id}/summary`)
+  generateSummary: (id) => request.post(`/document/${id}/summary`),
+  summaryProgress: (id) => request.get(`/document/${id}/summary/progress`)
 }
 
 /**
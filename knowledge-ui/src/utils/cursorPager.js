@@ -0,0 +1,51 @@
+import { reactive } from 'vue'
+
+/**
+ * 游标分页状态
+ * 后端按 keyset 翻页，只能前后翻页；已访问页的游标保存在栈中，上一页直接复用
+ * 总数只在首页按估算方式统计（超过上限时显示为"N+"）
+ */
+export function useCursorPager(pageSize = 10) {
+  const pager = reactive({
+    pageSize,
+    pageIndex: 0,
+    cursors: [null],
+    hasMore: false,
+    total: null,
+    totalExact: true
+  })
+
+  // 当前页的查询参数
+  const params = () => ({
+    cursor: pager.cursors[pager.pageIndex] || undefined,
+    size: pager.pageSize,
+    count: pager.pageIndex === 0 ? 'ESTIMATE' : 'NONE'
+  })
+
+  // 记录查询结果中的游标和总数
+  const apply = (data) => {
+    pager.hasMore = !!data.hasMore
+    pager.cursors[pager.pageIndex + 1] = data.nextCursor
+    if (data.total !== null && data.total !== undefined) {
+      pager.total = data.total
+      pager.totalExact = data.totalExact !== false
+    }
+  }
+
+  // 回到首页（筛选条件或每页数量变化时）
+  const reset = () => {
+    pager.pageIndex = 0
+    pager.cursors = [null]
+    pager.hasMore = false
+  }
+
+  const next = () => {
+    if (pager.hasMore) pager.pageIndex++
+  }
+
+  const prev = () => {
+    if (pager.pageIndex > 0) pager.pageIndex--
+  }
+
+  return { pager, params, apply, reset, next, prev }
+}
@@ -38,13 +38,16 @@ CREATE TABLE `kg_chat_session` (
                                    `title` VARCHAR(255) NULL COMMENT '会话标题',
                                    `message_count` INT DEFAULT 0 COMMENT '消息数量',
                                    `last_message_time` DATETIME NULL COMMENT '最后消息时间',
+                                   `active_time` DATETIME AS (COALESCE(`last_message_time`, `create_time`)) STORED COMMENT '活跃时间（排序键）',
+                                   `summary` TEXT NULL COMMENT '对话滚动摘要',
+                                   `summarized_message_id` BIGINT NULL COMMENT '已合并进摘要的最后一条消息ID',
                                    `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
                                    `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
                                    `deleted` TINYINT DEFAULT 0 COMMENT '逻辑删除标识',
                                    PRIMARY KEY (`id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='聊天会话表';
 
-CREATE INDEX `idx_chat_session_last_message_time` ON `kg_chat_session` (`last_message_time`);
+CREATE INDEX `idx_chat_session_active` ON `kg_chat_session` (`deleted`, `active_time`, `id`);
 
 
 -- kg_document：文档元数据
@@ -67,7 +70,8 @@ CREATE TABLE `kg_document` (
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='文档表';
 
 CREATE INDEX `idx_document_vector_id` ON `kg_document` (`vector_id`);
-CREATE INDEX `idx_document_status` ON `kg_document` (`status`);
+CREATE INDEX `idx_document_status_id` ON `kg_document` (`status`, `deleted`, `id`);
+CREATE INDEX `idx_document_file_type_id` ON `kg_document` (`file_type`, `deleted`, `id`);
 
 
 -- kg_document_chunk：文档分块
@@ -108,6 +112,7 @@ CREATE TABLE `kg_knowledge_node` (
 CREATE INDEX `idx_knowledge_node_neo4j_id` ON `kg_knowledge_node` (`neo4j_id`);
 CREATE INDEX `idx_knowledge_node_vector_id` ON `kg_knowledge_node` (`vector_id`);
 CREATE INDEX `idx_knowledge_node_name` ON `kg_knowledge_node` (`name`);
+CREATE INDEX `idx_knowledge_node_type_id` ON `kg_knowledge_node` (`node_type`, `deleted`, `id`);
 
 
 -- kg_knowledge_relation：知识关系（MySQL元数据）
@@ -128,6 +133,7 @@ CREATE TABLE `kg_knowledge_relation` (
 
 CREATE INDEX `idx_knowledge_relation_source_target` ON `kg_knowledge_relation` (`source_node_id`, `target_node_id`);
 CREATE INDEX `idx_knowledge_relation_neo4j_rel_id` ON `kg_knowledge_relation` (`neo4j_rel_id`);
+CREATE INDEX `idx_knowledge_relation_type_id` ON `kg_knowledge_relation` (`relation_type`, `deleted`, `id`);
 
 
 -- kg_ocr_record：OCR记录
@@ -151,4 +157,30 @@ CREATE TABLE `kg_ocr_record` (
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='OCR记录表';
 
 CREATE INDEX `idx_ocr_vector_id` ON `kg_ocr_record` (`vector_id`);
-CREATE INDEX `idx_ocr_status` ON `kg_ocr_record` (`status`);
\ No newline at end of file
+CREATE INDEX `idx_ocr_status_id` ON `kg_ocr_record` (`status`, `deleted`, `id`);
+CREATE INDEX `idx_ocr_image_type_id` ON `kg_ocr_record` (`image_type`, `deleted`, `id`);
+
+-- kg_corpus_version：语料版本（文档解析/删除时递增，用于标记RAG来源和检索缓存）
+CREATE TABLE `kg_corpus_version` (
+                                     `id` TINYINT NOT NULL COMMENT '主键（固定为1）',
+                                     `version` BIGINT NOT NULL DEFAULT 0 COMMENT '语料版本号',
+                                     `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+                                     PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='语料版本表';
+
+INSERT INTO `kg_corpus_version` (`id`, `version`) VALUES (1, 0);
+
+-- kg_entity_mention：实体提及索引（实体 -> 提到它的分块及位置，文档重新解析或删除时整体替换）
+CREATE TABLE `kg_entity_mention` (
+                                     `id` BIGINT NOT NULL COMMENT '主键ID（雪花算法生成）',
+                                     `node_id` BIGINT NOT NULL COMMENT '知识节点ID',
+                                     `document_id` BIGINT NOT NULL COMMENT '文档ID',
+                                     `chunk_id` BIGINT NOT NULL COMMENT '分块ID',
+                                     `mention_count` INT NOT NULL DEFAULT 1 COMMENT '在分块中出现的次数',
+                                     `offsets` VARCHAR(1000) NULL COMMENT '出现位置（start:end,start:end，最多记录前16处）',
+                                     `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+                                     PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='实体提及表';
+
+CREATE INDEX `idx_entity_mention_document` ON `kg_entity_mention` (`document_id`);
+CREATE INDEX `idx_entity_mention_node` ON `kg_entity_mention` (`node_id`);
@@ -0,0 +1,9 @@
+-- =====================================================
+-- 知识图谱系统 V3.0 数据库升级脚本
+-- 功能：会话滚动摘要（对话记忆压缩）
+-- =====================================================
+
+-- 1. 给 kg_chat_session 表增加滚动摘要字段
+ALTER TABLE kg_chat_session
+    ADD COLUMN summary TEXT NULL COMMENT '对话滚动摘要' AFTER last_message_time,
+    ADD COLUMN summarized_message_id BIGINT NULL COMMENT '已合并进摘要的最后一条消息ID' AFTER summary;
@@ -0,0 +1,44 @@
+-- =====================================================
+-- 知识图谱系统 V4.0 数据库升级脚本
+-- 功能：RAG来源按引用存储（压缩 kg_chat_message.rag_context）
+-- =====================================================
+
+-- 1. 语料版本表（文档解析/删除时递增，写入每条消息的RAG来源）
+CREATE TABLE IF NOT EXISTS kg_corpus_version (
+    id TINYINT NOT NULL COMMENT '主键（固定为1）',
+    version BIGINT NOT NULL DEFAULT 0 COMMENT '语料版本号',
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='语料版本表';
+
+INSERT IGNORE INTO kg_corpus_version (id, version) VALUES (1, 0);
+
+-- 2. 压缩前的存储统计（记录下来与压缩后对比）
+SELECT COUNT(*)                         AS rag_rows,
+       SUM(LENGTH(rag_context))         AS rag_context_bytes,
+       ROUND(AVG(LENGTH(rag_context)))  AS avg_bytes_per_row
+FROM kg_chat_message
+WHERE rag_context IS NOT NULL;
+
+SELECT ROUND(data_length / 1024 / 1024, 1) AS data_mb
+FROM information_schema.tables
+WHERE table_schema = DATABASE() AND table_name = 'kg_chat_message';
+
+-- 3. 压缩已有数据：旧格式（完整文档列表，含父块全文）转换为引用格式（分块ID + 分数）
+--    转换逻辑与应用写入新消息时共用，通过接口执行，按ID分批处理，可重复执行：
+--    POST /api/chat/rag-context/compact?batchSize=500
+--    返回扫描行数、压缩行数、压缩前后字节数和节省比例
+
+-- 4. 压缩后的存储统计
+SELECT COUNT(*)                         AS rag_rows,
+       SUM(LENGTH(rag_context))         AS rag_context_bytes,
+       ROUND(AVG(LENGTH(rag_context)))  AS avg_bytes_per_row
+FROM kg_chat_message
+WHERE rag_context IS NOT NULL;
+
+-- 5. 回收表空间（InnoDB 重建表，大表请在低峰期执行）
+OPTIMIZE TABLE kg_chat_message;
+
+SELECT ROUND(data_length / 1024 / 1024, 1) AS data_mb
+FROM information_schema.tables
+WHERE table_schema = DATABASE() AND table_name = 'kg_chat_message';
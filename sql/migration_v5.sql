@@ -0,0 +1,33 @@
+-- =====================================================
+-- 知识图谱系统 V5.0 数据库升级脚本
+-- 功能：列表接口改为游标（keyset）分页，补充排序键对应的联合索引
+-- =====================================================
+
+-- 1. 会话按活跃时间排序：原来的 ORDER BY COALESCE(last_message_time, create_time) 无法走索引，
+--    改为存储型生成列 + (deleted, active_time, id) 联合索引
+ALTER TABLE kg_chat_session
+    ADD COLUMN active_time DATETIME AS (COALESCE(last_message_time, create_time)) STORED COMMENT '活跃时间（排序键）' AFTER last_message_time;
+
+DROP INDEX idx_chat_session_last_message_time ON kg_chat_session;
+CREATE INDEX idx_chat_session_active ON kg_chat_session (deleted, active_time, id);
+
+-- 2. 其余列表按主键倒序翻页（雪花ID随时间递增，与原来的 create_time 倒序一致），
+--    筛选条件 + 逻辑删除 + 主键组成联合索引，筛选后的深翻页同样是索引范围扫描
+DROP INDEX idx_document_status ON kg_document;
+CREATE INDEX idx_document_status_id ON kg_document (status, deleted, id);
+CREATE INDEX idx_document_file_type_id ON kg_document (file_type, deleted, id);
+
+CREATE INDEX idx_knowledge_node_type_id ON kg_knowledge_node (node_type, deleted, id);
+
+CREATE INDEX idx_knowledge_relation_type_id ON kg_knowledge_relation (relation_type, deleted, id);
+
+DROP INDEX idx_ocr_status ON kg_ocr_record;
+CREATE INDEX idx_ocr_status_id ON kg_ocr_record (status, deleted, id);
+CREATE INDEX idx_ocr_image_type_id ON kg_ocr_record (image_type, deleted, id);
+
+-- 3. 验证：以下查询的 EXPLAIN 应为索引范围扫描，且没有 Using filesort
+-- EXPLAIN SELECT id FROM kg_chat_session WHERE deleted = 0
+--     AND (active_time < NOW() OR (active_time = NOW() AND id < 9223372036854775807))
+--     ORDER BY active_time DESC, id DESC LIMIT 21;
+-- EXPLAIN SELECT id FROM kg_document WHERE deleted = 0 AND status = 2 AND id < 9223372036854775807
+--     ORDER BY id DESC LIMIT 11;
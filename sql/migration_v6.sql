@@ -0,0 +1,21 @@
+-- =====================================================
+-- 知识图谱系统 V6.0 数据库升级脚本
+-- 功能：实体提及索引（实体 -> 提到它的分块及位置），用于图谱扩展检索
+-- =====================================================
+
+-- 1. 实体提及表：每个（节点, 分块）一行，文档重新解析或删除时整体替换（物理删除）
+CREATE TABLE IF NOT EXISTS kg_entity_mention (
+    id BIGINT NOT NULL COMMENT '主键ID（雪花算法生成）',
+    node_id BIGINT NOT NULL COMMENT '知识节点ID',
+    document_id BIGINT NOT NULL COMMENT '文档ID',
+    chunk_id BIGINT NOT NULL COMMENT '分块ID',
+    mention_count INT NOT NULL DEFAULT 1 COMMENT '在分块中出现的次数',
+    offsets VARCHAR(1000) NULL COMMENT '出现位置（start:end,start:end，最多记录前16处）',
+    create_time DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    PRIMARY KEY (id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='实体提及表';
+
+CREATE INDEX idx_entity_mention_document ON kg_entity_mention (document_id);
+CREATE INDEX idx_entity_mention_node ON kg_entity_mention (node_id);
+
+-- 2. 已有文档的提及索引需重新解析文档后生成
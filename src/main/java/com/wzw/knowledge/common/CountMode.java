@@ -0,0 +1,29 @@
+package com.wzw.knowledge.common;
+
+/**
+ * 分页总数统计方式
+ * <p>
+ * 游标分页默认不统计总数；需要展示总数时，ESTIMATE 最多计到上限，超过上限只返回"不少于"，
+ * EXACT 执行完整的 COUNT(*)
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public enum CountMode {
+
+    /**
+     * 不统计
+     */
+    NONE,
+
+    /**
+     * 估算（计数有上限）
+     */
+    ESTIMATE,
+
+    /**
+     * 精确统计
+     */
+    EXACT
+}
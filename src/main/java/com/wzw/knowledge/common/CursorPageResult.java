@@ -0,0 +1,90 @@
+package com.wzw.knowledge.common;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 游标分页结果封装类
+ * <p>
+ * 按上一页最后一条记录的位置继续查询（keyset），翻页代价与页码无关，也不需要统计总数。
+ * 游标对前端不透明，原样传回即可
+ * </p>
+ *
+ * @param <T> 数据类型
+ * @author wzw
+ * @version 1.0
+ */
+@Data
+@Schema(description = "游标分页结果")
+public class CursorPageResult<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 数据列表
+     */
+    @Schema(description = "数据列表")
+    private List<T> records;
+
+    /**
+     * 下一页游标（没有更多数据时为null）
+     */
+    @Schema(description = "下一页游标（没有更多数据时为null）")
+    private String nextCursor;
+
+    /**
+     * 是否还有更多数据
+     */
+    @Schema(description = "是否还有更多数据")
+    private Boolean hasMore;
+
+    /**
+     * 总记录数（未要求统计时为null）
+     */
+    @Schema(description = "总记录数（未要求统计时为null）")
+    private Long total;
+
+    /**
+     * 总记录数是否精确（估算超过上限时为false，此时total为下限）
+     */
+    @Schema(description = "总记录数是否精确（估算超过上限时为false，此时total为下限）")
+    private Boolean totalExact;
+
+    /**
+     * 私有构造函数
+     */
+    private CursorPageResult() {
+    }
+
+    /**
+     * 创建游标分页结果
+     *
+     * @param records    数据列表
+     * @param nextCursor 下一页游标，没有更多数据时传null
+     * @param <T>        数据类型
+     * @return 游标分页结果对象
+     */
+    public static <T> CursorPageResult<T> of(List<T> records, String nextCursor) {
+        CursorPageResult<T> result = new CursorPageResult<>();
+        result.setRecords(records);
+        result.setNextCursor(nextCursor);
+        result.setHasMore(nextCursor != null);
+        return result;
+    }
+
+    /**
+     * 设置总记录数
+     *
+     * @param total 总记录数
+     * @param exact 是否精确
+     * @return 当前对象
+     */
+    public CursorPageResult<T> withTotal(Long total, boolean exact) {
+        this.total = total;
+        this.totalExact = exact;
+        return this;
+    }
+}
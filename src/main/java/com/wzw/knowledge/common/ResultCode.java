@@ -44,6 +44,11 @@ public enum ResultCode {
      */
     NOT_FOUND(404, "资源未找到"),
 
+    /**
+     * 请求过多
+     */
+    TOO_MANY_REQUESTS(429, "请求过多，请稍后重试"),
+
     /**
      * 文件类型不支持
      */
@@ -0,0 +1,66 @@
+package com.wzw.knowledge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 聊天附件配置类
+ * <p>
+ * 附件上传后异步分块并生成向量，放入所属会话的内存索引（不写入Milvus），会话空闲超过 index-ttl 后整体回收。
+ * 每次提问只检索与问题相关的片段，在 context-token-budget 内拼入提示词；较小的附件直接全文拼入
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "chat.attachment")
+public class ChatAttachmentConfig {
+
+    /**
+     * 分块长度（字符）
+     */
+    private Integer chunkSize = 800;
+
+    /**
+     * 相邻分块的重叠长度（字符），仅在强制切分长段落时使用
+     */
+    private Integer chunkOverlap = 100;
+
+    /**
+     * 单个附件的分块数上限
+     */
+    private Integer maxChunks = 1000;
+
+    /**
+     * 附件内容在提示词中的token预算（所有附件合计）
+     */
+    private Integer contextTokenBudget = 1500;
+
+    /**
+     * 每次提问最多拼入的片段数
+     */
+    private Integer topK = 6;
+
+    /**
+     * 不超过该token数的附件直接全文拼入，不做检索
+     */
+    private Integer fullTextTokens = 600;
+
+    /**
+     * 同时生成向量的最大并发数
+     */
+    private Integer embedConcurrency = 4;
+
+    /**
+     * 提问时等待附件索引完成的最长时间（毫秒），超时则退化为截取开头
+     */
+    private Long awaitTimeout = 15000L;
+
+    /**
+     * 会话索引空闲多久后回收（毫秒）
+     */
+    private Long indexTtl = 1800000L;
+}
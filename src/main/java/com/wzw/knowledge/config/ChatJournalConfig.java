@@ -0,0 +1,41 @@
+package com.wzw.knowledge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 聊天消息写入配置类
+ * <p>
+ * 对话消息不在模型调用期间占用数据库连接，而是先写入内存日志，
+ * 由后台线程按时间窗口或批量大小合并成一个短事务写入数据库
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "chat.journal")
+public class ChatJournalConfig {
+
+    /**
+     * 刷写间隔（毫秒）
+     */
+    private Long flushInterval = 100L;
+
+    /**
+     * 单批写入的最大操作数，积压达到该数量时立即刷写
+     */
+    private Integer batchSize = 200;
+
+    /**
+     * 写入失败后首次重试的等待时间（毫秒），之后每次翻倍
+     */
+    private Long retryBackoff = 500L;
+
+    /**
+     * 重试等待时间的上限（毫秒）
+     */
+    private Long maxRetryBackoff = 30000L;
+}
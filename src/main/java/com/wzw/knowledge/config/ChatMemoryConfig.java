@@ -0,0 +1,41 @@
+package com.wzw.knowledge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话记忆配置类
+ * <p>
+ * 每个会话维护一份滚动摘要：最近 recent-turns 轮对话保留原文，更早的对话在每轮结束后异步合并进摘要。
+ * 拼装提示词时，摘要和最近对话一起受 history-token-budget 限制
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "chat.memory")
+public class ChatMemoryConfig {
+
+    /**
+     * 历史上下文（摘要 + 最近对话）的token预算
+     */
+    private Integer historyTokenBudget = 2000;
+
+    /**
+     * 保留原文的最近对话轮数（一问一答为一轮）
+     */
+    private Integer recentTurns = 3;
+
+    /**
+     * 摘要长度上限（token）
+     */
+    private Integer summaryTokens = 500;
+
+    /**
+     * 单次合并进摘要的对话内容token上限
+     */
+    private Integer foldTokenBudget = 6000;
+}
@@ -0,0 +1,31 @@
+package com.wzw.knowledge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话请求合并配置类
+ * <p>
+ * 同一时间内多个会话提出相同的问题时，只执行一次检索和一次模型生成，
+ * 其余请求订阅同一个生成流，每个会话仍各自保存消息
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "chat.single-flight")
+public class ChatSingleFlightConfig {
+
+    /**
+     * 是否合并相同的并发请求
+     */
+    private Boolean enabled = true;
+
+    /**
+     * 统计调用频率的时间窗口（毫秒）
+     */
+    private Long rateWindow = 60000L;
+}
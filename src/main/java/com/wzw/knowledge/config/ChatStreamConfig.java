@@ -0,0 +1,67 @@
+package com.wzw.knowledge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 流式对话配置类
+ * <p>
+ * 每个流式对话运行在一个虚拟线程上，同时进行的流数量由信号量限制，
+ * 超出部分进入等待队列，队列满或等待超时的请求收到 429 拒绝事件。
+ * 客户端断开后取消上游生成，重连时按 Last-Event-ID 从回放缓冲续传
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "chat.stream")
+public class ChatStreamConfig {
+
+    /**
+     * 同时进行的流式对话上限
+     */
+    private Integer maxConcurrent = 64;
+
+    /**
+     * 等待队列长度上限
+     */
+    private Integer maxQueued = 256;
+
+    /**
+     * 排队等待超时时间（毫秒）
+     */
+    private Long queueTimeout = 30000L;
+
+    /**
+     * SSE连接超时时间（毫秒）
+     */
+    private Long timeout = 300000L;
+
+    /**
+     * 客户端断开后取消上游生成前的宽限时间（毫秒），宽限期内重连可继续接收，0 表示立即取消
+     */
+    private Long cancelGrace = 10000L;
+
+    /**
+     * 每个流的回放缓冲事件数上限
+     */
+    private Integer replayBufferSize = 4096;
+
+    /**
+     * 流结束后回放缓冲的保留时间（毫秒）
+     */
+    private Long replayTtl = 60000L;
+
+    /**
+     * token合并时间窗口（毫秒），0 表示每个token单独发送
+     */
+    private Long flushInterval = 50L;
+
+    /**
+     * 单帧字节数上限，达到后立即发送
+     */
+    private Integer flushBytes = 2048;
+}
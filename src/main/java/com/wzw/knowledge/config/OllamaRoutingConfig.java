@@ -0,0 +1,84 @@
+package com.wzw.knowledge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ollama任务路由配置类
+ * <p>
+ * 为不同的调用场景（对话、快速对话、知识抽取、摘要等）配置独立的模型参数，
+ * 避免所有调用都使用同一个推理模型并承担&lt;think&gt;输出的开销。
+ * routes 将任务映射到 profiles 中的档位名称，未配置的字段回退到
+ * spring.ai.ollama.chat 下的默认参数。
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "ollama.routing")
+public class OllamaRoutingConfig {
+
+    /**
+     * 模型档位（档位名称 -> 参数）
+     */
+    private Map<String, ModelProfile> profiles = new HashMap<>();
+
+    /**
+     * 任务路由（任务名称 -> 档位名称）
+     */
+    private Map<String, String> routes = new HashMap<>();
+
+    /**
+     * 根据任务名称获取模型档位
+     *
+     * @param task 任务名称
+     * @return 模型档位，未配置时返回null（使用默认参数）
+     */
+    public ModelProfile resolve(String task) {
+        String profileName = routes.getOrDefault(task, task);
+        return profiles.get(profileName);
+    }
+
+    /**
+     * 模型档位参数
+     */
+    @Data
+    public static class ModelProfile {
+
+        /**
+         * 模型名称（为空时使用默认模型）
+         */
+        private String model;
+
+        /**
+         * 温度
+         */
+        private Double temperature;
+
+        /**
+         * 上下文窗口大小
+         */
+        private Integer numCtx;
+
+        /**
+         * 最大生成token数
+         */
+        private Integer numPredict;
+
+        /**
+         * 模型驻留时间（如 5m、1h，-1 表示常驻）
+         */
+        private String keepAlive;
+
+        /**
+         * 是否开启思考（为空时不下发，由模型自行决定）
+         */
+        private Boolean thinking;
+    }
+}
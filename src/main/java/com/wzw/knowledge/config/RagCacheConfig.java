@@ -0,0 +1,41 @@
+package com.wzw.knowledge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * RAG检索结果缓存配置类
+ * <p>
+ * 热门问题的检索结果按 规范化问题 + 过滤条件 + topK 缓存，
+ * 命中时跳过查询向量生成、Milvus检索和回表；语料版本变化时缓存失效
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "rag.cache")
+public class RagCacheConfig {
+
+    /**
+     * 是否启用检索结果缓存
+     */
+    private Boolean enabled = true;
+
+    /**
+     * 缓存占用内存上限（字节，按缓存内容估算），超出时淘汰最久未使用的结果
+     */
+    private Long maxBytes = 64L * 1024 * 1024;
+
+    /**
+     * 缓存过期时间（毫秒）
+     */
+    private Long ttl = 1800000L;
+
+    /**
+     * 从数据库刷新语料版本的间隔（毫秒），其他实例写入的变更最迟在该时间后生效
+     */
+    private Long versionRefreshInterval = 5000L;
+}
@@ -0,0 +1,46 @@
+package com.wzw.knowledge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * RAG上下文压缩配置类
+ * <p>
+ * Parent块是完整章节，拼装提示词前按问题筛选句子：保留得分最高的句子及其相邻句子，
+ * 按原文顺序原样拼接（不改写，数值和单位保持原样），减少送入大模型的无关内容
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "rag.compression")
+public class RagCompressionConfig {
+
+    /**
+     * 是否启用上下文压缩
+     */
+    private Boolean enabled = true;
+
+    /**
+     * 内容少于该字符数时不压缩
+     */
+    private Integer minChars = 300;
+
+    /**
+     * 保留的句子比例（按得分排序，不含相邻句子）
+     */
+    private Double keepRatio = 0.3;
+
+    /**
+     * 至少保留的句子数（不含相邻句子）
+     */
+    private Integer minSentences = 3;
+
+    /**
+     * 每个保留句子前后额外保留的相邻句子数
+     */
+    private Integer neighbours = 1;
+}
@@ -0,0 +1,46 @@
+package com.wzw.knowledge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * RAG重排序配置类
+ * <p>
+ * 检索器先返回 topK × 候选倍数 个候选，重排序后只保留 topK 个，
+ * 并丢弃得分明显低于第一名的候选，减少送入大模型的无关分块
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "rag.rerank")
+public class RagRerankConfig {
+
+    /**
+     * 是否启用重排序
+     */
+    private Boolean enabled = true;
+
+    /**
+     * 使用的重排序器名称
+     */
+    private String reranker = "lexical";
+
+    /**
+     * 重排序时间预算（毫秒），超出预算时放弃重排序，按RRF顺序截取
+     */
+    private Long budget = 150L;
+
+    /**
+     * 候选倍数：重排序前每个检索器返回 topK × 候选倍数 个结果
+     */
+    private Integer candidateFactor = 3;
+
+    /**
+     * 相对得分下限：重排序得分低于第一名得分 × 该比例的候选被丢弃（至少保留一个），0表示不丢弃
+     */
+    private Double minRelativeScore = 0.3;
+}
@@ -0,0 +1,90 @@
+package com.wzw.knowledge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * RAG检索配置类
+ * <p>
+ * 查询向量只生成一次，文档、图谱节点等检索器并行执行，
+ * 每个检索器有独立的截止时间，超时的检索器结果被丢弃，不拖慢整体响应。
+ * 检索命中的父块和文档头信息缓存在本机内存中，语料版本变化时失效
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "rag.retrieval")
+public class RagRetrievalConfig {
+
+    /**
+     * 检索器默认截止时间（毫秒，从分发检索时开始计算）
+     */
+    private Long deadline = 5000L;
+
+    /**
+     * 各检索器的截止时间（毫秒），按检索器名称配置，未配置的使用默认值
+     */
+    private Map<String, Long> deadlines = new HashMap<>();
+
+    /**
+     * 父块近端缓存容量（条）
+     */
+    private Integer parentCacheSize = 2000;
+
+    /**
+     * 文档头信息近端缓存容量（条）
+     */
+    private Integer documentCacheSize = 1000;
+
+    /**
+     * 近端缓存过期时间（毫秒），语料版本变化时缓存立即失效
+     */
+    private Long nearCacheTtl = 600000L;
+
+    /**
+     * 图谱扩展检索：从问题中识别出的实体出发扩展的跳数（0表示只用问题直接提到的实体）
+     */
+    private Integer graphHops = 1;
+
+    /**
+     * 图谱扩展检索：最多识别的实体数
+     */
+    private Integer graphMaxSeeds = 5;
+
+    /**
+     * 图谱扩展检索：每跳最多扩展的邻居数
+     */
+    private Integer graphMaxNeighbors = 20;
+
+    /**
+     * 两阶段检索：先用文档级向量选出最相关的文档，再只在这些文档的分块中检索
+     */
+    private Boolean hierarchical = false;
+
+    /**
+     * 两阶段检索：第一阶段选出的文档数
+     */
+    private Integer hierarchicalDocuments = 20;
+
+    /**
+     * 两阶段检索：第二阶段过滤条件中最多的分块ID数，超过时退回全库检索
+     */
+    private Integer hierarchicalMaxChunks = 10000;
+
+    /**
+     * 获取检索器的截止时间
+     *
+     * @param retriever 检索器名称
+     * @return 截止时间（毫秒）
+     */
+    public long deadlineOf(String retriever) {
+        return deadlines.getOrDefault(retriever, deadline);
+    }
+}
@@ -0,0 +1,62 @@
+package com.wzw.knowledge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 检索门控配置类
+ * <p>
+ * 寒暄类消息不做检索；"继续"、"再解释一下"等追问直接复用上一轮的检索结果，
+ * 只有需要新知识的问题才执行完整的RAG检索。
+ * 检索结果的最高相似度低于阈值时直接返回模板回答，不调用大模型
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "chat.retrieval-gate")
+public class RetrievalGateConfig {
+
+    /**
+     * 是否启用检索门控，关闭后每次提问都执行检索
+     */
+    private Boolean enabled = true;
+
+    /**
+     * 不超过该长度（字符）的问题才按指代词和向量相似度判断是否为追问
+     */
+    private Integer followUpMaxChars = 20;
+
+    /**
+     * 与上一轮问题的向量相似度达到该值时视为追问
+     */
+    private Double similarityThreshold = 0.9;
+
+    /**
+     * 上一轮检索结果的复用有效期（毫秒）
+     */
+    private Long reuseTtl = 600000L;
+
+    /**
+     * 保留上一轮检索结果的会话数上限
+     */
+    private Integer maxSessions = 10000;
+
+    /**
+     * 检索置信度阈值：命中文档的最高相关度（向量相似度或词项覆盖率）低于该值时不调用大模型，0 表示不限制
+     */
+    private Double minSimilarity = 0.5;
+
+    /**
+     * 知识库中没有相关内容时的模板回答
+     */
+    private String noAnswerMessage = "根据已上传的文档，未找到与此问题相关的信息。如需参考模型的通用知识，可以选择「用通用知识回答」。";
+
+    /**
+     * 用户选择通用知识回答时，附加在回答前的提示
+     */
+    private String generalKnowledgeNotice = "> 知识库中未找到相关内容，以下回答基于模型的通用知识，请注意核实。";
+}
@@ -0,0 +1,45 @@
+package com.wzw.knowledge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 分层摘要配置类
+ * <p>
+ * 长文档先按分段并行生成摘要（map），再逐层合并为整体摘要（reduce）
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "summary")
+public class SummaryConfig {
+
+    /**
+     * 分段大小（字符数）
+     */
+    private Integer chunkSize = 4000;
+
+    /**
+     * 并行摘要的最大并发数
+     */
+    private Integer concurrency = 4;
+
+    /**
+     * 每次合并的摘要数量
+     */
+    private Integer reduceBatch = 8;
+
+    /**
+     * 摘要缓存条数（按内容哈希缓存每一层的结果）
+     */
+    private Integer cacheSize = 2000;
+
+    /**
+     * 已结束的摘要任务保留时间（毫秒）
+     */
+    private Long jobRetention = 3600000L;
+}
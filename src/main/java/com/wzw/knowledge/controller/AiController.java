@@ -4,7 +4,12 @@ package com.wzw.knowledge.controller;
 import com.wzw.knowledge.common.Result;
 import com.wzw.knowledge.model.dto.KnowledgeExtractDTO;
 import com.wzw.knowledge.model.entity.KnowledgeNode;
+import com.wzw.knowledge.service.DocumentVectorService;
+import com.wzw.knowledge.service.LexicalIndexService;
 import com.wzw.knowledge.service.OllamaService;
+import com.wzw.knowledge.service.RagEvalService;
+import com.wzw.knowledge.service.RagService;
+import com.wzw.knowledge.service.SummaryService;
 import com.wzw.knowledge.service.VectorService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -33,6 +38,11 @@ public class AiController {
 
     private final OllamaService ollamaService;
     private final VectorService vectorService;
+    private final SummaryService summaryService;
+    private final RagService ragService;
+    private final RagEvalService ragEvalService;
+    private final LexicalIndexService lexicalIndexService;
+    private final DocumentVectorService documentVectorService;
 
     /**
      * AI对话
@@ -93,10 +103,112 @@ public class AiController {
     public Result<String> generateSummary(
             @Parameter(description = "原文本", required = true)
             @RequestBody String text) {
-        String summary = ollamaService.generateSummary(text);
+        String summary = summaryService.summarize(text);
         return Result.success(summary);
     }
 
+    /**
+     * 模型调用统计
+     *
+     * @return 各任务的调用次数、延迟和token数
+     */
+    @Operation(summary = "模型调用统计", description = "按任务统计大模型调用的延迟和token数，用于调优模型档位")
+    @GetMapping("/stats")
+    public Result<Map<String, OllamaService.TaskStats>> taskStats() {
+        return Result.success(ollamaService.getTaskStats());
+    }
+
+    /**
+     * 检索回表统计
+     *
+     * @return 近端缓存命中率和回表耗时
+     */
+    @Operation(summary = "检索回表统计", description = "检索命中回表的查询数、耗时和近端缓存命中率")
+    @GetMapping("/rag/hydration/stats")
+    public Result<RagService.HydrationStats> hydrationStats() {
+        return Result.success(ragService.getHydrationStats());
+    }
+
+    /**
+     * 检索结果缓存统计
+     *
+     * @return 缓存命中率和命中/未命中的检索耗时
+     */
+    @Operation(summary = "检索结果缓存统计", description = "检索结果缓存的命中率、占用内存和命中/未命中时的检索耗时")
+    @GetMapping("/rag/cache/stats")
+    public Result<RagService.CacheStats> cacheStats() {
+        return Result.success(ragService.getCacheStats());
+    }
+
+    /**
+     * 上下文压缩统计
+     *
+     * @return 压缩前后的字符数
+     */
+    @Operation(summary = "上下文压缩统计", description = "拼装提示词前按问题压缩文档内容，压缩前后的字符数和比例")
+    @GetMapping("/rag/compression/stats")
+    public Result<RagService.CompressionStats> compressionStats() {
+        return Result.success(ragService.getCompressionStats());
+    }
+
+    /**
+     * 本地词项检索
+     *
+     * @param query 查询（双引号括起的部分作为短语）
+     * @param types 条目类型（chunk、node、ocr）
+     * @param topK  返回数量
+     * @return 命中列表
+     */
+    @Operation(summary = "本地词项检索", description = "在本地BM25索引中检索文档分块、图谱节点和OCR文本，双引号括起的部分按短语匹配")
+    @GetMapping("/rag/lexical/search")
+    public Result<List<LexicalIndexService.LexicalHit>> lexicalSearch(
+            @Parameter(description = "查询文本", required = true) @RequestParam String query,
+            @Parameter(description = "条目类型") @RequestParam(defaultValue = "chunk,node,ocr") List<String> types,
+            @Parameter(description = "返回数量") @RequestParam(defaultValue = "10") Integer topK) {
+        return Result.success(lexicalIndexService.search(query, types, topK));
+    }
+
+    /**
+     * 本地词项索引统计
+     *
+     * @return 条目数、词项数和平均检索耗时
+     */
+    @Operation(summary = "本地词项索引统计", description = "本地BM25索引的条目数、词项数和平均检索耗时（微秒）")
+    @GetMapping("/rag/lexical/stats")
+    public Result<LexicalIndexService.IndexStats> lexicalStats() {
+        return Result.success(lexicalIndexService.getStats());
+    }
+
+    /**
+     * 补建文档级向量
+     *
+     * @return 补建的文档数
+     */
+    @Operation(summary = "补建文档级向量", description = "为已解析但没有文档级向量的文档，用已有分块向量的质心补建（两阶段检索使用）")
+    @PostMapping("/rag/document-vectors/backfill")
+    public Result<Integer> backfillDocumentVectors() {
+        return Result.success(documentVectorService.backfill());
+    }
+
+    /**
+     * RAG离线评测
+     *
+     * @param dataset   评测数据集（JSON Lines）
+     * @param topK      检索的topK
+     * @param coldCache 是否跳过缓存检索
+     * @return 评测报告
+     */
+    @Operation(summary = "RAG离线评测", description = "按数据集逐条检索，返回recall@k、MRR、nDCG@k和各阶段耗时分位数（JSON，可保存用于比较）")
+    @PostMapping("/rag/eval")
+    public Result<RagEvalService.EvalReport> evaluate(
+            @Parameter(description = "评测数据集，每行一个用例：{\"id\":\"q1\",\"question\":\"...\",\"goldChunkIds\":[1,2]}", required = true)
+            @RequestBody String dataset,
+            @Parameter(description = "检索的topK") @RequestParam(defaultValue = "5") Integer topK,
+            @Parameter(description = "跳过检索结果缓存和近端缓存（不影响线上缓存）") @RequestParam(defaultValue = "true") Boolean coldCache) {
+        List<RagEvalService.EvalCase> cases = ragEvalService.parseDataset(dataset);
+        return Result.success(ragEvalService.evaluate(cases, topK, coldCache));
+    }
+
     /**
      * 语义搜索
      *
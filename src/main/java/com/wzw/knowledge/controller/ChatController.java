@@ -1,13 +1,18 @@
 package com.wzw.knowledge.controller;
 
 
+import com.wzw.knowledge.common.CursorPageResult;
 import com.wzw.knowledge.common.Result;
 import com.wzw.knowledge.model.dto.ChatSendRequest;
 import com.wzw.knowledge.model.vo.ChatAttachmentVO;
 import com.wzw.knowledge.model.vo.ChatMessageVO;
 import com.wzw.knowledge.model.vo.ChatSendResponse;
 import com.wzw.knowledge.model.vo.ChatSessionVO;
+import com.wzw.knowledge.model.vo.RagContextVO;
+import com.wzw.knowledge.service.AttachmentIndexService;
 import com.wzw.knowledge.service.ChatService;
+import com.wzw.knowledge.service.RagProvenanceService;
+import com.wzw.knowledge.service.RetrievalGateService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -18,8 +23,6 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.List;
-
 /**
  * 聊天控制器
  * <p>
@@ -36,6 +39,9 @@ import java.util.List;
 public class ChatController {
 
     private final ChatService chatService;
+    private final RagProvenanceService ragProvenanceService;
+    private final AttachmentIndexService attachmentIndexService;
+    private final RetrievalGateService retrievalGateService;
 
     /**
      * 创建会话
@@ -50,15 +56,18 @@ public class ChatController {
     }
 
     /**
-     * 获取会话列表
+     * 获取会话列表（游标分页）
      *
-     * @return 会话列表
+     * @param cursor 上一页返回的游标，首页不传
+     * @param size   每页数量
+     * @return 会话分页结果，按最近活跃时间倒序
      */
-    @Operation(summary = "会话列表", description = "获取所有对话会话")
+    @Operation(summary = "会话列表", description = "游标分页获取对话会话，按最近活跃时间倒序")
     @GetMapping("/session/list")
-    public Result<List<ChatSessionVO>> listSessions() {
-        List<ChatSessionVO> sessions = chatService.listSessions();
-        return Result.success(sessions);
+    public Result<CursorPageResult<ChatSessionVO>> listSessions(
+            @Parameter(description = "游标（上一页返回的nextCursor）") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页数量") @RequestParam(defaultValue = "20") Integer size) {
+        return Result.success(chatService.listSessions(cursor, size));
     }
 
     /**
@@ -123,17 +132,117 @@ public class ChatController {
     }
 
     /**
-     * 获取消息历史
+     * 流式消息断线重连（SSE）
+     *
+     * @param assistantMessageId AI消息ID
+     * @param lastEventId 最后收到的事件ID
+     * @return SSE流
+     */
+    @Operation(summary = "流式消息重连", description = "按Last-Event-ID从回放缓冲续传流式回复，不重新生成")
+    @GetMapping(value = "/stream/{assistantMessageId}/resume", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter resumeMessageStream(
+            @Parameter(description = "AI消息ID", required = true) @PathVariable Long assistantMessageId,
+            @Parameter(description = "最后收到的事件ID")
+            @RequestHeader(value = "Last-Event-ID", defaultValue = "0") Long lastEventId) {
+        return chatService.resumeMessageStream(assistantMessageId, lastEventId);
+    }
+
+    /**
+     * 流式对话统计
+     *
+     * @return 并发、排队、拒绝、放弃和浪费的生成时间
+     */
+    @Operation(summary = "流式对话统计", description = "查询流式对话的并发、排队、拒绝、断线取消和浪费的生成时间")
+    @GetMapping("/stream/stats")
+    public Result<ChatService.StreamStats> streamStats() {
+        return Result.success(chatService.getStreamStats());
+    }
+
+    /**
+     * 相同问题合并统计
+     *
+     * @return 检索和模型调用的实际执行次数、合并次数，以及统计窗口内的请求数和模型调用数
+     */
+    @Operation(summary = "相同问题合并统计", description = "查询相同问题并发请求合并后实际执行的检索和模型调用次数")
+    @GetMapping("/single-flight/stats")
+    public Result<ChatService.SingleFlightStats> singleFlightStats() {
+        return Result.success(chatService.getSingleFlightStats());
+    }
+
+    /**
+     * 消息写入统计
+     *
+     * @return 待写入、重试中的操作数，累计写入、失败和重试成功的次数
+     */
+    @Operation(summary = "消息写入统计", description = "查询后台批量写入消息的积压、失败重试情况")
+    @GetMapping("/journal/stats")
+    public Result<ChatService.JournalStats> journalStats() {
+        return Result.success(chatService.getJournalStats());
+    }
+
+    /**
+     * 检索门控统计
+     *
+     * @return 检索、复用、跳过次数，跳过比例和节省的检索时间
+     */
+    @Operation(summary = "检索门控统计", description = "查询寒暄跳过检索、追问复用上一轮检索结果的比例和节省的检索时间")
+    @GetMapping("/retrieval-gate/stats")
+    public Result<RetrievalGateService.GateStats> retrievalGateStats() {
+        return Result.success(retrievalGateService.getStats());
+    }
+
+    /**
+     * 附件索引统计
+     *
+     * @return 内存中的会话数、附件数、分块数和过期回收数
+     */
+    @Operation(summary = "附件索引统计", description = "查询会话附件内存向量索引的规模和过期回收情况")
+    @GetMapping("/attachment/index/stats")
+    public Result<AttachmentIndexService.IndexStats> attachmentIndexStats() {
+        return Result.success(attachmentIndexService.getStats());
+    }
+
+    /**
+     * 获取消息历史（游标分页）
      *
      * @param sessionId 会话ID
-     * @return 消息列表
+     * @param cursor 游标
+     * @param size 每页数量
+     * @return 消息分页结果
      */
-    @Operation(summary = "消息历史", description = "获取会话的消息历史")
+    @Operation(summary = "消息历史", description = "分页获取会话的消息历史，从最新的消息向前翻页，RAG上下文只返回引用")
     @GetMapping("/{sessionId}/messages")
-    public Result<List<ChatMessageVO>> getMessages(
-            @Parameter(description = "会话ID", required = true) @PathVariable Long sessionId) {
-        List<ChatMessageVO> messages = chatService.getMessages(sessionId);
-        return Result.success(messages);
+    public Result<CursorPageResult<ChatMessageVO>> getMessages(
+            @Parameter(description = "会话ID", required = true) @PathVariable Long sessionId,
+            @Parameter(description = "游标（上一页返回的nextCursor，为空表示最新一页）") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页数量") @RequestParam(defaultValue = "20") Integer size) {
+        return Result.success(chatService.getMessages(sessionId, cursor, size));
+    }
+
+    /**
+     * 获取消息的RAG上下文
+     *
+     * @param messageId 消息ID
+     * @return RAG上下文
+     */
+    @Operation(summary = "RAG上下文", description = "展开消息来源时加载关联的文档和图谱节点")
+    @GetMapping("/message/{messageId}/rag-context")
+    public Result<RagContextVO> getRagContext(
+            @Parameter(description = "消息ID", required = true) @PathVariable Long messageId) {
+        return Result.success(chatService.getRagContext(messageId));
+    }
+
+    /**
+     * 压缩旧格式的RAG上下文
+     *
+     * @param batchSize 每批行数
+     * @return 压缩报告（压缩前后字节数和节省比例）
+     */
+    @Operation(summary = "压缩RAG上下文", description = "将历史消息中完整保存的RAG文档列表转换为分块引用，返回节省的存储空间（可重复执行）")
+    @PostMapping("/rag-context/compact")
+    public Result<RagProvenanceService.CompactionReport> compactRagContext(
+            @Parameter(description = "每批行数") @RequestParam(defaultValue = "500") Integer batchSize) {
+        return Result.success(ragProvenanceService.compactLegacy(batchSize));
     }
 
     /**
@@ -145,8 +254,9 @@ public class ChatController {
     @Operation(summary = "上传附件", description = "上传聊天附件，支持PDF、Word、TXT等格式")
     @PostMapping("/upload")
     public Result<ChatAttachmentVO> uploadAttachment(
-            @Parameter(description = "文件", required = true) @RequestParam("file") MultipartFile file) {
-        ChatAttachmentVO attachment = chatService.uploadAttachment(file);
+            @Parameter(description = "文件", required = true) @RequestParam("file") MultipartFile file,
+            @Parameter(description = "会话ID（传入时立即建立附件索引）") @RequestParam(required = false) Long sessionId) {
+        ChatAttachmentVO attachment = chatService.uploadAttachment(file, sessionId);
         return Result.success(attachment, "附件上传成功");
     }
 }
@@ -1,9 +1,11 @@
 package com.wzw.knowledge.controller;
 
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.wzw.knowledge.common.CountMode;
+import com.wzw.knowledge.common.CursorPageResult;
 import com.wzw.knowledge.common.Result;
 import com.wzw.knowledge.model.entity.Document;
 import com.wzw.knowledge.model.vo.DocumentVO;
+import com.wzw.knowledge.model.vo.SummaryJobVO;
 import com.wzw.knowledge.service.DocumentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -47,23 +49,24 @@ public class DocumentController {
     /**
      * 分页查询文档列表
      *
-     * @param pageNum  页码
-     * @param pageSize 每页数量
+     * @param cursor   上一页返回的游标，首页不传
+     * @param size     每页数量
      * @param keyword  搜索关键词
      * @param fileType 文件类型
      * @param status   处理状态
+     * @param count    总数统计方式
      * @return 分页结果
      */
-    @Operation(summary = "文档列表", description = "分页查询文档列表")
+    @Operation(summary = "文档列表", description = "游标分页查询文档列表，按创建时间倒序")
     @GetMapping("/list")
-    public Result<Page<DocumentVO>> list(
-            @Parameter(description = "页码") @RequestParam(defaultValue = "1") Integer pageNum,
-            @Parameter(description = "每页数量") @RequestParam(defaultValue = "10") Integer pageSize,
+    public Result<CursorPageResult<DocumentVO>> list(
+            @Parameter(description = "游标（上一页返回的nextCursor）") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页数量") @RequestParam(defaultValue = "10") Integer size,
             @Parameter(description = "搜索关键词") @RequestParam(required = false) String keyword,
             @Parameter(description = "文件类型") @RequestParam(required = false) String fileType,
-            @Parameter(description = "处理状态") @RequestParam(required = false) Integer status) {
-        Page<DocumentVO> page = documentService.pageDocuments(pageNum, pageSize, keyword, fileType, status);
-        return Result.success(page);
+            @Parameter(description = "处理状态") @RequestParam(required = false) Integer status,
+            @Parameter(description = "总数统计方式：NONE/ESTIMATE/EXACT") @RequestParam(defaultValue = "NONE") CountMode count) {
+        return Result.success(documentService.pageDocuments(cursor, size, keyword, fileType, status, count));
     }
 
     /**
@@ -110,15 +113,31 @@ public class DocumentController {
 
     /**
      * 生成文档摘要
+     * <p>
+     * 长文档按段并行摘要后逐层合并，任务在后台执行，通过进度接口查询结果
+     * </p>
      *
      * @param id 文档ID
-     * @return 摘要内容
+     * @return 摘要任务状态
      */
-    @Operation(summary = "生成摘要", description = "使用AI生成文档摘要")
+    @Operation(summary = "生成摘要", description = "提交AI分层摘要任务，后台执行")
     @PostMapping("/{id}/summary")
-    public Result<String> generateSummary(
+    public Result<SummaryJobVO> generateSummary(
             @Parameter(description = "文档ID", required = true) @PathVariable Long id) {
-        String summary = documentService.generateSummary(id);
-        return Result.success(summary);
+        SummaryJobVO job = documentService.generateSummary(id);
+        return Result.success(job, "摘要任务已提交");
+    }
+
+    /**
+     * 查询摘要任务进度
+     *
+     * @param id 文档ID
+     * @return 摘要任务状态
+     */
+    @Operation(summary = "摘要进度", description = "查询文档摘要任务的进度和结果")
+    @GetMapping("/{id}/summary/progress")
+    public Result<SummaryJobVO> summaryProgress(
+            @Parameter(description = "文档ID", required = true) @PathVariable Long id) {
+        return Result.success(documentService.getSummaryProgress(id));
     }
 }
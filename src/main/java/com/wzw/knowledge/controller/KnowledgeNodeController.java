@@ -1,6 +1,7 @@
 package com.wzw.knowledge.controller;
 
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.wzw.knowledge.common.CountMode;
+import com.wzw.knowledge.common.CursorPageResult;
 import com.wzw.knowledge.common.Result;
 import com.wzw.knowledge.model.dto.KnowledgeNodeDTO;
 import com.wzw.knowledge.model.entity.KnowledgeNode;
@@ -94,21 +95,22 @@ public class KnowledgeNodeController {
     /**
      * 分页查询节点列表
      *
-     * @param pageNum  页码
-     * @param pageSize 每页数量
+     * @param cursor   上一页返回的游标，首页不传
+     * @param size     每页数量
      * @param keyword  搜索关键词
      * @param nodeType 节点类型
+     * @param count    总数统计方式
      * @return 分页结果
      */
-    @Operation(summary = "节点列表", description = "分页查询知识节点列表")
+    @Operation(summary = "节点列表", description = "游标分页查询知识节点列表，按创建时间倒序")
     @GetMapping("/list")
-    public Result<Page<KnowledgeNodeVO>> list(
-            @Parameter(description = "页码") @RequestParam(defaultValue = "1") Integer pageNum,
-            @Parameter(description = "每页数量") @RequestParam(defaultValue = "10") Integer pageSize,
+    public Result<CursorPageResult<KnowledgeNodeVO>> list(
+            @Parameter(description = "游标（上一页返回的nextCursor）") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页数量") @RequestParam(defaultValue = "10") Integer size,
             @Parameter(description = "搜索关键词") @RequestParam(required = false) String keyword,
-            @Parameter(description = "节点类型") @RequestParam(required = false) String nodeType) {
-        Page<KnowledgeNodeVO> page = nodeService.pageNodes(pageNum, pageSize, keyword, nodeType);
-        return Result.success(page);
+            @Parameter(description = "节点类型") @RequestParam(required = false) String nodeType,
+            @Parameter(description = "总数统计方式：NONE/ESTIMATE/EXACT") @RequestParam(defaultValue = "NONE") CountMode count) {
+        return Result.success(nodeService.pageNodes(cursor, size, keyword, nodeType, count));
     }
 
     /**
@@ -1,6 +1,7 @@
 package com.wzw.knowledge.controller;
 
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.wzw.knowledge.common.CountMode;
+import com.wzw.knowledge.common.CursorPageResult;
 import com.wzw.knowledge.common.Result;
 import com.wzw.knowledge.model.dto.KnowledgeRelationDTO;
 import com.wzw.knowledge.model.entity.KnowledgeRelation;
@@ -93,21 +94,22 @@ public class KnowledgeRelationController {
     /**
      * 分页查询关系列表
      *
-     * @param pageNum      页码
-     * @param pageSize     每页数量
+     * @param cursor       上一页返回的游标，首页不传
+     * @param size         每页数量
      * @param relationType 关系类型
      * @param keyword      关系名称关键词
+     * @param count        总数统计方式
      * @return 分页结果
      */
-    @Operation(summary = "关系列表", description = "分页查询知识关系列表")
+    @Operation(summary = "关系列表", description = "游标分页查询知识关系列表，按创建时间倒序")
     @GetMapping("/list")
-    public Result<Page<KnowledgeRelationVO>> list(
-            @Parameter(description = "页码") @RequestParam(defaultValue = "1") Integer pageNum,
-            @Parameter(description = "每页数量") @RequestParam(defaultValue = "10") Integer pageSize,
+    public Result<CursorPageResult<KnowledgeRelationVO>> list(
+            @Parameter(description = "游标（上一页返回的nextCursor）") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页数量") @RequestParam(defaultValue = "10") Integer size,
             @Parameter(description = "关系类型") @RequestParam(required = false) String relationType,
-            @Parameter(description = "关系名称关键词") @RequestParam(required = false) String keyword) {
-        Page<KnowledgeRelationVO> page = relationService.pageRelations(pageNum, pageSize, relationType, keyword);
-        return Result.success(page);
+            @Parameter(description = "关系名称关键词") @RequestParam(required = false) String keyword,
+            @Parameter(description = "总数统计方式：NONE/ESTIMATE/EXACT") @RequestParam(defaultValue = "NONE") CountMode count) {
+        return Result.success(relationService.pageRelations(cursor, size, relationType, keyword, count));
     }
 
     /**
@@ -1,6 +1,7 @@
 package com.wzw.knowledge.controller;
 
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.wzw.knowledge.common.CountMode;
+import com.wzw.knowledge.common.CursorPageResult;
 import com.wzw.knowledge.common.Result;
 import com.wzw.knowledge.model.entity.OcrRecord;
 import com.wzw.knowledge.model.vo.OcrRecordVO;
@@ -47,23 +48,24 @@ public class OcrController {
     /**
      * 分页查询OCR记录
      *
-     * @param pageNum   页码
-     * @param pageSize  每页数量
+     * @param cursor    上一页返回的游标，首页不传
+     * @param size      每页数量
      * @param keyword   搜索关键词
      * @param imageType 图片类型
      * @param status    处理状态
+     * @param count     总数统计方式
      * @return 分页结果
      */
-    @Operation(summary = "OCR记录列表", description = "分页查询OCR识别记录")
+    @Operation(summary = "OCR记录列表", description = "游标分页查询OCR识别记录，按创建时间倒序")
     @GetMapping("/list")
-    public Result<Page<OcrRecordVO>> list(
-            @Parameter(description = "页码") @RequestParam(defaultValue = "1") Integer pageNum,
-            @Parameter(description = "每页数量") @RequestParam(defaultValue = "10") Integer pageSize,
+    public Result<CursorPageResult<OcrRecordVO>> list(
+            @Parameter(description = "游标（上一页返回的nextCursor）") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页数量") @RequestParam(defaultValue = "10") Integer size,
             @Parameter(description = "搜索关键词") @RequestParam(required = false) String keyword,
             @Parameter(description = "图片类型") @RequestParam(required = false) String imageType,
-            @Parameter(description = "处理状态") @RequestParam(required = false) Integer status) {
-        Page<OcrRecordVO> page = ocrService.pageRecords(pageNum, pageSize, keyword, imageType, status);
-        return Result.success(page);
+            @Parameter(description = "处理状态") @RequestParam(required = false) Integer status,
+            @Parameter(description = "总数统计方式：NONE/ESTIMATE/EXACT") @RequestParam(defaultValue = "NONE") CountMode count) {
+        return Result.success(ocrService.pageRecords(cursor, size, keyword, imageType, status, count));
     }
 
     /**
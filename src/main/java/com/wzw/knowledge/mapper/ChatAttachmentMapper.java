@@ -38,4 +38,13 @@ public interface ChatAttachmentMapper extends BaseMapper<ChatAttachment> {
      */
     @Select("<script>SELECT * FROM kg_chat_attachment WHERE id IN <foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
     List<ChatAttachment> selectByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 根据ID列表获取附件基本信息（不含解析内容，用于消息列表展示）
+     *
+     * @param ids 附件ID列表
+     * @return 附件列表
+     */
+    @Select("<script>SELECT id, message_id, file_name, file_path, file_type, file_size, create_time FROM kg_chat_attachment WHERE id IN <foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    List<ChatAttachment> selectBriefByIds(@Param("ids") List<Long> ids);
 }
@@ -2,9 +2,11 @@ package com.wzw.knowledge.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.wzw.knowledge.model.entity.ChatMessage;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.util.List;
 
@@ -27,9 +29,55 @@ public interface ChatMessageMapper extends BaseMapper<ChatMessage> {
      * @param sessionId 会话ID
      * @return 消息列表（按时间正序）
      */
-    @Select("SELECT * FROM kg_chat_message WHERE session_id = #{sessionId} AND deleted = 0 ORDER BY create_time ASC")
+    @Select("SELECT * FROM kg_chat_message WHERE session_id = #{sessionId} AND deleted = 0 ORDER BY create_time ASC, id ASC")
     List<ChatMessage> selectBySessionId(@Param("sessionId") Long sessionId);
 
+    /**
+     * 分页获取会话消息（按ID倒序，从 beforeId 之前开始）
+     * <p>
+     * 不返回 rag_context 大字段，只返回是否存在
+     * </p>
+     *
+     * @param sessionId 会话ID
+     * @param beforeId 游标位置（不含），第一页传 Long.MAX_VALUE
+     * @param limit 数量限制
+     * @return 消息列表
+     */
+    @Select("SELECT id, session_id, role, content, thinking_content, attachments, create_time, " +
+            "rag_context IS NOT NULL AS has_rag_context FROM kg_chat_message " +
+            "WHERE session_id = #{sessionId} AND id < #{beforeId} AND deleted = 0 ORDER BY id DESC LIMIT #{limit}")
+    List<ChatMessage> selectPageBefore(@Param("sessionId") Long sessionId, @Param("beforeId") long beforeId, @Param("limit") int limit);
+
+    /**
+     * 获取消息的RAG上下文
+     *
+     * @param messageId 消息ID
+     * @return RAG上下文（JSON）
+     */
+    @Select("SELECT rag_context FROM kg_chat_message WHERE id = #{messageId} AND deleted = 0")
+    String selectRagContext(@Param("messageId") Long messageId);
+
+    /**
+     * 分批查询旧格式的RAG上下文（包含完整文档列表，用于压缩迁移）
+     *
+     * @param afterId 起始消息ID（不含）
+     * @param limit 数量限制
+     * @return 消息列表（只有ID和RAG上下文）
+     */
+    @Select("SELECT id, rag_context FROM kg_chat_message WHERE id > #{afterId} AND rag_context IS NOT NULL " +
+            "AND JSON_CONTAINS_PATH(rag_context, 'one', '$.documents', '$.nodes') ORDER BY id ASC LIMIT #{limit}")
+    List<ChatMessage> selectLegacyRagContexts(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * 更新消息的RAG上下文
+     *
+     * @param messageId 消息ID
+     * @param ragContext RAG上下文（JSON）
+     * @return 更新行数
+     */
+    @Update("UPDATE kg_chat_message SET rag_context = #{ragContext} WHERE id = #{messageId}")
+    int updateRagContext(@Param("messageId") Long messageId, @Param("ragContext") String ragContext);
+
     /**
      * 获取会话最近N条消息（用于上下文）
      *
@@ -37,9 +85,31 @@ public interface ChatMessageMapper extends BaseMapper<ChatMessage> {
      * @param limit 数量限制
      * @return 消息列表
      */
-    @Select("SELECT * FROM kg_chat_message WHERE session_id = #{sessionId} AND deleted = 0 ORDER BY create_time DESC LIMIT #{limit}")
+    @Select("SELECT * FROM kg_chat_message WHERE session_id = #{sessionId} AND deleted = 0 ORDER BY create_time DESC, id DESC LIMIT #{limit}")
     List<ChatMessage> selectRecentMessages(@Param("sessionId") Long sessionId, @Param("limit") int limit);
 
+    /**
+     * 获取指定消息之后的消息（按ID正序，用于合并对话摘要）
+     *
+     * @param sessionId 会话ID
+     * @param afterId 起始消息ID（不含）
+     * @param limit 数量限制
+     * @return 消息列表
+     */
+    @Select("SELECT * FROM kg_chat_message WHERE session_id = #{sessionId} AND id > #{afterId} AND deleted = 0 ORDER BY id ASC LIMIT #{limit}")
+    List<ChatMessage> selectAfter(@Param("sessionId") Long sessionId, @Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * 获取指定消息之后最近的N条消息（按ID倒序，用于拼装未合并进摘要的最近对话）
+     *
+     * @param sessionId 会话ID
+     * @param afterId 起始消息ID（不含）
+     * @param limit 数量限制
+     * @return 消息列表
+     */
+    @Select("SELECT * FROM kg_chat_message WHERE session_id = #{sessionId} AND id > #{afterId} AND deleted = 0 ORDER BY id DESC LIMIT #{limit}")
+    List<ChatMessage> selectRecentAfter(@Param("sessionId") Long sessionId, @Param("afterId") long afterId, @Param("limit") int limit);
+
     /**
      * 统计会话消息数量
      *
@@ -48,4 +118,19 @@ public interface ChatMessageMapper extends BaseMapper<ChatMessage> {
      */
     @Select("SELECT COUNT(*) FROM kg_chat_message WHERE session_id = #{sessionId} AND deleted = 0")
     int countBySessionId(@Param("sessionId") Long sessionId);
+
+    /**
+     * 批量插入消息（多行VALUES，一次往返）
+     * <p>
+     * 不经过自动填充，ID和创建时间由调用方预先设置
+     * </p>
+     *
+     * @param messages 消息列表
+     * @return 插入行数
+     */
+    @Insert("<script>INSERT INTO kg_chat_message (id, session_id, role, content, thinking_content, attachments, rag_context, create_time, deleted) VALUES " +
+            "<foreach collection='messages' item='m' separator=','>" +
+            "(#{m.id}, #{m.sessionId}, #{m.role}, #{m.content}, #{m.thinkingContent}, #{m.attachments}, #{m.ragContext}, #{m.createTime}, 0)" +
+            "</foreach></script>")
+    int insertBatch(@Param("messages") List<ChatMessage> messages);
 }
@@ -7,7 +7,9 @@ import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 聊天会话Mapper接口
@@ -23,12 +25,19 @@ import java.util.List;
 public interface ChatSessionMapper extends BaseMapper<ChatSession> {
 
     /**
-     * 获取会话列表，按最后消息时间倒序
+     * 游标分页获取会话列表，按活跃时间倒序（走 (deleted, active_time, id) 索引）
      *
-     * @return 会话列表
+     * @param activeTime 上一页最后一条的活跃时间，首页传null
+     * @param id         上一页最后一条的ID，首页传null
+     * @param limit      查询条数
+     * @return 会话列表（不含滚动摘要）
      */
-    @Select("SELECT * FROM kg_chat_session WHERE deleted = 0 ORDER BY COALESCE(last_message_time, create_time) DESC")
-    List<ChatSession> selectAllOrderByLastMessageTime();
+    @Select("<script>SELECT id, title, message_count, last_message_time, active_time, create_time, update_time " +
+            "FROM kg_chat_session WHERE deleted = 0 " +
+            "<if test='activeTime != null'>AND (active_time &lt; #{activeTime} OR (active_time = #{activeTime} AND id &lt; #{id}))</if> " +
+            "ORDER BY active_time DESC, id DESC LIMIT #{limit}</script>")
+    List<ChatSession> selectPageByActiveTime(@Param("activeTime") LocalDateTime activeTime, @Param("id") Long id,
+                                             @Param("limit") int limit);
 
     /**
      * 更新会话消息统计
@@ -37,4 +46,43 @@ public interface ChatSessionMapper extends BaseMapper<ChatSession> {
      */
     @Update("UPDATE kg_chat_session SET message_count = message_count + 1, last_message_time = NOW(), update_time = NOW() WHERE id = #{sessionId}")
     void incrementMessageCount(@Param("sessionId") Long sessionId);
+
+    /**
+     * 批量累加会话消息统计（一条语句更新多个会话）
+     *
+     * @param deltas 会话ID -> 新增消息数
+     */
+    @Update("<script>UPDATE kg_chat_session SET message_count = message_count + CASE id " +
+            "<foreach collection='deltas' index='sessionId' item='delta'>WHEN #{sessionId} THEN #{delta} </foreach>ELSE 0 END, " +
+            "last_message_time = NOW(), update_time = NOW() WHERE id IN " +
+            "<foreach collection='deltas' index='sessionId' open='(' separator=',' close=')'>#{sessionId}</foreach></script>")
+    void addMessageCounts(@Param("deltas") Map<Long, Integer> deltas);
+
+    /**
+     * 更新会话标题（仅当标题仍为默认标题时更新，同一会话只有第一条消息生效，不覆盖用户修改的标题）
+     *
+     * @param sessionId    会话ID
+     * @param title        新标题
+     * @param defaultTitle 默认标题
+     * @return 更新行数
+     */
+    @Update("UPDATE kg_chat_session SET title = #{title}, update_time = NOW() " +
+            "WHERE id = #{sessionId} AND title = #{defaultTitle}")
+    int updateTitleIfDefault(@Param("sessionId") Long sessionId, @Param("title") String title,
+                             @Param("defaultTitle") String defaultTitle);
+
+    /**
+     * 更新会话滚动摘要（仅当摘要位置仍为 expectedMessageId 时更新，避免并发合并互相覆盖）
+     *
+     * @param sessionId 会话ID
+     * @param summary 新摘要
+     * @param summarizedMessageId 已合并进摘要的最后一条消息ID
+     * @param expectedMessageId 合并前的摘要位置
+     * @return 更新行数
+     */
+    @Update("UPDATE kg_chat_session SET summary = #{summary}, summarized_message_id = #{summarizedMessageId} " +
+            "WHERE id = #{sessionId} AND COALESCE(summarized_message_id, 0) = #{expectedMessageId}")
+    int updateSummary(@Param("sessionId") Long sessionId, @Param("summary") String summary,
+                      @Param("summarizedMessageId") Long summarizedMessageId,
+                      @Param("expectedMessageId") long expectedMessageId);
 }
@@ -0,0 +1,39 @@
+package com.wzw.knowledge.mapper;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * 语料版本Mapper接口
+ * <p>
+ * kg_corpus_version 表只有一行（id = 1）
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Mapper
+public interface CorpusVersionMapper {
+
+    /**
+     * 初始化版本记录（已存在时忽略）
+     */
+    @Insert("INSERT IGNORE INTO kg_corpus_version (id, version) VALUES (1, 0)")
+    void init();
+
+    /**
+     * 查询当前语料版本
+     *
+     * @return 版本号
+     */
+    @Select("SELECT version FROM kg_corpus_version WHERE id = 1")
+    Long selectVersion();
+
+    /**
+     * 语料版本加一
+     */
+    @Update("UPDATE kg_corpus_version SET version = version + 1 WHERE id = 1")
+    void increment();
+}
@@ -6,6 +6,7 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -47,9 +48,57 @@ public interface DocumentChunkMapper extends BaseMapper<DocumentChunk> {
     @Select("SELECT * FROM kg_document_chunk WHERE parent_id = #{parentId} AND chunk_type = 'child' AND deleted = 0")
     List<DocumentChunk> selectChildrenByParentId(@Param("parentId") Long parentId);
 
+    /**
+     * 批量查询分块（包含已逻辑删除的分块，用于还原历史回答的来源）
+     */
+    @Select("<script>SELECT * FROM kg_document_chunk WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    List<DocumentChunk> selectByIdsIncludingDeleted(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 批量查询检索命中的分块（不含向量ID等无关列）
+     *
+     * @param ids 分块ID
+     * @return 未删除的分块
+     */
+    @Select("<script>SELECT id, document_id, parent_id, chunk_type, page_num, content FROM kg_document_chunk " +
+            "WHERE deleted = 0 AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    List<DocumentChunk> selectHitsByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 批量查询父块
+     *
+     * @param ids 父块ID
+     * @return 未删除的父块
+     */
+    @Select("<script>SELECT id, document_id, page_num, section_title, content FROM kg_document_chunk " +
+            "WHERE chunk_type = 'parent' AND deleted = 0 AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    List<DocumentChunk> selectParentsByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 查询文档的分块ID（两阶段检索第二阶段的检索范围）
+     *
+     * @param documentIds 文档ID
+     * @param limit       最多返回数量
+     * @return 未删除的分块ID
+     */
+    @Select("<script>SELECT id FROM kg_document_chunk WHERE deleted = 0 AND document_id IN " +
+            "<foreach collection='documentIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            " LIMIT #{limit}</script>")
+    List<Long> selectIdsByDocumentIds(@Param("documentIds") Collection<Long> documentIds, @Param("limit") int limit);
+
     /**
      * 删除文档的所有分块
      */
     @org.apache.ibatis.annotations.Update("UPDATE kg_document_chunk SET deleted = 1 WHERE document_id = #{documentId}")
     int deleteByDocumentId(@Param("documentId") Long documentId);
+
+    /**
+     * 按ID顺序分页读取分块（构建本地词项索引用）
+     */
+    @Select("SELECT id, document_id, chunk_type, content FROM kg_document_chunk " +
+            "WHERE id > #{afterId} AND deleted = 0 ORDER BY id LIMIT #{limit}")
+    List<DocumentChunk> selectIndexPage(@Param("afterId") Long afterId, @Param("limit") int limit);
 }
@@ -3,6 +3,12 @@ package com.wzw.knowledge.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.wzw.knowledge.model.entity.Document;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Collection;
+import java.util.List;
 
 /**
  * 文档Mapper接口
@@ -16,4 +22,44 @@ import org.apache.ibatis.annotations.Mapper;
 @Mapper
 public interface DocumentMapper extends BaseMapper<Document> {
 
+    /**
+     * 批量查询文档基本信息（不含正文，包含已逻辑删除的文档）
+     *
+     * @param ids 文档ID
+     * @return 文档列表（只有ID、名称、类型、摘要和删除标识）
+     */
+    @Select("<script>SELECT id, name, file_type, summary, deleted FROM kg_document WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    List<Document> selectBriefByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 批量查询未删除文档的头信息（不含正文）
+     *
+     * @param ids 文档ID
+     * @return 文档列表（只有ID、名称、类型和摘要）
+     */
+    @Select("<script>SELECT id, name, file_type, summary FROM kg_document WHERE deleted = 0 AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    List<Document> selectHeadersByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 按ID顺序分页查询已解析但没有文档级向量的文档
+     *
+     * @param afterId 上一页最后的文档ID
+     * @param limit   每页数量
+     * @return 文档列表（只有ID和名称）
+     */
+    @Select("SELECT id, name FROM kg_document WHERE id > #{afterId} AND status = 2 AND deleted = 0 " +
+            "AND (vector_id IS NULL OR vector_id = '') ORDER BY id LIMIT #{limit}")
+    List<Document> selectWithoutVector(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    /**
+     * 更新文档级向量ID
+     *
+     * @param id       文档ID
+     * @param vectorId 向量ID
+     * @return 影响行数
+     */
+    @Update("UPDATE kg_document SET vector_id = #{vectorId} WHERE id = #{id}")
+    int updateVectorId(@Param("id") Long id, @Param("vectorId") String vectorId);
 }
@@ -0,0 +1,58 @@
+package com.wzw.knowledge.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.wzw.knowledge.model.entity.EntityMention;
+import org.apache.ibatis.annotations.*;
+
+import java.util.List;
+
+/**
+ * 实体提及Mapper接口
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Mapper
+public interface EntityMentionMapper extends BaseMapper<EntityMention> {
+
+    /**
+     * 查询全部提及（加载内存索引用，不含位置明细）
+     *
+     * @return 提及列表
+     */
+    @Select("SELECT node_id, document_id, chunk_id, mention_count FROM kg_entity_mention")
+    List<EntityMention> selectAllBrief();
+
+    /**
+     * 删除文档的所有提及（物理删除）
+     *
+     * @param documentId 文档ID
+     * @return 删除行数
+     */
+    @Delete("DELETE FROM kg_entity_mention WHERE document_id = #{documentId}")
+    int deleteByDocumentId(@Param("documentId") Long documentId);
+
+    /**
+     * 删除节点的所有提及（物理删除）
+     *
+     * @param nodeId 节点ID
+     * @return 删除行数
+     */
+    @Delete("DELETE FROM kg_entity_mention WHERE node_id = #{nodeId}")
+    int deleteByNodeId(@Param("nodeId") Long nodeId);
+
+    /**
+     * 批量插入提及（多行VALUES，一次往返）
+     * <p>
+     * 不经过自动填充，ID由调用方预先设置
+     * </p>
+     *
+     * @param mentions 提及列表
+     * @return 插入行数
+     */
+    @Insert("<script>INSERT INTO kg_entity_mention (id, node_id, document_id, chunk_id, mention_count, offsets) VALUES " +
+            "<foreach collection='mentions' item='m' separator=','>" +
+            "(#{m.id}, #{m.nodeId}, #{m.documentId}, #{m.chunkId}, #{m.mentionCount}, #{m.offsets})" +
+            "</foreach></script>")
+    int insertBatch(@Param("mentions") List<EntityMention> mentions);
+}
@@ -2,10 +2,12 @@ package com.wzw.knowledge.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.wzw.knowledge.model.entity.KnowledgeNode;
+import com.wzw.knowledge.model.vo.NodeRelationRow;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -63,4 +65,27 @@ public interface KnowledgeNodeMapper extends BaseMapper<KnowledgeNode> {
      */
     @Select("SELECT * FROM kg_knowledge_node WHERE source_doc_id = #{sourceDocId} AND deleted = 0")
     List<KnowledgeNode> selectBySourceDocId(@Param("sourceDocId") Long sourceDocId);
+
+    /**
+     * 批量查询节点及其出边（含目标节点名称），一次查询完成图谱检索结果的回表
+     *
+     * @param ids 节点ID
+     * @return 每条关系一行，没有关系的节点一行
+     */
+    @Select("<script>SELECT n.id AS node_id, n.name AS node_name, n.node_type, n.description, n.properties, " +
+            "r.name AS relation_name, r.relation_type, tn.id AS target_node_id, tn.name AS target_node_name " +
+            "FROM kg_knowledge_node n " +
+            "LEFT JOIN kg_knowledge_relation r ON r.source_node_id = n.id AND r.deleted = 0 " +
+            "LEFT JOIN kg_knowledge_node tn ON tn.id = r.target_node_id AND tn.deleted = 0 " +
+            "WHERE n.deleted = 0 AND n.id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach> " +
+            "ORDER BY n.id, r.id</script>")
+    List<NodeRelationRow> selectWithOutgoingRelations(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 按ID顺序分页读取节点名称和描述（构建本地词项索引用）
+     */
+    @Select("SELECT id, name, description FROM kg_knowledge_node " +
+            "WHERE id > #{afterId} AND deleted = 0 ORDER BY id LIMIT #{limit}")
+    List<KnowledgeNode> selectIndexPage(@Param("afterId") Long afterId, @Param("limit") int limit);
 }
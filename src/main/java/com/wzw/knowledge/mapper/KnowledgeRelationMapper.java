@@ -7,6 +7,7 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -85,4 +86,14 @@ public interface KnowledgeRelationMapper extends BaseMapper<KnowledgeRelation> {
      */
     @Select("SELECT * FROM kg_knowledge_relation WHERE source_node_id = #{sourceNodeId} AND deleted = 0")
     List<KnowledgeRelation> selectBySourceNodeId(@Param("sourceNodeId") Long sourceNodeId);
+
+    /**
+     * 根据多个起始节点ID批量查询关系
+     *
+     * @param sourceNodeIds 起始节点ID
+     * @return 关系列表
+     */
+    @Select("<script>SELECT * FROM kg_knowledge_relation WHERE deleted = 0 AND source_node_id IN " +
+            "<foreach collection='sourceNodeIds' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    List<KnowledgeRelation> selectBySourceNodeIds(@Param("sourceNodeIds") Collection<Long> sourceNodeIds);
 }
@@ -3,6 +3,11 @@ package com.wzw.knowledge.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.wzw.knowledge.model.entity.OcrRecord;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Collection;
+import java.util.List;
 
 /**
  * OCR记录Mapper接口
@@ -16,4 +21,17 @@ import org.apache.ibatis.annotations.Mapper;
 @Mapper
 public interface OcrRecordMapper extends BaseMapper<OcrRecord> {
 
+    /**
+     * 按ID顺序分页读取识别完成的OCR文本（构建本地词项索引用）
+     */
+    @Select("SELECT id, ocr_text FROM kg_ocr_record " +
+            "WHERE id > #{afterId} AND status = 2 AND deleted = 0 ORDER BY id LIMIT #{limit}")
+    List<OcrRecord> selectIndexPage(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    /**
+     * 批量查询OCR记录的展示字段（包含已逻辑删除的记录，用于还原历史回答的来源）
+     */
+    @Select("<script>SELECT id, image_name, original_name, image_type, ocr_text, deleted FROM kg_ocr_record " +
+            "WHERE id IN <foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    List<OcrRecord> selectBriefByIdsIncludingDeleted(@Param("ids") Collection<Long> ids);
 }
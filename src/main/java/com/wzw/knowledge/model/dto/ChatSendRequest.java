@@ -32,6 +32,18 @@ public class ChatSendRequest {
     @Schema(description = "是否启用RAG检索增强", example = "true")
     private Boolean enableRag = true;
 
+    /**
+     * 是否使用快速模式
+     */
+    @Schema(description = "快速模式（使用非推理模型，不输出思考过程，延迟更低）", example = "false")
+    private Boolean fast = false;
+
+    /**
+     * 知识库中没有相关内容时，是否允许基于通用知识回答
+     */
+    @Schema(description = "知识库中没有相关内容时，允许模型基于通用知识回答", example = "false")
+    private Boolean generalKnowledge = false;
+
     /**
      * 附件ID列表
      */
@@ -0,0 +1,134 @@
+package com.wzw.knowledge.model.dto;
+
+import com.alibaba.fastjson2.annotation.JSONField;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RAG来源（按引用存储）
+ * <p>
+ * 保存在 kg_chat_message.rag_context 中，只记录分块ID、分数和生成回答时的语料版本，
+ * 展示时由 RagProvenanceService 从分块表还原文档和图谱节点；OCR识别文本等不是分块的来源记录来源类型和记录ID。
+ * 字段名使用短名以减小存储，例如：
+ * {"v":2,"cv":17,"d":[{"c":1890123,"p":1890100,"s":0.8731}],"n":[{"i":1770456,"s":0.6512}],
+ * "o":[{"i":3021,"s":0.5,"t":"ocr","x":1}]}
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Data
+public class RagProvenance {
+
+    /**
+     * 当前格式版本（旧格式为完整的文档和节点列表，没有该字段）
+     */
+    public static final int FORMAT_VERSION = 2;
+
+    /**
+     * 格式版本
+     */
+    @JSONField(name = "v", ordinal = 1)
+    private Integer formatVersion = FORMAT_VERSION;
+
+    /**
+     * 生成回答时的语料版本（由旧格式转换而来时为null）
+     */
+    @JSONField(name = "cv", ordinal = 2)
+    private Long corpusVersion;
+
+    /**
+     * 文档分块引用
+     */
+    @JSONField(name = "d", ordinal = 3)
+    private List<ChunkRef> documents = new ArrayList<>();
+
+    /**
+     * 图谱节点引用
+     */
+    @JSONField(name = "n", ordinal = 4)
+    private List<NodeRef> nodes = new ArrayList<>();
+
+    /**
+     * 非分块来源引用（没有时为null，不写入存储）
+     */
+    @JSONField(name = "o", ordinal = 5)
+    private List<SourceRef> sources;
+
+    /**
+     * 文档分块引用
+     */
+    @Data
+    public static class ChunkRef {
+
+        /**
+         * 命中的分块ID
+         */
+        @JSONField(name = "c")
+        private Long chunkId;
+
+        /**
+         * 提供上下文内容的父块ID（没有父块时为null）
+         */
+        @JSONField(name = "p")
+        private Long parentChunkId;
+
+        /**
+         * 检索分数
+         */
+        @JSONField(name = "s")
+        private Double score;
+    }
+
+    /**
+     * 非分块来源引用（目前只有OCR识别文本）
+     */
+    @Data
+    public static class SourceRef {
+
+        /**
+         * 来源类型（见 RagDocument.SOURCE_*）
+         */
+        @JSONField(name = "t")
+        private String sourceType;
+
+        /**
+         * 来源记录ID（OCR为OCR记录ID）
+         */
+        @JSONField(name = "i")
+        private Long id;
+
+        /**
+         * 在文档列表中的位置（还原时保持回答引用的顺序）
+         */
+        @JSONField(name = "x")
+        private Integer position;
+
+        /**
+         * 检索分数
+         */
+        @JSONField(name = "s")
+        private Double score;
+    }
+
+    /**
+     * 图谱节点引用
+     */
+    @Data
+    public static class NodeRef {
+
+        /**
+         * 节点ID
+         */
+        @JSONField(name = "i")
+        private Long nodeId;
+
+        /**
+         * 检索分数
+         */
+        @JSONField(name = "s")
+        private Double score;
+    }
+}
@@ -58,6 +58,12 @@ public class ChatMessage implements Serializable {
      */
     private String ragContext;
 
+    /**
+     * 是否有RAG上下文（分页查询时代替大字段返回，非数据库字段）
+     */
+    @TableField(exist = false)
+    private Boolean hasRagContext;
+
     /**
      * 创建时间
      */
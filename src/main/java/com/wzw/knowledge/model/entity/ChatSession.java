@@ -22,6 +22,11 @@ public class ChatSession implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * 新会话的默认标题（发送第一条消息后改为消息内容）
+     */
+    public static final String DEFAULT_TITLE = "新对话";
+
     /**
      * 主键ID（雪花算法生成）
      */
@@ -43,6 +48,22 @@ public class ChatSession implements Serializable {
      */
     private LocalDateTime lastMessageTime;
 
+    /**
+     * 活跃时间（数据库生成列：COALESCE(last_message_time, create_time)，会话列表的排序键）
+     */
+    @TableField(insertStrategy = FieldStrategy.NEVER, updateStrategy = FieldStrategy.NEVER)
+    private LocalDateTime activeTime;
+
+    /**
+     * 对话滚动摘要（已合并的早期对话）
+     */
+    private String summary;
+
+    /**
+     * 已合并进摘要的最后一条消息ID
+     */
+    private Long summarizedMessageId;
+
     /**
      * 创建时间
      */
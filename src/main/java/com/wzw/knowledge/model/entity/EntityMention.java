@@ -0,0 +1,61 @@
+package com.wzw.knowledge.model.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 实体提及实体类
+ * <p>
+ * 记录知识节点在哪些分块中出现以及出现的位置，每个（节点, 分块）一条记录
+ * 对应数据库表：kg_entity_mention
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Data
+@TableName("kg_entity_mention")
+public class EntityMention implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 主键ID（雪花算法生成）
+     */
+    @TableId(type = IdType.ASSIGN_ID)
+    private Long id;
+
+    /**
+     * 知识节点ID
+     */
+    private Long nodeId;
+
+    /**
+     * 文档ID
+     */
+    private Long documentId;
+
+    /**
+     * 分块ID
+     */
+    private Long chunkId;
+
+    /**
+     * 在分块中出现的次数
+     */
+    private Integer mentionCount;
+
+    /**
+     * 出现位置（start:end,start:end，最多记录前16处）
+     */
+    private String offsets;
+
+    /**
+     * 创建时间
+     */
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createTime;
+}
@@ -67,6 +67,18 @@ public class ChatMessageVO {
     @Schema(description = "关联图谱节点列表")
     private List<RagNode> ragNodes;
 
+    /**
+     * RAG上下文引用（消息历史中不直接返回文档和节点，展开来源时按此ID加载）
+     */
+    @Schema(description = "RAG上下文引用（展开来源时按此ID加载）")
+    private Long ragContextId;
+
+    /**
+     * 知识库中没有相关内容，未调用大模型（可选择用通用知识回答）
+     */
+    @Schema(description = "知识库中没有相关内容，返回的是模板回答")
+    private Boolean noAnswer;
+
     /**
      * 创建时间
      */
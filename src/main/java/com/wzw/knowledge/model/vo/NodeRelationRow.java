@@ -0,0 +1,62 @@
+package com.wzw.knowledge.model.vo;
+
+import lombok.Data;
+
+/**
+ * 节点及其出边的扁平查询行
+ * <p>
+ * 一次JOIN查询同时返回节点、以该节点为起点的关系和目标节点名称，
+ * 每条关系一行，没有关系的节点只有一行且关系列为空
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Data
+public class NodeRelationRow {
+
+    /**
+     * 节点ID
+     */
+    private Long nodeId;
+
+    /**
+     * 节点名称
+     */
+    private String nodeName;
+
+    /**
+     * 节点类型
+     */
+    private String nodeType;
+
+    /**
+     * 节点描述
+     */
+    private String description;
+
+    /**
+     * 节点属性（JSON）
+     */
+    private String properties;
+
+    /**
+     * 关系名称
+     */
+    private String relationName;
+
+    /**
+     * 关系类型
+     */
+    private String relationType;
+
+    /**
+     * 目标节点ID（目标节点已删除时为空）
+     */
+    private Long targetNodeId;
+
+    /**
+     * 目标节点名称
+     */
+    private String targetNodeName;
+}
@@ -0,0 +1,50 @@
+package com.wzw.knowledge.model.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * RAG上下文视图对象
+ * <p>
+ * 消息历史只返回RAG上下文的引用，用户展开来源时按消息ID单独加载
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Data
+@Schema(description = "RAG上下文VO")
+public class RagContextVO {
+
+    /**
+     * 消息ID
+     */
+    @Schema(description = "消息ID")
+    private Long messageId;
+
+    /**
+     * 相关文档
+     */
+    @Schema(description = "相关文档")
+    private List<RagDocument> documents;
+
+    /**
+     * 相关图谱节点
+     */
+    @Schema(description = "相关图谱节点")
+    private List<RagNode> nodes;
+
+    /**
+     * 生成回答时的语料版本（旧格式数据为null）
+     */
+    @Schema(description = "生成回答时的语料版本")
+    private Long corpusVersion;
+
+    /**
+     * 来源是否已变化（文档已重新解析或删除，展示的是生成回答时的内容）
+     */
+    @Schema(description = "来源是否已变化（文档已重新解析或删除）")
+    private Boolean stale;
+}
@@ -6,7 +6,7 @@ import lombok.Data;
 /**
  * RAG检索文档对象
  * <p>
- * 表示从向量数据库检索到的相关文档
+ * 表示检索到的相关文档分块或OCR识别文本
  * </p>
  *
  * @author wzw
@@ -16,6 +16,22 @@ import lombok.Data;
 @Schema(description = "RAG关联文档")
 public class RagDocument {
 
+    /**
+     * 来源：文档分块
+     */
+    public static final String SOURCE_DOCUMENT = "document";
+
+    /**
+     * 来源：OCR识别文本（id 为OCR记录ID）
+     */
+    public static final String SOURCE_OCR = "ocr";
+
+    /**
+     * 来源类型（为空时视为文档）
+     */
+    @Schema(description = "来源类型：document/ocr")
+    private String sourceType;
+
     /**
      * 文档ID
      */
@@ -28,6 +44,12 @@ public class RagDocument {
     @Schema(description = "分块ID")
     private Long chunkId;
 
+    /**
+     * 父块ID（matchedContent 取自父块时有值）
+     */
+    @Schema(description = "父块ID")
+    private Long parentChunkId;
+
     /**
      * 文档名称
      */
@@ -63,4 +85,29 @@ public class RagDocument {
      */
     @Schema(description = "相似度分数")
     private Double score;
+
+    /**
+     * 与问题的向量相似度（余弦）
+     */
+    @Schema(description = "与问题的向量相似度")
+    private Double similarity;
+
+    /**
+     * 与问题的相关度（0~1，用于判断检索置信度）：向量检索为余弦相似度，本地词项检索为查询词项覆盖率，
+     * 没有可比口径的结果（如图谱扩展）为空
+     */
+    @Schema(description = "与问题的相关度")
+    private Double relevance;
+
+    /**
+     * 重排序得分（未经重排序时为空）
+     */
+    @Schema(description = "重排序得分")
+    private Double rerankScore;
+
+    /**
+     * 命中词项的高亮摘要（仅本地词项检索的结果有）
+     */
+    @Schema(description = "命中词项的高亮摘要")
+    private String highlight;
 }
@@ -1,8 +1,14 @@
 package com.wzw.knowledge.model.vo;
 
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONException;
 import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -44,10 +50,18 @@ public class RagNode {
     private String description;
 
     /**
-     * 节点属性
+     * 节点属性（volatile：检索结果缓存后被多个请求线程共享，延迟解析的结果需要安全发布）
      */
     @Schema(description = "节点属性")
-    private Map<String, Object> properties;
+    @Getter(AccessLevel.NONE)
+    private volatile Map<String, Object> properties;
+
+    /**
+     * 未解析的节点属性JSON（首次读取属性时才解析，解析后保留，不参与序列化）
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String rawProperties;
 
     /**
      * 相似度分数
@@ -61,6 +75,36 @@ public class RagNode {
     @Schema(description = "关联的关系")
     private List<RagRelation> relations;
 
+    /**
+     * 获取节点属性，首次读取时解析属性JSON
+     * <p>
+     * 并发首次读取时可能重复解析，结果相同；解析结果不可修改，通过volatile字段发布
+     * </p>
+     */
+    public Map<String, Object> getProperties() {
+        Map<String, Object> parsed = properties;
+        if (parsed == null && rawProperties != null) {
+            try {
+                Map<String, Object> json = JSON.parseObject(rawProperties);
+                parsed = json != null ? Collections.unmodifiableMap(json) : Map.of();
+            } catch (JSONException e) {
+                parsed = Map.of();
+            }
+            properties = parsed;
+        }
+        return parsed;
+    }
+
+    /**
+     * 设置未解析的属性JSON，检索结果中多数节点的属性不会被读取，延迟到使用时再解析
+     *
+     * @param json 属性JSON
+     */
+    public void setRawProperties(String json) {
+        this.rawProperties = json;
+        this.properties = null;
+    }
+
     /**
      * RAG关联关系
      */
@@ -0,0 +1,82 @@
+package com.wzw.knowledge.model.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 摘要任务视图对象
+ * <p>
+ * 用于返回文档摘要异步任务的进度
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Data
+@Schema(description = "摘要任务VO")
+public class SummaryJobVO {
+
+    /**
+     * 文档ID
+     */
+    @Schema(description = "文档ID")
+    private Long documentId;
+
+    /**
+     * 任务状态（pending/running/completed/failed）
+     */
+    @Schema(description = "任务状态", example = "running")
+    private String status;
+
+    /**
+     * 总步骤数（分段摘要数 + 合并次数）
+     */
+    @Schema(description = "总步骤数")
+    private Integer totalSteps;
+
+    /**
+     * 已完成步骤数
+     */
+    @Schema(description = "已完成步骤数")
+    private Integer completedSteps;
+
+    /**
+     * 进度百分比（0-100）
+     */
+    @Schema(description = "进度百分比")
+    private Integer progress;
+
+    /**
+     * 摘要内容（完成后返回）
+     */
+    @Schema(description = "摘要内容")
+    private String summary;
+
+    /**
+     * 错误信息
+     */
+    @Schema(description = "错误信息")
+    private String errorMsg;
+
+    /**
+     * 开始时间
+     */
+    @Schema(description = "开始时间")
+    private LocalDateTime startTime;
+
+    /**
+     * 结束时间
+     */
+    @Schema(description = "结束时间")
+    private LocalDateTime finishTime;
+
+    /**
+     * 任务状态常量
+     */
+    public static final String STATUS_PENDING = "pending";
+    public static final String STATUS_RUNNING = "running";
+    public static final String STATUS_COMPLETED = "completed";
+    public static final String STATUS_FAILED = "failed";
+}
@@ -0,0 +1,64 @@
+package com.wzw.knowledge.service;
+
+import com.wzw.knowledge.model.entity.ChatAttachment;
+
+import java.util.List;
+
+/**
+ * 附件索引服务接口
+ * <p>
+ * 为每个会话维护一份内存向量索引：附件上传后异步分块、生成向量，
+ * 提问时只检索与问题相关的片段拼入提示词，代替截断后的全文
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public interface AttachmentIndexService {
+
+    /**
+     * 异步为附件建立索引（已建立或正在建立时直接返回）
+     *
+     * @param sessionId  会话ID
+     * @param attachment 附件（包含解析后的内容）
+     */
+    void indexAsync(Long sessionId, ChatAttachment attachment);
+
+    /**
+     * 构建附件上下文：检索与问题相关的片段，在token预算内按附件和原文顺序拼接
+     * <p>
+     * 未建立索引的附件（如索引已过期回收）会先补建索引
+     * </p>
+     *
+     * @param sessionId   会话ID
+     * @param question    用户问题
+     * @param attachments 本轮提问携带的附件
+     * @return 附件上下文，没有可用内容时返回空字符串
+     */
+    String buildContext(Long sessionId, String question, List<ChatAttachment> attachments);
+
+    /**
+     * 回收会话的索引（会话删除时调用）
+     *
+     * @param sessionId 会话ID
+     */
+    void evict(Long sessionId);
+
+    /**
+     * 当前内存中的索引统计
+     *
+     * @return 统计信息
+     */
+    IndexStats getStats();
+
+    /**
+     * 索引统计
+     *
+     * @param sessions    会话数
+     * @param attachments 附件数
+     * @param chunks      分块数
+     * @param evicted     累计过期回收的会话数
+     */
+    record IndexStats(int sessions, int attachments, long chunks, long evicted) {
+    }
+}
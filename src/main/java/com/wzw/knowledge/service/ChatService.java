@@ -1,6 +1,7 @@
 package com.wzw.knowledge.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.wzw.knowledge.common.CursorPageResult;
 import com.wzw.knowledge.model.dto.ChatSendRequest;
 import com.wzw.knowledge.model.entity.ChatAttachment;
 import com.wzw.knowledge.model.entity.ChatSession;
@@ -8,11 +9,10 @@ import com.wzw.knowledge.model.vo.ChatAttachmentVO;
 import com.wzw.knowledge.model.vo.ChatMessageVO;
 import com.wzw.knowledge.model.vo.ChatSendResponse;
 import com.wzw.knowledge.model.vo.ChatSessionVO;
+import com.wzw.knowledge.model.vo.RagContextVO;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.List;
-
 /**
  * 聊天服务接口
  * <p>
@@ -32,11 +32,13 @@ public interface ChatService extends IService<ChatSession> {
     ChatSessionVO createSession();
 
     /**
-     * 获取会话列表
+     * 获取会话列表（游标分页，按最近活跃时间倒序）
      *
-     * @return 会话列表
+     * @param cursor 上一页返回的游标，首页传null
+     * @param size   每页数量
+     * @return 会话分页结果
      */
-    List<ChatSessionVO> listSessions();
+    CursorPageResult<ChatSessionVO> listSessions(String cursor, Integer size);
 
     /**
      * 删除会话
@@ -74,20 +76,61 @@ public interface ChatService extends IService<ChatSession> {
     SseEmitter sendMessageStream(Long sessionId, ChatSendRequest request);
 
     /**
-     * 获取会话消息历史
+     * 流式对话断线重连（从回放缓冲续传，不重新生成）
+     *
+     * @param assistantMessageId AI消息ID
+     * @param lastEventId 客户端最后收到的事件ID
+     * @return SSE发射器
+     */
+    SseEmitter resumeMessageStream(Long assistantMessageId, Long lastEventId);
+
+    /**
+     * 获取流式对话统计
+     *
+     * @return 统计信息
+     */
+    StreamStats getStreamStats();
+
+    /**
+     * 获取相同问题合并统计
+     *
+     * @return 统计信息
+     */
+    SingleFlightStats getSingleFlightStats();
+
+    /**
+     * 获取消息写入统计（待写入、重试中和累计失败的操作数）
+     *
+     * @return 统计信息
+     */
+    JournalStats getJournalStats();
+
+    /**
+     * 分页获取会话消息历史（从最新的消息向前翻页）
      *
      * @param sessionId 会话ID
-     * @return 消息列表
+     * @param cursor 游标（为空表示第一页，即最新的消息）
+     * @param size 每页数量
+     * @return 消息分页结果（页内按时间正序），RAG上下文只返回引用
+     */
+    CursorPageResult<ChatMessageVO> getMessages(Long sessionId, String cursor, Integer size);
+
+    /**
+     * 获取消息的RAG上下文（展开来源时加载）
+     *
+     * @param messageId 消息ID
+     * @return RAG上下文
      */
-    List<ChatMessageVO> getMessages(Long sessionId);
+    RagContextVO getRagContext(Long messageId);
 
     /**
      * 上传聊天附件
      *
-     * @param file 文件
+     * @param file      文件
+     * @param sessionId 会话ID（可选，传入时立即异步建立附件索引）
      * @return 附件VO
      */
-    ChatAttachmentVO uploadAttachment(MultipartFile file);
+    ChatAttachmentVO uploadAttachment(MultipartFile file, Long sessionId);
 
     /**
      * 获取附件详情
@@ -96,4 +139,78 @@ public interface ChatService extends IService<ChatSession> {
      * @return 附件实体
      */
     ChatAttachment getAttachment(Long attachmentId);
+
+    /**
+     * 流式对话统计
+     *
+     * @param activeStreams        进行中的流数量
+     * @param queuedStreams        排队中的流数量
+     * @param admittedStreams      累计放行数
+     * @param rejectedStreams      累计拒绝数（429）
+     * @param replayChannels       保留回放缓冲的流数量
+     * @param completedStreams     正常送达的流数量
+     * @param abandonedStreams     客户端中途离开的流数量
+     * @param cancelledGenerations 因客户端断开而取消的上游生成数
+     * @param resumedStreams       断线重连次数
+     * @param eventsAfterDisconnect 客户端离开后仍生成的事件数
+     * @param wastedGenerationMs   客户端离开后模型仍在生成的累计时间（毫秒）
+     * @param tokensStreamed       累计输出的token片段数
+     * @param chunkFrames          累计发送的chunk帧数（合并后）
+     */
+    record StreamStats(
+            int activeStreams,
+            int queuedStreams,
+            long admittedStreams,
+            long rejectedStreams,
+            int replayChannels,
+            long completedStreams,
+            long abandonedStreams,
+            long cancelledGenerations,
+            long resumedStreams,
+            long eventsAfterDisconnect,
+            long wastedGenerationMs,
+            long tokensStreamed,
+            long chunkFrames
+    ) {
+    }
+
+    /**
+     * 消息写入统计
+     *
+     * @param pending   待写入的操作数
+     * @param retrying  写入失败等待重试的操作数（同一会话排在其后的操作也计入）
+     * @param written   累计写入成功的操作数
+     * @param failures  累计写入失败次数（每次重试失败都计入）
+     * @param recovered 失败后重试成功的操作数
+     */
+    record JournalStats(
+            int pending,
+            int retrying,
+            long written,
+            long failures,
+            long recovered
+    ) {
+    }
+
+    /**
+     * 相同问题合并统计
+     *
+     * @param inFlight              进行中的检索和生成数量
+     * @param retrievals            实际执行的检索次数
+     * @param sharedRetrievals      共享其他请求检索结果的次数
+     * @param generations           实际调用模型的次数
+     * @param sharedGenerations     加入进行中生成的次数
+     * @param requestsInWindow      统计窗口内的生成请求数
+     * @param modelCallsInWindow    统计窗口内实际调用模型的次数
+     */
+    record SingleFlightStats(
+            int inFlight,
+            long retrievals,
+            long sharedRetrievals,
+            long generations,
+            long sharedGenerations,
+            int requestsInWindow,
+            int modelCallsInWindow
+    ) {
+    }
 }
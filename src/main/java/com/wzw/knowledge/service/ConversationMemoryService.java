@@ -0,0 +1,39 @@
+package com.wzw.knowledge.service;
+
+import com.wzw.knowledge.model.entity.ChatSession;
+
+/**
+ * 对话记忆服务接口
+ * <p>
+ * 为每个会话维护滚动摘要，拼装提示词时使用"摘要 + 最近对话"代替截断的原始历史，
+ * 长对话的历史上下文token数有上限
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public interface ConversationMemoryService {
+
+    /**
+     * 构建历史上下文（会话摘要 + 预算内的最近对话）
+     *
+     * @param session 会话（包含摘要字段）
+     * @return 历史上下文，没有历史时返回空字符串
+     */
+    String buildHistoryContext(ChatSession session);
+
+    /**
+     * 将最近对话窗口之外的消息合并进会话摘要（同步）
+     *
+     * @param sessionId 会话ID
+     * @return 是否更新了摘要
+     */
+    boolean compact(Long sessionId);
+
+    /**
+     * 异步合并会话摘要（每轮对话结束后调用）
+     *
+     * @param sessionId 会话ID
+     */
+    void compactAsync(Long sessionId);
+}
@@ -0,0 +1,32 @@
+package com.wzw.knowledge.service;
+
+/**
+ * 语料版本服务接口
+ * <p>
+ * 文档分块发生变化（解析、重新解析、删除）或图谱节点、关系变化时语料版本递增。
+ * RAG来源记录生成时的语料版本，检索相关的缓存也以此判断是否过期
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public interface CorpusVersionService {
+
+    /**
+     * 获取当前语料版本
+     *
+     * @return 版本号
+     */
+    long current();
+
+    /**
+     * 语料版本加一
+     * <p>
+     * 在事务中调用时推迟到事务提交后、在独立的短事务中执行，同一事务内的多次调用只加一次；
+     * 事务回滚时不变更
+     * </p>
+     *
+     * @param reason 变更原因（用于日志）
+     */
+    void bump(String reason);
+}
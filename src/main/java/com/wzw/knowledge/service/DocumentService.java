@@ -1,9 +1,11 @@
 package com.wzw.knowledge.service;
 
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.wzw.knowledge.common.CountMode;
+import com.wzw.knowledge.common.CursorPageResult;
 import com.wzw.knowledge.model.entity.Document;
 import com.wzw.knowledge.model.vo.DocumentVO;
+import com.wzw.knowledge.model.vo.SummaryJobVO;
 import org.springframework.web.multipart.MultipartFile;
 
 /**
@@ -34,17 +36,19 @@ public interface DocumentService extends IService<Document> {
     Document parseDocument(Long documentId);
 
     /**
-     * 分页查询文档
+     * 分页查询文档（游标分页，按创建时间倒序）
      *
-     * @param pageNum  页码
-     * @param pageSize 每页数量
-     * @param keyword  搜索关键词
-     * @param fileType 文件类型
-     * @param status   处理状态
+     * @param cursor    上一页返回的游标，首页传null
+     * @param size      每页数量
+     * @param keyword   搜索关键词
+     * @param fileType  文件类型
+     * @param status    处理状态
+     * @param countMode 总数统计方式
      * @return 分页结果
      */
-    Page<DocumentVO> pageDocuments(Integer pageNum, Integer pageSize,
-                                   String keyword, String fileType, Integer status);
+    CursorPageResult<DocumentVO> pageDocuments(String cursor, Integer size,
+                                               String keyword, String fileType, Integer status,
+                                               CountMode countMode);
 
     /**
      * 获取文档详情
@@ -71,10 +75,18 @@ public interface DocumentService extends IService<Document> {
     Document reparseDocument(Long id);
 
     /**
-     * 生成文档摘要
+     * 提交文档摘要任务（后台分层摘要）
      *
      * @param id 文档ID
-     * @return 摘要内容
+     * @return 摘要任务状态
      */
-    String generateSummary(Long id);
+    SummaryJobVO generateSummary(Long id);
+
+    /**
+     * 获取文档摘要任务进度
+     *
+     * @param id 文档ID
+     * @return 摘要任务状态，未提交过任务时返回null
+     */
+    SummaryJobVO getSummaryProgress(Long id);
 }
@@ -0,0 +1,48 @@
+package com.wzw.knowledge.service;
+
+import com.wzw.knowledge.model.entity.Document;
+
+import java.util.List;
+
+/**
+ * 文档级向量服务接口
+ * <p>
+ * 每个文档存一条文档级向量（分块向量的归一化质心，Milvus中type为document，业务ID为文档ID），
+ * 两阶段检索先用它选出最相关的文档，再只在这些文档的分块中检索
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public interface DocumentVectorService {
+
+    /**
+     * 文档级向量的数据类型
+     */
+    String TYPE_DOCUMENT = "document";
+
+    /**
+     * 按分块向量重建文档级向量（删除旧向量，写入新向量并设置 document.vectorId，调用方负责保存文档）
+     *
+     * @param document     文档
+     * @param chunkVectors 文档所有分块的向量
+     * @return 新向量ID（没有分块向量时为null）
+     */
+    String rebuild(Document document, List<float[]> chunkVectors);
+
+    /**
+     * 为已解析但还没有文档级向量的文档补建向量（从Milvus读取已有的分块向量，不重新生成）
+     *
+     * @return 补建的文档数
+     */
+    int backfill();
+
+    /**
+     * 第一阶段检索：选出与查询最相关的文档
+     *
+     * @param queryVector 查询向量
+     * @param topM        文档数
+     * @return 文档ID（按相似度排序）
+     */
+    List<Long> route(float[] queryVector, int topM);
+}
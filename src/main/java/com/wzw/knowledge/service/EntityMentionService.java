@@ -0,0 +1,88 @@
+package com.wzw.knowledge.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 实体提及索引服务接口
+ * <p>
+ * 维护 实体 -> 提到它的分块 的倒排索引：知识抽取完成后扫描文档分块生成，持久化到数据库并常驻内存。
+ * 图谱扩展检索从问题中识别出的实体出发，沿关系扩展后直接查索引得到分块，不需要再做向量检索
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public interface EntityMentionService {
+
+    /**
+     * 分块中的实体提及汇总
+     *
+     * @param chunkId    分块ID
+     * @param documentId 文档ID
+     * @param entities   分块中出现的（查询范围内的）实体数
+     * @param mentions   出现总次数
+     */
+    record ChunkMention(long chunkId, long documentId, int entities, int mentions) {
+    }
+
+    /**
+     * 索引统计
+     *
+     * @param loaded   内存索引是否已加载
+     * @param nodes    有提及记录的节点数
+     * @param names    可识别的实体名称数
+     * @param postings （节点, 分块）条目数
+     */
+    record MentionStats(boolean loaded, int nodes, int names, long postings) {
+    }
+
+    /**
+     * 为文档重建提及索引（替换该文档原有的提及）
+     *
+     * @param documentId 文档ID
+     * @param entities   实体名称 -> 节点ID（本次抽取得到的实体）
+     * @return 写入的（节点, 分块）条目数
+     */
+    int indexDocument(Long documentId, Map<String, Long> entities);
+
+    /**
+     * 删除文档的提及索引
+     *
+     * @param documentId 文档ID
+     */
+    void removeDocument(Long documentId);
+
+    /**
+     * 删除节点的提及索引（节点删除后不再识别它的名称）
+     *
+     * @param nodeId 节点ID
+     */
+    void removeNode(Long nodeId);
+
+    /**
+     * 识别文本中出现的实体（按名称匹配，长名称优先）
+     *
+     * @param text  文本
+     * @param limit 最多返回的节点数
+     * @return 节点ID
+     */
+    List<Long> linkEntities(String text, int limit);
+
+    /**
+     * 查询提到指定节点的分块，按出现的实体数、出现次数排序
+     *
+     * @param nodeIds 节点ID
+     * @param limit   最多返回的分块数
+     * @return 分块提及汇总
+     */
+    List<ChunkMention> lookup(Collection<Long> nodeIds, int limit);
+
+    /**
+     * 获取索引统计
+     *
+     * @return 索引统计
+     */
+    MentionStats getStats();
+}
@@ -1,7 +1,8 @@
 package com.wzw.knowledge.service;
 
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.wzw.knowledge.common.CountMode;
+import com.wzw.knowledge.common.CursorPageResult;
 import com.wzw.knowledge.model.dto.KnowledgeNodeDTO;
 import com.wzw.knowledge.model.entity.KnowledgeNode;
 import com.wzw.knowledge.model.vo.KnowledgeNodeVO;
@@ -56,16 +57,17 @@ public interface KnowledgeNodeService extends IService<KnowledgeNode> {
     KnowledgeNodeVO getNodeDetail(Long id);
 
     /**
-     * 分页查询节点
+     * 分页查询节点（游标分页，按创建时间倒序）
      *
-     * @param pageNum  页码
-     * @param pageSize 每页数量
-     * @param keyword  搜索关键词
-     * @param nodeType 节点类型
+     * @param cursor    上一页返回的游标，首页传null
+     * @param size      每页数量
+     * @param keyword   搜索关键词
+     * @param nodeType  节点类型
+     * @param countMode 总数统计方式
      * @return 分页结果
      */
-    Page<KnowledgeNodeVO> pageNodes(Integer pageNum, Integer pageSize,
-                                    String keyword, String nodeType);
+    CursorPageResult<KnowledgeNodeVO> pageNodes(String cursor, Integer size,
+                                                String keyword, String nodeType, CountMode countMode);
 
     /**
      * 根据名称搜索节点
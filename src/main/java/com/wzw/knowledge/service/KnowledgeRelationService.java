@@ -1,7 +1,8 @@
 package com.wzw.knowledge.service;
 
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.wzw.knowledge.common.CountMode;
+import com.wzw.knowledge.common.CursorPageResult;
 import com.wzw.knowledge.model.dto.KnowledgeRelationDTO;
 import com.wzw.knowledge.model.entity.KnowledgeRelation;
 import com.wzw.knowledge.model.vo.KnowledgeRelationVO;
@@ -55,16 +56,17 @@ public interface KnowledgeRelationService extends IService<KnowledgeRelation> {
     KnowledgeRelationVO getRelationDetail(Long id);
 
     /**
-     * 分页查询关系
+     * 分页查询关系（游标分页，按创建时间倒序）
      *
-     * @param pageNum      页码
-     * @param pageSize     每页数量
+     * @param cursor       上一页返回的游标，首页传null
+     * @param size         每页数量
      * @param relationType 关系类型
      * @param keyword      关系名称关键词
+     * @param countMode    总数统计方式
      * @return 分页结果
      */
-    Page<KnowledgeRelationVO> pageRelations(Integer pageNum, Integer pageSize,
-                                            String relationType, String keyword);
+    CursorPageResult<KnowledgeRelationVO> pageRelations(String cursor, Integer size,
+                                                        String relationType, String keyword, CountMode countMode);
 
     /**
      * 查询指定节点的所有关系
@@ -0,0 +1,130 @@
+package com.wzw.knowledge.service;
+
+import com.wzw.knowledge.model.entity.DocumentChunk;
+import com.wzw.knowledge.model.entity.KnowledgeNode;
+import com.wzw.knowledge.model.entity.OcrRecord;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 本地词项索引服务接口
+ * <p>
+ * 进程内的倒排索引（BM25），覆盖文档分块（Parent块和Child块）、图谱节点名称和描述、OCR识别文本，
+ * 不依赖外部服务，也不受向量库文本字段长度限制。
+ * 首次使用时从数据库加载，之后由文档解析、节点增删改、OCR识别等写入路径增量维护
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public interface LexicalIndexService {
+
+    /**
+     * 条目类型：文档分块
+     */
+    String TYPE_CHUNK = "chunk";
+
+    /**
+     * 条目类型：图谱节点
+     */
+    String TYPE_NODE = "node";
+
+    /**
+     * 条目类型：OCR识别文本
+     */
+    String TYPE_OCR = "ocr";
+
+    /**
+     * 检索命中
+     *
+     * @param type       条目类型
+     * @param id         业务ID（分块ID、节点ID或OCR记录ID）
+     * @param documentId 所属文档ID（仅分块有）
+     * @param score      BM25得分
+     */
+    record LexicalHit(String type, long id, Long documentId, double score) {
+    }
+
+    /**
+     * 索引统计
+     *
+     * @param loaded          是否已加载
+     * @param entries         有效条目数
+     * @param terms           词项数
+     * @param postings        倒排记录数（含待清理的已删除条目）
+     * @param searches        检索次数
+     * @param avgSearchMicros 平均检索耗时（微秒）
+     */
+    record IndexStats(boolean loaded, int entries, int terms, long postings, long searches, double avgSearchMicros) {
+    }
+
+    /**
+     * 替换文档的分块索引（事务提交后生效）
+     *
+     * @param documentId 文档ID
+     * @param chunks     文档的全部分块
+     */
+    void indexDocument(Long documentId, Collection<DocumentChunk> chunks);
+
+    /**
+     * 删除文档的分块索引（事务提交后生效）
+     *
+     * @param documentId 文档ID
+     */
+    void removeDocument(Long documentId);
+
+    /**
+     * 新增或更新节点索引（事务提交后生效）
+     *
+     * @param node 节点
+     */
+    void indexNode(KnowledgeNode node);
+
+    /**
+     * 删除节点索引（事务提交后生效）
+     *
+     * @param nodeId 节点ID
+     */
+    void removeNode(Long nodeId);
+
+    /**
+     * 新增或更新OCR文本索引（事务提交后生效）
+     *
+     * @param record OCR记录
+     */
+    void indexOcr(OcrRecord record);
+
+    /**
+     * 删除OCR文本索引（事务提交后生效）
+     *
+     * @param recordId OCR记录ID
+     */
+    void removeOcr(Long recordId);
+
+    /**
+     * BM25检索，双引号括起的部分作为短语，必须连续出现
+     *
+     * @param query 查询
+     * @param types 条目类型
+     * @param topK  返回数量
+     * @return 命中（按得分降序）
+     */
+    List<LexicalHit> search(String query, Collection<String> types, int topK);
+
+    /**
+     * 生成高亮摘要：截取命中词项最密集的片段，命中部分用 &lt;em&gt; 标记
+     *
+     * @param text  原文
+     * @param query 查询
+     * @return 高亮摘要（没有命中时为null）
+     */
+    String highlight(String text, String query);
+
+    /**
+     * 获取索引统计
+     *
+     * @return 索引统计
+     */
+    IndexStats getStats();
+}
@@ -1,7 +1,8 @@
 package com.wzw.knowledge.service;
 
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.wzw.knowledge.common.CountMode;
+import com.wzw.knowledge.common.CursorPageResult;
 import com.wzw.knowledge.model.entity.OcrRecord;
 import com.wzw.knowledge.model.vo.OcrRecordVO;
 import org.springframework.web.multipart.MultipartFile;
@@ -34,17 +35,19 @@ public interface OcrService extends IService<OcrRecord> {
     OcrRecord recognizeImage(Long recordId);
 
     /**
-     * 分页查询OCR记录
+     * 分页查询OCR记录（游标分页，按创建时间倒序）
      *
-     * @param pageNum   页码
-     * @param pageSize  每页数量
+     * @param cursor    上一页返回的游标，首页传null
+     * @param size      每页数量
      * @param keyword   搜索关键词（在OCR文本中搜索）
      * @param imageType 图片类型
      * @param status    处理状态
+     * @param countMode 总数统计方式
      * @return 分页结果
      */
-    Page<OcrRecordVO> pageRecords(Integer pageNum, Integer pageSize,
-                                  String keyword, String imageType, Integer status);
+    CursorPageResult<OcrRecordVO> pageRecords(String cursor, Integer size,
+                                              String keyword, String imageType, Integer status,
+                                              CountMode countMode);
 
     /**
      * 获取OCR记录详情
@@ -7,6 +7,7 @@ import com.wzw.knowledge.model.entity.KnowledgeRelation;
 import reactor.core.publisher.Flux;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Ollama大模型服务接口
@@ -35,6 +36,35 @@ public interface OllamaService {
      */
     Flux<String> chatStream(String prompt);
 
+    /**
+     * 按任务档位进行文本对话
+     *
+     * @param prompt 提示词
+     * @param task   调用任务（决定使用的模型档位）
+     * @return 模型回复
+     */
+    String chat(String prompt, ModelTask task);
+
+    /**
+     * 按任务档位进行流式对话
+     *
+     * @param prompt 提示词
+     * @param task   调用任务（决定使用的模型档位）
+     * @return 流式响应
+     */
+    Flux<String> chatStream(String prompt, ModelTask task);
+
+    /**
+     * 按任务档位进行结构化流式对话
+     * 通过Ollama的format参数约束输出符合指定的JSON Schema
+     *
+     * @param prompt 提示词
+     * @param task   调用任务（决定使用的模型档位）
+     * @param format 输出格式约束（JSON Schema）
+     * @return 流式响应
+     */
+    Flux<String> chatStream(String prompt, ModelTask task, Map<String, Object> format);
+
     /**
      * 从文本中抽取知识实体
      *
@@ -76,6 +106,55 @@ public interface OllamaService {
      */
     float[] generateEmbedding(String text);
 
+    /**
+     * 获取各任务的调用统计（延迟、token数）
+     *
+     * @return 任务名称 -> 统计信息
+     */
+    Map<String, TaskStats> getTaskStats();
+
+    /**
+     * 模型调用任务
+     * <p>
+     * 每个调用场景对应一个任务，通过 ollama.routing.routes 映射到模型档位
+     * </p>
+     */
+    enum ModelTask {
+        /** 交互式问答（默认推理模型） */
+        CHAT("chat"),
+        /** 快速问答（非推理模型，低延迟） */
+        CHAT_FAST("chat-fast"),
+        /** 知识抽取 */
+        EXTRACT("extract"),
+        /** 摘要生成 */
+        SUMMARY("summary");
+
+        private final String key;
+
+        ModelTask(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    /**
+     * 任务调用统计
+     */
+    record TaskStats(
+            String task,
+            String model,
+            long calls,
+            long errors,
+            double avgLatencyMs,
+            long maxLatencyMs,
+            long promptTokens,
+            long completionTokens,
+            double avgCompletionTokens
+    ) {}
+
     /**
      * 知识抽取结果封装类
      */
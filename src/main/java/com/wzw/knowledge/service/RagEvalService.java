@@ -0,0 +1,106 @@
+package com.wzw.knowledge.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RAG离线评测服务接口
+ * <p>
+ * 加载"问题 + 标准答案分块"数据集，逐条执行 {@link RagService#search}，
+ * 统计检索质量（recall@k、MRR、nDCG@k）和各阶段耗时分位数（p50/p95/p99）。
+ * 评测报告可序列化为JSON保存，用于比较分块、索引、提示词等改动前后的效果。
+ * 依赖的Ollama和向量库既可以是真实服务，也可以是测试中的桩实现
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public interface RagEvalService {
+
+    /**
+     * 评测用例
+     *
+     * @param id           用例ID
+     * @param question     问题
+     * @param goldChunkIds 标准答案分块ID（Child块或Parent块均可，命中其一即算召回）
+     */
+    record EvalCase(String id, String question, List<Long> goldChunkIds) {
+    }
+
+    /**
+     * 单个用例的评测结果
+     *
+     * @param id              用例ID
+     * @param question        问题
+     * @param retrieved       检索到的分块ID（按排名，有Parent块时为Parent块ID）
+     * @param recall          recall@k
+     * @param reciprocalRank  第一个命中的倒数排名（未命中为0）
+     * @param ndcg            nDCG@k
+     * @param timings         各阶段耗时（毫秒）
+     */
+    record CaseResult(
+            String id,
+            String question,
+            List<Long> retrieved,
+            double recall,
+            double reciprocalRank,
+            double ndcg,
+            Map<String, Long> timings
+    ) {
+    }
+
+    /**
+     * 阶段耗时分布（毫秒）
+     *
+     * @param count    样本数（不含超时）
+     * @param timeouts 超时次数
+     * @param p50      50分位
+     * @param p95      95分位
+     * @param p99      99分位
+     * @param max      最大值
+     */
+    record StageLatency(int count, int timeouts, long p50, long p95, long p99, long max) {
+    }
+
+    /**
+     * 评测报告
+     *
+     * @param startedAt  开始时间（毫秒时间戳）
+     * @param k          评测的topK
+     * @param cases      用例数
+     * @param recallAtK  平均 recall@k
+     * @param mrr        平均倒数排名
+     * @param ndcgAtK    平均 nDCG@k
+     * @param stages     各阶段耗时分布（键与 {@link RagService.RagResult#timings()} 一致）
+     * @param results    各用例的评测结果
+     */
+    record EvalReport(
+            long startedAt,
+            int k,
+            int cases,
+            double recallAtK,
+            double mrr,
+            double ndcgAtK,
+            Map<String, StageLatency> stages,
+            List<CaseResult> results
+    ) {
+    }
+
+    /**
+     * 解析数据集（JSON Lines，每行一个用例：{"id":..., "question":..., "goldChunkIds":[...]}，空行和#开头的行忽略）
+     *
+     * @param jsonl 数据集内容
+     * @return 评测用例
+     */
+    List<EvalCase> parseDataset(String jsonl);
+
+    /**
+     * 执行评测
+     *
+     * @param cases     评测用例
+     * @param k         检索的topK
+     * @param coldCache 是否跳过检索结果缓存和近端缓存（否则重复评测时命中缓存，耗时不可比；不清空线上缓存）
+     * @return 评测报告
+     */
+    EvalReport evaluate(List<EvalCase> cases, int k, boolean coldCache);
+}
@@ -0,0 +1,69 @@
+package com.wzw.knowledge.service;
+
+import com.wzw.knowledge.model.vo.RagContextVO;
+import com.wzw.knowledge.model.vo.RagDocument;
+import com.wzw.knowledge.model.vo.RagNode;
+
+import java.util.List;
+
+/**
+ * RAG来源服务接口
+ * <p>
+ * 消息中的RAG上下文只保存分块ID、分数和语料版本，展开来源时再从分块表还原，
+ * 避免每条消息重复存储父块全文
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public interface RagProvenanceService {
+
+    /**
+     * 将检索结果编码为按引用存储的来源
+     *
+     * @param documents 相关文档
+     * @param nodes     相关节点
+     * @return 来源JSON
+     */
+    String encode(List<RagDocument> documents, List<RagNode> nodes);
+
+    /**
+     * 还原消息的RAG上下文（兼容旧格式）
+     *
+     * @param messageId  消息ID
+     * @param ragContext 存储的RAG上下文JSON
+     * @return RAG上下文
+     */
+    RagContextVO resolve(Long messageId, String ragContext);
+
+    /**
+     * 将旧格式的RAG上下文压缩为引用格式（按ID分批处理，可重复执行）
+     *
+     * @param batchSize 每批行数
+     * @return 压缩报告
+     */
+    CompactionReport compactLegacy(int batchSize);
+
+    /**
+     * 压缩报告
+     *
+     * @param scannedRows   扫描的旧格式行数
+     * @param compactedRows 压缩成功的行数
+     * @param failedRows    解析失败而跳过的行数
+     * @param bytesBefore   压缩前的字节数
+     * @param bytesAfter    压缩后的字节数
+     * @param savedBytes    节省的字节数
+     * @param savedRatio    节省比例（0~1）
+     * @param elapsedMs     耗时（毫秒）
+     */
+    record CompactionReport(
+            long scannedRows,
+            long compactedRows,
+            long failedRows,
+            long bytesBefore,
+            long bytesAfter,
+            long savedBytes,
+            double savedRatio,
+            long elapsedMs
+    ) {}
+}
@@ -5,6 +5,8 @@ import com.wzw.knowledge.model.vo.RagDocument;
 import com.wzw.knowledge.model.vo.RagNode;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * RAG检索增强服务接口
@@ -19,12 +21,114 @@ public interface RagService {
 
     /**
      * RAG检索结果封装类
+     *
+     * @param documents     相关文档
+     * @param nodes         相关图谱节点
+     * @param contextPrompt 带参考内容的提示词
+     * @param timings       各阶段耗时（毫秒，按执行顺序：embedding、各检索器、prompt、total），
+     *                      超时被丢弃的检索器记为 -1
      */
     record RagResult(
             List<RagDocument> documents,
             List<RagNode> nodes,
-            String contextPrompt
-    ) {}
+            String contextPrompt,
+            Map<String, Long> timings
+    ) {
+
+        public RagResult(List<RagDocument> documents, List<RagNode> nodes, String contextPrompt) {
+            this(documents, nodes, contextPrompt, Map.of());
+        }
+
+        /**
+         * 检索置信度：命中文档与问题的最高相关度（向量相似度或词项覆盖率，取各检索器中最好的一条）
+         * <p>
+         * 没有命中或命中的文档都没有相关度时为0，不能判断的结果不视为可信
+         * </p>
+         */
+        public double confidence() {
+            if (documents == null || documents.isEmpty()) {
+                return 0;
+            }
+            return documents.stream()
+                    .map(RagDocument::getRelevance)
+                    .filter(Objects::nonNull)
+                    .mapToDouble(Double::doubleValue)
+                    .max()
+                    .orElse(0);
+        }
+    }
+
+    /**
+     * 检索命中回表统计
+     *
+     * @param hydrations       回表次数
+     * @param avgHydrationMs   平均回表耗时（毫秒）
+     * @param avgQueries       每次回表的平均查询数（最多3）
+     * @param parentHits       Parent块缓存命中数
+     * @param parentMisses     Parent块缓存未命中数
+     * @param parentHitRate    Parent块缓存命中率
+     * @param documentHits     文档头缓存命中数
+     * @param documentMisses   文档头缓存未命中数
+     * @param documentHitRate  文档头缓存命中率
+     * @param parentEntries    Parent块缓存条目数
+     * @param documentEntries  文档头缓存条目数
+     */
+    record HydrationStats(
+            long hydrations,
+            double avgHydrationMs,
+            double avgQueries,
+            long parentHits,
+            long parentMisses,
+            double parentHitRate,
+            long documentHits,
+            long documentMisses,
+            double documentHitRate,
+            int parentEntries,
+            int documentEntries
+    ) {
+    }
+
+    /**
+     * 检索结果缓存统计
+     *
+     * @param hits      命中次数
+     * @param misses    未命中次数
+     * @param hitRate   命中率
+     * @param entries   缓存条目数
+     * @param bytes     缓存占用内存（估算，字节）
+     * @param evictions 因内存上限淘汰的条目数
+     * @param avgHitMs  命中时的平均检索耗时（毫秒）
+     * @param avgMissMs 未命中时的平均检索耗时（毫秒）
+     */
+    record CacheStats(
+            long hits,
+            long misses,
+            double hitRate,
+            int entries,
+            long bytes,
+            long evictions,
+            double avgHitMs,
+            double avgMissMs
+    ) {
+    }
+
+    /**
+     * 上下文压缩统计
+     *
+     * @param chunks          处理的内容块数
+     * @param compressed      实际被压缩的内容块数
+     * @param originalChars   压缩前总字符数
+     * @param compressedChars 压缩后总字符数
+     * @param ratio           压缩后/压缩前字符比例
+     */
+    record CompressionStats(
+            long chunks,
+            long compressed,
+            long originalChars,
+            long compressedChars,
+            double ratio
+    ) {
+    }
 
     /**
      * 执行RAG检索
@@ -36,6 +140,25 @@ public interface RagService {
      */
     RagResult search(String query, int topK);
 
+    /**
+     * 执行RAG检索，使用已生成的查询向量（如检索门控判断时生成的问题向量），不再调用嵌入模型
+     *
+     * @param query       用户查询
+     * @param topK        返回的最大数量
+     * @param queryVector 查询向量，为null时由检索引擎生成
+     * @return RAG检索结果
+     */
+    RagResult search(String query, int topK, float[] queryVector);
+
+    /**
+     * 执行RAG检索，不读写检索结果缓存和近端缓存（离线评测的冷缓存模式，不影响线上缓存）
+     *
+     * @param query 用户查询
+     * @param topK  返回的最大数量
+     * @return RAG检索结果
+     */
+    RagResult searchWithoutCache(String query, int topK);
+
     /**
      * 检索相关文档
      *
@@ -62,4 +185,25 @@ public interface RagService {
      * @return 完整的提示词
      */
     String buildContextPrompt(List<RagDocument> documents, String userQuery);
+
+    /**
+     * 获取检索命中回表统计（近端缓存命中率、回表耗时）
+     *
+     * @return 回表统计
+     */
+    HydrationStats getHydrationStats();
+
+    /**
+     * 获取检索结果缓存统计（命中率、命中与未命中的检索耗时）
+     *
+     * @return 缓存统计
+     */
+    CacheStats getCacheStats();
+
+    /**
+     * 获取上下文压缩统计（压缩前后的字符数）
+     *
+     * @return 压缩统计
+     */
+    CompressionStats getCompressionStats();
 }
@@ -0,0 +1,38 @@
+package com.wzw.knowledge.service;
+
+import com.wzw.knowledge.model.vo.RagDocument;
+
+import java.util.List;
+
+/**
+ * 重排序器接口
+ * <p>
+ * 检索阶段先取较宽的候选集（按RRF名次排序），再由重排序器按问题与内容的相关性重新打分，
+ * 只把得分靠前的少量分块送入大模型。重排序在独立线程上执行并受时间预算约束，
+ * 超出预算时退回RRF顺序。新增重排序器只需实现本接口并注册为Spring Bean，通过配置按名称选用
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public interface Reranker {
+
+    /**
+     * 重排序器名称，对应配置项 rag.rerank.reranker
+     *
+     * @return 名称
+     */
+    String name();
+
+    /**
+     * 为候选文档打分
+     * <p>
+     * 实现应在处理每个候选之间检查线程中断状态，超出预算被取消时尽快返回
+     * </p>
+     *
+     * @param query      规范化后的查询文本
+     * @param candidates 候选文档（按RRF名次排序）
+     * @return 与候选一一对应的相关性得分（0~1，越大越相关）
+     */
+    double[] score(String query, List<RagDocument> candidates);
+}
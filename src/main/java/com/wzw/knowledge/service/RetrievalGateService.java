@@ -0,0 +1,118 @@
+package com.wzw.knowledge.service;
+
+/**
+ * 检索门控服务接口
+ * <p>
+ * 在执行RAG检索前判断本轮提问是否需要检索：
+ * - SKIP：寒暄、致谢等消息，不检索
+ * - REUSE：对上一轮的追问，复用上一轮的检索结果
+ * - RETRIEVE：需要新知识的问题，执行完整检索
+ * 检索之后再按置信度判断是否值得调用大模型
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public interface RetrievalGateService {
+
+    /**
+     * 门控动作
+     */
+    enum Action {
+        /**
+         * 执行检索
+         */
+        RETRIEVE,
+        /**
+         * 复用上一轮的检索结果
+         */
+        REUSE,
+        /**
+         * 不检索
+         */
+        SKIP
+    }
+
+    /**
+     * 门控判断结果
+     *
+     * @param action 动作
+     * @param reason 判断依据（用于日志）
+     * @param reused 复用的检索结果（仅REUSE时非空，提示词已按本轮问题重建）
+     * @param queryVector 判断时生成的问题向量（未生成时为null），RETRIEVE时传给检索，不再重复生成
+     */
+    record Decision(Action action, String reason, RagService.RagResult reused, float[] queryVector) {
+
+        public Decision(Action action, String reason, RagService.RagResult reused) {
+            this(action, reason, reused, null);
+        }
+    }
+
+    /**
+     * 判断本轮提问是否需要检索
+     *
+     * @param sessionId 会话ID
+     * @param question  用户问题
+     * @return 判断结果
+     */
+    Decision decide(Long sessionId, String question);
+
+    /**
+     * 记录本轮检索结果，供后续追问复用，并累计检索耗时
+     *
+     * @param sessionId 会话ID
+     * @param question  用户问题
+     * @param result    检索结果
+     * @param elapsedMs 检索耗时（毫秒）
+     */
+    void record(Long sessionId, String question, RagService.RagResult result, long elapsedMs);
+
+    /**
+     * 判断检索结果是否可信：命中文档的最高相关度（向量相似度或词项覆盖率）达到阈值
+     * <p>
+     * 不可信时调用方直接返回模板回答，不调用大模型
+     * </p>
+     *
+     * @param result 检索结果
+     * @return 是否可信
+     */
+    boolean isConfident(RagService.RagResult result);
+
+    /**
+     * 清除会话的上一轮检索结果（会话删除时调用）
+     *
+     * @param sessionId 会话ID
+     */
+    void evict(Long sessionId);
+
+    /**
+     * 获取门控统计
+     *
+     * @return 统计信息
+     */
+    GateStats getStats();
+
+    /**
+     * 门控统计
+     *
+     * @param decisions       累计判断次数
+     * @param retrieved       执行检索的次数
+     * @param reused          复用上一轮结果的次数
+     * @param skipped         不检索的次数
+     * @param skipRate        未执行检索的比例（复用 + 不检索）
+     * @param avgRetrievalMs  实际检索的平均耗时（毫秒），即每次跳过节省的时间
+     * @param savedMs         累计节省的检索时间（毫秒）
+     * @param lowConfidence   检索置信度不足的次数（未调用大模型或改用通用知识回答）
+     */
+    record GateStats(
+            long decisions,
+            long retrieved,
+            long reused,
+            long skipped,
+            double skipRate,
+            long avgRetrievalMs,
+            long savedMs,
+            long lowConfidence
+    ) {
+    }
+}
@@ -0,0 +1,103 @@
+package com.wzw.knowledge.service;
+
+import com.wzw.knowledge.model.vo.RagDocument;
+import com.wzw.knowledge.model.vo.RagNode;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 检索器接口
+ * <p>
+ * RAG检索由多个检索器并行完成（文档、图谱节点等），每个检索器从同一个查询上下文出发，
+ * 不再各自生成查询向量。新增检索器只需实现本接口并注册为Spring Bean
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public interface Retriever {
+
+    /**
+     * 检索器内部阶段：向量库检索（混合检索时包含向量、BM25和RRF融合）
+     */
+    String STAGE_SEARCH = "search";
+
+    /**
+     * 检索器内部阶段：回表查询详情
+     */
+    String STAGE_HYDRATION = "hydration";
+
+    /**
+     * 检索器名称，用于配置截止时间和统计各阶段耗时
+     *
+     * @return 名称
+     */
+    String name();
+
+    /**
+     * 执行检索（在独立的虚拟线程上运行，超过截止时间后结果被丢弃）
+     *
+     * @param context 查询上下文
+     * @return 检索结果
+     */
+    Contribution retrieve(QueryContext context);
+
+    /**
+     * 查询上下文，每次检索只构建一次
+     *
+     * @param query          原始查询
+     * @param normalizedText 规范化后的查询文本（去掉首尾空白、合并连续空白）
+     * @param embedding      查询向量，生成失败时为null
+     * @param topK           每个检索器返回的最大数量
+     * @param filters        过滤条件（如文档类型），没有时为空
+     * @param useCache       是否使用近端缓存（离线评测的冷缓存模式下为false，直接查库且不写入缓存）
+     */
+    record QueryContext(
+            String query,
+            String normalizedText,
+            float[] embedding,
+            int topK,
+            Map<String, Object> filters,
+            boolean useCache
+    ) {
+
+        public QueryContext(String query, String normalizedText, float[] embedding, int topK,
+                            Map<String, Object> filters) {
+            this(query, normalizedText, embedding, topK, filters, true);
+        }
+    }
+
+    /**
+     * 单个检索器的结果
+     *
+     * @param documents 检索到的文档
+     * @param nodes     检索到的图谱节点
+     * @param timings   检索器内部各阶段耗时（毫秒，如 search、hydration），记录为"检索器名称.阶段"
+     */
+    record Contribution(List<RagDocument> documents, List<RagNode> nodes, Map<String, Long> timings) {
+
+        public Contribution(List<RagDocument> documents, List<RagNode> nodes) {
+            this(documents, nodes, Map.of());
+        }
+
+        public static Contribution ofDocuments(List<RagDocument> documents) {
+            return new Contribution(documents, List.of());
+        }
+
+        public static Contribution ofNodes(List<RagNode> nodes) {
+            return new Contribution(List.of(), nodes);
+        }
+
+        public static Contribution empty() {
+            return new Contribution(List.of(), List.of());
+        }
+
+        /**
+         * 附带检索器内部各阶段耗时
+         */
+        public Contribution withTimings(Map<String, Long> timings) {
+            return new Contribution(documents, nodes, timings);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.wzw.knowledge.service;
+
+import com.wzw.knowledge.model.vo.SummaryJobVO;
+
+/**
+ * 分层摘要服务接口
+ * <p>
+ * 对长文本分段并行摘要，再逐层合并为整体摘要，每一层结果按内容哈希缓存
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public interface SummaryService {
+
+    /**
+     * 分层摘要（同步）
+     *
+     * @param text 原文本
+     * @return 摘要
+     */
+    String summarize(String text);
+
+    /**
+     * 分层摘要（同步，带进度回调）
+     *
+     * @param text     原文本
+     * @param listener 进度回调
+     * @return 摘要
+     */
+    String summarize(String text, ProgressListener listener);
+
+    /**
+     * 提交文档摘要任务（同一文档已有进行中的任务时直接返回该任务）
+     *
+     * @param documentId 文档ID
+     * @return 任务状态
+     */
+    SummaryJobVO submitDocumentJob(Long documentId);
+
+    /**
+     * 执行文档摘要任务，完成后写回文档摘要
+     *
+     * @param documentId 文档ID
+     */
+    void runDocumentJob(Long documentId);
+
+    /**
+     * 获取文档摘要任务状态
+     *
+     * @param documentId 文档ID
+     * @return 任务状态，不存在时返回null
+     */
+    SummaryJobVO getDocumentJob(Long documentId);
+
+    /**
+     * 摘要进度回调
+     */
+    @FunctionalInterface
+    interface ProgressListener {
+
+        /**
+         * 进度更新
+         *
+         * @param completed 已完成步骤数
+         * @param total     总步骤数
+         */
+        void onProgress(int completed, int total);
+    }
+}
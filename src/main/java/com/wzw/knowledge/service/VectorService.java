@@ -1,6 +1,8 @@
 package com.wzw.knowledge.service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 向量服务接口
@@ -68,6 +70,28 @@ public interface VectorService {
      */
     List<VectorSearchResult> hybridSearch(float[] queryVector, String queryText, int topK, String type);
 
+    /**
+     * 在指定业务ID范围内混合检索（两阶段检索的第二阶段，只检索选中文档的分块）
+     *
+     * @param queryVector 查询向量
+     * @param queryText   查询文本（用于BM25）
+     * @param topK        返回数量
+     * @param type        数据类型过滤
+     * @param businessIds 业务ID范围，为空时不限制
+     * @return 搜索结果列表
+     */
+    List<VectorSearchResult> hybridSearch(float[] queryVector, String queryText, int topK, String type,
+                                          Collection<Long> businessIds);
+
+    /**
+     * 读取已存储的向量
+     *
+     * @param businessIds 业务ID
+     * @param type        数据类型过滤（可选）
+     * @return 业务ID -> 向量（同一业务ID有多条时取其一）
+     */
+    Map<Long, float[]> getVectors(Collection<Long> businessIds, String type);
+
 
     /**
      * 向量相似性搜索
@@ -81,11 +105,26 @@ public interface VectorService {
 
     /**
      * 向量搜索结果封装类
+     *
+     * @param id         业务ID
+     * @param type       数据类型
+     * @param score      排序分数（混合检索时为RRF融合分数）
+     * @param parentId   父块ID
+     * @param similarity 与查询向量的余弦相似度，用于判断检索结果是否可信
      */
     record VectorSearchResult(
             Long id,
             String type,
             float score,
-            Long parentId
-    ) {}
+            Long parentId,
+            float similarity
+    ) {
+
+        /**
+         * 纯向量检索结果，排序分数即相似度
+         */
+        public VectorSearchResult(Long id, String type, float score, Long parentId) {
+            this(id, type, score, parentId, score);
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package com.wzw.knowledge.service.impl;
 
 import com.wzw.knowledge.service.DocumentService;
+import com.wzw.knowledge.service.SummaryService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.scheduling.annotation.Async;
@@ -20,12 +21,14 @@ import org.springframework.stereotype.Service;
 public class AsyncDocumentService {
 
     private final DocumentService documentService;
+    private final SummaryService summaryService;
 
     /**
      * 使用@Lazy解决与DocumentService的循环依赖问题
      */
-    public AsyncDocumentService(@Lazy DocumentService documentService) {
+    public AsyncDocumentService(@Lazy DocumentService documentService, SummaryService summaryService) {
         this.documentService = documentService;
+        this.summaryService = summaryService;
     }
 
     /**
@@ -43,4 +46,15 @@ public class AsyncDocumentService {
             log.error("异步解析文档失败, documentId={}", documentId, e);
         }
     }
+
+    /**
+     * 异步生成文档摘要
+     *
+     * @param documentId 文档ID
+     */
+    @Async
+    public void asyncGenerateSummary(Long documentId) {
+        log.info("开始异步生成文档摘要, documentId={}, thread={}", documentId, Thread.currentThread().getName());
+        summaryService.runDocumentJob(documentId);
+    }
 }
@@ -0,0 +1,397 @@
+package com.wzw.knowledge.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import com.wzw.knowledge.config.ChatAttachmentConfig;
+import com.wzw.knowledge.model.entity.ChatAttachment;
+import com.wzw.knowledge.service.AttachmentIndexService;
+import com.wzw.knowledge.service.OllamaService;
+import com.wzw.knowledge.util.TokenEstimator;
+import com.wzw.knowledge.util.VectorMath;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 附件索引服务实现类
+ * <p>
+ * 索引按会话存放在内存中：会话ID -> 附件ID -> 分块向量（已归一化，检索时点积即余弦相似度）。
+ * 附件的分块数有上限，单个会话的检索是暴力扫描，不需要ANN结构；
+ * 会话空闲超过 index-ttl 后由后台线程整体回收，再次提问时按数据库中的附件内容补建
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class AttachmentIndexServiceImpl implements AttachmentIndexService {
+
+    private static final String SNIPPET_HEADER = "文件「%s」相关片段:\n";
+
+    /**
+     * 片段编号前缀"[片段N] "的token数
+     */
+    private static final int CHUNK_PREFIX_TOKENS = 4;
+
+    private final OllamaService ollamaService;
+    private final ChatAttachmentConfig config;
+
+    /**
+     * 向量生成线程池（限制同时调用Embedding模型的并发数）
+     */
+    private final ExecutorService embedExecutor;
+
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "attachment-index-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 会话索引（会话ID -> 索引）
+     */
+    private final Map<Long, SessionIndex> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicLong evictedSessions = new AtomicLong();
+
+    public AttachmentIndexServiceImpl(OllamaService ollamaService, ChatAttachmentConfig config) {
+        this.ollamaService = ollamaService;
+        this.config = config;
+        this.embedExecutor = Executors.newFixedThreadPool(config.getEmbedConcurrency());
+        long sweepInterval = Math.max(1000L, config.getIndexTtl() / 10);
+        sweeper.scheduleWithFixedDelay(this::evictExpired, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        sweeper.shutdownNow();
+        embedExecutor.shutdownNow();
+        sessions.clear();
+    }
+
+    /**
+     * 异步建立附件索引
+     */
+    @Override
+    public void indexAsync(Long sessionId, ChatAttachment attachment) {
+        if (sessionId != null && StrUtil.isNotBlank(attachment.getParsedContent())
+                && !isSmall(attachment.getParsedContent())) {
+            ensureIndexed(sessionId, attachment);
+        }
+    }
+
+    /**
+     * 构建附件上下文
+     */
+    @Override
+    public String buildContext(Long sessionId, String question, List<ChatAttachment> attachments) {
+        if (attachments == null || attachments.isEmpty()) {
+            return "";
+        }
+
+        int budget = config.getContextTokenBudget();
+        Map<Long, String> sections = new LinkedHashMap<>();
+        Map<Long, CompletableFuture<AttachmentIndex>> pending = new LinkedHashMap<>();
+
+        // 较小的附件直接全文拼入，其余的检索相关片段
+        for (ChatAttachment attachment : attachments) {
+            String content = attachment.getParsedContent();
+            if (StrUtil.isBlank(content)) {
+                continue;
+            }
+            String section = String.format("文件「%s」内容:\n%s\n\n", attachment.getFileName(), content);
+            int tokens = TokenEstimator.estimate(section);
+            if (tokens <= config.getFullTextTokens() && tokens <= budget) {
+                sections.put(attachment.getId(), section);
+                budget -= tokens;
+            } else {
+                pending.put(attachment.getId(), ensureIndexed(sessionId, attachment));
+            }
+        }
+        if (pending.isEmpty()) {
+            return String.join("", sections.values());
+        }
+
+        Map<Long, ChatAttachment> attachmentMap = new LinkedHashMap<>();
+        attachments.forEach(attachment -> attachmentMap.put(attachment.getId(), attachment));
+        float[] queryVector;
+        try {
+            queryVector = VectorMath.normalize(ollamaService.generateEmbedding(question));
+        } catch (Exception e) {
+            log.warn("问题向量生成失败，附件退化为截取开头: {}", e.getMessage());
+            queryVector = null;
+        }
+
+        // 收集所有已就绪附件的候选片段，索引未就绪的附件退化为截取开头
+        List<ScoredChunk> candidates = new ArrayList<>();
+        List<ChatAttachment> fallbacks = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + config.getAwaitTimeout();
+        for (Map.Entry<Long, CompletableFuture<AttachmentIndex>> entry : pending.entrySet()) {
+            AttachmentIndex index = queryVector != null ? await(entry.getValue(), deadline) : null;
+            if (index == null) {
+                fallbacks.add(attachmentMap.get(entry.getKey()));
+                continue;
+            }
+            for (Chunk chunk : index.chunks()) {
+                candidates.add(new ScoredChunk(entry.getKey(), chunk, VectorMath.dot(queryVector, chunk.vector())));
+            }
+        }
+        if (!fallbacks.isEmpty()) {
+            int share = budget / (fallbacks.size() + (candidates.isEmpty() ? 0 : 1));
+            for (ChatAttachment attachment : fallbacks) {
+                String header = String.format("文件「%s」开头部分:\n", attachment.getFileName());
+                int headerTokens = TokenEstimator.estimate(header);
+                String head = TokenEstimator.truncate(attachment.getParsedContent(), share - headerTokens);
+                sections.put(attachment.getId(), header + head + "\n\n");
+                budget -= headerTokens + TokenEstimator.estimate(head);
+            }
+        }
+
+        // 按相似度选取片段，直到达到片段数或token预算上限
+        candidates.sort(Comparator.comparingDouble(ScoredChunk::score).reversed());
+        Map<Long, List<Chunk>> selected = new LinkedHashMap<>();
+        int picked = 0;
+        for (ScoredChunk candidate : candidates) {
+            if (picked >= config.getTopK()) {
+                break;
+            }
+            // 片段编号前缀，以及该附件的第一个片段需要附件标题
+            int tokens = TokenEstimator.estimate(candidate.chunk().text()) + CHUNK_PREFIX_TOKENS;
+            if (!selected.containsKey(candidate.attachmentId())) {
+                tokens += TokenEstimator.estimate(
+                        String.format(SNIPPET_HEADER, attachmentMap.get(candidate.attachmentId()).getFileName()));
+            }
+            if (tokens > budget) {
+                continue;
+            }
+            selected.computeIfAbsent(candidate.attachmentId(), k -> new ArrayList<>()).add(candidate.chunk());
+            budget -= tokens;
+            picked++;
+        }
+
+        // 同一附件的片段按原文顺序输出
+        for (Map.Entry<Long, List<Chunk>> entry : selected.entrySet()) {
+            ChatAttachment attachment = attachmentMap.get(entry.getKey());
+            List<Chunk> chunks = entry.getValue();
+            chunks.sort(Comparator.comparingInt(Chunk::ordinal));
+            StringBuilder sb = new StringBuilder(String.format(SNIPPET_HEADER, attachment.getFileName()));
+            for (Chunk chunk : chunks) {
+                sb.append("[片段").append(chunk.ordinal() + 1).append("] ").append(chunk.text()).append("\n");
+            }
+            sections.put(entry.getKey(), sb.append("\n").toString());
+        }
+
+        // 按附件原始顺序拼接
+        StringBuilder context = new StringBuilder();
+        for (Long attachmentId : attachmentMap.keySet()) {
+            String section = sections.get(attachmentId);
+            if (section != null) {
+                context.append(section);
+            }
+        }
+        return context.toString();
+    }
+
+    /**
+     * 回收会话索引
+     */
+    @Override
+    public void evict(Long sessionId) {
+        if (sessionId != null && sessions.remove(sessionId) != null) {
+            log.debug("回收会话附件索引, sessionId={}", sessionId);
+        }
+    }
+
+    /**
+     * 索引统计
+     */
+    @Override
+    public IndexStats getStats() {
+        int attachmentCount = 0;
+        long chunkCount = 0;
+        for (SessionIndex session : sessions.values()) {
+            for (CompletableFuture<AttachmentIndex> future : session.attachments().values()) {
+                attachmentCount++;
+                AttachmentIndex index = future.getNow(null);
+                if (index != null) {
+                    chunkCount += index.chunks().size();
+                }
+            }
+        }
+        return new IndexStats(sessions.size(), attachmentCount, chunkCount, evictedSessions.get());
+    }
+
+    /**
+     * 获取附件索引，不存在时开始建立（同一附件只建立一次）
+     */
+    private CompletableFuture<AttachmentIndex> ensureIndexed(Long sessionId, ChatAttachment attachment) {
+        if (sessionId == null) {
+            return buildIndex(attachment);
+        }
+        SessionIndex session = sessions.computeIfAbsent(sessionId, k -> new SessionIndex(new ConcurrentHashMap<>()));
+        session.touch();
+        CompletableFuture<AttachmentIndex> future = session.attachments()
+                .computeIfAbsent(attachment.getId(), k -> buildIndex(attachment));
+        // 建立失败的索引不保留，下次提问时重试
+        future.whenComplete((index, e) -> {
+            if (e != null) {
+                session.attachments().remove(attachment.getId(), future);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 分块并并行生成向量
+     */
+    private CompletableFuture<AttachmentIndex> buildIndex(ChatAttachment attachment) {
+        long start = System.currentTimeMillis();
+        List<String> texts = split(attachment.getParsedContent());
+        List<CompletableFuture<Chunk>> futures = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            int ordinal = i;
+            String text = texts.get(i);
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> new Chunk(ordinal, text, VectorMath.normalize(ollamaService.generateEmbedding(text))), embedExecutor));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(v -> {
+                    List<Chunk> chunks = futures.stream().map(CompletableFuture::join).toList();
+                    log.info("附件索引建立完成, attachmentId={}, chunks={}, cost={}ms",
+                            attachment.getId(), chunks.size(), System.currentTimeMillis() - start);
+                    return new AttachmentIndex(chunks);
+                })
+                .whenComplete((index, e) -> {
+                    if (e != null) {
+                        log.warn("附件索引建立失败, attachmentId={}: {}", attachment.getId(), e.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * 在截止时间前等待索引完成，超时或失败返回null
+     */
+    private AttachmentIndex await(CompletableFuture<AttachmentIndex> future, long deadline) {
+        try {
+            return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("等待附件索引超时，退化为截取开头");
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 回收空闲超时的会话索引
+     */
+    private void evictExpired() {
+        long expireBefore = System.currentTimeMillis() - config.getIndexTtl();
+        sessions.entrySet().removeIf(entry -> {
+            if (entry.getValue().lastAccess() < expireBefore) {
+                evictedSessions.incrementAndGet();
+                log.debug("会话附件索引过期回收, sessionId={}", entry.getKey());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * 按段落分块，超长段落按固定长度带重叠切分
+     */
+    List<String> split(String text) {
+        int chunkSize = config.getChunkSize();
+        int step = Math.max(1, chunkSize - config.getChunkOverlap());
+        List<String> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+
+        for (String paragraph : text.split("\n\\s*\n")) {
+            paragraph = paragraph.trim();
+            if (paragraph.isEmpty()) {
+                continue;
+            }
+            if (current.length() > 0 && current.length() + paragraph.length() + 1 > chunkSize) {
+                chunks.add(current.toString());
+                current.setLength(0);
+            }
+            if (paragraph.length() > chunkSize) {
+                for (int i = 0; i < paragraph.length(); i += step) {
+                    chunks.add(paragraph.substring(i, Math.min(i + chunkSize, paragraph.length())));
+                    if (i + chunkSize >= paragraph.length()) {
+                        break;
+                    }
+                }
+                continue;
+            }
+            if (current.length() > 0) {
+                current.append("\n");
+            }
+            current.append(paragraph);
+        }
+        if (current.length() > 0) {
+            chunks.add(current.toString());
+        }
+
+        if (chunks.size() > config.getMaxChunks()) {
+            log.warn("附件分块数超过上限，只索引前{}块, total={}", config.getMaxChunks(), chunks.size());
+            return new ArrayList<>(chunks.subList(0, config.getMaxChunks()));
+        }
+        return chunks;
+    }
+
+    private boolean isSmall(String content) {
+        return TokenEstimator.estimate(content) <= config.getFullTextTokens();
+    }
+
+    /**
+     * 会话索引（附件ID -> 附件索引）
+     */
+    private static final class SessionIndex {
+
+        private final Map<Long, CompletableFuture<AttachmentIndex>> attachments;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        SessionIndex(Map<Long, CompletableFuture<AttachmentIndex>> attachments) {
+            this.attachments = attachments;
+        }
+
+        Map<Long, CompletableFuture<AttachmentIndex>> attachments() {
+            return attachments;
+        }
+
+        long lastAccess() {
+            return lastAccess;
+        }
+
+        void touch() {
+            lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    private record AttachmentIndex(List<Chunk> chunks) {
+    }
+
+    private record Chunk(int ordinal, String text, float[] vector) {
+    }
+
+    private record ScoredChunk(Long attachmentId, Chunk chunk, double score) {
+    }
+}
@@ -0,0 +1,366 @@
+package com.wzw.knowledge.service.impl;
+
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.wzw.knowledge.config.ChatJournalConfig;
+import com.wzw.knowledge.mapper.ChatMessageMapper;
+import com.wzw.knowledge.mapper.ChatSessionMapper;
+import com.wzw.knowledge.model.entity.ChatMessage;
+import com.wzw.knowledge.service.ChatService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 聊天消息写入日志（write-behind）
+ * <p>
+ * 对话流程中的消息写入先进入内存队列，由后台线程合并成短事务写入数据库：
+ * - 连续的插入合并为一条多行 INSERT
+ * - 同一批次内各会话的消息计数合并为一条 UPDATE（按会话累加）
+ * - 更新操作按入队顺序执行，保证先插入后更新
+ * 模型调用期间不持有任何数据库连接。读取会话消息前调用 {@link #flush(Long)} 保证读到自己的写入。
+ * 写入失败的操作（如数据库短暂不可用）不丢弃，进入重试列表按指数退避重试，
+ * 同一会话后续的操作排在其后，保持写入顺序
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class ChatMessageJournal {
+
+    private final ChatMessageMapper messageMapper;
+    private final ChatSessionMapper sessionMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ChatJournalConfig config;
+
+    /**
+     * 待写入的操作（按入队顺序）
+     */
+    private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * 各会话待写入的操作数（会话ID -> 操作数）
+     */
+    private final Map<Long, AtomicInteger> pendingBySession = new ConcurrentHashMap<>();
+
+    /**
+     * 写入失败等待重试的操作（按入队顺序，只在持有刷写锁时访问）
+     */
+    private final LinkedList<Entry> retries = new LinkedList<>();
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+
+    /**
+     * 保证同一时刻只有一个线程在刷写，维持写入顺序
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "chat-journal-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ChatMessageJournal(ChatMessageMapper messageMapper, ChatSessionMapper sessionMapper,
+                              PlatformTransactionManager transactionManager, ChatJournalConfig config) {
+        this.messageMapper = messageMapper;
+        this.sessionMapper = sessionMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.config = config;
+        flusher.scheduleWithFixedDelay(this::flushQuietly,
+                config.getFlushInterval(), config.getFlushInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flusher.shutdownNow();
+        flushQuietly();
+        flushLock.lock();
+        try {
+            // 关闭前不再等待退避时间，最后重试一次
+            retry(true);
+            if (!retries.isEmpty()) {
+                log.error("关闭时仍有消息写入失败, count={}", retries.size());
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 追加一条新消息，并为所属会话的消息计数加一
+     * <p>
+     * ID和创建时间在入队时分配，调用方可立即使用消息ID
+     * </p>
+     *
+     * @param message 消息
+     */
+    public void append(ChatMessage message) {
+        if (message.getId() == null) {
+            message.setId(IdWorker.getId());
+        }
+        if (message.getCreateTime() == null) {
+            message.setCreateTime(LocalDateTime.now());
+        }
+        enqueue(new Entry(Operation.INSERT, message));
+    }
+
+    /**
+     * 更新一条消息（只更新非空字段）
+     *
+     * @param message 消息（必须包含ID和会话ID）
+     */
+    public void update(ChatMessage message) {
+        enqueue(new Entry(Operation.UPDATE, message));
+    }
+
+    /**
+     * 刷写指定会话的待写入操作（没有待写入操作时直接返回）
+     *
+     * @param sessionId 会话ID
+     */
+    public void flush(Long sessionId) {
+        AtomicInteger pending = pendingBySession.get(sessionId);
+        if (pending != null && pending.get() > 0) {
+            flushAll();
+        }
+    }
+
+    /**
+     * 刷写全部待写入操作
+     */
+    public void flushAll() {
+        flushLock.lock();
+        try {
+            retry(false);
+            List<Entry> batch = new ArrayList<>();
+            while (queue.drainTo(batch, config.getBatchSize()) > 0) {
+                write(batch);
+                batch.clear();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 待写入的操作数
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * 写入统计
+     */
+    public ChatService.JournalStats getStats() {
+        int retrying;
+        flushLock.lock();
+        try {
+            retrying = retries.size();
+        } finally {
+            flushLock.unlock();
+        }
+        return new ChatService.JournalStats(queue.size(), retrying, written.sum(), failures.sum(), recovered.sum());
+    }
+
+    private void enqueue(Entry entry) {
+        pendingBySession.computeIfAbsent(entry.message().getSessionId(), k -> new AtomicInteger()).incrementAndGet();
+        queue.add(entry);
+        // 积压达到批量上限时不等时间窗口
+        if (queue.size() >= config.getBatchSize()) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flushAll();
+        } catch (Exception e) {
+            log.error("消息日志刷写失败", e);
+        }
+    }
+
+    /**
+     * 在一个事务内写入一批操作，失败时逐条写入以隔离出错的操作，仍失败的进入重试列表
+     */
+    private void write(List<Entry> batch) {
+        // 有操作在等待重试的会话，后续操作排在其后
+        Set<Long> blocked = blockedSessions();
+        List<Entry> ready = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            if (blocked.contains(entry.message().getSessionId())) {
+                retries.add(entry);
+            } else {
+                ready.add(entry);
+            }
+        }
+        if (ready.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> apply(ready));
+            ready.forEach(this::completed);
+        } catch (Exception e) {
+            log.error("消息批量写入失败，逐条写入, size={}", ready.size(), e);
+            for (Entry entry : ready) {
+                Long sessionId = entry.message().getSessionId();
+                if (blocked.contains(sessionId)) {
+                    retries.add(entry);
+                } else if (writeOne(entry)) {
+                    completed(entry);
+                } else {
+                    retries.add(entry.failed(config));
+                    blocked.add(sessionId);
+                }
+            }
+        }
+    }
+
+    /**
+     * 重试到期的失败操作；同一会话前面的操作未成功时后面的不执行
+     *
+     * @param force 忽略退避时间
+     */
+    private void retry(boolean force) {
+        if (retries.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        Set<Long> blocked = new HashSet<>();
+        ListIterator<Entry> iterator = retries.listIterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            Long sessionId = entry.message().getSessionId();
+            if (blocked.contains(sessionId)) {
+                continue;
+            }
+            if (!force && entry.attempts() > 0 && entry.retryAt() - now > 0) {
+                blocked.add(sessionId);
+                continue;
+            }
+            if (writeOne(entry)) {
+                iterator.remove();
+                completed(entry);
+                if (entry.attempts() > 0) {
+                    recovered.increment();
+                    log.info("消息重试写入成功, operation={}, messageId={}, attempts={}",
+                            entry.operation(), entry.message().getId(), entry.attempts());
+                }
+            } else {
+                iterator.set(entry.failed(config));
+                blocked.add(sessionId);
+            }
+        }
+    }
+
+    /**
+     * 单独写入一个操作；插入因主键冲突失败说明上次写入实际已提交，视为成功
+     */
+    private boolean writeOne(Entry entry) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> apply(List.of(entry)));
+            return true;
+        } catch (Exception e) {
+            if (e instanceof DuplicateKeyException && entry.operation() == Operation.INSERT) {
+                log.warn("消息已存在，跳过重复写入, messageId={}", entry.message().getId());
+                return true;
+            }
+            failures.increment();
+            log.error("消息写入失败，稍后重试, operation={}, messageId={}, sessionId={}, attempts={}",
+                    entry.operation(), entry.message().getId(), entry.message().getSessionId(),
+                    entry.attempts() + 1, e);
+            return false;
+        }
+    }
+
+    private Set<Long> blockedSessions() {
+        Set<Long> blocked = new HashSet<>();
+        for (Entry entry : retries) {
+            blocked.add(entry.message().getSessionId());
+        }
+        return blocked;
+    }
+
+    private void completed(Entry entry) {
+        written.increment();
+        pendingBySession.computeIfPresent(entry.message().getSessionId(),
+                (k, pending) -> pending.decrementAndGet() <= 0 ? null : pending);
+    }
+
+    private void apply(List<Entry> batch) {
+        List<ChatMessage> inserts = new ArrayList<>();
+        Map<Long, Integer> counters = new LinkedHashMap<>();
+        for (Entry entry : batch) {
+            ChatMessage message = entry.message();
+            if (entry.operation() == Operation.INSERT) {
+                inserts.add(message);
+                counters.merge(message.getSessionId(), 1, Integer::sum);
+            } else {
+                // 更新的可能是前面刚插入的消息，先写入已累积的插入
+                insertPending(inserts);
+                messageMapper.updateById(message);
+            }
+        }
+        insertPending(inserts);
+        if (!counters.isEmpty()) {
+            sessionMapper.addMessageCounts(counters);
+        }
+    }
+
+    private void insertPending(List<ChatMessage> inserts) {
+        if (!inserts.isEmpty()) {
+            messageMapper.insertBatch(inserts);
+            inserts.clear();
+        }
+    }
+
+    private enum Operation {
+        INSERT, UPDATE
+    }
+
+    /**
+     * @param attempts 已失败的次数
+     * @param retryAt  下次重试的时间（纳秒）
+     */
+    private record Entry(Operation operation, ChatMessage message, int attempts, long retryAt) {
+
+        Entry(Operation operation, ChatMessage message) {
+            this(operation, message, 0, 0);
+        }
+
+        /**
+         * 再失败一次：等待时间从初始值开始翻倍，不超过上限
+         */
+        Entry failed(ChatJournalConfig config) {
+            long backoff = Math.min(config.getMaxRetryBackoff(),
+                    config.getRetryBackoff() << Math.min(attempts, 20));
+            return new Entry(operation, message, attempts + 1,
+                    System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff));
+        }
+    }
+}
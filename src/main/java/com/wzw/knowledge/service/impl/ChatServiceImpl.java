@@ -4,9 +4,13 @@ import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
 import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.wzw.knowledge.common.CursorPageResult;
 import com.wzw.knowledge.common.ResultCode;
+import com.wzw.knowledge.config.ChatStreamConfig;
 import com.wzw.knowledge.config.FileConfig;
+import com.wzw.knowledge.config.RetrievalGateConfig;
 import com.wzw.knowledge.exception.BusinessException;
 import com.wzw.knowledge.mapper.ChatAttachmentMapper;
 import com.wzw.knowledge.mapper.ChatMessageMapper;
@@ -16,11 +20,20 @@ import com.wzw.knowledge.model.entity.ChatAttachment;
 import com.wzw.knowledge.model.entity.ChatMessage;
 import com.wzw.knowledge.model.entity.ChatSession;
 import com.wzw.knowledge.model.vo.*;
+import com.wzw.knowledge.service.AttachmentIndexService;
 import com.wzw.knowledge.service.ChatService;
+import com.wzw.knowledge.service.ConversationMemoryService;
 import com.wzw.knowledge.service.OllamaService;
+import com.wzw.knowledge.service.RagProvenanceService;
 import com.wzw.knowledge.service.RagService;
+import com.wzw.knowledge.service.RetrievalGateService;
+import com.wzw.knowledge.util.CursorCodec;
 import com.wzw.knowledge.util.DocumentParser;
+import com.wzw.knowledge.util.KeysetPager;
 import com.wzw.knowledge.util.ResponseValidator;
+import com.wzw.knowledge.util.SseFrameWriter;
+import com.wzw.knowledge.util.StreamLimiter;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -34,12 +47,16 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 聊天服务实现类
@@ -66,11 +83,21 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
     private final RagService ragService;
     private final DocumentParser documentParser;
     private final FileConfig fileConfig;
+    private final ChatStreamConfig chatStreamConfig;
+    private final ChatStreamManager chatStreamManager;
+    private final ChatMessageJournal messageJournal;
+    private final ConversationMemoryService conversationMemoryService;
+    private final RagProvenanceService ragProvenanceService;
+    private final AttachmentIndexService attachmentIndexService;
+    private final ChatSingleFlight chatSingleFlight;
+    private final RetrievalGateService retrievalGateService;
+    private final RetrievalGateConfig retrievalGateConfig;
 
     /**
-     * 用于SSE流式响应的线程池
+     * 用于SSE流式响应的执行器（每个流一个虚拟线程）
      */
-    private final ExecutorService sseExecutor = Executors.newCachedThreadPool();
+    private final ExecutorService sseExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("chat-sse-", 0).factory());
 
     /**
      * 思考链标签的正则表达式
@@ -78,6 +105,26 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
      */
     private static final Pattern THINKING_PATTERN = Pattern.compile("<think>(.*?)</think>", Pattern.DOTALL);
 
+    /**
+     * 会话列表默认每页数量
+     */
+    private static final int DEFAULT_SESSION_PAGE_SIZE = 20;
+
+    /**
+     * 消息历史默认每页数量
+     */
+    private static final int DEFAULT_MESSAGE_PAGE_SIZE = 20;
+
+    /**
+     * 消息历史每页数量上限
+     */
+    private static final int MAX_MESSAGE_PAGE_SIZE = 100;
+
+    @PreDestroy
+    public void destroy() {
+        sseExecutor.shutdownNow();
+    }
+
     /**
      * 创建新会话
      */
@@ -85,7 +132,7 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
     @Transactional(rollbackFor = Exception.class)
     public ChatSessionVO createSession() {
         ChatSession session = new ChatSession();
-        session.setTitle("新对话");
+        session.setTitle(ChatSession.DEFAULT_TITLE);
         session.setMessageCount(0);
 
         this.save(session);
@@ -95,12 +142,32 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
     }
 
     /**
-     * 获取会话列表
+     * 获取会话列表（游标分页）
      */
     @Override
-    public List<ChatSessionVO> listSessions() {
-        List<ChatSession> sessions = sessionMapper.selectAllOrderByLastMessageTime();
-        return sessions.stream().map(this::convertToSessionVO).toList();
+    public CursorPageResult<ChatSessionVO> listSessions(String cursor, Integer size) {
+        int pageSize = KeysetPager.normalizeSize(size, DEFAULT_SESSION_PAGE_SIZE);
+        LocalDateTime activeTime = null;
+        Long beforeId = null;
+        if (StrUtil.isNotBlank(cursor)) {
+            String[] parts = CursorCodec.decode(cursor, 2);
+            try {
+                activeTime = LocalDateTime.parse(parts[0]);
+                beforeId = Long.parseLong(parts[1]);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new BusinessException(ResultCode.PARAM_ERROR, "无效的分页游标");
+            }
+        }
+
+        // 多查一条判断是否还有下一页
+        List<ChatSession> sessions = sessionMapper.selectPageByActiveTime(activeTime, beforeId, pageSize + 1);
+        String nextCursor = null;
+        if (sessions.size() > pageSize) {
+            sessions = sessions.subList(0, pageSize);
+            ChatSession last = sessions.get(pageSize - 1);
+            nextCursor = CursorCodec.encode(last.getActiveTime(), last.getId());
+        }
+        return CursorPageResult.of(sessions.stream().map(this::convertToSessionVO).toList(), nextCursor);
     }
 
     /**
@@ -116,6 +183,8 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
 
         // 逻辑删除会话（消息会级联删除）
         boolean result = this.removeById(sessionId);
+        attachmentIndexService.evict(sessionId);
+        retrievalGateService.evict(sessionId);
 
         log.info("删除聊天会话成功, sessionId={}", sessionId);
         return result;
@@ -132,17 +201,23 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
             throw new BusinessException(ResultCode.NOT_FOUND, "会话不存在");
         }
 
+        // 只更新标题字段，消息计数和滚动摘要由其他流程写入，不能用读到的会话实体整体覆盖
+        this.lambdaUpdate()
+                .set(ChatSession::getTitle, title)
+                .eq(ChatSession::getId, sessionId)
+                .update();
         session.setTitle(title);
-        this.updateById(session);
 
         return convertToSessionVO(session);
     }
 
     /**
      * 发送消息（带RAG增强）
+     * <p>
+     * 不开启事务：模型调用可能持续数十秒，期间不持有数据库连接，消息由 {@link ChatMessageJournal} 批量写入
+     * </p>
      */
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public ChatSendResponse sendMessage(Long sessionId, ChatSendRequest request) {
         // 验证会话
         ChatSession session = this.getById(sessionId);
@@ -158,16 +233,26 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
         List<ChatAttachment> attachments = new ArrayList<>();
         if (request.getAttachmentIds() != null && !request.getAttachmentIds().isEmpty()) {
             attachments = attachmentMapper.selectByIds(request.getAttachmentIds());
-            attachmentContext = buildAttachmentContext(attachments);
+            // 只取与问题相关的附件片段
+            attachmentContext = attachmentIndexService.buildContext(sessionId, userMessage, attachments);
         }
 
         // 执行RAG检索
         RagService.RagResult ragResult = null;
         String prompt = userMessage;
+        boolean generalKnowledge = false;
 
         if (enableRag) {
-            // 增加检索数量到10，提高找到相关内容的概率
-            ragResult = ragService.search(userMessage, 10);
+            ragResult = retrieve(sessionId, userMessage);
+
+            // 知识库中没有相关内容（且没有附件可参考）：直接返回模板回答，用户要求时改用通用知识回答
+            if (StrUtil.isBlank(attachmentContext) && !retrievalGateService.isConfident(ragResult)) {
+                if (!Boolean.TRUE.equals(request.getGeneralKnowledge())) {
+                    return sendNoAnswer(session, userMessage, attachments);
+                }
+                ragResult = null;
+                generalKnowledge = true;
+            }
 
             // 构建带RAG上下文的提示词
             if (ragResult != null && StrUtil.isNotBlank(ragResult.contextPrompt())) {
@@ -180,17 +265,22 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
             prompt = prompt + "\n\n【附件内容】\n" + attachmentContext;
         }
 
-        // 获取历史消息作为上下文
-        List<ChatMessage> history = messageMapper.selectRecentMessages(sessionId, 10);
-        String historyContext = buildHistoryContext(history);
+        // 历史上下文：会话摘要 + 预算内的最近对话
+        String historyContext = conversationMemoryService.buildHistoryContext(session);
         if (StrUtil.isNotBlank(historyContext)) {
             prompt = historyContext + "\n\n" + prompt;
         }
 
+        // 提示词等价的并发请求合并为一次模型调用
+        OllamaService.ModelTask task = resolveModelTask(request);
+        String generationKey = ChatSingleFlight.generationKey(userMessage, ragResult,
+                StrUtil.nullToEmpty(historyContext) + "\n" + attachmentContext, task);
+        String finalPrompt = prompt;
+
         // 调用大模型
         String aiResponse;
         try {
-            aiResponse = ollamaService.chat(prompt);
+            aiResponse = chatSingleFlight.generate(generationKey, () -> ollamaService.chat(finalPrompt, task));
         } catch (Exception e) {
             log.error("调用大模型失败", e);
             throw new BusinessException(ResultCode.OLLAMA_ERROR, "AI服务暂时不可用，请稍后重试");
@@ -233,18 +323,13 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
         if (enableRag && ragResult != null && !ragResult.documents().isEmpty()) {
             content = appendSourceInfo(content, ragResult.documents());
         }
+        if (generalKnowledge) {
+            content = retrievalGateConfig.getGeneralKnowledgeNotice() + "\n\n" + content;
+        }
 
         // 保存用户消息
-        ChatMessage userMsg = new ChatMessage();
-        userMsg.setSessionId(sessionId);
-        userMsg.setRole(ChatMessage.ROLE_USER);
-        userMsg.setContent(userMessage);
-        if (!attachments.isEmpty()) {
-            userMsg.setAttachments(JSON.toJSONString(attachments.stream()
-                    .map(a -> Map.of("id", a.getId(), "fileName", a.getFileName()))
-                    .toList()));
-        }
-        messageMapper.insert(userMsg);
+        ChatMessage userMsg = buildUserMessage(sessionId, userMessage, attachments);
+        messageJournal.append(userMsg);
 
         // 保存AI回复
         ChatMessage assistantMsg = new ChatMessage();
@@ -253,25 +338,17 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
         assistantMsg.setContent(content);
         assistantMsg.setThinkingContent(thinkingContent);
 
-        // 保存RAG上下文
+        // 保存RAG来源（只存分块ID和分数，展开时还原）
         if (ragResult != null) {
-            Map<String, Object> ragContext = new HashMap<>();
-            ragContext.put("documents", ragResult.documents());
-            ragContext.put("nodes", ragResult.nodes());
-            assistantMsg.setRagContext(JSON.toJSONString(ragContext));
+            assistantMsg.setRagContext(ragProvenanceService.encode(ragResult.documents(), ragResult.nodes()));
         }
-        messageMapper.insert(assistantMsg);
-
-        // 更新会话统计
-        sessionMapper.incrementMessageCount(sessionId);
-        sessionMapper.incrementMessageCount(sessionId);
+        messageJournal.append(assistantMsg);
 
         // 如果是第一条消息，自动设置会话标题
-        if (session.getMessageCount() == 0) {
-            String title = userMessage.length() > 30 ? userMessage.substring(0, 30) + "..." : userMessage;
-            session.setTitle(title);
-            this.updateById(session);
-        }
+        updateTitleIfFirstMessage(session, userMessage);
+
+        // 将滚出最近窗口的对话合并进会话摘要
+        conversationMemoryService.compactAsync(sessionId);
 
         // 构建响应
         ChatSendResponse response = new ChatSendResponse();
@@ -294,6 +371,10 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
 
     /**
      * 流式发送消息（带RAG增强）
+     * <p>
+     * 每个流运行在一个虚拟线程上，同时进行的流数量受 chat.stream.max-concurrent 限制，
+     * 超出的请求先收到 queued 事件并排队，队列已满或等待超时收到 rejected(429) 事件
+     * </p>
      */
     @Override
     public SseEmitter sendMessageStream(Long sessionId, ChatSendRequest request) {
@@ -303,6 +384,78 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
             throw new BusinessException(ResultCode.NOT_FOUND, "会话不存在");
         }
 
+        SseEmitter emitter = new SseEmitter(chatStreamConfig.getTimeout());
+        StreamLimiter streamLimiter = chatStreamManager.getLimiter();
+
+        // 准入控制：有空闲名额直接进入，否则排队，队列已满立即拒绝
+        boolean admitted = streamLimiter.tryAcquire();
+        int position = admitted ? 0 : streamLimiter.tryEnqueue();
+        if (!admitted && position < 0) {
+            log.warn("流式对话请求被拒绝（队列已满）, sessionId={}, active={}, queued={}",
+                    sessionId, streamLimiter.getActive(), streamLimiter.getQueued());
+            sendRejected(emitter, "当前对话请求过多，请稍后重试");
+            return emitter;
+        }
+
+        sseExecutor.execute(() -> {
+            if (!admitted) {
+                sendQuietly(emitter, Map.of("type", "queued", "position", position));
+                if (!streamLimiter.awaitPermit(chatStreamConfig.getQueueTimeout())) {
+                    log.warn("流式对话排队超时, sessionId={}", sessionId);
+                    sendRejected(emitter, "排队等待超时，请稍后重试");
+                    return;
+                }
+            }
+            try {
+                streamMessage(emitter, session, request);
+            } catch (Exception e) {
+                log.error("流式消息处理失败", e);
+                emitter.completeWithError(e);
+            } finally {
+                streamLimiter.release();
+            }
+        });
+
+        return emitter;
+    }
+
+    /**
+     * 流式对话断线重连
+     */
+    @Override
+    public SseEmitter resumeMessageStream(Long assistantMessageId, Long lastEventId) {
+        return chatStreamManager.resume(assistantMessageId, lastEventId != null ? lastEventId : 0);
+    }
+
+    /**
+     * 获取流式对话统计
+     */
+    @Override
+    public StreamStats getStreamStats() {
+        return chatStreamManager.getStats();
+    }
+
+    /**
+     * 获取相同问题合并统计
+     */
+    @Override
+    public SingleFlightStats getSingleFlightStats() {
+        return chatSingleFlight.getStats();
+    }
+
+    /**
+     * 获取消息写入统计
+     */
+    @Override
+    public JournalStats getJournalStats() {
+        return messageJournal.getStats();
+    }
+
+    /**
+     * 执行一次流式对话（在虚拟线程上运行，可直接阻塞）
+     */
+    private void streamMessage(SseEmitter emitter, ChatSession session, ChatSendRequest request) {
+        Long sessionId = session.getId();
         String userMessage = request.getMessage();
         Boolean enableRag = request.getEnableRag() != null ? request.getEnableRag() : true;
 
@@ -311,16 +464,28 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
         List<ChatAttachment> attachments = new ArrayList<>();
         if (request.getAttachmentIds() != null && !request.getAttachmentIds().isEmpty()) {
             attachments = attachmentMapper.selectByIds(request.getAttachmentIds());
-            attachmentContext = buildAttachmentContext(attachments);
+            // 只取与问题相关的附件片段
+            attachmentContext = attachmentIndexService.buildContext(sessionId, userMessage, attachments);
         }
 
         // 执行RAG检索
         RagService.RagResult ragResult = null;
         String prompt = userMessage;
+        boolean generalKnowledge = false;
 
         if (enableRag) {
-            // 增加检索数量到10，提高找到相关内容的概率
-            ragResult = ragService.search(userMessage, 10);
+            ragResult = retrieve(sessionId, userMessage);
+
+            // 知识库中没有相关内容（且没有附件可参考）：直接返回模板回答，用户要求时改用通用知识回答
+            if (StrUtil.isBlank(attachmentContext) && !retrievalGateService.isConfident(ragResult)) {
+                if (!Boolean.TRUE.equals(request.getGeneralKnowledge())) {
+                    streamNoAnswer(emitter, session, userMessage, attachments);
+                    return;
+                }
+                ragResult = null;
+                generalKnowledge = true;
+            }
+
             if (ragResult != null && StrUtil.isNotBlank(ragResult.contextPrompt())) {
                 prompt = ragResult.contextPrompt();
             }
@@ -331,24 +496,21 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
             prompt = prompt + "\n\n【附件内容】\n" + attachmentContext;
         }
 
-        // 获取历史消息作为上下文
-        List<ChatMessage> history = messageMapper.selectRecentMessages(sessionId, 10);
-        String historyContext = buildHistoryContext(history);
+        // 历史上下文：会话摘要 + 预算内的最近对话
+        String historyContext = conversationMemoryService.buildHistoryContext(session);
         if (StrUtil.isNotBlank(historyContext)) {
             prompt = historyContext + "\n\n" + prompt;
         }
 
+        // 提示词等价的并发请求合并为一次模型调用
+        OllamaService.ModelTask task = resolveModelTask(request);
+        String generationKey = ChatSingleFlight.generationKey(userMessage, ragResult,
+                StrUtil.nullToEmpty(historyContext) + "\n" + attachmentContext, task);
+        String finalPrompt = prompt;
+
         // 保存用户消息
-        ChatMessage userMsg = new ChatMessage();
-        userMsg.setSessionId(sessionId);
-        userMsg.setRole(ChatMessage.ROLE_USER);
-        userMsg.setContent(userMessage);
-        if (!attachments.isEmpty()) {
-            userMsg.setAttachments(JSON.toJSONString(attachments.stream()
-                    .map(a -> Map.of("id", a.getId(), "fileName", a.getFileName()))
-                    .toList()));
-        }
-        messageMapper.insert(userMsg);
+        ChatMessage userMsg = buildUserMessage(sessionId, userMessage, attachments);
+        messageJournal.append(userMsg);
 
         // 创建AI消息记录（后续流式更新内容）
         ChatMessage assistantMsg = new ChatMessage();
@@ -356,229 +518,341 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
         assistantMsg.setRole(ChatMessage.ROLE_ASSISTANT);
         assistantMsg.setContent("");
         if (ragResult != null) {
-            Map<String, Object> ragContext = new HashMap<>();
-            ragContext.put("documents", ragResult.documents());
-            ragContext.put("nodes", ragResult.nodes());
-            assistantMsg.setRagContext(JSON.toJSONString(ragContext));
+            assistantMsg.setRagContext(ragProvenanceService.encode(ragResult.documents(), ragResult.nodes()));
         }
-        messageMapper.insert(assistantMsg);
-
-        // 更新会话统计
-        sessionMapper.incrementMessageCount(sessionId);
-        sessionMapper.incrementMessageCount(sessionId);
+        messageJournal.append(assistantMsg);
 
         // 如果是第一条消息，自动设置会话标题
-        if (session.getMessageCount() == 0) {
-            String title = userMessage.length() > 30 ? userMessage.substring(0, 30) + "..." : userMessage;
-            session.setTitle(title);
-            this.updateById(session);
-        }
+        updateTitleIfFirstMessage(session, userMessage);
 
-        // 创建SSE Emitter（超时5分钟）
-        SseEmitter emitter = new SseEmitter(5 * 60 * 1000L);
-        final String finalPrompt = prompt;
-        final RagService.RagResult finalRagResult = ragResult;
-        final Long assistantMsgId = assistantMsg.getId();
-        final Long userMsgId = userMsg.getId();
-        final List<ChatAttachment> finalAttachments = attachments;
+        Long assistantMsgId = assistantMsg.getId();
 
-        // 使用线程池执行流式响应
-        sseExecutor.execute(() -> {
+        // 注册流通道：事件带ID写入回放缓冲，客户端断开时发出取消信号
+        ChatStreamManager.StreamChannel channel = chatStreamManager.open(assistantMsgId, emitter);
+        try {
+            // 首先发送消息ID和RAG结果
+            Map<String, Object> initData = new HashMap<>();
+            initData.put("type", "init");
+            initData.put("userMessageId", userMsg.getId());
+            initData.put("assistantMessageId", assistantMsgId);
+            if (ragResult != null) {
+                initData.put("ragDocuments", ragResult.documents());
+                initData.put("ragNodes", ragResult.nodes());
+            }
+            channel.publish(JSON.toJSONString(initData));
+
+            // 流式调用大模型：在当前虚拟线程上逐块读取，客户端断开后 takeUntilOther 取消本会话的订阅，
+            // 相同请求共享一个生成流，所有订阅者都离开后才取消上游
             StringBuilder fullContent = new StringBuilder();
-            try {
-                // 首先发送消息ID和RAG结果
-                Map<String, Object> initData = new HashMap<>();
-                initData.put("type", "init");
-                initData.put("userMessageId", userMsgId);
-                initData.put("assistantMessageId", assistantMsgId);
-                if (finalRagResult != null) {
-                    initData.put("ragDocuments", finalRagResult.documents());
-                    initData.put("ragNodes", finalRagResult.nodes());
+            if (generalKnowledge) {
+                String notice = retrievalGateConfig.getGeneralKnowledgeNotice() + "\n\n";
+                fullContent.append(notice);
+                channel.publishChunk(notice);
+            }
+            try (Stream<String> chunks = chatSingleFlight.generateStream(generationKey,
+                            () -> ollamaService.chatStream(finalPrompt, task))
+                    .takeUntilOther(channel.cancelSignal())
+                    .toStream()) {
+                Iterator<String> iterator = chunks.iterator();
+                while (iterator.hasNext()) {
+                    String chunk = iterator.next();
+                    fullContent.append(chunk);
+                    channel.publishChunk(chunk);
                 }
-                emitter.send(SseEmitter.event()
-                        .name("message")
-                        .data(JSON.toJSONString(initData)));
-
-                // 流式调用大模型
-                ollamaService.chatStream(finalPrompt)
-                        .doOnNext(chunk -> {
-                            try {
-                                fullContent.append(chunk);
-                                Map<String, Object> chunkData = new HashMap<>();
-                                chunkData.put("type", "chunk");
-                                chunkData.put("content", chunk);
-                                emitter.send(SseEmitter.event()
-                                        .name("message")
-                                        .data(JSON.toJSONString(chunkData)));
-                            } catch (IOException e) {
-                                log.error("发送SSE消息失败", e);
-                            }
-                        })
-                        .doOnComplete(() -> {
-                            try {
-                                // 解析思考链
-                                String content = fullContent.toString();
-                                String thinkingContent = null;
-                                Matcher matcher = THINKING_PATTERN.matcher(content);
-                                if (matcher.find()) {
-                                    thinkingContent = matcher.group(1).trim();
-                                    content = matcher.replaceAll("").trim();
-                                }
-
-                                // 验证AI响应的数值准确性（如果启用了RAG）
-                                if (enableRag && finalRagResult != null && !finalRagResult.documents().isEmpty()) {
-                                    // 收集所有参考文档的内容
-                                    StringBuilder referenceContent = new StringBuilder();
-                                    for (RagDocument doc : finalRagResult.documents()) {
-                                        if (StrUtil.isNotBlank(doc.getMatchedContent())) {
-                                            referenceContent.append(doc.getMatchedContent()).append(" ");
-                                        }
-                                    }
-                                    
-                                    // 验证响应
-                                    ResponseValidator.ValidationResult validation = 
-                                        ResponseValidator.validate(referenceContent.toString(), content);
-                                    
-                                    if (!validation.isValid()) {
-                                        log.error("流式AI响应验证失败: {}", validation.getMessage());
-                                        // 在响应中添加警告信息
-                                        String warningMsg = "\n\n⚠️ 系统检测提示：本回答可能存在数值单位转换问题，请以原始文档为准。";
-                                        content = content + warningMsg;
-                                        
-                                        // 发送警告信息块
-                                        Map<String, Object> warningData = new HashMap<>();
-                                        warningData.put("type", "chunk");
-                                        warningData.put("content", warningMsg);
-                                        emitter.send(SseEmitter.event()
-                                                .name("message")
-                                                .data(JSON.toJSONString(warningData)));
-                                    } else if (validation.isWarning()) {
-                                        log.warn("流式AI响应验证警告: {}", validation.getMessage());
-                                    }
-                                }
-
-                                // 如果启用了RAG，附加文档来源信息
-                                if (enableRag && finalRagResult != null && !finalRagResult.documents().isEmpty()) {
-                                    String sourceInfo = buildSourceInfo(finalRagResult.documents());
-                                    content = content + sourceInfo;
-                                    
-                                    // 发送来源信息
-                                    Map<String, Object> sourceData = new HashMap<>();
-                                    sourceData.put("type", "source");
-                                    sourceData.put("content", sourceInfo);
-                                    emitter.send(SseEmitter.event()
-                                            .name("message")
-                                            .data(JSON.toJSONString(sourceData)));
-                                }
-
-                                // 更新消息内容
-                                ChatMessage msgToUpdate = new ChatMessage();
-                                msgToUpdate.setId(assistantMsgId);
-                                msgToUpdate.setContent(content);
-                                msgToUpdate.setThinkingContent(thinkingContent);
-                                messageMapper.updateById(msgToUpdate);
-
-                                // 发送完成信号
-                                Map<String, Object> doneData = new HashMap<>();
-                                doneData.put("type", "done");
-                                doneData.put("thinkingContent", thinkingContent);
-                                doneData.put("content", content);
-                                emitter.send(SseEmitter.event()
-                                        .name("message")
-                                        .data(JSON.toJSONString(doneData)));
-
-                                emitter.complete();
-                                log.info("流式消息发送完成, sessionId={}, assistantMsgId={}", sessionId, assistantMsgId);
-                            } catch (IOException e) {
-                                log.error("发送完成信号失败", e);
-                                emitter.completeWithError(e);
-                            }
-                        })
-                        .doOnError(error -> {
-                            log.error("流式对话失败", error);
-                            try {
-                                Map<String, Object> errorData = new HashMap<>();
-                                errorData.put("type", "error");
-                                errorData.put("message", error.getMessage());
-                                emitter.send(SseEmitter.event()
-                                        .name("message")
-                                        .data(JSON.toJSONString(errorData)));
-                            } catch (IOException e) {
-                                log.error("发送错误信息失败", e);
-                            }
-                            emitter.completeWithError(error);
-                        })
-                        .subscribe();
-
             } catch (Exception e) {
-                log.error("流式消息处理失败", e);
-                emitter.completeWithError(e);
+                log.error("流式对话失败", e);
+                channel.publish(SseFrameWriter.envelope("error", "message", e.getMessage()));
+                return;
             }
-        });
 
-        // 设置超时和错误回调
-        emitter.onTimeout(() -> {
-            log.warn("SSE连接超时, sessionId={}", sessionId);
-            emitter.complete();
-        });
-        emitter.onError(error -> {
-            log.error("SSE连接错误, sessionId={}", sessionId, error);
-        });
+            // 解析思考链（思考中途被取消时补上结束标签）
+            String content = fullContent.toString();
+            if (content.contains("<think>") && !content.contains("</think>")) {
+                content = content + "</think>";
+            }
+            String thinkingContent = null;
+            Matcher matcher = THINKING_PATTERN.matcher(content);
+            if (matcher.find()) {
+                thinkingContent = matcher.group(1).trim();
+                content = matcher.replaceAll("").trim();
+            }
 
-        return emitter;
+            // 客户端已离开：保存已生成的部分内容，不再做后处理；
+            // 发出终止事件，宽限期后才重连的客户端据此停止重试
+            if (channel.isCancelled()) {
+                ChatMessage msgToUpdate = new ChatMessage();
+                msgToUpdate.setId(assistantMsgId);
+                msgToUpdate.setContent(content);
+                msgToUpdate.setThinkingContent(thinkingContent);
+                msgToUpdate.setSessionId(sessionId);
+                messageJournal.update(msgToUpdate);
+                conversationMemoryService.compactAsync(sessionId);
+                channel.publish(SseFrameWriter.envelope("cancelled",
+                        "thinkingContent", thinkingContent, "content", content));
+                log.info("流式消息已取消, sessionId={}, assistantMsgId={}, generatedLength={}",
+                        sessionId, assistantMsgId, fullContent.length());
+                return;
+            }
+
+            // 验证AI响应的数值准确性（如果启用了RAG）
+            if (enableRag && ragResult != null && !ragResult.documents().isEmpty()) {
+                // 收集所有参考文档的内容
+                StringBuilder referenceContent = new StringBuilder();
+                for (RagDocument doc : ragResult.documents()) {
+                    if (StrUtil.isNotBlank(doc.getMatchedContent())) {
+                        referenceContent.append(doc.getMatchedContent()).append(" ");
+                    }
+                }
+
+                // 验证响应
+                ResponseValidator.ValidationResult validation =
+                    ResponseValidator.validate(referenceContent.toString(), content);
+
+                if (!validation.isValid()) {
+                    log.error("流式AI响应验证失败: {}", validation.getMessage());
+                    // 在响应中添加警告信息
+                    String warningMsg = "\n\n⚠️ 系统检测提示：本回答可能存在数值单位转换问题，请以原始文档为准。";
+                    content = content + warningMsg;
+
+                    // 发送警告信息块
+                    channel.publishChunk(warningMsg);
+                } else if (validation.isWarning()) {
+                    log.warn("流式AI响应验证警告: {}", validation.getMessage());
+                }
+            }
+
+            // 如果启用了RAG，附加文档来源信息
+            if (enableRag && ragResult != null && !ragResult.documents().isEmpty()) {
+                String sourceInfo = buildSourceInfo(ragResult.documents());
+                content = content + sourceInfo;
+
+                // 发送来源信息
+                channel.publish(SseFrameWriter.envelope("source", "content", sourceInfo));
+            }
+
+            // 更新消息内容
+            ChatMessage msgToUpdate = new ChatMessage();
+            msgToUpdate.setId(assistantMsgId);
+            msgToUpdate.setContent(content);
+            msgToUpdate.setThinkingContent(thinkingContent);
+            msgToUpdate.setSessionId(sessionId);
+            messageJournal.update(msgToUpdate);
+            conversationMemoryService.compactAsync(sessionId);
+
+            // 发送完成信号
+            channel.publish(SseFrameWriter.envelope("done", "thinkingContent", thinkingContent, "content", content));
+
+            log.info("流式消息发送完成, sessionId={}, assistantMsgId={}", sessionId, assistantMsgId);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * 知识库中没有相关内容时的非流式回答：保存用户消息和模板回答，不调用大模型
+     */
+    private ChatSendResponse sendNoAnswer(ChatSession session, String userMessage, List<ChatAttachment> attachments) {
+        ChatMessage userMsg = buildUserMessage(session.getId(), userMessage, attachments);
+        messageJournal.append(userMsg);
+        ChatMessage assistantMsg = buildNoAnswerMessage(session.getId());
+        messageJournal.append(assistantMsg);
+        updateTitleIfFirstMessage(session, userMessage);
+        conversationMemoryService.compactAsync(session.getId());
+
+        ChatSendResponse response = new ChatSendResponse();
+        response.setUserMessage(convertToMessageVO(userMsg, attachments));
+        ChatMessageVO assistantVO = convertToMessageVO(assistantMsg, null);
+        assistantVO.setNoAnswer(true);
+        response.setAssistantMessage(assistantVO);
+        log.info("知识库中没有相关内容，返回模板回答, sessionId={}, assistantMsgId={}", session.getId(), assistantMsg.getId());
+        return response;
+    }
+
+    /**
+     * 知识库中没有相关内容时的流式回答：init 事件带 noAnswer 标记，随后直接发送完成事件
+     */
+    private void streamNoAnswer(SseEmitter emitter, ChatSession session, String userMessage,
+                                List<ChatAttachment> attachments) {
+        ChatMessage userMsg = buildUserMessage(session.getId(), userMessage, attachments);
+        messageJournal.append(userMsg);
+        ChatMessage assistantMsg = buildNoAnswerMessage(session.getId());
+        messageJournal.append(assistantMsg);
+        updateTitleIfFirstMessage(session, userMessage);
+        conversationMemoryService.compactAsync(session.getId());
+
+        ChatStreamManager.StreamChannel channel = chatStreamManager.open(assistantMsg.getId(), emitter);
+        try {
+            Map<String, Object> initData = new HashMap<>();
+            initData.put("type", "init");
+            initData.put("userMessageId", userMsg.getId());
+            initData.put("assistantMessageId", assistantMsg.getId());
+            initData.put("noAnswer", true);
+            channel.publish(JSON.toJSONString(initData));
+            channel.publish(SseFrameWriter.envelope("done", "thinkingContent", null, "content", assistantMsg.getContent()));
+        } finally {
+            channel.close();
+        }
+        log.info("知识库中没有相关内容，返回模板回答, sessionId={}, assistantMsgId={}", session.getId(), assistantMsg.getId());
+    }
+
+    private ChatMessage buildNoAnswerMessage(Long sessionId) {
+        ChatMessage assistantMsg = new ChatMessage();
+        assistantMsg.setSessionId(sessionId);
+        assistantMsg.setRole(ChatMessage.ROLE_ASSISTANT);
+        assistantMsg.setContent(retrievalGateConfig.getNoAnswerMessage());
+        return assistantMsg;
+    }
+
+    /**
+     * 构建用户消息（附件只保存ID和文件名）
+     */
+    private ChatMessage buildUserMessage(Long sessionId, String userMessage, List<ChatAttachment> attachments) {
+        ChatMessage userMsg = new ChatMessage();
+        userMsg.setSessionId(sessionId);
+        userMsg.setRole(ChatMessage.ROLE_USER);
+        userMsg.setContent(userMessage);
+        if (!attachments.isEmpty()) {
+            userMsg.setAttachments(JSON.toJSONString(attachments.stream()
+                    .map(a -> Map.of("id", a.getId(), "fileName", a.getFileName()))
+                    .toList()));
+        }
+        return userMsg;
+    }
+
+    /**
+     * RAG检索：先经过检索门控，寒暄不检索、追问复用上一轮的结果
+     *
+     * @return 检索结果，不需要检索时返回null
+     */
+    private RagService.RagResult retrieve(Long sessionId, String userMessage) {
+        RetrievalGateService.Decision decision = retrievalGateService.decide(sessionId, userMessage);
+        if (decision.action() != RetrievalGateService.Action.RETRIEVE) {
+            log.info("跳过RAG检索, sessionId={}, action={}, reason={}", sessionId, decision.action(), decision.reason());
+            return decision.reused();
+        }
+
+        // 增加检索数量到10，提高找到相关内容的概率；相同问题的并发检索只执行一次
+        long start = System.currentTimeMillis();
+        RagService.RagResult ragResult = chatSingleFlight.search(userMessage, 10,
+                () -> ragService.search(userMessage, 10, decision.queryVector()));
+        retrievalGateService.record(sessionId, userMessage, ragResult, System.currentTimeMillis() - start);
+        return ragResult;
     }
 
     /**
-     * 获取会话消息历史
+     * 发送SSE消息（连接建立前的排队/拒绝事件，不进入回放缓冲），失败时只记录日志
+     */
+    private void sendQuietly(SseEmitter emitter, Map<String, Object> data) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name("message")
+                    .data(JSON.toJSONString(data)));
+        } catch (IOException | IllegalStateException e) {
+            log.warn("发送SSE消息失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 发送拒绝事件并结束连接
+     */
+    private void sendRejected(SseEmitter emitter, String message) {
+        sendQuietly(emitter, Map.of(
+                "type", "rejected",
+                "code", ResultCode.TOO_MANY_REQUESTS.getCode(),
+                "message", message));
+        emitter.complete();
+    }
+
+    /**
+     * 分页获取会话消息历史
+     * <p>
+     * 每页只查询一次消息和一次附件，RAG上下文只返回引用，由 {@link #getRagContext(Long)} 按需加载
+     * </p>
      */
     @Override
-    public List<ChatMessageVO> getMessages(Long sessionId) {
+    public CursorPageResult<ChatMessageVO> getMessages(Long sessionId, String cursor, Integer size) {
         // 验证会话
         ChatSession session = this.getById(sessionId);
         if (session == null) {
             throw new BusinessException(ResultCode.NOT_FOUND, "会话不存在");
         }
 
-        List<ChatMessage> messages = messageMapper.selectBySessionId(sessionId);
+        int pageSize = size == null || size <= 0 ? DEFAULT_MESSAGE_PAGE_SIZE : Math.min(size, MAX_MESSAGE_PAGE_SIZE);
+        long beforeId = StrUtil.isBlank(cursor) ? Long.MAX_VALUE : CursorCodec.decodeId(cursor);
 
-        return messages.stream().map(msg -> {
-            List<ChatAttachment> attachments = null;
-            if (StrUtil.isNotBlank(msg.getAttachments())) {
-                // 解析附件ID列表并查询
-                try {
-                    List<Map> attachmentList = JSON.parseArray(msg.getAttachments(), Map.class);
-                    List<Long> ids = attachmentList.stream()
-                            .map(m -> Long.valueOf(m.get("id").toString()))
-                            .toList();
-                    if (!ids.isEmpty()) {
-                        attachments = attachmentMapper.selectByIds(ids);
-                    }
-                } catch (Exception e) {
-                    log.warn("解析附件信息失败", e);
-                }
+        messageJournal.flush(sessionId);
+        // 多查一条判断是否还有更早的消息
+        List<ChatMessage> messages = new ArrayList<>(messageMapper.selectPageBefore(sessionId, beforeId, pageSize + 1));
+        boolean hasMore = messages.size() > pageSize;
+        if (hasMore) {
+            messages = messages.subList(0, pageSize);
+        }
+        String nextCursor = hasMore ? CursorCodec.encode(messages.get(messages.size() - 1).getId()) : null;
+        Collections.reverse(messages);
+
+        // 解析本页所有消息的附件ID，一次查询
+        Map<Long, List<Long>> attachmentIdsByMessage = new HashMap<>();
+        Set<Long> attachmentIds = new LinkedHashSet<>();
+        for (ChatMessage msg : messages) {
+            List<Long> ids = parseAttachmentIds(msg.getAttachments());
+            if (!ids.isEmpty()) {
+                attachmentIdsByMessage.put(msg.getId(), ids);
+                attachmentIds.addAll(ids);
             }
-
+        }
+        Map<Long, ChatAttachment> attachmentMap = attachmentIds.isEmpty() ? Map.of()
+                : attachmentMapper.selectBriefByIds(new ArrayList<>(attachmentIds)).stream()
+                        .collect(Collectors.toMap(ChatAttachment::getId, a -> a, (a, b) -> a));
+
+        List<ChatMessageVO> records = messages.stream().map(msg -> {
+            List<ChatAttachment> attachments = attachmentIdsByMessage.getOrDefault(msg.getId(), List.of()).stream()
+                    .map(attachmentMap::get)
+                    .filter(Objects::nonNull)
+                    .toList();
             ChatMessageVO vo = convertToMessageVO(msg, attachments);
-
-            // 解析RAG上下文
-            if (StrUtil.isNotBlank(msg.getRagContext())) {
-                try {
-                    Map<String, Object> ragContext = JSON.parseObject(msg.getRagContext(), Map.class);
-                    if (ragContext.get("documents") != null) {
-                        vo.setRagDocuments(JSON.parseArray(
-                                JSON.toJSONString(ragContext.get("documents")), RagDocument.class));
-                    }
-                    if (ragContext.get("nodes") != null) {
-                        vo.setRagNodes(JSON.parseArray(
-                                JSON.toJSONString(ragContext.get("nodes")), RagNode.class));
-                    }
-                } catch (Exception e) {
-                    log.warn("解析RAG上下文失败", e);
-                }
+            if (Boolean.TRUE.equals(msg.getHasRagContext())) {
+                vo.setRagContextId(msg.getId());
             }
-
             return vo;
         }).toList();
+
+        return CursorPageResult.of(records, nextCursor);
+    }
+
+    /**
+     * 获取消息的RAG上下文
+     */
+    @Override
+    public RagContextVO getRagContext(Long messageId) {
+        String ragContext = messageMapper.selectRagContext(messageId);
+        if (StrUtil.isBlank(ragContext)) {
+            throw new BusinessException(ResultCode.NOT_FOUND, "RAG上下文不存在");
+        }
+
+        return ragProvenanceService.resolve(messageId, ragContext);
+    }
+
+    /**
+     * 解析消息中保存的附件ID列表
+     */
+    private List<Long> parseAttachmentIds(String attachmentsJson) {
+        if (StrUtil.isBlank(attachmentsJson)) {
+            return List.of();
+        }
+        try {
+            JSONArray array = JSON.parseArray(attachmentsJson);
+            List<Long> ids = new ArrayList<>(array.size());
+            for (int i = 0; i < array.size(); i++) {
+                Long id = array.getJSONObject(i).getLong("id");
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+            return ids;
+        } catch (Exception e) {
+            log.warn("解析附件信息失败", e);
+            return List.of();
+        }
     }
 
     /**
@@ -586,7 +860,7 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
      */
     @Override
     @Transactional(rollbackFor = Exception.class)
-    public ChatAttachmentVO uploadAttachment(MultipartFile file) {
+    public ChatAttachmentVO uploadAttachment(MultipartFile file, Long sessionId) {
         // 验证文件
         if (file == null || file.isEmpty()) {
             throw new BusinessException(ResultCode.PARAM_ERROR, "文件不能为空");
@@ -608,11 +882,8 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
         try {
             // 只解析文本类型的文件
             if (isTextFile(fileType)) {
+                // 保存完整内容，提问时按相关性检索片段，不在这里截断
                 parsedContent = documentParser.parse(filePath, fileType);
-                // 限制解析内容长度
-                if (parsedContent != null && parsedContent.length() > 10000) {
-                    parsedContent = parsedContent.substring(0, 10000) + "...(内容已截断)";
-                }
             }
         } catch (Exception e) {
             log.warn("附件解析失败: {}", originalName, e);
@@ -628,7 +899,10 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
 
         attachmentMapper.insert(attachment);
 
-        log.info("上传聊天附件成功, attachmentId={}, fileName={}", attachment.getId(), originalName);
+        // 异步分块并生成向量，放入会话的附件索引
+        attachmentIndexService.indexAsync(sessionId, attachment);
+
+        log.info("上传聊天附件成功, attachmentId={}, sessionId={}, fileName={}", attachment.getId(), sessionId, originalName);
 
         return convertToAttachmentVO(attachment);
     }
@@ -678,48 +952,30 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
     }
 
     /**
-     * 构建附件上下文
+     * 根据请求选择模型任务（快速模式使用非推理档位）
      */
-    private String buildAttachmentContext(List<ChatAttachment> attachments) {
-        if (attachments == null || attachments.isEmpty()) {
-            return "";
-        }
-
-        StringBuilder sb = new StringBuilder();
-        for (ChatAttachment attachment : attachments) {
-            if (StrUtil.isNotBlank(attachment.getParsedContent())) {
-                sb.append(String.format("文件「%s」内容:\n%s\n\n",
-                        attachment.getFileName(), attachment.getParsedContent()));
-            }
-        }
-        return sb.toString();
+    private OllamaService.ModelTask resolveModelTask(ChatSendRequest request) {
+        return Boolean.TRUE.equals(request.getFast())
+                ? OllamaService.ModelTask.CHAT_FAST
+                : OllamaService.ModelTask.CHAT;
     }
 
     /**
-     * 构建历史消息上下文
+     * 第一条消息时用消息内容作为会话标题
+     * <p>
+     * 消息计数由 {@link ChatMessageJournal} 延迟累加，刷写前后续消息读到的计数仍为0，
+     * 因此按标题是否仍为默认标题做条件更新，只有第一条消息生效
+     * </p>
      */
-    private String buildHistoryContext(List<ChatMessage> history) {
-        if (history == null || history.isEmpty()) {
-            return "";
+    private void updateTitleIfFirstMessage(ChatSession session, String userMessage) {
+        if (!ChatSession.DEFAULT_TITLE.equals(session.getTitle())
+                || (session.getMessageCount() != null && session.getMessageCount() > 0)) {
+            return;
         }
-
-        // 按时间正序排列
-        List<ChatMessage> sorted = new ArrayList<>(history);
-        Collections.reverse(sorted);
-
-        StringBuilder sb = new StringBuilder();
-        sb.append("【历史对话】\n");
-
-        for (ChatMessage msg : sorted) {
-            String role = ChatMessage.ROLE_USER.equals(msg.getRole()) ? "用户" : "助手";
-            String content = msg.getContent();
-            if (content.length() > 500) {
-                content = content.substring(0, 500) + "...";
-            }
-            sb.append(role).append(": ").append(content).append("\n");
+        String title = userMessage.length() > 30 ? userMessage.substring(0, 30) + "..." : userMessage;
+        if (baseMapper.updateTitleIfDefault(session.getId(), title, ChatSession.DEFAULT_TITLE) > 0) {
+            session.setTitle(title);
         }
-
-        return sb.toString();
     }
 
     /**
@@ -739,7 +995,7 @@ public class ChatServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession>
         BeanUtils.copyProperties(message, vo);
 
         // 转换附件
-        if (attachments != null && attachments.isEmpty()) {
+        if (attachments != null && !attachments.isEmpty()) {
             vo.setAttachments(attachments.stream()
                     .map(this::convertToAttachmentVO)
                     .toList());
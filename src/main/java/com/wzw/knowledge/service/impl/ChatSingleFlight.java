@@ -0,0 +1,235 @@
+package com.wzw.knowledge.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.wzw.knowledge.config.ChatSingleFlightConfig;
+import com.wzw.knowledge.model.vo.RagDocument;
+import com.wzw.knowledge.model.vo.RagNode;
+import com.wzw.knowledge.service.ChatService;
+import com.wzw.knowledge.service.OllamaService;
+import com.wzw.knowledge.service.RagService;
+import com.wzw.knowledge.util.SingleFlight;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.util.Deque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * 对话请求合并器
+ * <p>
+ * 公告发布后大量用户会在几秒内提出同一个问题，每个请求各自检索、各自调用模型会成倍占用算力：
+ * - 检索按 规范化问题 + topK 合并，同一时间只检索一次
+ * - 模型生成按 规范化问题 + 检索指纹 + 会话上下文 + 模型档位 合并，
+ *   后到的请求订阅正在进行的生成流，从头回放已输出的内容
+ * - 只合并进行中的请求，生成结束后立即移除，不缓存回答
+ * - 每个订阅者可独立断开，所有订阅者都离开后才取消上游生成
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class ChatSingleFlight {
+
+    /**
+     * 问题末尾不影响语义的标点
+     */
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\s?？!！.。~～]+$");
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final ChatSingleFlightConfig config;
+
+    private final SingleFlight<String, RagService.RagResult> retrievals = new SingleFlight<>();
+    private final SingleFlight<String, String> generations = new SingleFlight<>();
+
+    /**
+     * 进行中的生成流（合并键 -> 共享流）
+     */
+    private final Map<String, Flux<String>> streams = new ConcurrentHashMap<>();
+
+    private final LongAdder streamGenerations = new LongAdder();
+    private final LongAdder sharedStreams = new LongAdder();
+
+    /**
+     * 时间窗口内的模型调用时间戳和生成请求时间戳（纳秒）
+     */
+    private final Deque<Long> recentModelCalls = new ConcurrentLinkedDeque<>();
+    private final Deque<Long> recentRequests = new ConcurrentLinkedDeque<>();
+
+    public ChatSingleFlight(ChatSingleFlightConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 检索，相同问题的并发检索只执行一次
+     *
+     * @param question 用户问题
+     * @param topK     返回数量
+     * @param loader   检索函数
+     * @return 检索结果
+     */
+    public RagService.RagResult search(String question, int topK, Supplier<RagService.RagResult> loader) {
+        if (!Boolean.TRUE.equals(config.getEnabled())) {
+            return loader.get();
+        }
+        return retrievals.execute(normalize(question) + "|" + topK, loader);
+    }
+
+    /**
+     * 非流式生成，相同请求的并发生成只调用一次模型
+     *
+     * @param key       合并键，见 {@link #generationKey}
+     * @param generator 生成函数
+     * @return 模型输出
+     */
+    public String generate(String key, Supplier<String> generator) {
+        record(recentRequests);
+        if (!Boolean.TRUE.equals(config.getEnabled())) {
+            record(recentModelCalls);
+            return generator.get();
+        }
+        return generations.execute(key, () -> {
+            record(recentModelCalls);
+            return generator.get();
+        });
+    }
+
+    /**
+     * 流式生成，相同请求订阅同一个进行中的生成流
+     * <p>
+     * 返回的流是冷的：订阅时才开始或加入生成，后加入的订阅者先收到已输出的全部片段
+     * </p>
+     *
+     * @param key       合并键，见 {@link #generationKey}
+     * @param generator 生成流
+     * @return 共享的生成流
+     */
+    public Flux<String> generateStream(String key, Supplier<Flux<String>> generator) {
+        if (!Boolean.TRUE.equals(config.getEnabled())) {
+            return Flux.defer(() -> {
+                record(recentRequests);
+                record(recentModelCalls);
+                streamGenerations.increment();
+                return generator.get();
+            });
+        }
+        return Flux.defer(() -> {
+            record(recentRequests);
+            AtomicBoolean created = new AtomicBoolean();
+            Flux<String> shared = streams.computeIfAbsent(key, k -> {
+                created.set(true);
+                return share(k, generator);
+            });
+            if (!created.get()) {
+                sharedStreams.increment();
+                log.debug("合并进行中的生成, key={}", key);
+            }
+            return shared;
+        });
+    }
+
+    /**
+     * 构建共享流：全部订阅者离开或生成结束时从进行中列表移除
+     */
+    private Flux<String> share(String key, Supplier<Flux<String>> generator) {
+        AtomicReference<Flux<String>> self = new AtomicReference<>();
+        Flux<String> shared = Flux.defer(generator)
+                .doOnSubscribe(subscription -> {
+                    record(recentModelCalls);
+                    streamGenerations.increment();
+                })
+                .doFinally(signal -> streams.remove(key, self.get()))
+                .replay()
+                .refCount(1);
+        self.set(shared);
+        return shared;
+    }
+
+    /**
+     * 生成合并键
+     * <p>
+     * 问题经过规范化；检索指纹由命中的分块ID和节点ID组成，知识库更新后自然得到不同的键；
+     * 会话上下文（历史摘要、附件片段）参与计算，只有提示词等价的请求才会合并
+     * </p>
+     *
+     * @param question       用户问题
+     * @param ragResult      检索结果（未启用RAG时为null）
+     * @param sessionContext 会话相关的提示词部分
+     * @param task           模型档位
+     * @return 合并键
+     */
+    public static String generationKey(String question, RagService.RagResult ragResult,
+                                       String sessionContext, OllamaService.ModelTask task) {
+        StringBuilder fingerprint = new StringBuilder();
+        if (ragResult != null) {
+            fingerprint.append("d:");
+            for (RagDocument doc : ragResult.documents()) {
+                fingerprint.append(doc.getChunkId() != null ? doc.getChunkId() : doc.getId()).append(',');
+            }
+            fingerprint.append("n:");
+            for (RagNode node : ragResult.nodes()) {
+                fingerprint.append(node.getId()).append(',');
+            }
+        }
+        String context = StrUtil.isBlank(sessionContext) ? "" : DigestUtil.sha256Hex(sessionContext);
+        return DigestUtil.sha256Hex(task + "|" + normalize(question) + "|" + fingerprint + "|" + context);
+    }
+
+    /**
+     * 规范化问题：去掉首尾空白和末尾标点，合并连续空白，统一大小写
+     */
+    static String normalize(String question) {
+        if (question == null) {
+            return "";
+        }
+        String normalized = TRAILING_PUNCTUATION.matcher(question.trim()).replaceAll("");
+        return WHITESPACE.matcher(normalized).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 获取请求合并统计
+     */
+    public ChatService.SingleFlightStats getStats() {
+        return new ChatService.SingleFlightStats(
+                retrievals.getInFlight() + generations.getInFlight() + streams.size(),
+                retrievals.getExecutedCount(),
+                retrievals.getSharedCount(),
+                generations.getExecutedCount() + streamGenerations.sum(),
+                generations.getSharedCount() + sharedStreams.sum(),
+                countRecent(recentRequests),
+                countRecent(recentModelCalls)
+        );
+    }
+
+    private void record(Deque<Long> timestamps) {
+        long now = System.nanoTime();
+        timestamps.addLast(now);
+        prune(timestamps, now);
+    }
+
+    private int countRecent(Deque<Long> timestamps) {
+        prune(timestamps, System.nanoTime());
+        return timestamps.size();
+    }
+
+    private void prune(Deque<Long> timestamps, long now) {
+        long windowNanos = TimeUnit.MILLISECONDS.toNanos(config.getRateWindow());
+        Long oldest;
+        while ((oldest = timestamps.peekFirst()) != null && now - oldest > windowNanos) {
+            timestamps.remove(oldest);
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.config.ChatStreamConfig;
+import com.wzw.knowledge.service.ChatService;
+import com.wzw.knowledge.util.SseFrameWriter;
+import com.wzw.knowledge.util.StreamLimiter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 流式对话管理器
+ * <p>
+ * 负责流式对话的准入控制、断线取消和断点续传：
+ * - 每个流按 assistantMessageId 注册一个通道，事件带递增ID并写入有界回放缓冲
+ * - 客户端断开后（超过 cancel-grace）立即取消上游生成，不再浪费模型算力
+ * - 客户端携带 Last-Event-ID 重连时，从缓冲中回放缺失的事件并继续接收
+ * - 流结束后缓冲保留 replay-ttl 毫秒，供刚断开的客户端补齐结果
+ * - 模型输出的token按 flush-interval / flush-bytes 合并成帧发送，减少序列化和flush次数
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class ChatStreamManager {
+
+    private final ChatStreamConfig config;
+
+    /**
+     * 流式对话并发限制器
+     */
+    private final StreamLimiter limiter;
+
+    /**
+     * 流通道（assistantMessageId -> 通道）
+     */
+    private final Map<Long, StreamChannel> channels = new ConcurrentHashMap<>();
+
+    /**
+     * 延迟取消和过期清理
+     */
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "chat-stream-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongAdder completedStreams = new LongAdder();
+    private final LongAdder abandonedStreams = new LongAdder();
+    private final LongAdder cancelledGenerations = new LongAdder();
+    private final LongAdder resumedStreams = new LongAdder();
+    private final LongAdder eventsAfterDisconnect = new LongAdder();
+    private final LongAdder wastedGenerationMs = new LongAdder();
+    private final LongAdder tokensStreamed = new LongAdder();
+    private final LongAdder chunkFrames = new LongAdder();
+
+    public ChatStreamManager(ChatStreamConfig config) {
+        this.config = config;
+        this.limiter = new StreamLimiter(config.getMaxConcurrent(), config.getMaxQueued());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    public StreamLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * 打开流通道并绑定当前连接
+     *
+     * @param streamId 流ID（assistantMessageId）
+     * @param emitter  当前连接
+     * @return 流通道
+     */
+    public StreamChannel open(Long streamId, SseEmitter emitter) {
+        StreamChannel channel = new StreamChannel(streamId);
+        channels.put(streamId, channel);
+        channel.attach(emitter, 0);
+        return channel;
+    }
+
+    /**
+     * 断线重连，回放 lastEventId 之后的事件
+     *
+     * @param streamId    流ID（assistantMessageId）
+     * @param lastEventId 客户端最后收到的事件ID
+     * @return SSE连接
+     */
+    public SseEmitter resume(Long streamId, long lastEventId) {
+        SseEmitter emitter = new SseEmitter(config.getTimeout());
+        resume(streamId, lastEventId, emitter);
+        return emitter;
+    }
+
+    void resume(Long streamId, long lastEventId, SseEmitter emitter) {
+        StreamChannel channel = channels.get(streamId);
+        if (channel == null) {
+            // 流不存在或缓冲已过期，客户端应重新加载消息历史
+            sendQuietly(emitter, 0, "{\"type\":\"expired\",\"assistantMessageId\":\"" + streamId + "\"}");
+            emitter.complete();
+            return;
+        }
+        resumedStreams.increment();
+        log.info("流式对话重连, streamId={}, lastEventId={}", streamId, lastEventId);
+        channel.attach(emitter, lastEventId);
+    }
+
+    /**
+     * 获取流式对话统计
+     */
+    public ChatService.StreamStats getStats() {
+        return new ChatService.StreamStats(
+                limiter.getActive(),
+                limiter.getQueued(),
+                limiter.getAdmittedCount(),
+                limiter.getRejectedCount(),
+                channels.size(),
+                completedStreams.sum(),
+                abandonedStreams.sum(),
+                cancelledGenerations.sum(),
+                resumedStreams.sum(),
+                eventsAfterDisconnect.sum(),
+                wastedGenerationMs.sum(),
+                tokensStreamed.sum(),
+                chunkFrames.sum()
+        );
+    }
+
+    private static boolean sendQuietly(SseEmitter emitter, long id, String data) {
+        try {
+            SseEmitter.SseEventBuilder event = SseEmitter.event().name("message").data(data);
+            if (id > 0) {
+                event.id(String.valueOf(id));
+            }
+            emitter.send(event);
+            return true;
+        } catch (Exception e) {
+            log.debug("发送SSE消息失败: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 回放缓冲中的事件
+     */
+    private record Frame(long id, String data) {
+    }
+
+    /**
+     * 流通道
+     * <p>
+     * 生产者（虚拟线程）通过 publish 写入事件，连接的绑定/断开来自容器回调，所有状态变更在通道锁内完成。
+     * 发送会阻塞在慢连接的socket写入上，通道锁使用 ReentrantLock 而不是 synchronized：
+     * 虚拟线程在 synchronized 块内阻塞会钉住载体线程，一个慢客户端就会拖住其他所有流
+     * </p>
+     */
+    public final class StreamChannel {
+
+        private final Long streamId;
+        private final Deque<Frame> frames = new ArrayDeque<>();
+        private final Sinks.One<Boolean> cancelSink = Sinks.one();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final SseFrameWriter frameWriter = new SseFrameWriter(config.getFlushInterval(), config.getFlushBytes());
+        private ScheduledFuture<?> pendingFlush;
+
+        private long lastEventId;
+        private SseEmitter emitter;
+        private boolean closed;
+        private volatile boolean cancelled;
+
+        /**
+         * 客户端断开的时间（纳秒），0 表示当前有连接
+         */
+        private long detachedAt;
+        private long eventsWhileDetached;
+        private ScheduledFuture<?> pendingCancel;
+
+        private StreamChannel(Long streamId) {
+            this.streamId = streamId;
+        }
+
+        /**
+         * 取消信号，客户端断开后发出，用于终止上游生成
+         */
+        public Mono<Boolean> cancelSignal() {
+            return cancelSink.asMono();
+        }
+
+        /**
+         * 上游生成是否因客户端断开被取消
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * 发布一段模型输出，与相邻的输出合并成一个chunk事件
+         *
+         * @param token 模型输出片段
+         */
+        public void publishChunk(String token) {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                tokensStreamed.increment();
+                if (frameWriter.append(token)) {
+                    flushChunks();
+                } else if (pendingFlush == null) {
+                    // 时间窗口结束时在虚拟线程上输出，避免慢连接阻塞调度线程
+                    pendingFlush = scheduler.schedule(() -> Thread.startVirtualThread(this::flushChunks),
+                            frameWriter.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 发布一个事件（先输出已合并的chunk以保持顺序）
+         *
+         * @param data 事件数据（JSON）
+         */
+        public void publish(String data) {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                flushChunks();
+                publishFrame(data);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 输出已合并的chunk
+         */
+        private void flushChunks() {
+            lock.lock();
+            try {
+                if (pendingFlush != null) {
+                    pendingFlush.cancel(false);
+                    pendingFlush = null;
+                }
+                String frame = frameWriter.drain();
+                if (frame != null && !closed) {
+                    chunkFrames.increment();
+                    publishFrame(frame);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 写入回放缓冲并发送给当前连接
+         */
+        private void publishFrame(String data) {
+            long id = ++lastEventId;
+            frames.addLast(new Frame(id, data));
+            if (frames.size() > config.getReplayBufferSize()) {
+                frames.removeFirst();
+            }
+            if (emitter == null) {
+                eventsWhileDetached++;
+                return;
+            }
+            SseEmitter current = emitter;
+            if (!sendQuietly(current, id, data)) {
+                detach(current);
+            }
+        }
+
+        /**
+         * 结束通道（正常完成、出错或被取消后由生产者调用，可重复调用）
+         */
+        public void close() {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                flushChunks();
+                closed = true;
+                if (pendingCancel != null) {
+                    pendingCancel.cancel(false);
+                }
+
+                if (emitter != null) {
+                    completedStreams.increment();
+                    SseEmitter current = emitter;
+                    emitter = null;
+                    current.complete();
+                } else {
+                    // 客户端断开后模型继续生成的时间即为浪费的算力
+                    long wastedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - detachedAt);
+                    abandonedStreams.increment();
+                    wastedGenerationMs.add(wastedMs);
+                    eventsAfterDisconnect.add(eventsWhileDetached);
+                    log.info("流式对话已被放弃, streamId={}, cancelled={}, wastedMs={}, eventsAfterDisconnect={}",
+                            streamId, cancelled, wastedMs, eventsWhileDetached);
+                }
+
+                // 结束后保留一段时间的回放缓冲
+                scheduler.schedule(() -> channels.remove(streamId, this), config.getReplayTtl(), TimeUnit.MILLISECONDS);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 绑定连接并回放 afterEventId 之后的事件
+         */
+        private void attach(SseEmitter newEmitter, long afterEventId) {
+            lock.lock();
+            try {
+                newEmitter.onTimeout(() -> {
+                    log.warn("SSE连接超时, streamId={}", streamId);
+                    detach(newEmitter);
+                    newEmitter.complete();
+                });
+                newEmitter.onError(error -> {
+                    log.warn("SSE连接错误, streamId={}, error={}", streamId, error.getMessage());
+                    detach(newEmitter);
+                });
+                newEmitter.onCompletion(() -> detach(newEmitter));
+
+                // 请求的事件已被淘汰出缓冲，无法补齐
+                if (!frames.isEmpty() && afterEventId + 1 < frames.peekFirst().id()) {
+                    sendQuietly(newEmitter, 0, "{\"type\":\"expired\",\"assistantMessageId\":\"" + streamId + "\"}");
+                    newEmitter.complete();
+                    return;
+                }
+                for (Frame frame : frames) {
+                    if (frame.id() > afterEventId && !sendQuietly(newEmitter, frame.id(), frame.data())) {
+                        return;
+                    }
+                }
+
+                if (closed) {
+                    newEmitter.complete();
+                    return;
+                }
+
+                // 新连接替换旧连接
+                SseEmitter previous = emitter;
+                emitter = newEmitter;
+                detachedAt = 0;
+                eventsWhileDetached = 0;
+                if (pendingCancel != null) {
+                    pendingCancel.cancel(false);
+                    pendingCancel = null;
+                }
+                if (previous != null && previous != newEmitter) {
+                    previous.complete();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 连接断开，超过宽限时间后取消上游生成
+         */
+        private void detach(SseEmitter oldEmitter) {
+            lock.lock();
+            try {
+                if (emitter != oldEmitter) {
+                    return;
+                }
+                emitter = null;
+                if (closed) {
+                    return;
+                }
+                detachedAt = System.nanoTime();
+                if (config.getCancelGrace() <= 0) {
+                    cancelIfDetached();
+                } else {
+                    pendingCancel = scheduler.schedule(this::cancelIfDetached, config.getCancelGrace(), TimeUnit.MILLISECONDS);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void cancelIfDetached() {
+            lock.lock();
+            try {
+                if (emitter != null || closed || cancelled) {
+                    return;
+                }
+                cancelled = true;
+                cancelledGenerations.increment();
+                cancelSink.tryEmitValue(true);
+                log.info("客户端已断开，取消上游生成, streamId={}", streamId);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.wzw.knowledge.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import com.wzw.knowledge.config.RagCompressionConfig;
+import com.wzw.knowledge.service.RagService;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 上下文压缩器
+ * <p>
+ * 按问题筛选Parent块中的句子，只删除不改写：
+ * 1. 按句末标点和换行切分句子（小数点、列表序号不切分）
+ * 2. 按查询词项打分（块内IDF加权，词项切分与 {@link LexicalReranker} 一致）
+ * 3. 保留得分最高的句子及其相邻句子，补上所在章节的标题和表格的表头
+ * 4. 召回校验：原文中出现的每个查询词项，压缩后仍至少出现一次，否则补回包含它的最高分句子
+ * 5. 按原文顺序原样拼接，被删除的部分用省略号标记
+ * 没有任何句子与问题相关或压缩收益很小时返回原文
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Service
+public class ContextCompressor {
+
+    /**
+     * 省略标记
+     */
+    static final String GAP = "……";
+
+    /**
+     * 压缩后仍超过原文该比例时直接使用原文
+     */
+    private static final double MIN_SAVING = 0.9;
+
+    private final RagCompressionConfig config;
+
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder originalChars = new LongAdder();
+    private final LongAdder compressedChars = new LongAdder();
+
+    public ContextCompressor(RagCompressionConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 按问题压缩内容
+     *
+     * @param query   用户问题
+     * @param content 原文（Parent块内容）
+     * @return 压缩后的内容（不压缩时为原文）
+     */
+    public String compress(String query, String content) {
+        if (content == null) {
+            return null;
+        }
+        chunks.increment();
+        originalChars.add(content.length());
+        String result = doCompress(query, content);
+        compressedChars.add(result.length());
+        if (result.length() < content.length()) {
+            compressed.increment();
+        }
+        return result;
+    }
+
+    /**
+     * 获取压缩统计
+     */
+    public RagService.CompressionStats getStats() {
+        long original = originalChars.sum();
+        long after = compressedChars.sum();
+        return new RagService.CompressionStats(
+                chunks.sum(),
+                compressed.sum(),
+                original,
+                after,
+                original == 0 ? 1 : (double) after / original
+        );
+    }
+
+    private String doCompress(String query, String content) {
+        if (!Boolean.TRUE.equals(config.getEnabled()) || content.length() < config.getMinChars()) {
+            return content;
+        }
+        List<String> sentences = splitSentences(content);
+        int n = sentences.size();
+        if (n <= config.getMinSentences()) {
+            return content;
+        }
+        List<String> queryTerms = List.copyOf(new LinkedHashSet<>(LexicalReranker.tokenize(query)));
+        if (queryTerms.isEmpty()) {
+            return content;
+        }
+
+        // 句子打分：块内IDF加权的查询词项覆盖
+        List<Set<String>> sentenceTerms = new ArrayList<>(n);
+        Map<String, Integer> documentFrequency = new HashMap<>();
+        for (String sentence : sentences) {
+            Set<String> terms = new HashSet<>(LexicalReranker.tokenize(sentence));
+            sentenceTerms.add(terms);
+            for (String term : queryTerms) {
+                if (terms.contains(term)) {
+                    documentFrequency.merge(term, 1, Integer::sum);
+                }
+            }
+        }
+        if (documentFrequency.isEmpty()) {
+            return content;
+        }
+        double[] scores = new double[n];
+        for (int i = 0; i < n; i++) {
+            for (String term : queryTerms) {
+                Integer df = documentFrequency.get(term);
+                if (df != null && sentenceTerms.get(i).contains(term)) {
+                    scores[i] += Math.log(1 + (n - df + 0.5) / (df + 0.5));
+                }
+            }
+        }
+
+        // 取得分最高的句子
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+        int keep = Math.max(config.getMinSentences(), (int) Math.ceil(n * config.getKeepRatio()));
+        boolean[] kept = new boolean[n];
+        for (int i = 0; i < keep && scores[order[i]] > 0; i++) {
+            kept[order[i]] = true;
+        }
+
+        // 召回校验：原文出现过的查询词项压缩后都要保留
+        for (String term : documentFrequency.keySet()) {
+            boolean covered = false;
+            for (int i = 0; i < n && !covered; i++) {
+                covered = kept[i] && sentenceTerms.get(i).contains(term);
+            }
+            if (!covered) {
+                for (Integer index : order) {
+                    if (sentenceTerms.get(index).contains(term)) {
+                        kept[index] = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        // 相邻句子、章节标题、表头
+        boolean[] selected = kept.clone();
+        for (int i = 0; i < n; i++) {
+            if (!kept[i]) {
+                continue;
+            }
+            for (int j = Math.max(0, i - config.getNeighbours()); j <= Math.min(n - 1, i + config.getNeighbours()); j++) {
+                selected[j] = true;
+            }
+            for (int j = i - 1; j >= 0; j--) {
+                if (isHeading(sentences.get(j))) {
+                    selected[j] = true;
+                    break;
+                }
+            }
+            if (isTableRow(sentences.get(i))) {
+                int start = i;
+                while (start > 0 && isTableRow(sentences.get(start - 1))) {
+                    start--;
+                }
+                selected[start] = true;
+                if (start + 1 < n && isTableRow(sentences.get(start + 1))) {
+                    selected[start + 1] = true;
+                }
+            }
+        }
+
+        StringBuilder result = new StringBuilder();
+        boolean gap = false;
+        for (int i = 0; i < n; i++) {
+            if (!selected[i]) {
+                gap = true;
+                continue;
+            }
+            if (gap) {
+                result.append(GAP);
+                if (sentences.get(i - 1).endsWith("\n")) {
+                    result.append('\n');
+                }
+                gap = false;
+            }
+            result.append(sentences.get(i));
+        }
+        if (gap) {
+            result.append(GAP);
+        }
+        return result.length() >= content.length() * MIN_SAVING ? content : result.toString();
+    }
+
+    /**
+     * 切分句子：句末标点（含其后的引号、括号）或换行处切分，
+     * 英文句点只在其后是空白且前面不是数字时切分（避免切开小数和列表序号）。
+     * 句子保留原有的标点和换行，按顺序拼接即为原文
+     */
+    static List<String> splitSentences(String content) {
+        List<String> sentences = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int length = content.length();
+        for (int i = 0; i < length; i++) {
+            char c = content.charAt(i);
+            current.append(c);
+            boolean end = switch (c) {
+                case '。', '！', '？', '；', '!', '?', ';', '\n' -> true;
+                case '.' -> i + 1 < length && Character.isWhitespace(content.charAt(i + 1))
+                        && i > 0 && !Character.isDigit(content.charAt(i - 1));
+                default -> false;
+            };
+            if (!end) {
+                continue;
+            }
+            // 句末的引号、括号和换行归入当前句
+            while (i + 1 < length && "”’」』）)\n".indexOf(content.charAt(i + 1)) >= 0) {
+                current.append(content.charAt(++i));
+            }
+            flush(current, sentences);
+        }
+        flush(current, sentences);
+        return sentences;
+    }
+
+    private static void flush(StringBuilder current, List<String> sentences) {
+        if (current.isEmpty()) {
+            return;
+        }
+        // 只有空白的片段并入前一句
+        if (StrUtil.isBlank(current) && !sentences.isEmpty()) {
+            int last = sentences.size() - 1;
+            sentences.set(last, sentences.get(last) + current);
+        } else {
+            sentences.add(current.toString());
+        }
+        current.setLength(0);
+    }
+
+    private static boolean isHeading(String sentence) {
+        return sentence.stripLeading().startsWith("#");
+    }
+
+    private static boolean isTableRow(String sentence) {
+        return sentence.stripLeading().startsWith("|");
+    }
+}
@@ -0,0 +1,208 @@
+package com.wzw.knowledge.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import com.wzw.knowledge.config.ChatMemoryConfig;
+import com.wzw.knowledge.mapper.ChatMessageMapper;
+import com.wzw.knowledge.mapper.ChatSessionMapper;
+import com.wzw.knowledge.model.entity.ChatMessage;
+import com.wzw.knowledge.model.entity.ChatSession;
+import com.wzw.knowledge.service.ConversationMemoryService;
+import com.wzw.knowledge.service.OllamaService;
+import com.wzw.knowledge.util.TokenEstimator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 对话记忆服务实现类
+ * <p>
+ * 会话表上保存滚动摘要和摘要位置（已合并的最后一条消息ID）：
+ * - 拼装提示词：摘要 + 摘要位置之后的最近消息，从新到旧放入，超出 history-token-budget 即停止，消息不截断
+ * - 每轮结束后异步合并：最近 recent-turns 轮之外、尚未合并的消息交给模型与旧摘要合并成新摘要
+ * 历史上下文的token数因此有上限，早期对话以摘要形式保留而不是被截断
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ConversationMemoryServiceImpl implements ConversationMemoryService {
+
+    /**
+     * 单次合并最多读取的消息数
+     */
+    private static final int FOLD_BATCH = 20;
+
+    private final ChatSessionMapper sessionMapper;
+    private final ChatMessageMapper messageMapper;
+    private final ChatMessageJournal messageJournal;
+    private final OllamaService ollamaService;
+    private final ChatMemoryConfig config;
+
+    /**
+     * 正在合并摘要的会话
+     */
+    private final Set<Long> compacting = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 构建历史上下文
+     */
+    @Override
+    public String buildHistoryContext(ChatSession session) {
+        Long sessionId = session.getId();
+        messageJournal.flush(sessionId);
+
+        String summary = session.getSummary();
+        int used = TokenEstimator.estimate(summary);
+        int budget = config.getHistoryTokenBudget();
+
+        // 摘要位置之后的消息：最近窗口加上尚未来得及合并的消息
+        long summarizedId = session.getSummarizedMessageId() != null ? session.getSummarizedMessageId() : 0L;
+        List<ChatMessage> recent = messageMapper.selectRecentAfter(sessionId, summarizedId,
+                config.getRecentTurns() * 2 + FOLD_BATCH);
+
+        // 从新到旧放入，整条消息放不下即停止
+        Deque<String> lines = new ArrayDeque<>();
+        for (ChatMessage msg : recent) {
+            String line = formatMessage(msg);
+            int tokens = TokenEstimator.estimate(line);
+            if (used + tokens > budget) {
+                break;
+            }
+            lines.addFirst(line);
+            used += tokens;
+        }
+
+        if (StrUtil.isBlank(summary) && lines.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        if (StrUtil.isNotBlank(summary)) {
+            sb.append("【对话摘要】\n").append(summary).append("\n\n");
+        }
+        if (!lines.isEmpty()) {
+            sb.append("【历史对话】\n");
+            lines.forEach(sb::append);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 合并会话摘要
+     */
+    @Override
+    public boolean compact(Long sessionId) {
+        if (!compacting.add(sessionId)) {
+            return false;
+        }
+        try {
+            messageJournal.flush(sessionId);
+            ChatSession session = sessionMapper.selectById(sessionId);
+            if (session == null) {
+                return false;
+            }
+
+            long summarizedId = session.getSummarizedMessageId() != null ? session.getSummarizedMessageId() : 0L;
+            int keep = config.getRecentTurns() * 2;
+            List<ChatMessage> pending = messageMapper.selectAfter(sessionId, summarizedId, keep + FOLD_BATCH);
+            List<ChatMessage> fold = selectFold(pending, keep);
+            if (fold.isEmpty()) {
+                return false;
+            }
+
+            String summary = summarize(session.getSummary(), fold);
+            if (StrUtil.isBlank(summary)) {
+                return false;
+            }
+            Long lastFoldedId = fold.get(fold.size() - 1).getId();
+            boolean updated = sessionMapper.updateSummary(sessionId, summary, lastFoldedId, summarizedId) > 0;
+            log.info("会话摘要已更新, sessionId={}, foldedMessages={}, summarizedMessageId={}, summaryTokens={}",
+                    sessionId, fold.size(), lastFoldedId, TokenEstimator.estimate(summary));
+            return updated;
+        } catch (Exception e) {
+            log.warn("会话摘要合并失败, sessionId={}", sessionId, e);
+            return false;
+        } finally {
+            compacting.remove(sessionId);
+        }
+    }
+
+    /**
+     * 异步合并会话摘要
+     */
+    @Async
+    @Override
+    public void compactAsync(Long sessionId) {
+        compact(sessionId);
+    }
+
+    /**
+     * 选出本次要合并的消息：最近 keep 条之外的部分，不拆开一问一答，内容总量受 fold-token-budget 限制
+     */
+    private List<ChatMessage> selectFold(List<ChatMessage> pending, int keep) {
+        int end = pending.size() - keep;
+        if (end <= 0) {
+            return List.of();
+        }
+        // 最后一条是提问时留给下一次，与它的回答一起合并
+        if (ChatMessage.ROLE_USER.equals(pending.get(end - 1).getRole())) {
+            end--;
+        }
+
+        List<ChatMessage> fold = new ArrayList<>();
+        int tokens = 0;
+        for (int i = 0; i < end; i++) {
+            int messageTokens = TokenEstimator.estimate(pending.get(i).getContent());
+            if (!fold.isEmpty() && tokens + messageTokens > config.getFoldTokenBudget()) {
+                break;
+            }
+            fold.add(pending.get(i));
+            tokens += messageTokens;
+        }
+        return fold;
+    }
+
+    /**
+     * 调用模型把旧摘要和新对话合并为新摘要
+     */
+    private String summarize(String previousSummary, List<ChatMessage> fold) {
+        StringBuilder dialogue = new StringBuilder();
+        fold.forEach(msg -> dialogue.append(formatMessage(msg)));
+
+        String prompt = String.format("""
+                你是对话记忆整理助手。请把【已有摘要】和【新增对话】合并成一份新的对话摘要，供后续回答时参考。
+
+                要求：
+                1. 保留用户关心的问题、已确认的结论、关键数值及单位、文档名称和引用来源
+                2. 删除寒暄和重复内容，不要编造对话中没有的信息
+                3. 使用第三人称陈述，不超过%d字
+                4. 直接输出摘要正文，不要添加标题或说明
+
+                【已有摘要】
+                %s
+
+                【新增对话】
+                %s""",
+                config.getSummaryTokens(),
+                StrUtil.isNotBlank(previousSummary) ? previousSummary : "（无）",
+                dialogue);
+
+        String summary = ollamaService.chat(prompt, OllamaService.ModelTask.SUMMARY);
+        return summary != null ? summary.replaceAll("(?s)<think>.*?</think>", "").trim() : null;
+    }
+
+    private static String formatMessage(ChatMessage msg) {
+        String role = ChatMessage.ROLE_USER.equals(msg.getRole()) ? "用户" : "助手";
+        return role + ": " + StrUtil.nullToEmpty(msg.getContent()) + "\n";
+    }
+}
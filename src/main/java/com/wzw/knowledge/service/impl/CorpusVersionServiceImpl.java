@@ -0,0 +1,146 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.config.RagCacheConfig;
+import com.wzw.knowledge.mapper.CorpusVersionMapper;
+import com.wzw.knowledge.service.CorpusVersionService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 语料版本服务实现类
+ * <p>
+ * 版本号持久化在 kg_corpus_version 表中（只有一行），内存中缓存当前值，读取不访问数据库：
+ * - 事务中的变更推迟到提交后在独立短事务中加一，解析文档等长事务不持有这一行的锁，
+ *   同一事务内（一次解析抽取出的所有节点、关系）只加一次
+ * - 定时从数据库刷新，其他实例写入的变更同样使本机缓存失效
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class CorpusVersionServiceImpl implements CorpusVersionService {
+
+    private final CorpusVersionMapper corpusVersionMapper;
+    private final RagCacheConfig config;
+    private final TransactionTemplate requiresNew;
+
+    private final AtomicLong version = new AtomicLong();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "corpus-version-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CorpusVersionServiceImpl(CorpusVersionMapper corpusVersionMapper, RagCacheConfig config,
+                                    PlatformTransactionManager transactionManager) {
+        this.corpusVersionMapper = corpusVersionMapper;
+        this.config = config;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            corpusVersionMapper.init();
+            reload();
+            log.info("语料版本加载完成, version={}", version.get());
+        } catch (Exception e) {
+            log.warn("语料版本加载失败，使用初始版本0: {}", e.getMessage());
+        }
+        long interval = config.getVersionRefreshInterval();
+        if (interval > 0) {
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    reload();
+                } catch (Exception e) {
+                    log.debug("刷新语料版本失败: {}", e.getMessage());
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public long current() {
+        return version.get();
+    }
+
+    @Override
+    public void bump(String reason) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            increment(List.of(reason));
+            return;
+        }
+        // 同一事务内合并为一次，提交后执行
+        PendingBump pending = (PendingBump) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingBump();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            PendingBump registered = pending;
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment(registered.reasons);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CorpusVersionServiceImpl.this);
+                }
+            });
+        }
+        pending.reasons.add(reason);
+    }
+
+    /**
+     * 在独立的短事务中加一（提交后的回调中原事务的连接仍然绑定在线程上，不能直接执行）
+     */
+    private void increment(List<String> reasons) {
+        try {
+            requiresNew.executeWithoutResult(status -> corpusVersionMapper.increment());
+            reload();
+            log.info("语料版本已更新, version={}, changes={}, reason={}",
+                    version.get(), reasons.size(), reasons.get(0));
+        } catch (Exception e) {
+            // 提交已完成，版本更新失败只影响缓存时效，由定时刷新和缓存过期兜底
+            log.error("语料版本更新失败, reason={}", reasons.get(0), e);
+        }
+    }
+
+    private void reload() {
+        Long current = corpusVersionMapper.selectVersion();
+        if (current != null) {
+            version.accumulateAndGet(current, Math::max);
+        }
+    }
+
+    /**
+     * 事务内待执行的版本变更
+     */
+    private static final class PendingBump {
+        private final List<String> reasons = new ArrayList<>();
+    }
+}
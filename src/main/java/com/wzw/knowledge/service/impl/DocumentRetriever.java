@@ -0,0 +1,221 @@
+package com.wzw.knowledge.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import com.wzw.knowledge.config.RagRetrievalConfig;
+import com.wzw.knowledge.mapper.DocumentChunkMapper;
+import com.wzw.knowledge.mapper.DocumentMapper;
+import com.wzw.knowledge.model.entity.Document;
+import com.wzw.knowledge.model.entity.DocumentChunk;
+import com.wzw.knowledge.model.vo.RagDocument;
+import com.wzw.knowledge.service.DocumentVectorService;
+import com.wzw.knowledge.service.Retriever;
+import com.wzw.knowledge.service.VectorService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 文档检索器（父子索引 + 混合检索）
+ * <p>
+ * 流程：
+ * 1. 混合检索（BM25字面匹配 + 向量语义匹配 + RRF融合）搜索Child块
+ * 2. 通过parentId回溯Parent块
+ * 3. 用Parent块的完整内容构建RAG上下文
+ * 开启两阶段检索时，第1步之前先用文档级向量选出最相关的文档，混合检索只在这些文档的分块中进行；
+ * 没有选出文档（如文档级向量尚未补建）或分块过多时退回全库检索
+ * 回表固定为最多三次批量查询（Child块、Parent块、文档头），Parent块和文档头经过 {@link RagNearCache}
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DocumentRetriever implements Retriever {
+
+    public static final String NAME = "document";
+
+    /**
+     * 两阶段检索第一阶段的耗时统计键
+     */
+    static final String STAGE_ROUTE = "route";
+
+    private final VectorService vectorService;
+    private final DocumentChunkMapper documentChunkMapper;
+    private final DocumentMapper documentMapper;
+    private final RagNearCache nearCache;
+    private final DocumentVectorService documentVectorService;
+    private final RagRetrievalConfig retrievalConfig;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Contribution retrieve(QueryContext context) {
+        if (context.embedding() == null) {
+            return Contribution.empty();
+        }
+
+        Map<String, Long> timings = new LinkedHashMap<>();
+        List<Long> scope = null;
+        if (Boolean.TRUE.equals(retrievalConfig.getHierarchical())) {
+            long routeStart = System.nanoTime();
+            scope = route(context.embedding());
+            timings.put(STAGE_ROUTE, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - routeStart));
+        }
+
+        // 混合检索 - 搜索child类型（BM25 + 向量 + RRF融合）
+        long searchStart = System.nanoTime();
+        List<VectorService.VectorSearchResult> searchResults = scope == null
+                ? vectorService.hybridSearch(context.embedding(), context.normalizedText(), context.topK(), "child")
+                : vectorService.hybridSearch(context.embedding(), context.normalizedText(), context.topK(), "child", scope);
+        timings.put(STAGE_SEARCH, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - searchStart));
+
+        log.info("混合检索返回{}个Child块结果", searchResults.size());
+
+        long hydrationStart = System.nanoTime();
+        List<RagDocument> results = hydrate(searchResults, context.useCache());
+        timings.put(STAGE_HYDRATION, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - hydrationStart));
+
+        log.info("文档检索完成（父子索引+混合检索）, 返回{}个结果", results.size());
+        return Contribution.ofDocuments(results).withTimings(timings);
+    }
+
+    /**
+     * 两阶段检索第一阶段：按文档级向量选出文档，返回这些文档的分块ID作为第二阶段的检索范围
+     *
+     * @param queryVector 查询向量
+     * @return 分块ID（需要退回全库检索时为null）
+     */
+    private List<Long> route(float[] queryVector) {
+        List<Long> documentIds = documentVectorService.route(queryVector, retrievalConfig.getHierarchicalDocuments());
+        if (documentIds.isEmpty()) {
+            log.debug("两阶段检索未选出文档，退回全库检索");
+            return null;
+        }
+        int maxChunks = retrievalConfig.getHierarchicalMaxChunks();
+        List<Long> chunkIds = documentChunkMapper.selectIdsByDocumentIds(documentIds, maxChunks + 1);
+        if (chunkIds.isEmpty() || chunkIds.size() > maxChunks) {
+            log.debug("两阶段检索范围不可用（分块数={}），退回全库检索", chunkIds.size());
+            return null;
+        }
+        log.info("两阶段检索选出{}个文档, {}个分块", documentIds.size(), chunkIds.size());
+        return chunkIds;
+    }
+
+    /**
+     * 回表：Child块、Parent块、文档头信息各最多一次批量查询，Parent块和文档头优先从近端缓存读取
+     *
+     * @param searchResults 检索结果（按得分排序）
+     * @param useCache      是否使用近端缓存
+     * @return RAG文档（保持检索结果的顺序）
+     */
+    private List<RagDocument> hydrate(List<VectorService.VectorSearchResult> searchResults, boolean useCache) {
+        long start = System.nanoTime();
+        AtomicInteger queries = new AtomicInteger();
+
+        // 1. 批量查询Child分块信息
+        Set<Long> childIds = new LinkedHashSet<>();
+        for (VectorService.VectorSearchResult result : searchResults) {
+            if (result.id() != null) {
+                childIds.add(result.id());
+            }
+        }
+        Map<Long, DocumentChunk> children = new HashMap<>();
+        if (!childIds.isEmpty()) {
+            queries.incrementAndGet();
+            for (DocumentChunk chunk : documentChunkMapper.selectHitsByIds(childIds)) {
+                children.put(chunk.getId(), chunk);
+            }
+        }
+
+        // 通过parentId回溯Parent块，去重：同一个Parent只取一次（取最高分的Child对应的Parent）
+        Set<Long> seenParentIds = new HashSet<>();
+        List<Hit> hits = new ArrayList<>();
+        for (VectorService.VectorSearchResult result : searchResults) {
+            DocumentChunk childChunk = result.id() != null ? children.get(result.id()) : null;
+            if (childChunk == null) continue;
+
+            Long parentId = result.parentId();
+            if (parentId == null) {
+                parentId = childChunk.getParentId();
+            }
+            if (parentId != null && parentId > 0) {
+                if (!seenParentIds.add(parentId)) {
+                    continue;
+                }
+            } else {
+                parentId = null;
+            }
+            hits.add(new Hit(result, childChunk, parentId));
+        }
+
+        // 2. 批量获取Parent块 3. 批量获取所属文档
+        Map<Long, DocumentChunk> parents = nearCache.getParents(seenParentIds, ids -> {
+            queries.incrementAndGet();
+            return documentChunkMapper.selectParentsByIds(ids);
+        }, useCache);
+        Set<Long> documentIds = new LinkedHashSet<>();
+        hits.forEach(hit -> documentIds.add(hit.child().getDocumentId()));
+        Map<Long, Document> documents = nearCache.getDocuments(documentIds, ids -> {
+            queries.incrementAndGet();
+            return documentMapper.selectHeadersByIds(ids);
+        }, useCache);
+
+        List<RagDocument> results = new ArrayList<>();
+        for (Hit hit : hits) {
+            DocumentChunk childChunk = hit.child();
+            Document document = documents.get(childChunk.getDocumentId());
+            if (document == null) continue;
+
+            RagDocument ragDoc = new RagDocument();
+            ragDoc.setId(document.getId());
+            ragDoc.setChunkId(childChunk.getId());
+            ragDoc.setName(document.getName());
+            ragDoc.setFileType(document.getFileType());
+            ragDoc.setPageNum(childChunk.getPageNum());
+            ragDoc.setSummary(document.getSummary());
+            ragDoc.setScore((double) hit.result().score());
+            ragDoc.setSimilarity((double) hit.result().similarity());
+            ragDoc.setRelevance(ragDoc.getSimilarity());
+
+            // 关键：用Parent块的完整内容作为RAG上下文（"存大搜小"）
+            DocumentChunk parentChunk = hit.parentId() != null ? parents.get(hit.parentId()) : null;
+            if (parentChunk != null && StrUtil.isNotBlank(parentChunk.getContent())) {
+                ragDoc.setMatchedContent(parentChunk.getContent());
+                ragDoc.setParentChunkId(parentChunk.getId());
+                log.debug("父子索引回溯: childId={}, parentId={}, parentTitle={}, parentLen={}",
+                        childChunk.getId(), hit.parentId(),
+                        parentChunk.getSectionTitle(),
+                        parentChunk.getContent().length());
+            } else {
+                // 降级：使用Child块内容
+                ragDoc.setMatchedContent(childChunk.getContent());
+                log.debug("未找到Parent块，使用Child内容: childId={}", childChunk.getId());
+            }
+            results.add(ragDoc);
+        }
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        nearCache.recordHydration(elapsedMs, queries.get());
+        log.debug("回表完成, hits={}, queries={}, elapsed={}ms", results.size(), queries.get(), elapsedMs);
+        return results;
+    }
+
+    /**
+     * 待回表的命中
+     *
+     * @param result   检索结果
+     * @param child    Child块
+     * @param parentId Parent块ID（没有Parent时为null）
+     */
+    private record Hit(VectorService.VectorSearchResult result, DocumentChunk child, Long parentId) {
+    }
+}
@@ -4,8 +4,9 @@ import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.wzw.knowledge.common.CountMode;
+import com.wzw.knowledge.common.CursorPageResult;
 import com.wzw.knowledge.common.ResultCode;
 import com.wzw.knowledge.config.FileConfig;
 import com.wzw.knowledge.exception.BusinessException;
@@ -16,8 +17,10 @@ import com.wzw.knowledge.model.entity.Document;
 import com.wzw.knowledge.model.entity.DocumentChunk;
 import com.wzw.knowledge.model.entity.KnowledgeNode;
 import com.wzw.knowledge.model.vo.DocumentVO;
+import com.wzw.knowledge.model.vo.SummaryJobVO;
 import com.wzw.knowledge.service.*;
 import com.wzw.knowledge.util.DocumentParser;
+import com.wzw.knowledge.util.KeysetPager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -31,7 +34,9 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * 文档服务实现类
@@ -56,6 +61,12 @@ public class DocumentServiceImpl extends ServiceImpl<DocumentMapper, Document> i
     private final KnowledgeNodeService knowledgeNodeService;
     private final AsyncDocumentService asyncDocumentService;
     private final DocumentChunkMapper documentChunkMapper;
+    private final SummaryService summaryService;
+    private final CorpusVersionService corpusVersionService;
+    private final EntityMentionService entityMentionService;
+    private final LexicalIndexService lexicalIndexService;
+    private final DocumentVectorService documentVectorService;
+    private final RagNearCache ragNearCache;
 
     /**
      * 上传并解析文档
@@ -106,6 +117,8 @@ public class DocumentServiceImpl extends ServiceImpl<DocumentMapper, Document> i
         document.setStatus(Document.STATUS_PROCESSING);
         this.updateById(document);
 
+        List<DocumentChunk> indexedChunks = new ArrayList<>();
+        List<float[]> chunkVectors = new ArrayList<>();
         try {
             // 解析文档内容（带页码）
             DocumentParser.ParseResult parseResult = documentParser.parseWithPages(
@@ -141,8 +154,13 @@ public class DocumentServiceImpl extends ServiceImpl<DocumentMapper, Document> i
                 String vectorId = vectorService.insertVector(chunk.getId(), vector, "chunk");
                 chunk.setVectorId(vectorId);
                 documentChunkMapper.updateById(chunk);
+                indexedChunks.add(chunk);
+                chunkVectors.add(vector);
             }
 
+            // 文档级向量（两阶段检索的第一阶段）
+            documentVectorService.rebuild(document, chunkVectors);
+
             // 更新状态为已完成
             document.setStatus(Document.STATUS_COMPLETED);
             document.setErrorMsg(null);
@@ -156,6 +174,11 @@ public class DocumentServiceImpl extends ServiceImpl<DocumentMapper, Document> i
             document.setErrorMsg(e.getMessage());
         }
 
+        // 分块已被替换（或在失败时已删除），语料版本递增
+        lexicalIndexService.indexDocument(documentId, indexedChunks);
+        ragNearCache.invalidateDocument(documentId);
+        corpusVersionService.bump("parse document " + documentId);
+
         // 自动抽取知识并构建图谱
         try {
             KnowledgeExtractService.ExtractResult extractResult = knowledgeExtractService.extractFromDocument(document.getId(), document.getContent());
@@ -174,25 +197,18 @@ public class DocumentServiceImpl extends ServiceImpl<DocumentMapper, Document> i
      * 分页查询文档
      */
     @Override
-    public Page<DocumentVO> pageDocuments(Integer pageNum, Integer pageSize,
-                                          String keyword, String fileType, Integer status) {
-        // 构建查询条件
-        LambdaQueryWrapper<Document> wrapper = new LambdaQueryWrapper<>();
-        wrapper.like(StrUtil.isNotBlank(keyword), Document::getName, keyword)
-                .or()
-                .like(StrUtil.isNotBlank(keyword), Document::getOriginalName, keyword);
-        wrapper.eq(StrUtil.isNotBlank(fileType), Document::getFileType, fileType);
-        wrapper.eq(status != null, Document::getStatus, status);
-        wrapper.orderByDesc(Document::getCreateTime);
-
-        // 执行分页查询
-        Page<Document> page = this.page(new Page<>(pageNum, pageSize), wrapper);
-
-        // 转换为VO
-        Page<DocumentVO> voPage = new Page<>(page.getCurrent(), page.getSize(), page.getTotal());
-        voPage.setRecords(page.getRecords().stream().map(this::convertToVO).toList());
-
-        return voPage;
+    public CursorPageResult<DocumentVO> pageDocuments(String cursor, Integer size,
+                                                      String keyword, String fileType, Integer status,
+                                                      CountMode countMode) {
+        // 构建查询条件（关键词的两个条件用括号包起来，避免OR吞掉其他筛选条件）
+        Supplier<LambdaQueryWrapper<Document>> filter = () -> new LambdaQueryWrapper<Document>()
+                .and(StrUtil.isNotBlank(keyword), w -> w.like(Document::getName, keyword)
+                        .or()
+                        .like(Document::getOriginalName, keyword))
+                .eq(StrUtil.isNotBlank(fileType), Document::getFileType, fileType)
+                .eq(status != null, Document::getStatus, status);
+
+        return KeysetPager.page(baseMapper, filter, Document::getId, cursor, size, countMode, this::convertToVO);
     }
 
     /**
@@ -244,7 +260,11 @@ public class DocumentServiceImpl extends ServiceImpl<DocumentMapper, Document> i
             }
         }
         documentChunkMapper.deleteByDocumentId(id);
+        entityMentionService.removeDocument(id);
+        lexicalIndexService.removeDocument(id);
+        ragNearCache.invalidateDocument(id);
         log.info("删除文档分块完成, documentId={}, 分块数={}", id, chunks.size());
+        corpusVersionService.bump("delete document " + id);
 
         // 删除文件
         FileUtil.del(document.getFilePath());
@@ -265,8 +285,7 @@ public class DocumentServiceImpl extends ServiceImpl<DocumentMapper, Document> i
      * 生成文档摘要
      */
     @Override
-    @Transactional(rollbackFor = Exception.class)
-    public String generateSummary(Long id) {
+    public SummaryJobVO generateSummary(Long id) {
         Document document = this.getById(id);
         if (document == null) {
             throw new BusinessException(ResultCode.NOT_FOUND);
@@ -276,12 +295,20 @@ public class DocumentServiceImpl extends ServiceImpl<DocumentMapper, Document> i
             throw new BusinessException("文档内容为空，无法生成摘要");
         }
 
-        // 调用Ollama生成摘要
-        String summary = ollamaService.generateSummary(document.getContent());
-        document.setSummary(summary);
-        this.updateById(document);
+        // 已有进行中的任务时直接返回，避免重复调用大模型
+        SummaryJobVO job = summaryService.submitDocumentJob(id);
+        if (SummaryJobVO.STATUS_PENDING.equals(job.getStatus())) {
+            asyncDocumentService.asyncGenerateSummary(id);
+        }
+        return job;
+    }
 
-        return summary;
+    /**
+     * 获取文档摘要任务进度
+     */
+    @Override
+    public SummaryJobVO getSummaryProgress(Long id) {
+        return summaryService.getDocumentJob(id);
     }
 
     /**
@@ -0,0 +1,133 @@
+package com.wzw.knowledge.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import com.wzw.knowledge.mapper.DocumentChunkMapper;
+import com.wzw.knowledge.mapper.DocumentMapper;
+import com.wzw.knowledge.model.entity.Document;
+import com.wzw.knowledge.service.CorpusVersionService;
+import com.wzw.knowledge.service.DocumentVectorService;
+import com.wzw.knowledge.service.VectorService;
+import com.wzw.knowledge.util.VectorMath;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文档级向量服务实现类
+ * <p>
+ * 文档级向量取分块向量的质心再归一化：与余弦相似度配合时，相当于和文档所有分块的平均相似度，
+ * 不需要额外调用模型生成摘要向量，解析时顺带生成，历史文档可从Milvus中已有的分块向量补建
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DocumentVectorServiceImpl implements DocumentVectorService {
+
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * 补建时每个文档最多读取的分块向量数
+     */
+    private static final int MAX_CHUNKS = 10000;
+
+    private final VectorService vectorService;
+    private final DocumentMapper documentMapper;
+    private final DocumentChunkMapper documentChunkMapper;
+    private final CorpusVersionService corpusVersionService;
+
+    @Override
+    public String rebuild(Document document, List<float[]> chunkVectors) {
+        if (StrUtil.isNotBlank(document.getVectorId())) {
+            vectorService.deleteVector(document.getVectorId());
+            document.setVectorId(null);
+        }
+        float[] centroid = centroid(chunkVectors);
+        if (centroid == null) {
+            return null;
+        }
+        String vectorId = vectorService.insertVector(document.getId(), centroid, TYPE_DOCUMENT);
+        document.setVectorId(vectorId);
+        return vectorId;
+    }
+
+    @Override
+    public int backfill() {
+        int count = 0;
+        long afterId = 0;
+        List<Document> page;
+        do {
+            page = documentMapper.selectWithoutVector(afterId, BATCH_SIZE);
+            for (Document document : page) {
+                afterId = document.getId();
+                List<Long> chunkIds = documentChunkMapper.selectIdsByDocumentIds(List.of(document.getId()), MAX_CHUNKS);
+                List<float[]> vectors = new ArrayList<>(vectorService.getVectors(chunkIds, null).values());
+                if (rebuild(document, vectors) != null) {
+                    documentMapper.updateVectorId(document.getId(), document.getVectorId());
+                    count++;
+                } else {
+                    log.debug("文档没有分块向量，跳过: documentId={}", document.getId());
+                }
+            }
+        } while (page.size() == BATCH_SIZE);
+
+        if (count > 0) {
+            corpusVersionService.bump("backfill document vectors");
+        }
+        log.info("文档级向量补建完成, 文档数={}", count);
+        return count;
+    }
+
+    @Override
+    public List<Long> route(float[] queryVector, int topM) {
+        List<Long> documentIds = new ArrayList<>();
+        for (VectorService.VectorSearchResult result : vectorService.search(queryVector, topM, TYPE_DOCUMENT)) {
+            if (result.id() != null) {
+                documentIds.add(result.id());
+            }
+        }
+        return documentIds;
+    }
+
+    /**
+     * 计算向量的归一化质心
+     *
+     * @param vectors 向量（维度相同）
+     * @return 单位长度的质心（没有向量或质心为零向量时为null）
+     */
+    static float[] centroid(List<float[]> vectors) {
+        if (vectors == null || vectors.isEmpty()) {
+            return null;
+        }
+        double[] sum = new double[vectors.get(0).length];
+        for (float[] vector : vectors) {
+            // 先归一化，长文本分块的向量模长不会主导质心
+            double norm = VectorMath.norm(vector);
+            if (norm == 0 || vector.length != sum.length) {
+                continue;
+            }
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += vector[i] / norm;
+            }
+        }
+        double total = 0;
+        for (double value : sum) {
+            total += value * value;
+        }
+        if (total == 0) {
+            return null;
+        }
+        double norm = Math.sqrt(total);
+        float[] centroid = new float[sum.length];
+        for (int i = 0; i < sum.length; i++) {
+            centroid[i] = (float) (sum[i] / norm);
+        }
+        return centroid;
+    }
+}
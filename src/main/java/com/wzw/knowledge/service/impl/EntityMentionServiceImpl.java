@@ -0,0 +1,382 @@
+package com.wzw.knowledge.service.impl;
+
+import cn.hutool.core.collection.ListUtil;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.wzw.knowledge.mapper.DocumentChunkMapper;
+import com.wzw.knowledge.mapper.EntityMentionMapper;
+import com.wzw.knowledge.mapper.KnowledgeNodeMapper;
+import com.wzw.knowledge.model.entity.DocumentChunk;
+import com.wzw.knowledge.model.entity.EntityMention;
+import com.wzw.knowledge.model.entity.KnowledgeNode;
+import com.wzw.knowledge.service.EntityMentionService;
+import com.wzw.knowledge.util.TransactionHooks;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 实体提及索引服务实现类
+ * <p>
+ * 内存中每个节点的提及列表用基本类型数组紧凑存储（分块ID、文档ID、出现次数），
+ * 列表不可变，写入时整体替换，读取不加锁。
+ * 内存索引首次使用时从数据库加载，之后由本机的索引和删除操作在事务提交后更新。
+ * 实体名称按前两个字符分桶，识别实体时只需扫描一遍文本、逐个位置查桶，与名称总数无关
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EntityMentionServiceImpl implements EntityMentionService {
+
+    /**
+     * 参与索引的最短实体名称（单字名称误匹配过多）
+     */
+    private static final int MIN_NAME_LENGTH = 2;
+
+    /**
+     * 每个分块最多记录的出现位置数
+     */
+    private static final int MAX_OFFSETS = 16;
+
+    private static final int BATCH_SIZE = 500;
+
+    private final EntityMentionMapper mentionMapper;
+    private final DocumentChunkMapper documentChunkMapper;
+    private final KnowledgeNodeMapper nodeMapper;
+
+    /**
+     * 节点ID -> 提及列表
+     */
+    private final Map<Long, Postings> postings = new ConcurrentHashMap<>();
+
+    /**
+     * 实体名称 -> 节点ID（同名不同类型的节点有多个）
+     */
+    private final Map<String, long[]> nodeIdsByName = new ConcurrentHashMap<>();
+
+    /**
+     * 名称前缀（前 {@link #MIN_NAME_LENGTH} 个字符）-> 实体名称
+     */
+    private final Map<String, String[]> namesByPrefix = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded;
+
+    /**
+     * 节点的提及列表（按下标对应）
+     *
+     * @param chunkIds    分块ID
+     * @param documentIds 文档ID
+     * @param counts      出现次数
+     */
+    private record Postings(long[] chunkIds, long[] documentIds, int[] counts) {
+
+        int size() {
+            return chunkIds.length;
+        }
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int indexDocument(Long documentId, Map<String, Long> entities) {
+        List<DocumentChunk> chunks = documentChunkMapper.selectByDocumentId(documentId).stream()
+                .filter(chunk -> !DocumentChunk.TYPE_CHILD.equals(chunk.getChunkType()))
+                .filter(chunk -> StrUtil.isNotBlank(chunk.getContent()))
+                .toList();
+
+        List<EntityMention> mentions = new ArrayList<>();
+        for (Map.Entry<String, Long> entity : entities.entrySet()) {
+            String name = entity.getKey();
+            if (name == null || name.length() < MIN_NAME_LENGTH || entity.getValue() == null) {
+                continue;
+            }
+            for (DocumentChunk chunk : chunks) {
+                EntityMention mention = scan(name, chunk.getContent());
+                if (mention != null) {
+                    mention.setId(IdWorker.getId());
+                    mention.setNodeId(entity.getValue());
+                    mention.setDocumentId(documentId);
+                    mention.setChunkId(chunk.getId());
+                    mentions.add(mention);
+                }
+            }
+        }
+
+        mentionMapper.deleteByDocumentId(documentId);
+        for (List<EntityMention> batch : ListUtil.partition(mentions, BATCH_SIZE)) {
+            mentionMapper.insertBatch(batch);
+        }
+
+        TransactionHooks.afterCommit(() -> {
+            synchronized (this) {
+                if (loaded) {
+                    removeFromMemory(documentId);
+                    addToMemory(mentions);
+                    entities.forEach(this::registerName);
+                }
+            }
+        });
+        log.info("实体提及索引完成, documentId={}, 实体数={}, 分块数={}, 条目数={}",
+                documentId, entities.size(), chunks.size(), mentions.size());
+        return mentions.size();
+    }
+
+    @Override
+    public void removeDocument(Long documentId) {
+        mentionMapper.deleteByDocumentId(documentId);
+        TransactionHooks.afterCommit(() -> {
+            synchronized (this) {
+                if (loaded) {
+                    removeFromMemory(documentId);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void removeNode(Long nodeId) {
+        mentionMapper.deleteByNodeId(nodeId);
+        TransactionHooks.afterCommit(() -> {
+            synchronized (this) {
+                if (loaded && postings.remove(nodeId) != null) {
+                    pruneNames();
+                }
+            }
+        });
+    }
+
+    @Override
+    public List<Long> linkEntities(String text, int limit) {
+        if (StrUtil.isBlank(text)) {
+            return List.of();
+        }
+        ensureLoaded();
+        String lower = text.toLowerCase(Locale.ROOT);
+        Set<String> found = new HashSet<>();
+        for (int i = 0; i + MIN_NAME_LENGTH <= lower.length(); i++) {
+            String[] candidates = namesByPrefix.get(lower.substring(i, i + MIN_NAME_LENGTH));
+            if (candidates == null) {
+                continue;
+            }
+            for (String name : candidates) {
+                if (lower.startsWith(name, i)) {
+                    found.add(name);
+                }
+            }
+        }
+        List<String> matched = new ArrayList<>(found);
+        matched.sort(Comparator.comparingInt(String::length).reversed());
+
+        Set<Long> nodeIds = new LinkedHashSet<>();
+        for (String name : matched) {
+            for (long nodeId : nodeIdsByName.getOrDefault(name, new long[0])) {
+                if (nodeIds.size() >= limit) {
+                    return List.copyOf(nodeIds);
+                }
+                nodeIds.add(nodeId);
+            }
+        }
+        return List.copyOf(nodeIds);
+    }
+
+    @Override
+    public List<ChunkMention> lookup(Collection<Long> nodeIds, int limit) {
+        ensureLoaded();
+        Map<Long, int[]> byChunk = new HashMap<>();
+        Map<Long, Long> documentOf = new HashMap<>();
+        for (Long nodeId : nodeIds) {
+            Postings list = postings.get(nodeId);
+            if (list == null) {
+                continue;
+            }
+            for (int i = 0; i < list.size(); i++) {
+                int[] agg = byChunk.computeIfAbsent(list.chunkIds()[i], id -> new int[2]);
+                agg[0]++;
+                agg[1] += list.counts()[i];
+                documentOf.putIfAbsent(list.chunkIds()[i], list.documentIds()[i]);
+            }
+        }
+        return byChunk.entrySet().stream()
+                .map(e -> new ChunkMention(e.getKey(), documentOf.get(e.getKey()), e.getValue()[0], e.getValue()[1]))
+                .sorted(Comparator.comparingInt(ChunkMention::entities).reversed()
+                        .thenComparing(Comparator.comparingInt(ChunkMention::mentions).reversed()))
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public MentionStats getStats() {
+        long total = postings.values().stream().mapToLong(Postings::size).sum();
+        return new MentionStats(loaded, postings.size(), nodeIdsByName.size(), total);
+    }
+
+    /**
+     * 在分块内容中查找实体名称（不区分大小写）
+     *
+     * @return 提及（未出现时为null）
+     */
+    static EntityMention scan(String name, String content) {
+        String lowerName = name.toLowerCase(Locale.ROOT);
+        String lowerContent = content.toLowerCase(Locale.ROOT);
+        int count = 0;
+        StringBuilder offsets = new StringBuilder();
+        int from = 0;
+        int index;
+        while ((index = lowerContent.indexOf(lowerName, from)) >= 0) {
+            if (count < MAX_OFFSETS) {
+                if (!offsets.isEmpty()) {
+                    offsets.append(',');
+                }
+                offsets.append(index).append(':').append(index + lowerName.length());
+            }
+            count++;
+            from = index + lowerName.length();
+        }
+        if (count == 0) {
+            return null;
+        }
+        EntityMention mention = new EntityMention();
+        mention.setMentionCount(count);
+        mention.setOffsets(offsets.toString());
+        return mention;
+    }
+
+    /**
+     * 首次使用时从数据库加载内存索引
+     */
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            List<EntityMention> mentions = mentionMapper.selectAllBrief();
+            addToMemory(mentions);
+
+            Set<Long> nodeIds = postings.keySet();
+            for (List<Long> batch : ListUtil.partition(new ArrayList<>(nodeIds), BATCH_SIZE)) {
+                for (KnowledgeNode node : nodeMapper.selectBatchIds(batch)) {
+                    registerName(node.getName(), node.getId());
+                }
+            }
+            loaded = true;
+            log.info("实体提及索引加载完成, 节点数={}, 条目数={}, 耗时={}ms",
+                    postings.size(), mentions.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    private void addToMemory(List<EntityMention> mentions) {
+        Map<Long, List<EntityMention>> byNode = new HashMap<>();
+        for (EntityMention mention : mentions) {
+            byNode.computeIfAbsent(mention.getNodeId(), id -> new ArrayList<>()).add(mention);
+        }
+        byNode.forEach((nodeId, added) -> {
+            Postings old = postings.get(nodeId);
+            int oldSize = old == null ? 0 : old.size();
+            long[] chunkIds = new long[oldSize + added.size()];
+            long[] documentIds = new long[chunkIds.length];
+            int[] counts = new int[chunkIds.length];
+            if (old != null) {
+                System.arraycopy(old.chunkIds(), 0, chunkIds, 0, oldSize);
+                System.arraycopy(old.documentIds(), 0, documentIds, 0, oldSize);
+                System.arraycopy(old.counts(), 0, counts, 0, oldSize);
+            }
+            for (int i = 0; i < added.size(); i++) {
+                EntityMention mention = added.get(i);
+                chunkIds[oldSize + i] = mention.getChunkId();
+                documentIds[oldSize + i] = mention.getDocumentId();
+                counts[oldSize + i] = mention.getMentionCount() == null ? 1 : mention.getMentionCount();
+            }
+            postings.put(nodeId, new Postings(chunkIds, documentIds, counts));
+        });
+    }
+
+    private void removeFromMemory(Long documentId) {
+        for (Map.Entry<Long, Postings> entry : postings.entrySet()) {
+            Postings old = entry.getValue();
+            int kept = 0;
+            for (long id : old.documentIds()) {
+                if (id != documentId) {
+                    kept++;
+                }
+            }
+            if (kept == old.size()) {
+                continue;
+            }
+            if (kept == 0) {
+                postings.remove(entry.getKey());
+                continue;
+            }
+            long[] chunkIds = new long[kept];
+            long[] documentIds = new long[kept];
+            int[] counts = new int[kept];
+            for (int i = 0, j = 0; i < old.size(); i++) {
+                if (old.documentIds()[i] != documentId) {
+                    chunkIds[j] = old.chunkIds()[i];
+                    documentIds[j] = old.documentIds()[i];
+                    counts[j] = old.counts()[i];
+                    j++;
+                }
+            }
+            postings.put(entry.getKey(), new Postings(chunkIds, documentIds, counts));
+        }
+        pruneNames();
+    }
+
+    /**
+     * 不再有提及的节点不必再识别：从名称中移除，名称下没有节点时移除名称
+     */
+    private void pruneNames() {
+        for (Map.Entry<String, long[]> entry : nodeIdsByName.entrySet()) {
+            long[] live = Arrays.stream(entry.getValue()).filter(postings::containsKey).toArray();
+            if (live.length == 0) {
+                nodeIdsByName.remove(entry.getKey());
+                unregisterPrefix(entry.getKey());
+            } else if (live.length < entry.getValue().length) {
+                entry.setValue(live);
+            }
+        }
+    }
+
+    private void registerName(String name, Long nodeId) {
+        if (name == null || name.length() < MIN_NAME_LENGTH || nodeId == null || !postings.containsKey(nodeId)) {
+            return;
+        }
+        String lowerName = name.toLowerCase(Locale.ROOT);
+        long[] previous = nodeIdsByName.get(lowerName);
+        nodeIdsByName.merge(lowerName, new long[]{nodeId}, (old, added) -> {
+            for (long id : old) {
+                if (id == added[0]) {
+                    return old;
+                }
+            }
+            long[] merged = Arrays.copyOf(old, old.length + 1);
+            merged[old.length] = added[0];
+            return merged;
+        });
+        if (previous == null) {
+            namesByPrefix.merge(lowerName.substring(0, MIN_NAME_LENGTH), new String[]{lowerName}, (old, added) -> {
+                String[] merged = Arrays.copyOf(old, old.length + 1);
+                merged[old.length] = added[0];
+                return merged;
+            });
+        }
+    }
+
+    private void unregisterPrefix(String lowerName) {
+        namesByPrefix.computeIfPresent(lowerName.substring(0, MIN_NAME_LENGTH), (prefix, names) -> {
+            String[] kept = Arrays.stream(names).filter(name -> !name.equals(lowerName)).toArray(String[]::new);
+            return kept.length == 0 ? null : kept;
+        });
+    }
+}
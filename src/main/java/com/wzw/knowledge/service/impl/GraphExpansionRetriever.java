@@ -0,0 +1,134 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.config.RagRetrievalConfig;
+import com.wzw.knowledge.mapper.DocumentChunkMapper;
+import com.wzw.knowledge.mapper.DocumentMapper;
+import com.wzw.knowledge.mapper.KnowledgeRelationMapper;
+import com.wzw.knowledge.model.entity.Document;
+import com.wzw.knowledge.model.entity.DocumentChunk;
+import com.wzw.knowledge.model.entity.KnowledgeRelation;
+import com.wzw.knowledge.model.vo.RagDocument;
+import com.wzw.knowledge.service.EntityMentionService;
+import com.wzw.knowledge.service.Retriever;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * 图谱扩展检索器
+ * <p>
+ * 不做向量检索，从问题中提到的实体出发找到支撑段落：
+ * 1. 按名称识别问题中的实体（内存字典）
+ * 2. 沿出边扩展 k 跳邻居（每跳一次批量查询）
+ * 3. 查实体提及索引得到提到这些实体的分块（内存查找），问题直接提到的实体优先
+ * 4. 分块和文档头各一次批量查询回表
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GraphExpansionRetriever implements Retriever {
+
+    public static final String NAME = "graph";
+
+    private final EntityMentionService mentionService;
+    private final KnowledgeRelationMapper relationMapper;
+    private final DocumentChunkMapper documentChunkMapper;
+    private final DocumentMapper documentMapper;
+    private final RagNearCache nearCache;
+    private final RagRetrievalConfig config;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Contribution retrieve(QueryContext context) {
+        List<Long> seeds = mentionService.linkEntities(context.normalizedText(), config.getGraphMaxSeeds());
+        if (seeds.isEmpty()) {
+            return Contribution.empty();
+        }
+
+        // 逐跳扩展，记录每个分块首次出现的跳数
+        Map<Long, Integer> hopOfChunk = new LinkedHashMap<>();
+        Map<Long, EntityMentionService.ChunkMention> mentions = new HashMap<>();
+        Set<Long> visited = new HashSet<>(seeds);
+        List<Long> frontier = seeds;
+        for (int hop = 0; !frontier.isEmpty() && hopOfChunk.size() < context.topK(); hop++) {
+            for (EntityMentionService.ChunkMention mention : mentionService.lookup(frontier, context.topK())) {
+                if (hopOfChunk.size() >= context.topK()) {
+                    break;
+                }
+                if (hopOfChunk.putIfAbsent(mention.chunkId(), hop) == null) {
+                    mentions.put(mention.chunkId(), mention);
+                }
+            }
+            if (hop >= config.getGraphHops()) {
+                break;
+            }
+            frontier = neighbours(frontier, visited);
+        }
+        if (hopOfChunk.isEmpty()) {
+            return Contribution.empty();
+        }
+
+        Map<Long, DocumentChunk> chunks = new HashMap<>();
+        for (DocumentChunk chunk : documentChunkMapper.selectHitsByIds(hopOfChunk.keySet())) {
+            chunks.put(chunk.getId(), chunk);
+        }
+        Set<Long> documentIds = new LinkedHashSet<>();
+        chunks.values().forEach(chunk -> documentIds.add(chunk.getDocumentId()));
+        Map<Long, Document> documents = nearCache.getDocuments(documentIds, documentMapper::selectHeadersByIds,
+                context.useCache());
+
+        List<RagDocument> results = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : hopOfChunk.entrySet()) {
+            DocumentChunk chunk = chunks.get(entry.getKey());
+            Document document = chunk != null ? documents.get(chunk.getDocumentId()) : null;
+            if (document == null) continue;
+
+            RagDocument ragDoc = new RagDocument();
+            ragDoc.setId(document.getId());
+            ragDoc.setChunkId(chunk.getId());
+            ragDoc.setName(document.getName());
+            ragDoc.setFileType(document.getFileType());
+            ragDoc.setPageNum(chunk.getPageNum());
+            ragDoc.setSummary(document.getSummary());
+            ragDoc.setMatchedContent(chunk.getContent());
+            // Parent块与文档检索器的结果按Parent去重
+            if (DocumentChunk.TYPE_PARENT.equals(chunk.getChunkType())) {
+                ragDoc.setParentChunkId(chunk.getId());
+            }
+            // 跳数越少、提到的实体越多得分越高（没有向量相似度），归一化到 (0, 1] 与其他检索器的得分可比；
+            // 不设置相关度，只靠图谱扩展命中的结果不足以判断知识库中有答案
+            int entities = mentions.get(chunk.getId()).entities();
+            ragDoc.setScore(entities / (entities + 1.0) / (1.0 + entry.getValue()));
+            results.add(ragDoc);
+        }
+
+        log.info("图谱扩展检索完成, 识别实体{}个, 返回{}个分块", seeds.size(), results.size());
+        return Contribution.ofDocuments(results);
+    }
+
+    /**
+     * 沿出边扩展一跳（一次批量查询），返回未访问过的邻居
+     */
+    private List<Long> neighbours(List<Long> frontier, Set<Long> visited) {
+        List<Long> next = new ArrayList<>();
+        for (KnowledgeRelation relation : relationMapper.selectBySourceNodeIds(frontier)) {
+            if (next.size() >= config.getGraphMaxNeighbors()) {
+                break;
+            }
+            if (visited.add(relation.getTargetNodeId())) {
+                next.add(relation.getTargetNodeId());
+            }
+        }
+        return next;
+    }
+}
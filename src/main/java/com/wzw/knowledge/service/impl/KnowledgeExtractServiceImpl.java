@@ -1,21 +1,22 @@
 package com.wzw.knowledge.service.impl;
 
 import cn.hutool.core.util.StrUtil;
-import com.alibaba.fastjson2.JSON;
-import com.alibaba.fastjson2.JSONArray;
 import com.alibaba.fastjson2.JSONObject;
 import com.wzw.knowledge.model.dto.KnowledgeNodeDTO;
 import com.wzw.knowledge.model.dto.KnowledgeRelationDTO;
 import com.wzw.knowledge.model.entity.KnowledgeNode;
 import com.wzw.knowledge.model.entity.KnowledgeRelation;
+import com.wzw.knowledge.service.EntityMentionService;
 import com.wzw.knowledge.service.KnowledgeExtractService;
 import com.wzw.knowledge.service.KnowledgeNodeService;
 import com.wzw.knowledge.service.KnowledgeRelationService;
 import com.wzw.knowledge.service.OllamaService;
+import com.wzw.knowledge.util.StreamingJsonReader;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -38,12 +39,56 @@ public class KnowledgeExtractServiceImpl implements KnowledgeExtractService {
     private final OllamaService ollamaService;
     private final KnowledgeNodeService nodeService;
     private final KnowledgeRelationService relationService;
+    private final EntityMentionService entityMentionService;
 
     /**
      * 文本分段大小（避免超过模型上下文限制）
      */
     private static final int CHUNK_SIZE = 2000;
 
+    /**
+     * 单段抽取的最长等待时间
+     */
+    private static final Duration EXTRACT_TIMEOUT = Duration.ofMinutes(5);
+
+    /**
+     * 抽取结果的JSON Schema（通过Ollama format参数约束模型输出）
+     * entities 在前，保证输出被截断时优先保留实体：JSONObject保持字段的书写顺序，不能改用Map.of
+     */
+    private static final Map<String, Object> EXTRACTION_SCHEMA = JSONObject.parseObject("""
+            {
+              "type": "object",
+              "properties": {
+                "entities": {
+                  "type": "array",
+                  "items": {
+                    "type": "object",
+                    "properties": {
+                      "name": {"type": "string"},
+                      "type": {"type": "string"},
+                      "description": {"type": "string"}
+                    },
+                    "required": ["name", "type"]
+                  }
+                },
+                "relations": {
+                  "type": "array",
+                  "items": {
+                    "type": "object",
+                    "properties": {
+                      "source": {"type": "string"},
+                      "target": {"type": "string"},
+                      "relation": {"type": "string"},
+                      "type": {"type": "string"}
+                    },
+                    "required": ["source", "target", "relation"]
+                  }
+                }
+              },
+              "required": ["entities", "relations"]
+            }
+            """);
+
     /**
      * 从文档中抽取知识
      */
@@ -87,16 +132,10 @@ public class KnowledgeExtractServiceImpl implements KnowledgeExtractService {
                 log.info("处理第{}/{}段文本", i + 1, chunks.size());
 
                 try {
-                    // 调用大模型抽取实体和关系
-                    String extractResult = callLlmForExtraction(chunk);
-
-                    // 解析抽取结果
-                    ParsedResult parsed = parseExtractionResult(extractResult);
-
-                    if (parsed != null) {
-                        allNodes.addAll(parsed.nodes);
-                        allRelations.addAll(parsed.relations);
-                    }
+                    // 调用大模型抽取实体和关系（边生成边解析）
+                    ParsedResult parsed = callLlmForExtraction(chunk);
+                    allNodes.addAll(parsed.nodes);
+                    allRelations.addAll(parsed.relations);
                 } catch (Exception e) {
                     log.warn("第{}段文本抽取失败: {}", i + 1, e.getMessage());
                 }
@@ -190,6 +229,15 @@ public class KnowledgeExtractServiceImpl implements KnowledgeExtractService {
                 }
             }
 
+            // 7. 建立实体提及索引（实体 -> 提到它的文档分块），供图谱扩展检索使用
+            if ("document".equals(sourceType)) {
+                try {
+                    entityMentionService.indexDocument(sourceId, nodeNameToIdMap);
+                } catch (Exception e) {
+                    log.warn("建立实体提及索引失败, documentId={}, error: {}", sourceId, e.getMessage());
+                }
+            }
+
             log.info("知识抽取完成, 保存节点{}个, 关系{}个", savedNodes.size(), savedRelations.size());
 
             return ExtractResult.of(savedNodes, savedRelations);
@@ -202,8 +250,12 @@ public class KnowledgeExtractServiceImpl implements KnowledgeExtractService {
 
     /**
      * 调用大模型进行知识抽取
+     * <p>
+     * 使用JSON Schema约束输出格式，并在流式输出过程中增量解析：
+     * 每读完一个完整的实体或关系立即保留，输出中断或被截断时不丢弃已读取的部分
+     * </p>
      */
-    private String callLlmForExtraction(String text) {
+    private ParsedResult callLlmForExtraction(String text) {
         String prompt = """
                 你是一个知识图谱构建专家。请从以下文本中抽取知识实体和关系。
 
@@ -232,148 +284,71 @@ public class KnowledgeExtractServiceImpl implements KnowledgeExtractService {
                 请输出JSON（只输出JSON，不要其他文字）：
                 """.formatted(text);
 
-        return ollamaService.chat(prompt);
-    }
-
-    /**
-     * 解析大模型返回的抽取结果
-     */
-    private ParsedResult parseExtractionResult(String result) {
-        if (StrUtil.isBlank(result)) {
-            return null;
-        }
-
-        try {
-            // 提取JSON部分
-            String jsonStr = extractJson(result);
-            if (jsonStr == null) {
-                log.warn("未找到有效的JSON: {}", result.substring(0, Math.min(100, result.length())));
-                return null;
-            }
-
-            JSONObject json = JSON.parseObject(jsonStr);
-
-            List<KnowledgeNode> nodes = new ArrayList<>();
-            List<KnowledgeRelation> relations = new ArrayList<>();
-
-            // 解析实体
-            JSONArray entities = json.getJSONArray("entities");
-            if (entities != null) {
-                for (int i = 0; i < entities.size(); i++) {
-                    JSONObject entity = entities.getJSONObject(i);
-                    KnowledgeNode node = new KnowledgeNode();
-                    node.setName(entity.getString("name"));
-                    node.setNodeType(mapEntityType(entity.getString("type")));
-                    node.setDescription(entity.getString("description"));
+        List<KnowledgeNode> nodes = new ArrayList<>();
+        List<KnowledgeRelation> relations = new ArrayList<>();
+        StreamingJsonReader reader = new StreamingJsonReader((key, obj) -> {
+            if ("entities".equals(key)) {
+                KnowledgeNode node = toNode(obj);
+                if (node != null) {
                     nodes.add(node);
                 }
-            }
-
-            // 解析关系
-            JSONArray rels = json.getJSONArray("relations");
-            if (rels != null) {
-                for (int i = 0; i < rels.size(); i++) {
-                    JSONObject rel = rels.getJSONObject(i);
-                    KnowledgeRelation relation = new KnowledgeRelation();
-                    relation.setName(rel.getString("relation"));
-                    relation.setRelationType(mapRelationType(rel.getString("type")));
-                    // 临时存储源和目标节点名称
-                    relation.setProperties(rel.getString("source"));
-                    relation.setNeo4jRelId(rel.getString("target"));
+            } else if ("relations".equals(key)) {
+                KnowledgeRelation relation = toRelation(obj);
+                if (relation != null) {
                     relations.add(relation);
                 }
             }
+        });
 
-            return new ParsedResult(nodes, relations);
-
+        try {
+            ollamaService.chatStream(prompt, OllamaService.ModelTask.EXTRACT, EXTRACTION_SCHEMA)
+                    .doOnNext(reader::feed)
+                    .blockLast(EXTRACT_TIMEOUT);
         } catch (Exception e) {
-            log.warn("解析抽取结果失败: {}, 原始内容: {}", e.getMessage(),
-                    result.substring(0, Math.min(500, result.length())));
-            return null;
+            log.warn("抽取输出中断, 保留已解析的实体{}个, 关系{}个: {}",
+                    nodes.size(), relations.size(), e.getMessage());
         }
-    }
+        reader.finish();
 
-    /**
-     * 从文本中提取JSON
-     */
-    private String extractJson(String text) {
-        // 尝试找到 { 和 } 的配对
-        int start = text.indexOf('{');
-        int end = text.lastIndexOf('}');
-
-        if (start >= 0 && end > start) {
-            String json = text.substring(start, end + 1);
-            // 清理可能存在的格式问题
-            return sanitizeJson(json);
+        if (reader.isTruncated() || reader.getSkippedCount() > 0) {
+            log.warn("抽取结果不完整, truncated={}, 保留元素{}个, 丢弃元素{}个",
+                    reader.isTruncated(), reader.getEmittedCount(), reader.getSkippedCount());
         }
-        return null;
+
+        return new ParsedResult(nodes, relations);
     }
 
     /**
-     * 清理JSON中的格式问题
-     * 处理LLM返回的非法JSON格式，如JavaScript风格的字符串拼接
+     * 解析单个实体
      */
-    private String sanitizeJson(String json) {
-        if (json == null) {
+    private KnowledgeNode toNode(JSONObject entity) {
+        String name = entity.getString("name");
+        if (StrUtil.isBlank(name)) {
             return null;
         }
-
-        // 处理 "xxx" + "yyy" 这种JavaScript风格的字符串拼接
-        // 将其合并为 "xxxyyy"
-        String sanitized = json;
-
-        // 正则匹配: "字符串1" + "字符串2" 模式，支持多次连续拼接
-        // 需要多次处理，直到没有匹配项
-        String pattern = "\"\\s*\\+\\s*\"";
-        while (sanitized.matches("(?s).*" + pattern + ".*")) {
-            sanitized = sanitized.replaceAll(pattern, "");
-        }
-
-        // 处理可能的换行符在字符串值中（非法的JSON）
-        // 将字符串值内的换行替换为空格
-        sanitized = fixNewlinesInStrings(sanitized);
-
-        return sanitized;
+        KnowledgeNode node = new KnowledgeNode();
+        node.setName(name.trim());
+        node.setNodeType(mapEntityType(entity.getString("type")));
+        node.setDescription(entity.getString("description"));
+        return node;
     }
 
     /**
-     * 修复字符串值内的非法换行符
+     * 解析单个关系
      */
-    private String fixNewlinesInStrings(String json) {
-        StringBuilder result = new StringBuilder();
-        boolean inString = false;
-        boolean escaped = false;
-
-        for (int i = 0; i < json.length(); i++) {
-            char c = json.charAt(i);
-
-            if (escaped) {
-                result.append(c);
-                escaped = false;
-                continue;
-            }
-
-            if (c == '\\') {
-                result.append(c);
-                escaped = true;
-                continue;
-            }
-
-            if (c == '"') {
-                inString = !inString;
-                result.append(c);
-                continue;
-            }
-
-            // 如果在字符串内遇到换行符，替换为空格
-            if (inString && (c == '\n' || c == '\r')) {
-                result.append(' ');
-            } else {
-                result.append(c);
-            }
+    private KnowledgeRelation toRelation(JSONObject rel) {
+        String source = rel.getString("source");
+        String target = rel.getString("target");
+        if (StrUtil.isBlank(source) || StrUtil.isBlank(target)) {
+            return null;
         }
-
-        return result.toString();
+        KnowledgeRelation relation = new KnowledgeRelation();
+        relation.setName(rel.getString("relation"));
+        relation.setRelationType(mapRelationType(rel.getString("type")));
+        // 临时存储源和目标节点名称
+        relation.setProperties(source.trim());
+        relation.setNeo4jRelId(target.trim());
+        return relation;
     }
 
     /**
@@ -3,8 +3,9 @@ package com.wzw.knowledge.service.impl;
 import cn.hutool.core.util.StrUtil;
 import com.alibaba.fastjson2.JSON;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.wzw.knowledge.common.CountMode;
+import com.wzw.knowledge.common.CursorPageResult;
 import com.wzw.knowledge.common.ResultCode;
 import com.wzw.knowledge.exception.BusinessException;
 import com.wzw.knowledge.mapper.KnowledgeNodeMapper;
@@ -14,9 +15,13 @@ import com.wzw.knowledge.model.entity.KnowledgeNode;
 import com.wzw.knowledge.model.neo4j.Neo4jKnowledgeNode;
 import com.wzw.knowledge.model.vo.KnowledgeNodeVO;
 import com.wzw.knowledge.repository.Neo4jNodeRepository;
+import com.wzw.knowledge.service.CorpusVersionService;
+import com.wzw.knowledge.service.EntityMentionService;
 import com.wzw.knowledge.service.KnowledgeNodeService;
+import com.wzw.knowledge.service.LexicalIndexService;
 import com.wzw.knowledge.service.OllamaService;
 import com.wzw.knowledge.service.VectorService;
+import com.wzw.knowledge.util.KeysetPager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -27,6 +32,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * 知识节点服务实现类
@@ -49,6 +55,9 @@ public class KnowledgeNodeServiceImpl extends ServiceImpl<KnowledgeNodeMapper, K
     private final Neo4jNodeRepository neo4jNodeRepository;
     private final OllamaService ollamaService;
     private final VectorService vectorService;
+    private final CorpusVersionService corpusVersionService;
+    private final LexicalIndexService lexicalIndexService;
+    private final EntityMentionService entityMentionService;
 
     /**
      * 创建知识节点
@@ -94,6 +103,10 @@ public class KnowledgeNodeServiceImpl extends ServiceImpl<KnowledgeNodeMapper, K
         // 更新MySQL记录
         this.updateById(node);
 
+        // 图谱变化后检索结果缓存失效
+        lexicalIndexService.indexNode(node);
+        corpusVersionService.bump("create node " + node.getId());
+
         log.info("创建知识节点成功, nodeId={}, name={}", node.getId(), node.getName());
         return node;
     }
@@ -155,6 +168,9 @@ public class KnowledgeNodeServiceImpl extends ServiceImpl<KnowledgeNodeMapper, K
         node.setVectorId(vectorId);
         this.updateById(node);
 
+        lexicalIndexService.indexNode(node);
+        corpusVersionService.bump("update node " + node.getId());
+
         log.info("更新知识节点成功, nodeId={}, name={}", node.getId(), node.getName());
         return node;
     }
@@ -189,6 +205,10 @@ public class KnowledgeNodeServiceImpl extends ServiceImpl<KnowledgeNodeMapper, K
         // 逻辑删除MySQL节点
         boolean result = this.removeById(id);
 
+        lexicalIndexService.removeNode(id);
+        entityMentionService.removeNode(id);
+        corpusVersionService.bump("delete node " + id);
+
         log.info("删除知识节点成功, nodeId={}", id);
         return result;
     }
@@ -209,19 +229,13 @@ public class KnowledgeNodeServiceImpl extends ServiceImpl<KnowledgeNodeMapper, K
      * 分页查询节点
      */
     @Override
-    public Page<KnowledgeNodeVO> pageNodes(Integer pageNum, Integer pageSize,
-                                            String keyword, String nodeType) {
-        LambdaQueryWrapper<KnowledgeNode> wrapper = new LambdaQueryWrapper<>();
-        wrapper.like(StrUtil.isNotBlank(keyword), KnowledgeNode::getName, keyword);
-        wrapper.eq(StrUtil.isNotBlank(nodeType), KnowledgeNode::getNodeType, nodeType);
-        wrapper.orderByDesc(KnowledgeNode::getCreateTime);
-
-        Page<KnowledgeNode> page = this.page(new Page<>(pageNum, pageSize), wrapper);
-
-        Page<KnowledgeNodeVO> voPage = new Page<>(page.getCurrent(), page.getSize(), page.getTotal());
-        voPage.setRecords(page.getRecords().stream().map(this::convertToVO).toList());
+    public CursorPageResult<KnowledgeNodeVO> pageNodes(String cursor, Integer size,
+                                                       String keyword, String nodeType, CountMode countMode) {
+        Supplier<LambdaQueryWrapper<KnowledgeNode>> filter = () -> new LambdaQueryWrapper<KnowledgeNode>()
+                .like(StrUtil.isNotBlank(keyword), KnowledgeNode::getName, keyword)
+                .eq(StrUtil.isNotBlank(nodeType), KnowledgeNode::getNodeType, nodeType);
 
-        return voPage;
+        return KeysetPager.page(baseMapper, filter, KnowledgeNode::getId, cursor, size, countMode, this::convertToVO);
     }
 
     /**
@@ -3,8 +3,9 @@ package com.wzw.knowledge.service.impl;
 import cn.hutool.core.util.StrUtil;
 import com.alibaba.fastjson2.JSON;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.wzw.knowledge.common.CountMode;
+import com.wzw.knowledge.common.CursorPageResult;
 import com.wzw.knowledge.common.ResultCode;
 import com.wzw.knowledge.exception.BusinessException;
 import com.wzw.knowledge.mapper.KnowledgeNodeMapper;
@@ -14,7 +15,9 @@ import com.wzw.knowledge.model.entity.KnowledgeNode;
 import com.wzw.knowledge.model.entity.KnowledgeRelation;
 import com.wzw.knowledge.model.vo.KnowledgeRelationVO;
 import com.wzw.knowledge.repository.Neo4jNodeRepository;
+import com.wzw.knowledge.service.CorpusVersionService;
 import com.wzw.knowledge.service.KnowledgeRelationService;
+import com.wzw.knowledge.util.KeysetPager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -23,6 +26,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * 知识关系服务实现类
@@ -43,6 +47,7 @@ public class KnowledgeRelationServiceImpl extends ServiceImpl<KnowledgeRelationM
     private final KnowledgeRelationMapper relationMapper;
     private final KnowledgeNodeMapper nodeMapper;
     private final Neo4jNodeRepository neo4jNodeRepository;
+    private final CorpusVersionService corpusVersionService;
 
     /**
      * 创建知识关系
@@ -91,6 +96,9 @@ public class KnowledgeRelationServiceImpl extends ServiceImpl<KnowledgeRelationM
                 relation.getWeight()
         );
 
+        // 图谱变化后检索结果缓存失效
+        corpusVersionService.bump("create relation " + relation.getId());
+
         log.info("创建知识关系成功, relationId={}, {} -[{}]-> {}",
                 relation.getId(), sourceNode.getName(), dto.getName(), targetNode.getName());
         return relation;
@@ -147,6 +155,8 @@ public class KnowledgeRelationServiceImpl extends ServiceImpl<KnowledgeRelationM
                 relation.getWeight()
         );
 
+        corpusVersionService.bump("update relation " + relation.getId());
+
         log.info("更新知识关系成功, relationId={}", relation.getId());
         return relation;
     }
@@ -168,6 +178,8 @@ public class KnowledgeRelationServiceImpl extends ServiceImpl<KnowledgeRelationM
         // 逻辑删除MySQL记录
         boolean result = this.removeById(id);
 
+        corpusVersionService.bump("delete relation " + id);
+
         log.info("删除知识关系成功, relationId={}", id);
         return result;
     }
@@ -188,19 +200,15 @@ public class KnowledgeRelationServiceImpl extends ServiceImpl<KnowledgeRelationM
      * 分页查询关系
      */
     @Override
-    public Page<KnowledgeRelationVO> pageRelations(Integer pageNum, Integer pageSize,
-                                                    String relationType, String keyword) {
-        LambdaQueryWrapper<KnowledgeRelation> wrapper = new LambdaQueryWrapper<>();
-        wrapper.like(StrUtil.isNotBlank(keyword), KnowledgeRelation::getName, keyword);
-        wrapper.eq(StrUtil.isNotBlank(relationType), KnowledgeRelation::getRelationType, relationType);
-        wrapper.orderByDesc(KnowledgeRelation::getCreateTime);
-
-        Page<KnowledgeRelation> page = this.page(new Page<>(pageNum, pageSize), wrapper);
-
-        Page<KnowledgeRelationVO> voPage = new Page<>(page.getCurrent(), page.getSize(), page.getTotal());
-        voPage.setRecords(page.getRecords().stream().map(this::convertToVO).toList());
-
-        return voPage;
+    public CursorPageResult<KnowledgeRelationVO> pageRelations(String cursor, Integer size,
+                                                               String relationType, String keyword,
+                                                               CountMode countMode) {
+        Supplier<LambdaQueryWrapper<KnowledgeRelation>> filter = () -> new LambdaQueryWrapper<KnowledgeRelation>()
+                .like(StrUtil.isNotBlank(keyword), KnowledgeRelation::getName, keyword)
+                .eq(StrUtil.isNotBlank(relationType), KnowledgeRelation::getRelationType, relationType);
+
+        return KeysetPager.page(baseMapper, filter, KnowledgeRelation::getId, cursor, size, countMode,
+                this::convertToVO);
     }
 
     /**
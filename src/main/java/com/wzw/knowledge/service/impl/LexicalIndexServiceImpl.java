@@ -0,0 +1,540 @@
+package com.wzw.knowledge.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import com.wzw.knowledge.mapper.DocumentChunkMapper;
+import com.wzw.knowledge.mapper.KnowledgeNodeMapper;
+import com.wzw.knowledge.mapper.OcrRecordMapper;
+import com.wzw.knowledge.model.entity.DocumentChunk;
+import com.wzw.knowledge.model.entity.KnowledgeNode;
+import com.wzw.knowledge.model.entity.OcrRecord;
+import com.wzw.knowledge.service.LexicalIndexService;
+import com.wzw.knowledge.util.TransactionHooks;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 本地词项索引服务实现类
+ * <p>
+ * 内存倒排索引：
+ * - 词项切分与 {@link LexicalReranker} 一致（英文和数字按单词，中文按相邻两字），记录词项位置用于短语匹配
+ * - 条目按内部编号只追加，删除时只做标记；已删除条目累计超过有效条目数时压缩：
+ *   有效条目按原顺序重新编号，倒排记录同步改写并去掉已删除条目，条目数组按有效条目数收缩
+ * - 文档频率包含尚未清理的已删除条目（与Lucene合并前的行为一致），对排序影响很小
+ * - 写入在事务提交后生效，读写锁保护，检索只持有读锁
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LexicalIndexServiceImpl implements LexicalIndexService {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final int PAGE_SIZE = 500;
+
+    /**
+     * 已删除条目至少累计到该数量才压缩
+     */
+    private static final int COMPACT_MIN_DELETED = 1024;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * 高亮摘要长度（字符）
+     */
+    private static final int SNIPPET_LENGTH = 120;
+
+    private static final String HIGHLIGHT_OPEN = "<em>";
+    private static final String HIGHLIGHT_CLOSE = "</em>";
+
+    private static final Pattern PHRASE = Pattern.compile("\"([^\"]+)\"");
+
+    private final DocumentChunkMapper documentChunkMapper;
+    private final KnowledgeNodeMapper nodeMapper;
+    private final OcrRecordMapper ocrRecordMapper;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 条目属性（下标为内部编号）
+     */
+    private String[] entryTypes = new String[INITIAL_CAPACITY];
+    private long[] entryIds = new long[INITIAL_CAPACITY];
+    private long[] entryDocumentIds = new long[INITIAL_CAPACITY];
+    private int[] entryLengths = new int[INITIAL_CAPACITY];
+    private BitSet live = new BitSet();
+    private int size;
+    private int liveCount;
+    private int deletedCount;
+    private long totalLength;
+
+    /**
+     * 类型:业务ID -> 内部编号
+     */
+    private final Map<String, Integer> entryByKey = new HashMap<>();
+
+    /**
+     * 文档ID -> 分块的内部编号
+     */
+    private final Map<Long, List<Integer>> entriesByDocument = new HashMap<>();
+
+    /**
+     * 词项 -> 倒排记录
+     */
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    private volatile boolean loaded;
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+
+    /**
+     * 一个词项的倒排记录（按内部编号升序）
+     */
+    private static final class Postings {
+
+        private int[] entries = new int[4];
+        private int[] freqs = new int[4];
+        private int[][] positions = new int[4][];
+        private int size;
+
+        void add(int entry, int[] termPositions) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            entries[size] = entry;
+            freqs[size] = termPositions.length;
+            positions[size] = termPositions;
+            size++;
+        }
+
+        int[] positionsOf(int entry) {
+            int index = Arrays.binarySearch(entries, 0, size, entry);
+            return index >= 0 ? positions[index] : null;
+        }
+
+        /**
+         * 移除已删除条目的记录，其余记录改写为新编号（新编号保持原顺序，记录仍按编号升序）
+         *
+         * @param remap 原编号 -> 新编号，已删除的条目为-1
+         * @return 剩余记录数
+         */
+        int compact(int[] remap) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int entry = remap[entries[i]];
+                if (entry >= 0) {
+                    entries[kept] = entry;
+                    freqs[kept] = freqs[i];
+                    positions[kept] = positions[i];
+                    kept++;
+                }
+            }
+            Arrays.fill(positions, kept, size, null);
+            size = kept;
+            if (kept > 0 && kept * 4 < entries.length) {
+                entries = Arrays.copyOf(entries, kept * 2);
+                freqs = Arrays.copyOf(freqs, kept * 2);
+                positions = Arrays.copyOf(positions, kept * 2);
+            }
+            return kept;
+        }
+    }
+
+    @Override
+    public void indexDocument(Long documentId, Collection<DocumentChunk> chunks) {
+        List<DocumentChunk> snapshot = List.copyOf(chunks);
+        TransactionHooks.afterCommit(() -> write(() -> {
+            removeDocumentEntries(documentId);
+            for (DocumentChunk chunk : snapshot) {
+                add(TYPE_CHUNK, chunk.getId(), documentId, chunk.getContent());
+            }
+        }));
+    }
+
+    @Override
+    public void removeDocument(Long documentId) {
+        TransactionHooks.afterCommit(() -> write(() -> removeDocumentEntries(documentId)));
+    }
+
+    @Override
+    public void indexNode(KnowledgeNode node) {
+        Long id = node.getId();
+        String text = nodeText(node);
+        TransactionHooks.afterCommit(() -> write(() -> add(TYPE_NODE, id, null, text)));
+    }
+
+    @Override
+    public void removeNode(Long nodeId) {
+        TransactionHooks.afterCommit(() -> write(() -> remove(TYPE_NODE, nodeId)));
+    }
+
+    @Override
+    public void indexOcr(OcrRecord record) {
+        Long id = record.getId();
+        String text = Objects.equals(record.getStatus(), OcrRecord.STATUS_COMPLETED) ? record.getOcrText() : null;
+        TransactionHooks.afterCommit(() -> write(() -> add(TYPE_OCR, id, null, text)));
+    }
+
+    @Override
+    public void removeOcr(Long recordId) {
+        TransactionHooks.afterCommit(() -> write(() -> remove(TYPE_OCR, recordId)));
+    }
+
+    @Override
+    public List<LexicalHit> search(String query, Collection<String> types, int topK) {
+        if (StrUtil.isBlank(query) || topK <= 0) {
+            return List.of();
+        }
+        ensureLoaded();
+        long start = System.nanoTime();
+        List<String> terms = List.copyOf(new LinkedHashSet<>(LexicalReranker.tokenize(query)));
+        List<List<String>> phrases = new ArrayList<>();
+        Matcher matcher = PHRASE.matcher(query);
+        while (matcher.find()) {
+            List<String> phrase = LexicalReranker.tokenize(matcher.group(1));
+            if (phrase.size() > 1) {
+                phrases.add(phrase);
+            }
+        }
+        Set<String> typeSet = Set.copyOf(types);
+
+        lock.readLock().lock();
+        try {
+            if (terms.isEmpty() || liveCount == 0) {
+                return List.of();
+            }
+            double avgLength = (double) totalLength / liveCount;
+            Map<Integer, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null) {
+                    continue;
+                }
+                int df = Math.min(list.size, liveCount);
+                double idf = Math.log(1 + (liveCount - df + 0.5) / (df + 0.5));
+                for (int i = 0; i < list.size; i++) {
+                    int entry = list.entries[i];
+                    if (!live.get(entry) || !typeSet.contains(entryTypes[entry])) {
+                        continue;
+                    }
+                    int tf = list.freqs[i];
+                    double norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * entryLengths[entry] / avgLength));
+                    scores.merge(entry, idf * norm, Double::sum);
+                }
+            }
+            if (!phrases.isEmpty()) {
+                scores.keySet().removeIf(entry -> !phrases.stream().allMatch(phrase -> containsPhrase(entry, phrase)));
+            }
+
+            PriorityQueue<Map.Entry<Integer, Double>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+            for (Map.Entry<Integer, Double> scored : scores.entrySet()) {
+                top.offer(scored);
+                if (top.size() > topK) {
+                    top.poll();
+                }
+            }
+            List<LexicalHit> hits = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                Map.Entry<Integer, Double> scored = top.poll();
+                int entry = scored.getKey();
+                Long documentId = entryDocumentIds[entry] == 0 ? null : entryDocumentIds[entry];
+                hits.add(new LexicalHit(entryTypes[entry], entryIds[entry], documentId, scored.getValue()));
+            }
+            Collections.reverse(hits);
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+            searches.increment();
+            searchNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public String highlight(String text, String query) {
+        if (StrUtil.isBlank(text) || StrUtil.isBlank(query)) {
+            return null;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        if (lower.length() != text.length()) {
+            lower = text;
+        }
+        boolean[] marked = new boolean[text.length()];
+        boolean matched = false;
+        for (String term : new LinkedHashSet<>(LexicalReranker.tokenize(query))) {
+            for (int from = 0, index; (index = lower.indexOf(term, from)) >= 0; from = index + 1) {
+                Arrays.fill(marked, index, index + term.length(), true);
+                matched = true;
+            }
+        }
+        if (!matched) {
+            return null;
+        }
+
+        // 滑动窗口取命中字符最多的片段，多个起点并列时取中间，使命中部分居中
+        int window = Math.min(SNIPPET_LENGTH, text.length());
+        int count = 0;
+        for (int i = 0; i < window; i++) {
+            count += marked[i] ? 1 : 0;
+        }
+        int best = count;
+        int bestStart = 0;
+        int tieEnd = 0;
+        for (int start = 1; start + window <= text.length(); start++) {
+            count += (marked[start + window - 1] ? 1 : 0) - (marked[start - 1] ? 1 : 0);
+            if (count > best) {
+                best = count;
+                bestStart = start;
+                tieEnd = start;
+            } else if (count == best && tieEnd == start - 1) {
+                tieEnd = start;
+            }
+        }
+        bestStart = (bestStart + tieEnd) / 2;
+
+        int end = bestStart + window;
+        StringBuilder snippet = new StringBuilder();
+        if (bestStart > 0) {
+            snippet.append("…");
+        }
+        for (int i = bestStart; i < end; i++) {
+            if (marked[i] && (i == bestStart || !marked[i - 1])) {
+                snippet.append(HIGHLIGHT_OPEN);
+            }
+            char c = text.charAt(i);
+            snippet.append(c == '\n' || c == '\r' ? ' ' : c);
+            if (marked[i] && (i + 1 == end || !marked[i + 1])) {
+                snippet.append(HIGHLIGHT_CLOSE);
+            }
+        }
+        if (end < text.length()) {
+            snippet.append("…");
+        }
+        return snippet.toString();
+    }
+
+    @Override
+    public IndexStats getStats() {
+        lock.readLock().lock();
+        try {
+            long postingCount = postings.values().stream().mapToLong(list -> list.size).sum();
+            long count = searches.sum();
+            return new IndexStats(loaded, liveCount, postings.size(), postingCount, count,
+                    count == 0 ? 0 : searchNanos.sum() / 1e3 / count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 首次使用时从数据库分页加载全部分块、节点和OCR文本
+     */
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            loadPages(documentChunkMapper::selectIndexPage, DocumentChunk::getId,
+                    chunk -> add(TYPE_CHUNK, chunk.getId(), chunk.getDocumentId(), chunk.getContent()));
+            loadPages(nodeMapper::selectIndexPage, KnowledgeNode::getId,
+                    node -> add(TYPE_NODE, node.getId(), null, nodeText(node)));
+            loadPages(ocrRecordMapper::selectIndexPage, OcrRecord::getId,
+                    record -> add(TYPE_OCR, record.getId(), null, record.getOcrText()));
+            loaded = true;
+            log.info("本地词项索引加载完成, 条目数={}, 词项数={}, 耗时={}ms",
+                    liveCount, postings.size(), System.currentTimeMillis() - start);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static <T> void loadPages(BiFunction<Long, Integer, List<T>> loader, Function<T, Long> idOf,
+                                      Consumer<T> indexer) {
+        long afterId = 0;
+        List<T> page;
+        do {
+            page = loader.apply(afterId, PAGE_SIZE);
+            page.forEach(indexer);
+            if (!page.isEmpty()) {
+                afterId = idOf.apply(page.get(page.size() - 1));
+            }
+        } while (page.size() == PAGE_SIZE);
+    }
+
+    /**
+     * 在写锁内执行增量更新；尚未加载时跳过（加载时会从数据库读到最新数据）
+     */
+    private void write(Runnable update) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            update.run();
+            if (deletedCount >= COMPACT_MIN_DELETED && deletedCount > liveCount) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 压缩：有效条目按原顺序重新编号并移到数组前部，改写倒排记录和编号映射，收缩条目数组，调用方持有写锁
+     */
+    private void compact() {
+        int[] remap = new int[size];
+        int count = 0;
+        for (int entry = 0; entry < size; entry++) {
+            if (live.get(entry)) {
+                entryTypes[count] = entryTypes[entry];
+                entryIds[count] = entryIds[entry];
+                entryDocumentIds[count] = entryDocumentIds[entry];
+                entryLengths[count] = entryLengths[entry];
+                remap[entry] = count++;
+            } else {
+                remap[entry] = -1;
+            }
+        }
+        int capacity = Math.max(INITIAL_CAPACITY, count * 2);
+        if (capacity < entryTypes.length) {
+            entryTypes = Arrays.copyOf(entryTypes, capacity);
+            entryIds = Arrays.copyOf(entryIds, capacity);
+            entryDocumentIds = Arrays.copyOf(entryDocumentIds, capacity);
+            entryLengths = Arrays.copyOf(entryLengths, capacity);
+        } else {
+            Arrays.fill(entryTypes, count, size, null);
+        }
+        int removed = size - count;
+        size = count;
+        live = new BitSet(count);
+        live.set(0, count);
+
+        entryByKey.replaceAll((key, entry) -> remap[entry]);
+        entriesByDocument.values().forEach(entries -> entries.replaceAll(entry -> remap[entry]));
+        postings.values().removeIf(list -> list.compact(remap) == 0);
+        deletedCount = 0;
+        log.info("本地词项索引压缩完成, 有效条目数={}, 清理条目数={}", count, removed);
+    }
+
+    /**
+     * 添加条目（同一条目已存在时先删除），调用方持有写锁
+     */
+    private void add(String type, Long id, Long documentId, String text) {
+        if (id == null) {
+            return;
+        }
+        remove(type, id);
+        List<String> tokens = LexicalReranker.tokenize(text);
+        if (tokens.isEmpty()) {
+            return;
+        }
+        if (size == entryTypes.length) {
+            entryTypes = Arrays.copyOf(entryTypes, size * 2);
+            entryIds = Arrays.copyOf(entryIds, size * 2);
+            entryDocumentIds = Arrays.copyOf(entryDocumentIds, size * 2);
+            entryLengths = Arrays.copyOf(entryLengths, size * 2);
+        }
+        int entry = size++;
+        entryTypes[entry] = type;
+        entryIds[entry] = id;
+        entryDocumentIds[entry] = documentId == null ? 0 : documentId;
+        entryLengths[entry] = tokens.size();
+        live.set(entry);
+        liveCount++;
+        totalLength += tokens.size();
+        entryByKey.put(type + ":" + id, entry);
+        if (documentId != null) {
+            entriesByDocument.computeIfAbsent(documentId, k -> new ArrayList<>()).add(entry);
+        }
+
+        Map<String, List<Integer>> positionsByTerm = new LinkedHashMap<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            positionsByTerm.computeIfAbsent(tokens.get(i), t -> new ArrayList<>()).add(i);
+        }
+        positionsByTerm.forEach((term, termPositions) -> postings.computeIfAbsent(term, t -> new Postings())
+                .add(entry, termPositions.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    /**
+     * 标记条目为已删除，调用方持有写锁
+     */
+    private void remove(String type, Long id) {
+        Integer entry = entryByKey.remove(type + ":" + id);
+        if (entry == null) {
+            return;
+        }
+        live.clear(entry);
+        liveCount--;
+        deletedCount++;
+        totalLength -= entryLengths[entry];
+        if (entryDocumentIds[entry] != 0) {
+            List<Integer> entries = entriesByDocument.get(entryDocumentIds[entry]);
+            if (entries != null) {
+                entries.remove(entry);
+                if (entries.isEmpty()) {
+                    entriesByDocument.remove(entryDocumentIds[entry]);
+                }
+            }
+        }
+    }
+
+    private void removeDocumentEntries(Long documentId) {
+        List<Integer> entries = entriesByDocument.get(documentId);
+        if (entries == null) {
+            return;
+        }
+        for (Integer entry : List.copyOf(entries)) {
+            remove(entryTypes[entry], entryIds[entry]);
+        }
+    }
+
+    /**
+     * 短语匹配：短语的词项在条目中位置连续
+     */
+    private boolean containsPhrase(int entry, List<String> phrase) {
+        int[][] positions = new int[phrase.size()][];
+        for (int i = 0; i < phrase.size(); i++) {
+            Postings list = postings.get(phrase.get(i));
+            positions[i] = list == null ? null : list.positionsOf(entry);
+            if (positions[i] == null) {
+                return false;
+            }
+        }
+        for (int first : positions[0]) {
+            boolean all = true;
+            for (int i = 1; i < positions.length && all; i++) {
+                all = Arrays.binarySearch(positions[i], first + i) >= 0;
+            }
+            if (all) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String nodeText(KnowledgeNode node) {
+        return StrUtil.nullToEmpty(node.getName()) + " " + StrUtil.nullToEmpty(node.getDescription());
+    }
+}
@@ -0,0 +1,182 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.model.vo.RagDocument;
+import com.wzw.knowledge.service.Reranker;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * 词项重排序器（纯CPU，不依赖模型）
+ * <p>
+ * 得分由三部分组成：
+ * - 覆盖度：内容覆盖了多少查询词项，按候选集内的IDF加权，罕见词权重更高
+ * - 邻近度：命中词项在内容中的最小覆盖窗口越短，说明越集中地回答了问题
+ * - 先验：原RRF名次，避免得分接近时顺序剧烈变化
+ * 词项切分：英文和数字按单词切分，中文按相邻两字切分（单字成段时保留单字）
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Service
+public class LexicalReranker implements Reranker {
+
+    public static final String NAME = "lexical";
+
+    private static final double COVERAGE_WEIGHT = 0.6;
+    private static final double PROXIMITY_WEIGHT = 0.25;
+    private static final double PRIOR_WEIGHT = 0.15;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public double[] score(String query, List<RagDocument> candidates) {
+        int n = candidates.size();
+        double[] scores = new double[n];
+        List<String> queryTerms = List.copyOf(new LinkedHashSet<>(tokenize(query)));
+        if (queryTerms.isEmpty()) {
+            return scores;
+        }
+
+        List<List<String>> contents = new ArrayList<>(n);
+        Map<String, Integer> documentFrequency = new HashMap<>();
+        for (RagDocument candidate : candidates) {
+            List<String> tokens = tokenize(candidate.getMatchedContent());
+            contents.add(tokens);
+            Set<String> present = new HashSet<>(tokens);
+            for (String term : queryTerms) {
+                if (present.contains(term)) {
+                    documentFrequency.merge(term, 1, Integer::sum);
+                }
+            }
+        }
+
+        double[] idf = new double[queryTerms.size()];
+        double totalIdf = 0;
+        for (int t = 0; t < queryTerms.size(); t++) {
+            int df = documentFrequency.getOrDefault(queryTerms.get(t), 0);
+            idf[t] = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+            totalIdf += idf[t];
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            List<String> tokens = contents.get(i);
+            Set<String> present = new HashSet<>(tokens);
+            double matchedIdf = 0;
+            Set<String> matched = new HashSet<>();
+            for (int t = 0; t < queryTerms.size(); t++) {
+                if (present.contains(queryTerms.get(t))) {
+                    matchedIdf += idf[t];
+                    matched.add(queryTerms.get(t));
+                }
+            }
+            double coverage = totalIdf == 0 ? (double) matched.size() / queryTerms.size() : matchedIdf / totalIdf;
+            double proximity = queryTerms.size() == 1 ? coverage : proximity(tokens, matched);
+            double prior = 1 - (double) i / n;
+            scores[i] = COVERAGE_WEIGHT * coverage + PROXIMITY_WEIGHT * proximity + PRIOR_WEIGHT * prior;
+        }
+        return scores;
+    }
+
+    /**
+     * 查询词项覆盖率：内容包含的不同查询词项占比（不加权，不依赖候选集，不同查询之间可比）
+     *
+     * @param query   查询
+     * @param content 内容
+     * @return 0~1，查询没有词项时为0
+     */
+    static double coverage(String query, String content) {
+        Set<String> queryTerms = new LinkedHashSet<>(tokenize(query));
+        if (queryTerms.isEmpty()) {
+            return 0;
+        }
+        Set<String> present = new HashSet<>(tokenize(content));
+        long matched = queryTerms.stream().filter(present::contains).count();
+        return (double) matched / queryTerms.size();
+    }
+
+    /**
+     * 邻近度：命中词项数 / 包含全部命中词项的最短窗口长度（命中少于两个词项时为0）
+     */
+    static double proximity(List<String> tokens, Set<String> matched) {
+        if (matched.size() < 2) {
+            return 0;
+        }
+        Map<String, Integer> inWindow = new HashMap<>();
+        int covered = 0;
+        int best = Integer.MAX_VALUE;
+        int left = 0;
+        for (int right = 0; right < tokens.size(); right++) {
+            String token = tokens.get(right);
+            if (!matched.contains(token)) {
+                continue;
+            }
+            if (inWindow.merge(token, 1, Integer::sum) == 1) {
+                covered++;
+            }
+            while (covered == matched.size()) {
+                String leftToken = tokens.get(left);
+                if (matched.contains(leftToken)) {
+                    best = Math.min(best, right - left + 1);
+                    if (inWindow.merge(leftToken, -1, Integer::sum) == 0) {
+                        covered--;
+                    }
+                }
+                left++;
+            }
+        }
+        return best == Integer.MAX_VALUE ? 0 : Math.min(1.0, (double) matched.size() / best);
+    }
+
+    /**
+     * 切分词项：英文和数字按单词（小写），中文按相邻两字
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder word = new StringBuilder();
+        StringBuilder cjk = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c) && Character.UnicodeScript.of(c) != Character.UnicodeScript.HAN) {
+                flushCjk(cjk, tokens);
+                word.append(Character.toLowerCase(c));
+            } else if (Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN) {
+                flushWord(word, tokens);
+                cjk.append(c);
+            } else {
+                flushWord(word, tokens);
+                flushCjk(cjk, tokens);
+            }
+        }
+        flushWord(word, tokens);
+        flushCjk(cjk, tokens);
+        return tokens;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> tokens) {
+        if (!word.isEmpty()) {
+            tokens.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private static void flushCjk(StringBuilder cjk, List<String> tokens) {
+        if (cjk.length() == 1) {
+            tokens.add(cjk.toString());
+        }
+        for (int i = 0; i + 1 < cjk.length(); i++) {
+            tokens.add(cjk.substring(i, i + 2));
+        }
+        cjk.setLength(0);
+    }
+}
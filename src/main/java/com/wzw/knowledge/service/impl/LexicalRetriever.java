@@ -0,0 +1,195 @@
+package com.wzw.knowledge.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import com.wzw.knowledge.mapper.DocumentChunkMapper;
+import com.wzw.knowledge.mapper.DocumentMapper;
+import com.wzw.knowledge.mapper.OcrRecordMapper;
+import com.wzw.knowledge.model.entity.Document;
+import com.wzw.knowledge.model.entity.DocumentChunk;
+import com.wzw.knowledge.model.entity.OcrRecord;
+import com.wzw.knowledge.model.vo.RagDocument;
+import com.wzw.knowledge.model.vo.RagNode;
+import com.wzw.knowledge.service.LexicalIndexService;
+import com.wzw.knowledge.service.Retriever;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地词项检索器（BM25）
+ * <p>
+ * 不依赖查询向量和向量库的全文检索能力，查询向量生成失败时仍能返回结果：
+ * 1. 在本地词项索引中检索分块、图谱节点和OCR识别文本
+ * 2. 分块回表：命中Child块时用Parent块内容作为上下文，同一个Parent只取一次，并生成高亮摘要
+ * 3. 节点回表与节点检索器相同（一次查询获取节点和出边）
+ * 4. OCR回表：识别文本作为文档结果返回，来源类型为 ocr
+ * 得分按本次检索的最高BM25得分归一化到 (0, 1]，只用于排序；
+ * 判断检索置信度的相关度取命中文本的查询词项覆盖率，不受同一次检索中其他命中的影响
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LexicalRetriever implements Retriever {
+
+    public static final String NAME = "lexical";
+
+    private static final List<String> TYPES = List.of(
+            LexicalIndexService.TYPE_CHUNK, LexicalIndexService.TYPE_NODE, LexicalIndexService.TYPE_OCR);
+
+    private final LexicalIndexService lexicalIndexService;
+    private final DocumentChunkMapper documentChunkMapper;
+    private final DocumentMapper documentMapper;
+    private final OcrRecordMapper ocrRecordMapper;
+    private final RagNearCache nearCache;
+    private final NodeRetriever nodeRetriever;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Contribution retrieve(QueryContext context) {
+        long searchStart = System.nanoTime();
+        List<LexicalIndexService.LexicalHit> hits =
+                lexicalIndexService.search(context.normalizedText(), TYPES, context.topK());
+        long searchMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - searchStart);
+        if (hits.isEmpty()) {
+            return Contribution.empty().withTimings(Map.of(STAGE_SEARCH, searchMs));
+        }
+        double topScore = hits.get(0).score();
+
+        long hydrationStart = System.nanoTime();
+        Map<Long, Double> chunkScores = new LinkedHashMap<>();
+        Map<Long, Double> nodeScores = new LinkedHashMap<>();
+        Map<Long, Double> ocrScores = new LinkedHashMap<>();
+        for (LexicalIndexService.LexicalHit hit : hits) {
+            double score = topScore > 0 ? hit.score() / topScore : 0;
+            if (LexicalIndexService.TYPE_NODE.equals(hit.type())) {
+                nodeScores.put(hit.id(), score);
+            } else if (LexicalIndexService.TYPE_OCR.equals(hit.type())) {
+                ocrScores.put(hit.id(), score);
+            } else {
+                chunkScores.put(hit.id(), score);
+            }
+        }
+        List<RagDocument> documents = new ArrayList<>();
+        if (!chunkScores.isEmpty()) {
+            documents.addAll(hydrateChunks(chunkScores, context.normalizedText(), context.useCache()));
+        }
+        if (!ocrScores.isEmpty()) {
+            documents.addAll(hydrateOcr(ocrScores, context.normalizedText()));
+            documents.sort(Comparator.comparing(RagDocument::getScore).reversed());
+        }
+        List<RagNode> nodes = new ArrayList<>();
+        if (!nodeScores.isEmpty()) {
+            Map<Long, RagNode> hydrated = nodeRetriever.hydrate(nodeScores.keySet());
+            nodeScores.forEach((id, score) -> {
+                RagNode node = hydrated.get(id);
+                if (node != null) {
+                    node.setScore(score);
+                    nodes.add(node);
+                }
+            });
+        }
+        long hydrationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - hydrationStart);
+
+        log.info("本地词项检索完成, 返回{}个分块/OCR文本, {}个节点", documents.size(), nodes.size());
+        return new Contribution(documents, nodes)
+                .withTimings(Map.of(STAGE_SEARCH, searchMs, STAGE_HYDRATION, hydrationMs));
+    }
+
+    /**
+     * 分块回表：分块一次批量查询，Parent块和文档头经过近端缓存
+     */
+    private List<RagDocument> hydrateChunks(Map<Long, Double> chunkScores, String query, boolean useCache) {
+        Map<Long, DocumentChunk> chunks = new HashMap<>();
+        for (DocumentChunk chunk : documentChunkMapper.selectHitsByIds(chunkScores.keySet())) {
+            chunks.put(chunk.getId(), chunk);
+        }
+        Set<Long> parentIds = new LinkedHashSet<>();
+        Set<Long> documentIds = new LinkedHashSet<>();
+        for (DocumentChunk chunk : chunks.values()) {
+            if (chunk.getParentId() != null && chunk.getParentId() > 0) {
+                parentIds.add(chunk.getParentId());
+            }
+            documentIds.add(chunk.getDocumentId());
+        }
+        Map<Long, DocumentChunk> parents = nearCache.getParents(parentIds, documentChunkMapper::selectParentsByIds,
+                useCache);
+        Map<Long, Document> documents = nearCache.getDocuments(documentIds, documentMapper::selectHeadersByIds,
+                useCache);
+
+        Set<Long> seenParents = new HashSet<>();
+        List<RagDocument> results = new ArrayList<>();
+        chunkScores.forEach((chunkId, score) -> {
+            DocumentChunk chunk = chunks.get(chunkId);
+            Document document = chunk != null ? documents.get(chunk.getDocumentId()) : null;
+            if (document == null) {
+                return;
+            }
+            DocumentChunk parent = chunk.getParentId() != null ? parents.get(chunk.getParentId()) : null;
+            if (parent == null && DocumentChunk.TYPE_PARENT.equals(chunk.getChunkType())) {
+                parent = chunk;
+            }
+            if (parent != null && !seenParents.add(parent.getId())) {
+                return;
+            }
+
+            RagDocument ragDoc = new RagDocument();
+            ragDoc.setSourceType(RagDocument.SOURCE_DOCUMENT);
+            ragDoc.setId(document.getId());
+            ragDoc.setChunkId(chunk.getId());
+            ragDoc.setName(document.getName());
+            ragDoc.setFileType(document.getFileType());
+            ragDoc.setPageNum(chunk.getPageNum());
+            ragDoc.setSummary(document.getSummary());
+            if (parent != null && StrUtil.isNotBlank(parent.getContent())) {
+                ragDoc.setMatchedContent(parent.getContent());
+                ragDoc.setParentChunkId(parent.getId());
+            } else {
+                ragDoc.setMatchedContent(chunk.getContent());
+            }
+            ragDoc.setScore(score);
+            ragDoc.setRelevance(LexicalReranker.coverage(query, chunk.getContent()));
+            ragDoc.setHighlight(lexicalIndexService.highlight(chunk.getContent(), query));
+            results.add(ragDoc);
+        });
+        return results;
+    }
+
+    /**
+     * OCR回表：一次批量查询，已删除的记录由逻辑删除条件过滤
+     */
+    private List<RagDocument> hydrateOcr(Map<Long, Double> ocrScores, String query) {
+        Map<Long, OcrRecord> records = new HashMap<>();
+        for (OcrRecord record : ocrRecordMapper.selectBatchIds(ocrScores.keySet())) {
+            records.put(record.getId(), record);
+        }
+        List<RagDocument> results = new ArrayList<>();
+        ocrScores.forEach((recordId, score) -> {
+            OcrRecord record = records.get(recordId);
+            if (record == null || StrUtil.isBlank(record.getOcrText())) {
+                return;
+            }
+            RagDocument ragDoc = new RagDocument();
+            ragDoc.setSourceType(RagDocument.SOURCE_OCR);
+            ragDoc.setId(record.getId());
+            ragDoc.setName(StrUtil.blankToDefault(record.getOriginalName(), record.getImageName()));
+            ragDoc.setFileType(record.getImageType());
+            ragDoc.setMatchedContent(record.getOcrText());
+            ragDoc.setScore(score);
+            ragDoc.setRelevance(LexicalReranker.coverage(query, record.getOcrText()));
+            ragDoc.setHighlight(lexicalIndexService.highlight(record.getOcrText(), query));
+            results.add(ragDoc);
+        });
+        return results;
+    }
+}
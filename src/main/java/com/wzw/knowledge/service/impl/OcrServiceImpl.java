@@ -4,8 +4,9 @@ import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.wzw.knowledge.common.CountMode;
+import com.wzw.knowledge.common.CursorPageResult;
 import com.wzw.knowledge.common.ResultCode;
 import com.wzw.knowledge.config.FileConfig;
 import com.wzw.knowledge.config.OcrConfig;
@@ -13,10 +14,13 @@ import com.wzw.knowledge.exception.BusinessException;
 import com.wzw.knowledge.mapper.OcrRecordMapper;
 import com.wzw.knowledge.model.entity.OcrRecord;
 import com.wzw.knowledge.model.vo.OcrRecordVO;
+import com.wzw.knowledge.service.CorpusVersionService;
 import com.wzw.knowledge.service.KnowledgeExtractService;
+import com.wzw.knowledge.service.LexicalIndexService;
 import com.wzw.knowledge.service.OcrService;
 import com.wzw.knowledge.service.OllamaService;
 import com.wzw.knowledge.service.VectorService;
+import com.wzw.knowledge.util.KeysetPager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.sourceforge.tess4j.Tesseract;
@@ -38,6 +42,7 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * OCR服务实现类
@@ -58,6 +63,8 @@ public class OcrServiceImpl extends ServiceImpl<OcrRecordMapper, OcrRecord> impl
     private final OllamaService ollamaService;
     private final VectorService vectorService;
     private final KnowledgeExtractService knowledgeExtractService;
+    private final LexicalIndexService lexicalIndexService;
+    private final CorpusVersionService corpusVersionService;
 
     /**
      * 支持的图片类型
@@ -165,6 +172,8 @@ public class OcrServiceImpl extends ServiceImpl<OcrRecordMapper, OcrRecord> impl
         }
 
         this.updateById(record);
+        lexicalIndexService.indexOcr(record);
+        corpusVersionService.bump("recognize ocr " + recordId);
         return record;
     }
 
@@ -172,25 +181,18 @@ public class OcrServiceImpl extends ServiceImpl<OcrRecordMapper, OcrRecord> impl
      * 分页查询OCR记录
      */
     @Override
-    public Page<OcrRecordVO> pageRecords(Integer pageNum, Integer pageSize,
-                                         String keyword, String imageType, Integer status) {
-        // 构建查询条件
-        LambdaQueryWrapper<OcrRecord> wrapper = new LambdaQueryWrapper<>();
-        wrapper.like(StrUtil.isNotBlank(keyword), OcrRecord::getOcrText, keyword)
-                .or()
-                .like(StrUtil.isNotBlank(keyword), OcrRecord::getImageName, keyword);
-        wrapper.eq(StrUtil.isNotBlank(imageType), OcrRecord::getImageType, imageType);
-        wrapper.eq(status != null, OcrRecord::getStatus, status);
-        wrapper.orderByDesc(OcrRecord::getCreateTime);
-
-        // 执行分页查询
-        Page<OcrRecord> page = this.page(new Page<>(pageNum, pageSize), wrapper);
-
-        // 转换为VO
-        Page<OcrRecordVO> voPage = new Page<>(page.getCurrent(), page.getSize(), page.getTotal());
-        voPage.setRecords(page.getRecords().stream().map(this::convertToVO).toList());
-
-        return voPage;
+    public CursorPageResult<OcrRecordVO> pageRecords(String cursor, Integer size,
+                                                     String keyword, String imageType, Integer status,
+                                                     CountMode countMode) {
+        // 构建查询条件（关键词的两个条件用括号包起来，避免OR吞掉其他筛选条件）
+        Supplier<LambdaQueryWrapper<OcrRecord>> filter = () -> new LambdaQueryWrapper<OcrRecord>()
+                .and(StrUtil.isNotBlank(keyword), w -> w.like(OcrRecord::getOcrText, keyword)
+                        .or()
+                        .like(OcrRecord::getImageName, keyword))
+                .eq(StrUtil.isNotBlank(imageType), OcrRecord::getImageType, imageType)
+                .eq(status != null, OcrRecord::getStatus, status);
+
+        return KeysetPager.page(baseMapper, filter, OcrRecord::getId, cursor, size, countMode, this::convertToVO);
     }
 
     /**
@@ -221,6 +223,9 @@ public class OcrServiceImpl extends ServiceImpl<OcrRecordMapper, OcrRecord> impl
             vectorService.deleteVector(record.getVectorId());
         }
 
+        lexicalIndexService.removeOcr(id);
+        corpusVersionService.bump("delete ocr " + id);
+
         // 删除图片文件
         FileUtil.del(record.getImagePath());
 
@@ -1,9 +1,10 @@
-package com.uka.knowledge.service.impl;
+package com.wzw.knowledge.service.impl;
 
 import cn.hutool.core.util.StrUtil;
 import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.JSONArray;
 import com.alibaba.fastjson2.JSONObject;
+import com.wzw.knowledge.config.OllamaRoutingConfig;
 import com.wzw.knowledge.exception.BusinessException;
 import com.wzw.knowledge.common.ResultCode;
 import com.wzw.knowledge.model.dto.KnowledgeExtractDTO;
@@ -13,13 +14,24 @@ import com.wzw.knowledge.service.OllamaService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.ollama.OllamaChatModel;
 import org.springframework.ai.ollama.OllamaEmbeddingModel;
+import org.springframework.ai.ollama.api.OllamaChatOptions;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Ollama大模型服务实现类
@@ -30,6 +42,7 @@ import java.util.List;
  * - 知识关系抽取
  * - 文本摘要生成
  * - 文本向量生成
+ * 每次调用按任务（ModelTask）路由到对应的模型档位，并统计延迟和token数
  * </p>
  *
  * @author wzw
@@ -42,43 +55,258 @@ public class OllamaServiceImpl implements OllamaService {
 
     private final OllamaChatModel chatModel;
     private final OllamaEmbeddingModel embeddingModel;
+    private final OllamaRoutingConfig routingConfig;
+
+    /**
+     * 各任务调用统计
+     */
+    private final Map<ModelTask, TaskCounter> taskCounters = new ConcurrentHashMap<>();
 
     /**
      * 文本对话
      */
     @Override
     public String chat(String prompt) {
+        return chat(prompt, ModelTask.CHAT);
+    }
+
+    /**
+     * 流式对话
+     */
+    @Override
+    public Flux<String> chatStream(String prompt) {
+        return chatStream(prompt, ModelTask.CHAT);
+    }
+
+    /**
+     * 按任务档位进行文本对话
+     */
+    @Override
+    public String chat(String prompt, ModelTask task) {
+        OllamaChatOptions options = buildOptions(task, null);
+        TaskCounter counter = counterOf(task);
+        long start = System.currentTimeMillis();
         try {
             ChatClient chatClient = ChatClient.create(chatModel);
-            String response = chatClient.prompt()
-
+            ChatResponse response = chatClient.prompt()
+                    .options(options)
                     .user(prompt)
                     .call()
-                    .content();
-            return response;
+                    .chatResponse();
+            counter.record(System.currentTimeMillis() - start, usageOf(response));
+            return extractText(response);
         } catch (Exception e) {
-            log.error("Ollama对话失败", e);
+            counter.error();
+            log.error("Ollama对话失败, task={}", task, e);
             throw new BusinessException(ResultCode.OLLAMA_ERROR, "对话失败: " + e.getMessage());
         }
     }
 
     /**
-     * 流式对话
+     * 按任务档位进行流式对话
      */
     @Override
-    public Flux<String> chatStream(String prompt) {
+    public Flux<String> chatStream(String prompt, ModelTask task) {
+        return chatStream(prompt, task, null);
+    }
+
+    /**
+     * 按任务档位进行结构化流式对话
+     */
+    @Override
+    public Flux<String> chatStream(String prompt, ModelTask task, Map<String, Object> format) {
+        OllamaChatOptions options = buildOptions(task, format);
+        TaskCounter counter = counterOf(task);
         try {
             ChatClient chatClient = ChatClient.create(chatModel);
+            AtomicLong start = new AtomicLong();
+            AtomicBoolean inThinking = new AtomicBoolean(false);
+            AtomicReference<Usage> lastUsage = new AtomicReference<>();
             return chatClient.prompt()
+                    .options(options)
                     .user(prompt)
                     .stream()
-                    .content();
+                    .chatResponse()
+                    .doOnSubscribe(s -> start.set(System.currentTimeMillis()))
+                    .doOnNext(response -> {
+                        Usage usage = usageOf(response);
+                        if (usage != null && usage.getTotalTokens() != null && usage.getTotalTokens() > 0) {
+                            lastUsage.set(usage);
+                        }
+                    })
+                    .<String>handle((response, sink) -> {
+                        String text = extractStreamText(response, inThinking);
+                        if (StrUtil.isNotEmpty(text)) {
+                            sink.next(text);
+                        }
+                    })
+                    // 只输出了思考内容就结束时补上结束标签，避免思考内容混入回答
+                    .concatWith(Flux.defer(() -> inThinking.compareAndSet(true, false)
+                            ? Flux.just("</think>") : Flux.empty()))
+                    .doOnComplete(() -> counter.record(System.currentTimeMillis() - start.get(), lastUsage.get()))
+                    // 客户端断开等取消的调用同样计入统计
+                    .doOnCancel(() -> counter.record(System.currentTimeMillis() - start.get(), lastUsage.get()))
+                    .doOnError(e -> counter.error());
         } catch (Exception e) {
-            log.error("Ollama流式对话失败", e);
+            counter.error();
+            log.error("Ollama流式对话失败, task={}", task, e);
             return Flux.error(new BusinessException(ResultCode.OLLAMA_ERROR, "对话失败: " + e.getMessage()));
         }
     }
 
+    /**
+     * 获取各任务的调用统计
+     */
+    @Override
+    public Map<String, TaskStats> getTaskStats() {
+        Map<String, TaskStats> stats = new LinkedHashMap<>();
+        for (ModelTask task : ModelTask.values()) {
+            TaskCounter counter = taskCounters.get(task);
+            if (counter != null) {
+                stats.put(task.getKey(), counter.snapshot(task.getKey(), resolveModel(task)));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * 根据任务构建模型参数（未配置的字段沿用默认参数）
+     */
+    private OllamaChatOptions buildOptions(ModelTask task, Map<String, Object> format) {
+        OllamaRoutingConfig.ModelProfile profile = routingConfig.resolve(task.getKey());
+        OllamaChatOptions.Builder builder = OllamaChatOptions.builder();
+        if (format != null) {
+            builder.format(format);
+        }
+        if (profile == null) {
+            return builder.build();
+        }
+        if (StrUtil.isNotBlank(profile.getModel())) {
+            builder.model(profile.getModel());
+        }
+        if (profile.getTemperature() != null) {
+            builder.temperature(profile.getTemperature());
+        }
+        if (profile.getNumCtx() != null) {
+            builder.numCtx(profile.getNumCtx());
+        }
+        if (profile.getNumPredict() != null) {
+            builder.numPredict(profile.getNumPredict());
+        }
+        if (StrUtil.isNotBlank(profile.getKeepAlive())) {
+            builder.keepAlive(profile.getKeepAlive());
+        }
+        if (profile.getThinking() != null) {
+            if (profile.getThinking()) {
+                builder.enableThinking();
+            } else {
+                builder.disableThinking();
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 获取任务实际使用的模型名称
+     */
+    private String resolveModel(ModelTask task) {
+        OllamaRoutingConfig.ModelProfile profile = routingConfig.resolve(task.getKey());
+        if (profile != null && StrUtil.isNotBlank(profile.getModel())) {
+            return profile.getModel();
+        }
+        return chatModel.getDefaultOptions().getModel();
+    }
+
+    private TaskCounter counterOf(ModelTask task) {
+        return taskCounters.computeIfAbsent(task, t -> new TaskCounter());
+    }
+
+    private Usage usageOf(ChatResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return null;
+        }
+        return response.getMetadata().getUsage();
+    }
+
+    /**
+     * 提取回复文本
+     * 显式开启思考时Ollama将思考内容放在metadata中，这里还原为&lt;think&gt;标签，保持下游解析方式不变
+     */
+    private String extractText(ChatResponse response) {
+        if (response == null || response.getResult() == null || response.getResult().getOutput() == null) {
+            return "";
+        }
+        String text = StrUtil.nullToEmpty(response.getResult().getOutput().getText());
+        Object thinking = response.getResult().getOutput().getMetadata().get("thinking");
+        if (thinking != null && StrUtil.isNotBlank(thinking.toString())) {
+            return "<think>" + thinking + "</think>" + text;
+        }
+        return text;
+    }
+
+    /**
+     * 提取流式片段文本（思考片段包裹在&lt;think&gt;标签中）
+     */
+    static String extractStreamText(ChatResponse response, AtomicBoolean inThinking) {
+        if (response == null || response.getResult() == null || response.getResult().getOutput() == null) {
+            return null;
+        }
+        String text = StrUtil.nullToEmpty(response.getResult().getOutput().getText());
+        Object thinking = response.getResult().getOutput().getMetadata().get("thinking");
+        StringBuilder sb = new StringBuilder();
+        if (thinking != null && StrUtil.isNotEmpty(thinking.toString())) {
+            if (inThinking.compareAndSet(false, true)) {
+                sb.append("<think>");
+            }
+            sb.append(thinking);
+        }
+        if (!text.isEmpty() && inThinking.compareAndSet(true, false)) {
+            sb.append("</think>");
+        }
+        sb.append(text);
+        return sb.toString();
+    }
+
+    /**
+     * 任务调用计数器
+     */
+    private static final class TaskCounter {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalLatencyMs = new LongAdder();
+        private final LongAccumulator maxLatencyMs = new LongAccumulator(Math::max, 0);
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAdder completionTokens = new LongAdder();
+
+        void record(long latencyMs, Usage usage) {
+            calls.increment();
+            totalLatencyMs.add(latencyMs);
+            maxLatencyMs.accumulate(latencyMs);
+            if (usage != null) {
+                if (usage.getPromptTokens() != null) {
+                    promptTokens.add(usage.getPromptTokens());
+                }
+                if (usage.getCompletionTokens() != null) {
+                    completionTokens.add(usage.getCompletionTokens());
+                }
+            }
+        }
+
+        void error() {
+            errors.increment();
+        }
+
+        TaskStats snapshot(String task, String model) {
+            long n = calls.sum();
+            long completion = completionTokens.sum();
+            return new TaskStats(task, model, n, errors.sum(),
+                    n == 0 ? 0 : (double) totalLatencyMs.sum() / n,
+                    maxLatencyMs.get(),
+                    promptTokens.sum(), completion,
+                    n == 0 ? 0 : (double) completion / n);
+        }
+    }
+
     /**
      * 从文本中抽取知识实体
      */
@@ -92,7 +320,7 @@ public class OllamaServiceImpl implements OllamaService {
         String prompt = buildEntityExtractionPrompt(text);
 
         try {
-            String response = chat(prompt);
+            String response = chat(prompt, ModelTask.EXTRACT);
             return parseEntitiesFromResponse(response);
         } catch (Exception e) {
             log.error("实体抽取失败", e);
@@ -113,7 +341,7 @@ public class OllamaServiceImpl implements OllamaService {
         String prompt = buildRelationExtractionPrompt(text, entities);
 
         try {
-            String response = chat(prompt);
+            String response = chat(prompt, ModelTask.EXTRACT);
             return parseRelationsFromResponse(response, entities);
         } catch (Exception e) {
             log.error("关系抽取失败", e);
@@ -169,7 +397,7 @@ public class OllamaServiceImpl implements OllamaService {
                 """.formatted(text);
 
         try {
-            return chat(prompt);
+            return chat(prompt, ModelTask.SUMMARY);
         } catch (Exception e) {
             log.error("摘要生成失败", e);
             throw new BusinessException(ResultCode.OLLAMA_ERROR, "摘要生成失败: " + e.getMessage());
@@ -0,0 +1,159 @@
+package com.wzw.knowledge.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONException;
+import com.wzw.knowledge.common.ResultCode;
+import com.wzw.knowledge.exception.BusinessException;
+import com.wzw.knowledge.model.vo.RagDocument;
+import com.wzw.knowledge.service.RagEvalService;
+import com.wzw.knowledge.service.RagService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * RAG离线评测服务实现类
+ * <p>
+ * 检索结果按排名与标准答案分块比对：RagDocument的分块ID或Parent块ID等于标准答案分块之一即为命中，
+ * 同一个标准答案分块只计一次。相关度为二值，nDCG按 1/log2(排名+1) 折损
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RagEvalServiceImpl implements RagEvalService {
+
+    private final RagService ragService;
+
+    @Override
+    public List<EvalCase> parseDataset(String jsonl) {
+        List<EvalCase> cases = new ArrayList<>();
+        if (jsonl == null) {
+            return cases;
+        }
+        int lineNo = 0;
+        for (String line : jsonl.split("\\R")) {
+            lineNo++;
+            if (StrUtil.isBlank(line) || line.stripLeading().startsWith("#")) {
+                continue;
+            }
+            EvalCase evalCase;
+            try {
+                evalCase = JSON.parseObject(line, EvalCase.class);
+            } catch (JSONException e) {
+                throw new BusinessException(ResultCode.PARAM_ERROR, "评测数据集第" + lineNo + "行格式错误");
+            }
+            if (evalCase == null || StrUtil.isBlank(evalCase.question())) {
+                throw new BusinessException(ResultCode.PARAM_ERROR, "评测数据集第" + lineNo + "行缺少问题");
+            }
+            String id = StrUtil.isBlank(evalCase.id()) ? String.valueOf(lineNo) : evalCase.id();
+            List<Long> gold = evalCase.goldChunkIds() == null ? List.of() : evalCase.goldChunkIds();
+            cases.add(new EvalCase(id, evalCase.question(), gold));
+        }
+        return cases;
+    }
+
+    @Override
+    public EvalReport evaluate(List<EvalCase> cases, int k, boolean coldCache) {
+        long startedAt = System.currentTimeMillis();
+
+        List<CaseResult> results = new ArrayList<>(cases.size());
+        Map<String, List<Long>> samples = new LinkedHashMap<>();
+        for (EvalCase evalCase : cases) {
+            // 冷缓存模式跳过缓存，不清空线上共用的缓存
+            RagService.RagResult result = coldCache
+                    ? ragService.searchWithoutCache(evalCase.question(), k)
+                    : ragService.search(evalCase.question(), k);
+            List<Long> retrieved = new ArrayList<>();
+            List<RagDocument> documents = result.documents() == null ? List.of() : result.documents();
+            for (RagDocument doc : documents.subList(0, Math.min(k, documents.size()))) {
+                retrieved.add(doc.getParentChunkId() != null ? doc.getParentChunkId() : doc.getChunkId());
+            }
+            Metrics metrics = score(evalCase.goldChunkIds(), documents, k);
+            results.add(new CaseResult(evalCase.id(), evalCase.question(), retrieved,
+                    metrics.recall(), metrics.reciprocalRank(), metrics.ndcg(), result.timings()));
+            result.timings().forEach((stage, ms) -> samples.computeIfAbsent(stage, s -> new ArrayList<>()).add(ms));
+        }
+
+        Map<String, StageLatency> stages = new LinkedHashMap<>();
+        samples.forEach((stage, values) -> stages.put(stage, latency(values)));
+        EvalReport report = new EvalReport(
+                startedAt,
+                k,
+                results.size(),
+                results.stream().mapToDouble(CaseResult::recall).average().orElse(0),
+                results.stream().mapToDouble(CaseResult::reciprocalRank).average().orElse(0),
+                results.stream().mapToDouble(CaseResult::ndcg).average().orElse(0),
+                stages,
+                results
+        );
+        log.info("RAG评测完成, cases={}, k={}, recall@k={}, mrr={}, ndcg@k={}, 耗时={}ms",
+                report.cases(), k, String.format("%.3f", report.recallAtK()), String.format("%.3f", report.mrr()),
+                String.format("%.3f", report.ndcgAtK()), System.currentTimeMillis() - startedAt);
+        return report;
+    }
+
+    /**
+     * 单个用例的检索质量
+     */
+    record Metrics(double recall, double reciprocalRank, double ndcg) {
+    }
+
+    /**
+     * 计算单个用例的 recall@k、倒数排名和 nDCG@k
+     */
+    static Metrics score(Collection<Long> goldChunkIds, List<RagDocument> documents, int k) {
+        Set<Long> gold = new HashSet<>(goldChunkIds);
+        if (gold.isEmpty()) {
+            return new Metrics(0, 0, 0);
+        }
+        Set<Long> found = new HashSet<>();
+        double reciprocalRank = 0;
+        double dcg = 0;
+        for (int i = 0; i < Math.min(k, documents.size()); i++) {
+            RagDocument doc = documents.get(i);
+            Long matched = gold.contains(doc.getChunkId()) ? doc.getChunkId()
+                    : gold.contains(doc.getParentChunkId()) ? doc.getParentChunkId() : null;
+            if (matched == null || !found.add(matched)) {
+                continue;
+            }
+            if (reciprocalRank == 0) {
+                reciprocalRank = 1.0 / (i + 1);
+            }
+            dcg += 1 / log2(i + 2);
+        }
+        double idcg = 0;
+        for (int i = 0; i < Math.min(k, gold.size()); i++) {
+            idcg += 1 / log2(i + 2);
+        }
+        return new Metrics((double) found.size() / gold.size(), reciprocalRank, dcg / idcg);
+    }
+
+    /**
+     * 耗时分位数（最近秩法），超时记录（-1）单独计数
+     */
+    static StageLatency latency(List<Long> values) {
+        long[] sorted = values.stream().filter(v -> v >= 0).mapToLong(Long::longValue).sorted().toArray();
+        int timeouts = values.size() - sorted.length;
+        if (sorted.length == 0) {
+            return new StageLatency(0, timeouts, 0, 0, 0, 0);
+        }
+        return new StageLatency(sorted.length, timeouts, percentile(sorted, 50), percentile(sorted, 95),
+                percentile(sorted, 99), sorted[sorted.length - 1]);
+    }
+
+    private static long percentile(long[] sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double log2(int x) {
+        return Math.log(x) / Math.log(2);
+    }
+}
@@ -0,0 +1,201 @@
+package com.wzw.knowledge.service.impl;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.wzw.knowledge.config.RagRetrievalConfig;
+import com.wzw.knowledge.model.entity.Document;
+import com.wzw.knowledge.model.entity.DocumentChunk;
+import com.wzw.knowledge.service.RagService;
+import com.wzw.knowledge.util.TransactionHooks;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * RAG检索近端缓存
+ * <p>
+ * 缓存检索命中后回表的父块内容和文档头信息（名称、类型、摘要），热门问题的回表查询直接命中内存：
+ * - 容量有上限（LRU淘汰），并设置过期时间
+ * - 按文档失效：每条缓存记录写入时所属文档的代数，文档重新解析、删除、摘要更新后调用
+ *   {@link #invalidateDocument(Long)} 使该文档的代数递增，该文档的旧记录读取时即失效，其他文档的缓存不受影响
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Service
+public class RagNearCache {
+
+    private final LRUCache<Long, Entry<DocumentChunk>> parents;
+    private final LRUCache<Long, Entry<Document>> documents;
+
+    /**
+     * 文档ID -> 代数（未失效过的文档为0），代数取自全局递增的计数器
+     */
+    private final Map<Long, Long> generations = new ConcurrentHashMap<>();
+    private final AtomicLong generationCounter = new AtomicLong();
+
+    private final LongAdder parentHits = new LongAdder();
+    private final LongAdder parentMisses = new LongAdder();
+    private final LongAdder documentHits = new LongAdder();
+    private final LongAdder documentMisses = new LongAdder();
+    private final LongAdder hydrations = new LongAdder();
+    private final LongAdder hydrationMs = new LongAdder();
+    private final LongAdder hydrationQueries = new LongAdder();
+
+    /**
+     * 缓存记录
+     *
+     * @param value      缓存值
+     * @param documentId 所属文档ID
+     * @param generation 写入时所属文档的代数
+     */
+    private record Entry<V>(V value, Long documentId, long generation) {
+    }
+
+    public RagNearCache(RagRetrievalConfig config) {
+        this.parents = CacheUtil.newLRUCache(config.getParentCacheSize(), config.getNearCacheTtl());
+        this.documents = CacheUtil.newLRUCache(config.getDocumentCacheSize(), config.getNearCacheTtl());
+    }
+
+    /**
+     * 批量获取父块，未命中的部分用一次查询加载
+     *
+     * @param ids      父块ID
+     * @param loader   批量加载函数（只传入未命中的ID）
+     * @param useCache 是否使用缓存，为false时全部直接加载，不读写缓存也不计入命中统计
+     * @return 父块ID -> 父块（不存在或已删除的不包含在内）
+     */
+    public Map<Long, DocumentChunk> getParents(Collection<Long> ids, Function<Collection<Long>, List<DocumentChunk>> loader,
+                                               boolean useCache) {
+        if (!useCache) {
+            return load(ids, loader, DocumentChunk::getId);
+        }
+        return getAll(parents, ids, loader, DocumentChunk::getId, DocumentChunk::getDocumentId, parentHits, parentMisses);
+    }
+
+    /**
+     * 批量获取文档头信息，未命中的部分用一次查询加载
+     *
+     * @param ids      文档ID
+     * @param loader   批量加载函数（只传入未命中的ID）
+     * @param useCache 是否使用缓存，为false时全部直接加载，不读写缓存也不计入命中统计
+     * @return 文档ID -> 文档（不存在或已删除的不包含在内）
+     */
+    public Map<Long, Document> getDocuments(Collection<Long> ids, Function<Collection<Long>, List<Document>> loader,
+                                            boolean useCache) {
+        if (!useCache) {
+            return load(ids, loader, Document::getId);
+        }
+        return getAll(documents, ids, loader, Document::getId, Document::getId, documentHits, documentMisses);
+    }
+
+    /**
+     * 失效文档的父块和头信息（重新解析、删除、摘要更新后调用）
+     * <p>
+     * 在事务中调用时推迟到提交后执行：提交前其他线程读到的仍是旧数据，提前失效会让旧数据以新代数写回缓存
+     * </p>
+     *
+     * @param documentId 文档ID
+     */
+    public void invalidateDocument(Long documentId) {
+        TransactionHooks.afterCommit(() -> invalidate(documentId));
+    }
+
+    /**
+     * 记录一次回表
+     *
+     * @param elapsedMs 耗时（毫秒）
+     * @param queries   执行的查询数
+     */
+    public void recordHydration(long elapsedMs, int queries) {
+        hydrations.increment();
+        hydrationMs.add(elapsedMs);
+        hydrationQueries.add(queries);
+    }
+
+    /**
+     * 获取回表和缓存统计
+     */
+    public RagService.HydrationStats getStats() {
+        long count = hydrations.sum();
+        return new RagService.HydrationStats(
+                count,
+                count == 0 ? 0 : (double) hydrationMs.sum() / count,
+                count == 0 ? 0 : (double) hydrationQueries.sum() / count,
+                parentHits.sum(),
+                parentMisses.sum(),
+                hitRate(parentHits, parentMisses),
+                documentHits.sum(),
+                documentMisses.sum(),
+                hitRate(documentHits, documentMisses),
+                parents.size(),
+                documents.size()
+        );
+    }
+
+    private void invalidate(Long documentId) {
+        generations.put(documentId, generationCounter.incrementAndGet());
+        documents.remove(documentId);
+    }
+
+    private long generationOf(Long documentId) {
+        return documentId == null ? 0 : generations.getOrDefault(documentId, 0L);
+    }
+
+    private <V> Map<Long, V> getAll(LRUCache<Long, Entry<V>> cache, Collection<Long> ids,
+                                    Function<Collection<Long>, List<V>> loader, Function<V, Long> idOf,
+                                    Function<V, Long> documentIdOf, LongAdder hits, LongAdder misses) {
+        Map<Long, V> result = new HashMap<>();
+        if (ids.isEmpty()) {
+            return result;
+        }
+        // 加载前的计数器：加载过程中被失效的文档代数会大于它，加载到的可能是旧数据，不写入缓存
+        long loadStartedAt = generationCounter.get();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            Entry<V> entry = cache.get(id);
+            if (entry != null && entry.generation() == generationOf(entry.documentId())) {
+                result.put(id, entry.value());
+            } else {
+                if (entry != null) {
+                    cache.remove(id);
+                }
+                missing.add(id);
+            }
+        }
+        hits.add(result.size());
+        misses.add(missing.size());
+
+        if (!missing.isEmpty()) {
+            for (V value : loader.apply(missing)) {
+                Long id = idOf.apply(value);
+                Long documentId = documentIdOf.apply(value);
+                result.put(id, value);
+                long generation = generationOf(documentId);
+                if (generation <= loadStartedAt) {
+                    cache.put(id, new Entry<>(value, documentId, generation));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static <V> Map<Long, V> load(Collection<Long> ids, Function<Collection<Long>, List<V>> loader,
+                                         Function<V, Long> idOf) {
+        Map<Long, V> result = new HashMap<>();
+        if (!ids.isEmpty()) {
+            loader.apply(ids).forEach(value -> result.put(idOf.apply(value), value));
+        }
+        return result;
+    }
+
+    private static double hitRate(LongAdder hits, LongAdder misses) {
+        long total = hits.sum() + misses.sum();
+        return total == 0 ? 0 : (double) hits.sum() / total;
+    }
+}
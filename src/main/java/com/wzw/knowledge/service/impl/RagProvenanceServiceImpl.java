@@ -0,0 +1,443 @@
+package com.wzw.knowledge.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.wzw.knowledge.mapper.ChatMessageMapper;
+import com.wzw.knowledge.mapper.DocumentChunkMapper;
+import com.wzw.knowledge.mapper.DocumentMapper;
+import com.wzw.knowledge.mapper.KnowledgeNodeMapper;
+import com.wzw.knowledge.mapper.KnowledgeRelationMapper;
+import com.wzw.knowledge.mapper.OcrRecordMapper;
+import com.wzw.knowledge.model.dto.RagProvenance;
+import com.wzw.knowledge.model.entity.ChatMessage;
+import com.wzw.knowledge.model.entity.Document;
+import com.wzw.knowledge.model.entity.DocumentChunk;
+import com.wzw.knowledge.model.entity.KnowledgeNode;
+import com.wzw.knowledge.model.entity.KnowledgeRelation;
+import com.wzw.knowledge.model.entity.OcrRecord;
+import com.wzw.knowledge.model.vo.RagContextVO;
+import com.wzw.knowledge.model.vo.RagDocument;
+import com.wzw.knowledge.model.vo.RagNode;
+import com.wzw.knowledge.service.CorpusVersionService;
+import com.wzw.knowledge.service.RagProvenanceService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * RAG来源服务实现类
+ * <p>
+ * 还原时每条消息最多7次批量查询：分块（含已删除）、缺失的父块、文档基本信息、OCR记录（含已删除）、节点、
+ * 节点关系和目标节点。分块和OCR记录是逻辑删除的，文档重新解析或图片删除后历史回答仍能看到当时引用的内容，
+ * 并标记为来源已变化
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RagProvenanceServiceImpl implements RagProvenanceService {
+
+    private final DocumentChunkMapper documentChunkMapper;
+    private final DocumentMapper documentMapper;
+    private final KnowledgeNodeMapper knowledgeNodeMapper;
+    private final KnowledgeRelationMapper relationMapper;
+    private final ChatMessageMapper messageMapper;
+    private final OcrRecordMapper ocrRecordMapper;
+    private final CorpusVersionService corpusVersionService;
+
+    /**
+     * 编码检索结果
+     */
+    @Override
+    public String encode(List<RagDocument> documents, List<RagNode> nodes) {
+        RagProvenance provenance = new RagProvenance();
+        provenance.setCorpusVersion(corpusVersionService.current());
+        if (documents != null) {
+            int position = 0;
+            for (RagDocument doc : documents) {
+                if (doc.getChunkId() != null) {
+                    provenance.getDocuments().add(chunkRef(doc.getChunkId(), doc.getParentChunkId(), doc.getScore()));
+                    position++;
+                } else if (RagDocument.SOURCE_OCR.equals(doc.getSourceType()) && doc.getId() != null) {
+                    if (provenance.getSources() == null) {
+                        provenance.setSources(new ArrayList<>());
+                    }
+                    provenance.getSources().add(sourceRef(doc.getSourceType(), doc.getId(), position++, doc.getScore()));
+                }
+            }
+        }
+        if (nodes != null) {
+            for (RagNode node : nodes) {
+                if (node.getId() != null) {
+                    provenance.getNodes().add(nodeRef(node.getId(), node.getScore()));
+                }
+            }
+        }
+        return JSON.toJSONString(provenance);
+    }
+
+    /**
+     * 还原RAG上下文
+     */
+    @Override
+    public RagContextVO resolve(Long messageId, String ragContext) {
+        JSONObject json = JSON.parseObject(ragContext);
+        RagContextVO vo = new RagContextVO();
+        vo.setMessageId(messageId);
+
+        // 旧格式：直接保存了完整的文档和节点
+        if (!json.containsKey("v")) {
+            vo.setDocuments(json.getList("documents", RagDocument.class));
+            vo.setNodes(json.getList("nodes", RagNode.class));
+            vo.setStale(false);
+            return vo;
+        }
+
+        RagProvenance provenance = json.to(RagProvenance.class);
+        StaleFlag stale = new StaleFlag();
+        vo.setCorpusVersion(provenance.getCorpusVersion());
+        vo.setDocuments(mergeSources(resolveDocuments(provenance.getDocuments(), stale),
+                resolveOcr(provenance.getSources(), stale)));
+        vo.setNodes(resolveNodes(provenance.getNodes(), stale));
+        vo.setStale(stale.value);
+        return vo;
+    }
+
+    /**
+     * 压缩旧格式数据
+     */
+    @Override
+    public CompactionReport compactLegacy(int batchSize) {
+        long start = System.currentTimeMillis();
+        long scanned = 0;
+        long compacted = 0;
+        long failed = 0;
+        long bytesBefore = 0;
+        long bytesAfter = 0;
+
+        long afterId = 0;
+        List<ChatMessage> batch;
+        do {
+            batch = messageMapper.selectLegacyRagContexts(afterId, batchSize);
+            for (ChatMessage msg : batch) {
+                afterId = msg.getId();
+                scanned++;
+                String legacy = msg.getRagContext();
+                try {
+                    String compact = compactLegacy(legacy);
+                    messageMapper.updateRagContext(msg.getId(), compact);
+                    bytesBefore += legacy.getBytes(StandardCharsets.UTF_8).length;
+                    bytesAfter += compact.getBytes(StandardCharsets.UTF_8).length;
+                    compacted++;
+                } catch (Exception e) {
+                    failed++;
+                    log.warn("RAG上下文压缩失败，已跳过, messageId={}: {}", msg.getId(), e.getMessage());
+                }
+            }
+            if (!batch.isEmpty()) {
+                log.info("RAG上下文压缩进度, scanned={}, compacted={}, bytesBefore={}, bytesAfter={}",
+                        scanned, compacted, bytesBefore, bytesAfter);
+            }
+        } while (batch.size() == batchSize);
+
+        long saved = bytesBefore - bytesAfter;
+        CompactionReport report = new CompactionReport(scanned, compacted, failed, bytesBefore, bytesAfter, saved,
+                bytesBefore > 0 ? (double) saved / bytesBefore : 0, System.currentTimeMillis() - start);
+        log.info("RAG上下文压缩完成: {}", report);
+        return report;
+    }
+
+    /**
+     * 旧格式转换为引用格式（旧格式没有记录父块ID和语料版本，还原时由分块的parentId推导）
+     */
+    String compactLegacy(String legacy) {
+        JSONObject json = JSON.parseObject(legacy);
+        List<RagDocument> documents = json.getList("documents", RagDocument.class);
+        List<RagNode> nodes = json.getList("nodes", RagNode.class);
+
+        RagProvenance provenance = new RagProvenance();
+        provenance.setCorpusVersion(null);
+        if (documents != null) {
+            documents.stream()
+                    .filter(doc -> doc.getChunkId() != null)
+                    .forEach(doc -> provenance.getDocuments().add(chunkRef(doc.getChunkId(), null, doc.getScore())));
+        }
+        if (nodes != null) {
+            nodes.stream()
+                    .filter(node -> node.getId() != null)
+                    .forEach(node -> provenance.getNodes().add(nodeRef(node.getId(), node.getScore())));
+        }
+        return JSON.toJSONString(provenance);
+    }
+
+    /**
+     * 还原分块引用（与引用一一对应，找不到的为null）
+     */
+    private List<RagDocument> resolveDocuments(List<RagProvenance.ChunkRef> refs, StaleFlag stale) {
+        if (refs == null || refs.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // 命中的分块和已知的父块一次查询
+        Set<Long> chunkIds = new LinkedHashSet<>();
+        refs.forEach(ref -> {
+            chunkIds.add(ref.getChunkId());
+            if (ref.getParentChunkId() != null) {
+                chunkIds.add(ref.getParentChunkId());
+            }
+        });
+        Map<Long, DocumentChunk> chunks = toMap(documentChunkMapper.selectByIdsIncludingDeleted(chunkIds),
+                DocumentChunk::getId);
+
+        // 由旧格式转换来的引用没有父块ID，按分块的parentId补查
+        Set<Long> missingParents = refs.stream()
+                .filter(ref -> ref.getParentChunkId() == null)
+                .map(ref -> chunks.get(ref.getChunkId()))
+                .filter(Objects::nonNull)
+                .map(DocumentChunk::getParentId)
+                .filter(parentId -> parentId != null && parentId > 0 && !chunks.containsKey(parentId))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (!missingParents.isEmpty()) {
+            chunks.putAll(toMap(documentChunkMapper.selectByIdsIncludingDeleted(missingParents), DocumentChunk::getId));
+        }
+
+        Set<Long> documentIds = chunks.values().stream()
+                .map(DocumentChunk::getDocumentId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, Document> documents = documentIds.isEmpty() ? Map.of()
+                : toMap(documentMapper.selectBriefByIds(documentIds), Document::getId);
+
+        List<RagDocument> results = new ArrayList<>(refs.size());
+        for (RagProvenance.ChunkRef ref : refs) {
+            DocumentChunk chunk = chunks.get(ref.getChunkId());
+            Document document = chunk != null ? documents.get(chunk.getDocumentId()) : null;
+            if (chunk == null || document == null) {
+                stale.value = true;
+                results.add(null);
+                continue;
+            }
+            Long parentId = ref.getParentChunkId() != null ? ref.getParentChunkId() : chunk.getParentId();
+            DocumentChunk parent = parentId != null ? chunks.get(parentId) : null;
+            if (isDeleted(chunk.getDeleted()) || isDeleted(document.getDeleted())
+                    || (parent != null && isDeleted(parent.getDeleted()))) {
+                stale.value = true;
+            }
+
+            RagDocument doc = new RagDocument();
+            doc.setId(document.getId());
+            doc.setChunkId(chunk.getId());
+            doc.setName(document.getName());
+            doc.setFileType(document.getFileType());
+            doc.setPageNum(chunk.getPageNum());
+            doc.setSummary(document.getSummary());
+            doc.setScore(ref.getScore());
+            if (parent != null && StrUtil.isNotBlank(parent.getContent())) {
+                doc.setParentChunkId(parent.getId());
+                doc.setMatchedContent(parent.getContent());
+            } else {
+                doc.setMatchedContent(chunk.getContent());
+            }
+            results.add(doc);
+        }
+        return results;
+    }
+
+    /**
+     * 还原OCR引用（记录被删除后仍还原当时的识别文本，并标记为已变化）
+     */
+    private Map<RagProvenance.SourceRef, RagDocument> resolveOcr(List<RagProvenance.SourceRef> refs, StaleFlag stale) {
+        if (refs == null || refs.isEmpty()) {
+            return Map.of();
+        }
+        Set<Long> ids = refs.stream()
+                .filter(ref -> RagDocument.SOURCE_OCR.equals(ref.getSourceType()) && ref.getId() != null)
+                .map(RagProvenance.SourceRef::getId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<Long, OcrRecord> records = ids.isEmpty() ? Map.of()
+                : toMap(ocrRecordMapper.selectBriefByIdsIncludingDeleted(ids), OcrRecord::getId);
+
+        Map<RagProvenance.SourceRef, RagDocument> results = new LinkedHashMap<>();
+        for (RagProvenance.SourceRef ref : refs) {
+            OcrRecord record = ref.getId() != null ? records.get(ref.getId()) : null;
+            if (record == null || !RagDocument.SOURCE_OCR.equals(ref.getSourceType())) {
+                stale.value = true;
+                continue;
+            }
+            if (isDeleted(record.getDeleted())) {
+                stale.value = true;
+            }
+            RagDocument doc = new RagDocument();
+            doc.setSourceType(RagDocument.SOURCE_OCR);
+            doc.setId(record.getId());
+            doc.setName(StrUtil.blankToDefault(record.getOriginalName(), record.getImageName()));
+            doc.setFileType(record.getImageType());
+            doc.setMatchedContent(record.getOcrText());
+            doc.setScore(ref.getScore());
+            results.put(ref, doc);
+        }
+        return results;
+    }
+
+    /**
+     * 按编码时的位置把OCR来源插回分块文档之间，位置无效的追加到末尾
+     */
+    private static List<RagDocument> mergeSources(List<RagDocument> chunkDocs,
+                                                  Map<RagProvenance.SourceRef, RagDocument> sourceDocs) {
+        RagDocument[] slots = new RagDocument[chunkDocs.size() + sourceDocs.size()];
+        boolean[] taken = new boolean[slots.length];
+        List<RagDocument> overflow = new ArrayList<>();
+        sourceDocs.forEach((ref, doc) -> {
+            Integer position = ref.getPosition();
+            if (position != null && position >= 0 && position < slots.length && !taken[position]) {
+                slots[position] = doc;
+                taken[position] = true;
+            } else {
+                overflow.add(doc);
+            }
+        });
+        int next = 0;
+        for (RagDocument doc : chunkDocs) {
+            while (next < slots.length && taken[next]) {
+                next++;
+            }
+            if (next < slots.length) {
+                slots[next] = doc;
+                taken[next++] = true;
+            } else if (doc != null) {
+                overflow.add(doc);
+            }
+        }
+        List<RagDocument> results = new ArrayList<>(slots.length);
+        for (RagDocument doc : slots) {
+            if (doc != null) {
+                results.add(doc);
+            }
+        }
+        results.addAll(overflow);
+        return results;
+    }
+
+    private List<RagNode> resolveNodes(List<RagProvenance.NodeRef> refs, StaleFlag stale) {
+        if (refs == null || refs.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Long> nodeIds = refs.stream().map(RagProvenance.NodeRef::getNodeId).toList();
+        Map<Long, KnowledgeNode> nodes = toMap(knowledgeNodeMapper.selectBatchIds(nodeIds), KnowledgeNode::getId);
+
+        // 关系和关系的目标节点各一次查询
+        Map<Long, List<KnowledgeRelation>> relationsBySource = nodes.isEmpty() ? Map.of()
+                : relationMapper.selectBySourceNodeIds(nodes.keySet()).stream()
+                        .collect(Collectors.groupingBy(KnowledgeRelation::getSourceNodeId));
+        Set<Long> targetIds = relationsBySource.values().stream()
+                .flatMap(List::stream)
+                .map(KnowledgeRelation::getTargetNodeId)
+                .filter(id -> !nodes.containsKey(id))
+                .collect(Collectors.toSet());
+        Map<Long, KnowledgeNode> targets = new HashMap<>(nodes);
+        if (!targetIds.isEmpty()) {
+            targets.putAll(toMap(knowledgeNodeMapper.selectBatchIds(targetIds), KnowledgeNode::getId));
+        }
+
+        List<RagNode> results = new ArrayList<>(refs.size());
+        for (RagProvenance.NodeRef ref : refs) {
+            KnowledgeNode node = nodes.get(ref.getNodeId());
+            if (node == null) {
+                stale.value = true;
+                continue;
+            }
+            RagNode ragNode = new RagNode();
+            ragNode.setId(node.getId());
+            ragNode.setName(node.getName());
+            ragNode.setNodeType(node.getNodeType());
+            ragNode.setDescription(node.getDescription());
+            ragNode.setScore(ref.getScore());
+            if (StrUtil.isNotBlank(node.getProperties())) {
+                ragNode.setRawProperties(node.getProperties());
+            }
+
+            List<RagNode.RagRelation> relations = new ArrayList<>();
+            for (KnowledgeRelation rel : relationsBySource.getOrDefault(node.getId(), List.of())) {
+                KnowledgeNode target = targets.get(rel.getTargetNodeId());
+                if (target != null) {
+                    RagNode.RagRelation ragRel = new RagNode.RagRelation();
+                    ragRel.setName(rel.getName());
+                    ragRel.setRelationType(rel.getRelationType());
+                    ragRel.setTargetNodeId(target.getId());
+                    ragRel.setTargetNodeName(target.getName());
+                    relations.add(ragRel);
+                }
+            }
+            ragNode.setRelations(relations);
+            results.add(ragNode);
+        }
+        return results;
+    }
+
+    private static RagProvenance.ChunkRef chunkRef(Long chunkId, Long parentChunkId, Double score) {
+        RagProvenance.ChunkRef ref = new RagProvenance.ChunkRef();
+        ref.setChunkId(chunkId);
+        ref.setParentChunkId(parentChunkId);
+        ref.setScore(roundScore(score));
+        return ref;
+    }
+
+    private static RagProvenance.SourceRef sourceRef(String sourceType, Long id, int position, Double score) {
+        RagProvenance.SourceRef ref = new RagProvenance.SourceRef();
+        ref.setSourceType(sourceType);
+        ref.setId(id);
+        ref.setPosition(position);
+        ref.setScore(roundScore(score));
+        return ref;
+    }
+
+    private static RagProvenance.NodeRef nodeRef(Long nodeId, Double score) {
+        RagProvenance.NodeRef ref = new RagProvenance.NodeRef();
+        ref.setNodeId(nodeId);
+        ref.setScore(roundScore(score));
+        return ref;
+    }
+
+    /**
+     * 分数保留4位小数（展示只用到百分比）
+     */
+    private static Double roundScore(Double score) {
+        return score != null ? Math.round(score * 10000) / 10000.0 : null;
+    }
+
+    private static boolean isDeleted(Integer deleted) {
+        return deleted != null && deleted != 0;
+    }
+
+    private static <T> Map<Long, T> toMap(List<T> list, Function<T, Long> idGetter) {
+        Map<Long, T> map = new HashMap<>();
+        for (T item : list) {
+            map.put(idGetter.apply(item), item);
+        }
+        return map;
+    }
+
+    /**
+     * 还原过程中是否发现来源已变化
+     */
+    private static final class StaleFlag {
+        private boolean value;
+    }
+}
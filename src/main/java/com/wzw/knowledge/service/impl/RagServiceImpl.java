@@ -1,23 +1,17 @@
-package com.uka.knowledge.service.impl;
+package com.wzw.knowledge.service.impl;
 
 import cn.hutool.core.util.StrUtil;
-import com.alibaba.fastjson2.JSON;
-import com.wzw.knowledge.mapper.DocumentChunkMapper;
-import com.wzw.knowledge.mapper.KnowledgeRelationMapper;
-import com.wzw.knowledge.model.entity.Document;
-import com.wzw.knowledge.model.entity.DocumentChunk;
-import com.wzw.knowledge.model.entity.KnowledgeNode;
-import com.wzw.knowledge.model.entity.KnowledgeRelation;
 import com.wzw.knowledge.model.vo.RagDocument;
 import com.wzw.knowledge.model.vo.RagNode;
-import com.wzw.knowledge.service.*;
+import com.wzw.knowledge.service.RagService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * RAG检索增强服务实现类
@@ -33,12 +27,16 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class RagServiceImpl implements RagService {
 
-    private final OllamaService ollamaService;
-    private final VectorService vectorService;
-    private final DocumentService documentService;
-    private final KnowledgeNodeService nodeService;
-    private final KnowledgeRelationMapper relationMapper;
-    private final DocumentChunkMapper documentChunkMapper;
+    private final RetrievalEngine retrievalEngine;
+    private final RagNearCache nearCache;
+    private final RetrievalCache retrievalCache;
+    private final ContextCompressor contextCompressor;
+
+    /**
+     * 提示词构建阶段和总耗时的键
+     */
+    private static final String STAGE_PROMPT = "prompt";
+    private static final String STAGE_TOTAL = "total";
 
     private static final String PROMPT_TEMPLATE = """
         你是一个专业的知识助手。请根据以下参考内容回答用户的问题。
@@ -64,20 +62,36 @@ public class RagServiceImpl implements RagService {
 
     /**
      * 执行RAG检索
+     * <p>
+     * 查询向量只生成一次，文档和节点检索并行执行，各阶段耗时记录在结果中
+     * </p>
      */
     @Override
     public RagResult search(String query, int topK) {
-        log.info("执行RAG检索, query={}, topK={}", query, topK);
+        return search(query, topK, null);
+    }
+
+    @Override
+    public RagResult search(String query, int topK, float[] queryVector) {
+        return search(query, topK, queryVector, true);
+    }
+
+    @Override
+    public RagResult searchWithoutCache(String query, int topK) {
+        return search(query, topK, null, false);
+    }
 
-        // 检索相关文档
-        List<RagDocument> documents = searchDocuments(query, topK);
-        log.info("文档检索完成, 找到{}个相关文档", documents.size());
+    private RagResult search(String query, int topK, float[] queryVector, boolean useCache) {
+        log.info("执行RAG检索, query={}, topK={}", query, topK);
+        long start = System.nanoTime();
 
-        // 检索相关节点
-        List<RagNode> nodes = searchNodes(query, topK);
-        log.info("节点检索完成, 找到{}个相关节点", nodes.size());
+        RetrievalEngine.Outcome outcome = retrievalEngine.retrieve(query, topK, queryVector, useCache);
+        List<RagDocument> documents = outcome.documents();
+        List<RagNode> nodes = outcome.nodes();
+        log.info("检索完成, 找到{}个相关文档, {}个相关节点", documents.size(), nodes.size());
 
         // 构建上下文提示词
+        long promptStart = System.nanoTime();
         String contextPrompt = buildContextPrompt(documents, query);
 
         // 打印完整的 prompt 用于调试（截取前2000字符以确保看到数值内容）
@@ -100,175 +114,28 @@ public class RagServiceImpl implements RagService {
             }
         }
 
-        return new RagResult(documents, nodes, contextPrompt);
+        Map<String, Long> timings = new LinkedHashMap<>(outcome.timings());
+        timings.put(STAGE_PROMPT, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - promptStart));
+        timings.put(STAGE_TOTAL, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("RAG检索各阶段耗时(ms): {}", timings);
+
+        return new RagResult(documents, nodes, contextPrompt, timings);
     }
 
     /**
-     * 检索相关文档（V2.0 - 父子索引 + 混合检索）
-     * <p>
-     * 流程：
-     * 1. 混合检索（BM25字面匹配 + 向量语义匹配 + RRF融合）搜索Child块
-     * 2. 通过parentId回溯Parent块
-     * 3. 用Parent块的完整内容构建RAG上下文
-     * </p>
+     * 检索相关文档（父子索引 + 混合检索），见 {@link DocumentRetriever}
      */
     @Override
     public List<RagDocument> searchDocuments(String query, int topK) {
-        List<RagDocument> results = new ArrayList<>();
-
-        try {
-            // 生成查询向量
-            float[] queryVector = ollamaService.generateEmbedding(query);
-
-            // 混合检索 - 搜索child类型（BM25 + 向量 + RRF融合）
-            List<VectorService.VectorSearchResult> searchResults =
-                    vectorService.hybridSearch(queryVector, query, topK, "child");
-
-            log.info("混合检索返回{}个Child块结果", searchResults.size());
-
-            // 去重parentId，避免同一个Parent块被重复返回
-            java.util.Set<Long> seenParentIds = new java.util.LinkedHashSet<>();
-
-            for (VectorService.VectorSearchResult result : searchResults) {
-                if (result.id() == null) continue;
-
-                try {
-                    // 查询Child分块信息
-                    DocumentChunk childChunk = documentChunkMapper.selectByChunkId(result.id());
-                    if (childChunk == null) continue;
-
-                    // 通过parentId回溯Parent块
-                    Long parentId = result.parentId();
-                    if (parentId == null) {
-                        parentId = childChunk.getParentId();
-                    }
-
-                    DocumentChunk parentChunk = null;
-                    if (parentId != null && parentId > 0) {
-                        // 去重：同一个Parent只取一次（取最高分的Child对应的Parent）
-                        if (seenParentIds.contains(parentId)) {
-                            continue;
-                        }
-                        seenParentIds.add(parentId);
-                        parentChunk = documentChunkMapper.selectParentById(parentId);
-                    }
-
-                    // 查询所属文档
-                    Long docId = childChunk.getDocumentId();
-                    Document document = documentService.getById(docId);
-                    if (document == null) continue;
-
-                    RagDocument ragDoc = new RagDocument();
-                    ragDoc.setId(document.getId());
-                    ragDoc.setChunkId(childChunk.getId());
-                    ragDoc.setName(document.getName());
-                    ragDoc.setFileType(document.getFileType());
-                    ragDoc.setPageNum(childChunk.getPageNum());
-                    ragDoc.setSummary(document.getSummary());
-                    ragDoc.setScore((double) result.score());
-
-                    // 关键：用Parent块的完整内容作为RAG上下文（"存大搜小"）
-                    if (parentChunk != null && StrUtil.isNotBlank(parentChunk.getContent())) {
-                        ragDoc.setMatchedContent(parentChunk.getContent());
-                        log.debug("父子索引回溯: childId={}, parentId={}, parentTitle={}, parentLen={}",
-                                childChunk.getId(), parentId,
-                                parentChunk.getSectionTitle(),
-                                parentChunk.getContent().length());
-                    } else {
-                        // 降级：使用Child块内容
-                        ragDoc.setMatchedContent(childChunk.getContent());
-                        log.debug("未找到Parent块，使用Child内容: childId={}", childChunk.getId());
-                    }
-
-                    results.add(ragDoc);
-                } catch (Exception e) {
-                    log.warn("获取分块详情失败, chunkId={}", result.id(), e);
-                }
-            }
-        } catch (Exception e) {
-            log.error("文档检索失败", e);
-        }
-
-        log.info("文档检索完成（父子索引+混合检索）, 返回{}个结果", results.size());
-        return results;
+        return retrievalEngine.retrieve(query, topK, List.of(DocumentRetriever.NAME)).documents();
     }
 
     /**
-     * 检索相关知识节点（使用混合检索）
+     * 检索相关知识节点（混合检索），见 {@link NodeRetriever}
      */
     @Override
     public List<RagNode> searchNodes(String query, int topK) {
-        List<RagNode> results = new ArrayList<>();
-
-        try {
-            // 生成查询向量
-            float[] queryVector = ollamaService.generateEmbedding(query);
-
-            // 混合检索 - 搜索节点类型
-            List<VectorService.VectorSearchResult> searchResults =
-                    vectorService.hybridSearch(queryVector, query, topK, "node");
-
-            // 获取节点详情及其关系
-            for (VectorService.VectorSearchResult result : searchResults) {
-                if (result.id() == null) continue;
-
-                try {
-                    KnowledgeNode node = nodeService.getById(result.id());
-                    if (node != null) {
-                        RagNode ragNode = new RagNode();
-                        ragNode.setId(node.getId());
-                        ragNode.setName(node.getName());
-                        ragNode.setNodeType(node.getNodeType());
-                        ragNode.setDescription(node.getDescription());
-                        ragNode.setScore((double) result.score());
-
-                        // 解析属性
-                        if (StrUtil.isNotBlank(node.getProperties())) {
-                            ragNode.setProperties(JSON.parseObject(node.getProperties(), Map.class));
-                        }
-
-                        // 获取关联关系
-                        List<RagNode.RagRelation> relations = getNodeRelations(node.getId());
-                        ragNode.setRelations(relations);
-
-                        results.add(ragNode);
-                    }
-                } catch (Exception e) {
-                    log.warn("获取节点详情失败, id={}", result.id(), e);
-                }
-            }
-        } catch (Exception e) {
-            log.error("节点检索失败", e);
-        }
-
-        return results;
-    }
-
-    /**
-     * 获取节点的关联关系
-     */
-    private List<RagNode.RagRelation> getNodeRelations(Long nodeId) {
-        List<RagNode.RagRelation> relations = new ArrayList<>();
-
-        try {
-            // 获取以该节点为起点的关系
-            List<KnowledgeRelation> outRelations = relationMapper.selectBySourceNodeId(nodeId);
-            for (KnowledgeRelation rel : outRelations) {
-                KnowledgeNode targetNode = nodeService.getById(rel.getTargetNodeId());
-                if (targetNode != null) {
-                    RagNode.RagRelation ragRel = new RagNode.RagRelation();
-                    ragRel.setName(rel.getName());
-                    ragRel.setRelationType(rel.getRelationType());
-                    ragRel.setTargetNodeId(targetNode.getId());
-                    ragRel.setTargetNodeName(targetNode.getName());
-                    relations.add(ragRel);
-                }
-            }
-        } catch (Exception e) {
-            log.warn("获取节点关系失败, nodeId={}", nodeId, e);
-        }
-
-        return relations;
+        return retrievalEngine.retrieve(query, topK, List.of(NodeRetriever.NAME)).nodes();
     }
 
     /**
@@ -290,9 +157,9 @@ public class RagServiceImpl implements RagService {
                 }
                 contextBuilder.append(String.format("（相似度：%.0f%%）\n", doc.getScore() * 100));
 
-                // 添加文档内容
+                // 添加文档内容（按问题压缩为相关句子）
                 if (StrUtil.isNotBlank(doc.getMatchedContent())) {
-                    contextBuilder.append("内容：").append(doc.getMatchedContent().trim());
+                    contextBuilder.append("内容：").append(contextCompressor.compress(userQuery, doc.getMatchedContent().trim()));
                 } else if (StrUtil.isNotBlank(doc.getSummary())) {
                     contextBuilder.append("摘要：").append(doc.getSummary().trim());
                 }
@@ -307,4 +174,19 @@ public class RagServiceImpl implements RagService {
 
         return PROMPT_TEMPLATE.formatted(contextBuilder.toString()) + "\n\n【用户问题】\n" + userQuery;
     }
+
+    @Override
+    public HydrationStats getHydrationStats() {
+        return nearCache.getStats();
+    }
+
+    @Override
+    public CacheStats getCacheStats() {
+        return retrievalCache.getStats();
+    }
+
+    @Override
+    public CompressionStats getCompressionStats() {
+        return contextCompressor.getStats();
+    }
 }
@@ -0,0 +1,240 @@
+package com.wzw.knowledge.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import com.wzw.knowledge.config.RagCacheConfig;
+import com.wzw.knowledge.model.vo.RagDocument;
+import com.wzw.knowledge.model.vo.RagNode;
+import com.wzw.knowledge.service.CorpusVersionService;
+import com.wzw.knowledge.service.RagService;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 检索结果缓存
+ * <p>
+ * 缓存键 = 规范化问题 + 检索器和重排序器 + 过滤条件 + topK，每条结果记录写入时的语料版本：
+ * - 文档解析、重新解析、删除或图谱节点、关系变化后语料版本递增，旧结果读取时即失效
+ * - 文档摘要更新不改变语料版本，由 {@link #invalidateDocument(Long)} 只删除包含该文档的结果
+ * - 按估算的内存占用（而不是条目数）限制容量，超出上限时淘汰最久未使用的结果
+ * - 检索器超时或失败、重排序超出预算、查询向量生成失败时结果不完整，不缓存
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Service
+public class RetrievalCache {
+
+    /**
+     * 每个对象的固定开销估算（字节）
+     */
+    private static final int OBJECT_OVERHEAD = 200;
+
+    private final RagCacheConfig config;
+    private final CorpusVersionService corpusVersionService;
+
+    /**
+     * 访问顺序的LRU表，所有访问都在同步块内
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    /**
+     * 文档ID -> 最近一次单独失效的时间（纳秒），失效前开始的检索结果不再写入；超过有效期的记录被清除
+     */
+    private final Map<Long, Long> invalidatedAt = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder hitNanos = new LongAdder();
+    private final LongAdder missNanos = new LongAdder();
+
+    /**
+     * 缓存记录
+     *
+     * @param outcome       检索结果
+     * @param corpusVersion 写入时的语料版本
+     * @param weight        估算的内存占用（字节）
+     * @param expiresAt     过期时间（纳秒）
+     */
+    private record Entry(RetrievalEngine.Outcome outcome, long corpusVersion, long weight, long expiresAt) {
+    }
+
+    public RetrievalCache(RagCacheConfig config, CorpusVersionService corpusVersionService) {
+        this.config = config;
+        this.corpusVersionService = corpusVersionService;
+    }
+
+    /**
+     * 生成缓存键
+     *
+     * @param query   查询
+     * @param topK    返回数量
+     * @param stages  参与的检索器和重排序器
+     * @param filters 过滤条件
+     * @return 缓存键
+     */
+    public static String key(String query, int topK, Collection<String> stages, Map<String, Object> filters) {
+        return ChatSingleFlight.normalize(query) + "|" + topK + "|" + String.join(",", stages)
+                + "|" + new TreeMap<>(filters);
+    }
+
+    /**
+     * 读取缓存，过期或语料版本已变化的结果视为未命中
+     *
+     * @param key 缓存键
+     * @return 检索结果（未命中时为null）
+     */
+    public RetrievalEngine.Outcome get(String key) {
+        if (!Boolean.TRUE.equals(config.getEnabled())) {
+            return null;
+        }
+        long version = corpusVersionService.current();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.corpusVersion() != version || System.nanoTime() > entry.expiresAt()) {
+                remove(key);
+                return null;
+            }
+            return entry.outcome();
+        }
+    }
+
+    /**
+     * 写入缓存
+     *
+     * @param key           缓存键
+     * @param outcome       检索结果
+     * @param corpusVersion 检索开始时的语料版本（检索过程中版本变化时结果不会被后续读取命中）
+     * @param startedAt     检索开始的时间（纳秒），检索过程中结果中的文档被单独失效时不写入
+     */
+    public void put(String key, RetrievalEngine.Outcome outcome, long corpusVersion, long startedAt) {
+        if (!Boolean.TRUE.equals(config.getEnabled())) {
+            return;
+        }
+        for (RagDocument doc : outcome.documents()) {
+            Long at = isDocument(doc) ? invalidatedAt.get(doc.getId()) : null;
+            if (at != null && at - startedAt >= 0) {
+                return;
+            }
+        }
+        long weight = estimateWeight(key, outcome);
+        if (weight > config.getMaxBytes()) {
+            return;
+        }
+        long expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getTtl());
+        synchronized (this) {
+            remove(key);
+            entries.put(key, new Entry(outcome, corpusVersion, weight, expiresAt));
+            bytes += weight;
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (bytes > config.getMaxBytes() && eldest.hasNext()) {
+                bytes -= eldest.next().getValue().weight();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 删除包含指定文档的结果（文档摘要更新后调用，其他结果不受影响）
+     *
+     * @param documentId 文档ID
+     */
+    public void invalidateDocument(Long documentId) {
+        long now = System.nanoTime();
+        long ttl = TimeUnit.MILLISECONDS.toNanos(config.getTtl());
+        invalidatedAt.values().removeIf(at -> now - at > ttl);
+        invalidatedAt.put(documentId, now);
+        synchronized (this) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.outcome().documents().stream().anyMatch(doc -> isDocument(doc) && documentId.equals(doc.getId()))) {
+                    bytes -= entry.weight();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * 记录一次检索的耗时
+     *
+     * @param hit         是否命中缓存
+     * @param elapsedNano 耗时（纳秒）
+     */
+    public void record(boolean hit, long elapsedNano) {
+        if (hit) {
+            hits.increment();
+            hitNanos.add(elapsedNano);
+        } else {
+            misses.increment();
+            missNanos.add(elapsedNano);
+        }
+    }
+
+    /**
+     * 获取缓存统计
+     */
+    public RagService.CacheStats getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        int size;
+        long totalBytes;
+        synchronized (this) {
+            size = entries.size();
+            totalBytes = bytes;
+        }
+        return new RagService.CacheStats(
+                hitCount,
+                missCount,
+                hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount),
+                size,
+                totalBytes,
+                evictions.sum(),
+                hitCount == 0 ? 0 : hitNanos.sum() / 1e6 / hitCount,
+                missCount == 0 ? 0 : missNanos.sum() / 1e6 / missCount
+        );
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            bytes -= removed.weight();
+        }
+    }
+
+    /**
+     * 结果是否来自文档（OCR结果的ID是OCR记录ID，不参与按文档失效）
+     */
+    private static boolean isDocument(RagDocument doc) {
+        return doc.getId() != null && !RagDocument.SOURCE_OCR.equals(doc.getSourceType());
+    }
+
+    /**
+     * 估算检索结果的内存占用：字符串按每字符2字节，加上对象的固定开销
+     */
+    static long estimateWeight(String key, RetrievalEngine.Outcome outcome) {
+        long weight = OBJECT_OVERHEAD + 2L * key.length();
+        for (RagDocument doc : outcome.documents()) {
+            weight += OBJECT_OVERHEAD + 2L * (StrUtil.length(doc.getMatchedContent())
+                    + StrUtil.length(doc.getSummary()) + StrUtil.length(doc.getName()));
+        }
+        for (RagNode node : outcome.nodes()) {
+            weight += OBJECT_OVERHEAD + 2L * (StrUtil.length(node.getName()) + StrUtil.length(node.getDescription()));
+            if (node.getRelations() != null) {
+                weight += (long) OBJECT_OVERHEAD * node.getRelations().size();
+            }
+        }
+        return weight;
+    }
+}
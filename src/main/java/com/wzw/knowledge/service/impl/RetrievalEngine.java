@@ -0,0 +1,325 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.config.RagRerankConfig;
+import com.wzw.knowledge.config.RagRetrievalConfig;
+import com.wzw.knowledge.model.vo.RagDocument;
+import com.wzw.knowledge.model.vo.RagNode;
+import com.wzw.knowledge.service.CorpusVersionService;
+import com.wzw.knowledge.service.OllamaService;
+import com.wzw.knowledge.service.Reranker;
+import com.wzw.knowledge.service.Retriever;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
+
+/**
+ * 并行检索引擎
+ * <p>
+ * 每次检索只构建一次查询上下文（查询向量、规范化文本、过滤条件），
+ * 然后把所有检索器分发到虚拟线程上并行执行：
+ * - 每个检索器有独立的截止时间（从分发时开始计算），超时的检索器被取消，结果丢弃
+ * - 单个检索器失败不影响其他检索器
+ * - 各检索器的结果按注册顺序合并，文档按分块去重，节点按ID去重
+ * - 启用重排序时检索器先返回更宽的候选集，合并后由重排序器在时间预算内重新打分并截取 topK，
+ *   超出预算或失败时按RRF顺序截取
+ * - 完整的检索结果按语料版本缓存，相同问题再次检索时直接返回，见 {@link RetrievalCache}
+ * 总耗时 = 一次向量生成 + 最慢的检索器（受截止时间限制）+ 重排序（受时间预算限制）
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class RetrievalEngine {
+
+    /**
+     * 查询向量生成阶段的耗时键
+     */
+    public static final String STAGE_EMBEDDING = "embedding";
+
+    /**
+     * 重排序阶段的耗时键
+     */
+    public static final String STAGE_RERANK = "rerank";
+
+    /**
+     * 命中检索结果缓存时的耗时键
+     */
+    public static final String STAGE_CACHE = "cache";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final OllamaService ollamaService;
+    private final List<Retriever> retrievers;
+    private final RagRetrievalConfig config;
+    private final Map<String, Reranker> rerankers = new HashMap<>();
+    private final RagRerankConfig rerankConfig;
+    private final RetrievalCache retrievalCache;
+    private final CorpusVersionService corpusVersionService;
+
+    private final ExecutorService executor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("rag-retriever-", 0).factory());
+
+    public RetrievalEngine(OllamaService ollamaService, List<Retriever> retrievers, RagRetrievalConfig config,
+                           List<Reranker> rerankers, RagRerankConfig rerankConfig,
+                           RetrievalCache retrievalCache, CorpusVersionService corpusVersionService) {
+        this.ollamaService = ollamaService;
+        this.retrievers = retrievers;
+        this.config = config;
+        rerankers.forEach(reranker -> this.rerankers.put(reranker.name(), reranker));
+        this.rerankConfig = rerankConfig;
+        this.retrievalCache = retrievalCache;
+        this.corpusVersionService = corpusVersionService;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 检索结果
+     *
+     * @param documents 合并后的文档
+     * @param nodes     合并后的图谱节点
+     * @param timings   各阶段耗时（毫秒），超时的检索器记为 -1，检索器内部阶段记为"检索器名称.阶段"
+     */
+    public record Outcome(List<RagDocument> documents, List<RagNode> nodes, Map<String, Long> timings) {
+    }
+
+    /**
+     * 使用全部检索器检索
+     *
+     * @param query 查询
+     * @param topK  每个检索器返回的最大数量
+     * @return 检索结果
+     */
+    public Outcome retrieve(String query, int topK) {
+        return retrieve(query, topK, retrievers, null, true);
+    }
+
+    /**
+     * 使用全部检索器检索，复用调用方已生成的查询向量
+     *
+     * @param query     查询
+     * @param topK      每个检索器返回的最大数量
+     * @param embedding 查询向量，为null时在这里生成
+     * @return 检索结果
+     */
+    public Outcome retrieve(String query, int topK, float[] embedding) {
+        return retrieve(query, topK, retrievers, embedding, true);
+    }
+
+    /**
+     * 使用全部检索器检索，可跳过缓存
+     *
+     * @param query     查询
+     * @param topK      每个检索器返回的最大数量
+     * @param embedding 查询向量，为null时在这里生成
+     * @param useCache  是否使用检索结果缓存和近端缓存，为false时不读写缓存也不计入缓存统计（离线评测的冷缓存模式）
+     * @return 检索结果
+     */
+    public Outcome retrieve(String query, int topK, float[] embedding, boolean useCache) {
+        return retrieve(query, topK, retrievers, embedding, useCache);
+    }
+
+    /**
+     * 只使用指定名称的检索器检索
+     *
+     * @param query 查询
+     * @param topK  每个检索器返回的最大数量
+     * @param names 检索器名称
+     * @return 检索结果
+     */
+    public Outcome retrieve(String query, int topK, Collection<String> names) {
+        return retrieve(query, topK, retrievers.stream().filter(r -> names.contains(r.name())).toList(), null, true);
+    }
+
+    private Outcome retrieve(String query, int topK, List<Retriever> selected, float[] embedding,
+                             boolean useCache) {
+        long begin = System.nanoTime();
+        Reranker reranker = activeReranker();
+        List<String> stages = new ArrayList<>(selected.stream().map(Retriever::name).toList());
+        if (reranker != null) {
+            stages.add(STAGE_RERANK + ":" + reranker.name());
+        }
+        String cacheKey = RetrievalCache.key(query, topK, stages, Map.of());
+        Outcome cached = useCache ? retrievalCache.get(cacheKey) : null;
+        if (cached != null) {
+            long elapsed = System.nanoTime() - begin;
+            retrievalCache.record(true, elapsed);
+            return new Outcome(List.copyOf(cached.documents()), List.copyOf(cached.nodes()),
+                    Map.of(STAGE_CACHE, TimeUnit.NANOSECONDS.toMillis(elapsed)));
+        }
+        // 检索前读取语料版本：检索过程中语料变化时，写入的结果不会再被命中
+        long corpusVersion = corpusVersionService.current();
+
+        Map<String, Long> timings = new LinkedHashMap<>();
+        int candidates = reranker != null ? topK * Math.max(1, rerankConfig.getCandidateFactor()) : topK;
+        Retriever.QueryContext context = buildContext(query, candidates, embedding, useCache, timings);
+
+        // 并行分发，每个检索器在任务内部记录自己的耗时
+        long dispatchedAt = System.nanoTime();
+        Map<String, Long> elapsed = new ConcurrentHashMap<>();
+        List<Future<Retriever.Contribution>> futures = new ArrayList<>(selected.size());
+        for (Retriever retriever : selected) {
+            futures.add(executor.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    return retriever.retrieve(context);
+                } finally {
+                    elapsed.put(retriever.name(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+            }));
+        }
+
+        List<RagDocument> documents = new ArrayList<>();
+        List<RagNode> nodes = new ArrayList<>();
+        Set<Long> seenChunks = new HashSet<>();
+        Set<Long> seenNodes = new HashSet<>();
+        boolean complete = true;
+        for (int i = 0; i < selected.size(); i++) {
+            Retriever retriever = selected.get(i);
+            Future<Retriever.Contribution> future = futures.get(i);
+            long remainingMs = config.deadlineOf(retriever.name())
+                    - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - dispatchedAt);
+            Retriever.Contribution contribution;
+            try {
+                contribution = future.get(Math.max(0, remainingMs), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                timings.put(retriever.name(), -1L);
+                log.warn("检索器超时，结果已丢弃, retriever={}, deadline={}ms", retriever.name(),
+                        config.deadlineOf(retriever.name()));
+                continue;
+            } catch (ExecutionException e) {
+                timings.put(retriever.name(), elapsed.getOrDefault(retriever.name(), 0L));
+                log.error("检索器执行失败, retriever={}", retriever.name(), e.getCause());
+                complete = false;
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                complete = false;
+                break;
+            }
+            timings.put(retriever.name(), elapsed.getOrDefault(retriever.name(), 0L));
+            contribution.timings().forEach((stage, ms) -> timings.put(retriever.name() + "." + stage, ms));
+
+            // 合并：文档按分块去重，节点按ID去重，先注册的检索器优先
+            for (RagDocument doc : contribution.documents()) {
+                Long key = doc.getParentChunkId() != null ? doc.getParentChunkId() : doc.getChunkId();
+                if (key == null || seenChunks.add(key)) {
+                    documents.add(doc);
+                }
+            }
+            for (RagNode node : contribution.nodes()) {
+                if (node.getId() == null || seenNodes.add(node.getId())) {
+                    nodes.add(node);
+                }
+            }
+        }
+        // 多个检索器合并后最多有 检索器数×topK 条，重排序或按合并顺序截取到topK
+        if (reranker != null) {
+            documents = rerank(reranker, context.normalizedText(), documents, topK, timings);
+        } else {
+            documents = truncate(documents, topK);
+        }
+        nodes = truncate(nodes, topK);
+        Outcome outcome = new Outcome(documents, nodes, timings);
+
+        if (!useCache) {
+            return outcome;
+        }
+        retrievalCache.record(false, System.nanoTime() - begin);
+        // 查询向量生成失败、检索器超时或失败、重排序超出预算时结果不完整，不缓存
+        if (complete && context.embedding() != null && !timings.containsValue(-1L)) {
+            retrievalCache.put(cacheKey, new Outcome(List.copyOf(documents), List.copyOf(nodes), Map.copyOf(timings)),
+                    corpusVersion, begin);
+        }
+        return outcome;
+    }
+
+    private Reranker activeReranker() {
+        if (!Boolean.TRUE.equals(rerankConfig.getEnabled())) {
+            return null;
+        }
+        return rerankers.get(rerankConfig.getReranker());
+    }
+
+    /**
+     * 在时间预算内重排序，按得分截取 topK 并丢弃得分过低的候选；超出预算或失败时按RRF顺序截取
+     */
+    private List<RagDocument> rerank(Reranker reranker, String query, List<RagDocument> documents, int topK,
+                                     Map<String, Long> timings) {
+        if (documents.size() <= 1) {
+            return documents;
+        }
+        long start = System.nanoTime();
+        Future<double[]> future = executor.submit(() -> reranker.score(query, documents));
+        double[] scores;
+        try {
+            scores = future.get(rerankConfig.getBudget(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timings.put(STAGE_RERANK, -1L);
+            log.warn("重排序超出时间预算，按RRF顺序截取, reranker={}, budget={}ms", reranker.name(), rerankConfig.getBudget());
+            return truncate(documents, topK);
+        } catch (ExecutionException e) {
+            timings.put(STAGE_RERANK, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            log.error("重排序失败，按RRF顺序截取, reranker={}", reranker.name(), e.getCause());
+            return truncate(documents, topK);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return truncate(documents, topK);
+        }
+
+        Integer[] order = new Integer[documents.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            documents.get(i).setRerankScore(scores[i]);
+        }
+        // 稳定排序，得分相同时保持RRF顺序
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+        double floor = scores[order[0]] * rerankConfig.getMinRelativeScore();
+        List<RagDocument> reranked = new ArrayList<>(Math.min(topK, order.length));
+        for (Integer index : order) {
+            if (reranked.size() >= topK || (!reranked.isEmpty() && scores[index] < floor)) {
+                break;
+            }
+            reranked.add(documents.get(index));
+        }
+        timings.put(STAGE_RERANK, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.debug("重排序完成, candidates={}, kept={}", documents.size(), reranked.size());
+        return reranked;
+    }
+
+    private static <T> List<T> truncate(List<T> list, int size) {
+        return list.size() > size ? new ArrayList<>(list.subList(0, size)) : list;
+    }
+
+    /**
+     * 构建查询上下文：查询向量只生成一次（调用方已生成时直接复用），生成失败时依赖向量的检索器返回空结果
+     */
+    private Retriever.QueryContext buildContext(String query, int topK, float[] precomputed, boolean useCache,
+                                                Map<String, Long> timings) {
+        String normalizedText = query == null ? "" : WHITESPACE.matcher(query.trim()).replaceAll(" ");
+        long start = System.nanoTime();
+        float[] embedding = precomputed;
+        if (embedding == null) {
+            try {
+                embedding = ollamaService.generateEmbedding(normalizedText);
+            } catch (Exception e) {
+                log.error("生成查询向量失败", e);
+            }
+        }
+        timings.put(STAGE_EMBEDDING, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return new Retriever.QueryContext(query, normalizedText, embedding, topK, Map.of(), useCache);
+    }
+}
@@ -0,0 +1,251 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.config.RetrievalGateConfig;
+import com.wzw.knowledge.service.OllamaService;
+import com.wzw.knowledge.service.RagService;
+import com.wzw.knowledge.service.RetrievalGateService;
+import com.wzw.knowledge.util.VectorMath;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 检索门控服务实现类
+ * <p>
+ * 判断顺序（先做不需要模型调用的判断）：
+ * 1. 整句是寒暄、致谢、应答 → 不检索
+ * 2. 整句是"继续"、"再解释一下"等追问，或是带指代词的短问题 → 复用上一轮检索结果
+ * 3. 短问题与上一轮问题的向量相似度达到阈值 → 复用上一轮检索结果（只生成一次问题向量）
+ * 4. 其余情况执行完整检索
+ * 上一轮的检索结果只保存在内存中，超过有效期或会话删除后失效，此时追问也会重新检索
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RetrievalGateServiceImpl implements RetrievalGateService {
+
+    /**
+     * 寒暄、致谢、应答（整句匹配，已去掉空白和标点）
+     */
+    private static final Pattern CHIT_CHAT = Pattern.compile(
+            "^(你好|您好|嗨|在吗|在不在|早上好|晚上好|谢谢|谢谢你|谢谢您|多谢|感谢|辛苦了|好的|好|嗯|嗯嗯|哦|噢|"
+                    + "收到|明白|明白了|懂了|知道了|了解|了解了|可以|行|没问题|不客气|再见|拜拜|哈哈|哈哈哈|太好了|不错|"
+                    + "厉害|棒|hi|hello|hey|thanks|thankyou|thx|ok|okay|yes|no|bye|cool|great|nice)"
+                    + "(啦|了|呀|啊|哈|哦|吧|呢)*$");
+
+    /**
+     * 追问（整句匹配，已去掉空白和标点）
+     */
+    private static final Pattern FOLLOW_UP = Pattern.compile(
+            "^(请)?(继续|接着说|接着讲|然后呢|还有呢|还有吗|还有别的吗|再详细|再详细点|再详细一点|详细说说|详细讲讲|"
+                    + "详细一点|展开说说|展开讲讲|举个例子|举例说明|为什么|为啥|什么意思|怎么理解|解释一下|再解释一下|"
+                    + "再说一遍|再讲一遍|换个说法|说简单点|简单点|总结一下|continue|goon|keepgoing|tellmemore|"
+                    + "explainthatagain|explainagain|why|moredetail|moredetails|elaborate)"
+                    + "(吧|呢|啊|呀|一下|下)?$");
+
+    /**
+     * 指向上一轮内容的指代词
+     */
+    private static final Pattern ANAPHORA = Pattern.compile("(这个|那个|这些|那些|它|它们|上面|上述|刚才|前面|以上)");
+
+    /**
+     * 判断时忽略的字符：空白和标点
+     */
+    private static final Pattern IGNORED = Pattern.compile("[\\s\\p{P}\\p{S}]+");
+
+    private final RetrievalGateConfig config;
+    private final OllamaService ollamaService;
+    private final RagService ragService;
+
+    /**
+     * 每个会话上一轮的检索（会话ID -> 上一轮）
+     */
+    private final Map<Long, LastRetrieval> lastRetrievals = new ConcurrentHashMap<>();
+
+    private final LongAdder decisions = new LongAdder();
+    private final LongAdder retrieved = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder retrievalMs = new LongAdder();
+    private final LongAdder recordedRetrievals = new LongAdder();
+    private final LongAdder savedMs = new LongAdder();
+    private final LongAdder lowConfidence = new LongAdder();
+
+    /**
+     * 上一轮检索
+     *
+     * @param question  问题
+     * @param vector    问题向量（归一化，按需生成）
+     * @param result    检索结果
+     * @param timestamp 检索时间（纳秒）
+     */
+    private record LastRetrieval(String question, float[] vector, RagService.RagResult result, long timestamp) {
+
+        LastRetrieval withVector(float[] newVector) {
+            return new LastRetrieval(question, newVector, result, timestamp);
+        }
+    }
+
+    @Override
+    public Decision decide(Long sessionId, String question) {
+        decisions.increment();
+        long start = System.nanoTime();
+        if (!Boolean.TRUE.equals(config.getEnabled())) {
+            return retrieve("门控未启用");
+        }
+
+        String text = IGNORED.matcher(question == null ? "" : question).replaceAll("").toLowerCase(Locale.ROOT);
+        if (text.isEmpty() || CHIT_CHAT.matcher(text).matches()) {
+            return skip(start);
+        }
+
+        LastRetrieval last = sessionId != null ? lastRetrievals.get(sessionId) : null;
+        if (last != null && System.nanoTime() - last.timestamp() > TimeUnit.MILLISECONDS.toNanos(config.getReuseTtl())) {
+            lastRetrievals.remove(sessionId, last);
+            last = null;
+        }
+        if (last == null) {
+            return retrieve("无可复用的上一轮检索");
+        }
+
+        if (FOLLOW_UP.matcher(text).matches()) {
+            return reuse(start, last, question, "追问");
+        }
+        if (text.length() > config.getFollowUpMaxChars()) {
+            return retrieve("新问题");
+        }
+        if (ANAPHORA.matcher(text).find()) {
+            return reuse(start, last, question, "指代上一轮");
+        }
+
+        // 短问题：与上一轮问题的语义相似度，生成的问题向量在需要检索时直接复用
+        float[] embedding = null;
+        try {
+            embedding = ollamaService.generateEmbedding(question);
+            float[] vector = VectorMath.normalize(embedding);
+            float[] lastVector = last.vector();
+            if (lastVector == null) {
+                lastVector = VectorMath.normalize(ollamaService.generateEmbedding(last.question()));
+                lastRetrievals.replace(sessionId, last, last.withVector(lastVector));
+            }
+            double similarity = VectorMath.dot(vector, lastVector);
+            if (similarity >= config.getSimilarityThreshold()) {
+                return reuse(start, last, question, String.format("与上一轮相似度%.3f", similarity));
+            }
+        } catch (Exception e) {
+            log.warn("计算问题相似度失败，执行检索: {}", e.getMessage());
+        }
+        return retrieve("新问题", embedding);
+    }
+
+    @Override
+    public void record(Long sessionId, String question, RagService.RagResult result, long elapsedMs) {
+        retrievalMs.add(elapsedMs);
+        recordedRetrievals.increment();
+        if (sessionId == null || result == null) {
+            return;
+        }
+        lastRetrievals.put(sessionId, new LastRetrieval(question, null, result, System.nanoTime()));
+        if (lastRetrievals.size() > config.getMaxSessions()) {
+            evictOldest();
+        }
+    }
+
+    @Override
+    public boolean isConfident(RagService.RagResult result) {
+        if (result == null || config.getMinSimilarity() == null || config.getMinSimilarity() <= 0) {
+            return true;
+        }
+        double confidence = result.confidence();
+        if (confidence >= config.getMinSimilarity()) {
+            return true;
+        }
+        lowConfidence.increment();
+        log.info("检索置信度不足, confidence={}, threshold={}", String.format("%.3f", confidence), config.getMinSimilarity());
+        return false;
+    }
+
+    @Override
+    public void evict(Long sessionId) {
+        lastRetrievals.remove(sessionId);
+    }
+
+    @Override
+    public GateStats getStats() {
+        long total = decisions.sum();
+        long notRetrieved = reused.sum() + skipped.sum();
+        return new GateStats(
+                total,
+                retrieved.sum(),
+                reused.sum(),
+                skipped.sum(),
+                total == 0 ? 0 : (double) notRetrieved / total,
+                averageRetrievalMs(),
+                savedMs.sum(),
+                lowConfidence.sum()
+        );
+    }
+
+    private Decision retrieve(String reason) {
+        return retrieve(reason, null);
+    }
+
+    private Decision retrieve(String reason, float[] queryVector) {
+        retrieved.increment();
+        return new Decision(Action.RETRIEVE, reason, null, queryVector);
+    }
+
+    private Decision skip(long start) {
+        skipped.increment();
+        addSaved(start);
+        return new Decision(Action.SKIP, "寒暄", null);
+    }
+
+    private Decision reuse(long start, LastRetrieval last, String question, String reason) {
+        reused.increment();
+        addSaved(start);
+        RagService.RagResult previous = last.result();
+        // 参考内容不变，提示词中的问题换成本轮问题
+        RagService.RagResult result = new RagService.RagResult(previous.documents(), previous.nodes(),
+                ragService.buildContextPrompt(previous.documents(), question));
+        return new Decision(Action.REUSE, reason, result);
+    }
+
+    /**
+     * 节省的时间 = 平均检索耗时 - 门控自身耗时（如生成问题向量）
+     */
+    private void addSaved(long start) {
+        long gateMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        savedMs.add(Math.max(0, averageRetrievalMs() - gateMs));
+    }
+
+    private long averageRetrievalMs() {
+        long count = recordedRetrievals.sum();
+        return count == 0 ? 0 : retrievalMs.sum() / count;
+    }
+
+    /**
+     * 超过上限时淘汰最早的一批（1/10）
+     */
+    private void evictOldest() {
+        int toEvict = Math.max(1, lastRetrievals.size() - config.getMaxSessions() + config.getMaxSessions() / 10);
+        lastRetrievals.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().timestamp()))
+                .limit(toEvict)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(lastRetrievals::remove);
+    }
+}
@@ -0,0 +1,360 @@
+package com.wzw.knowledge.service.impl;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.wzw.knowledge.common.ResultCode;
+import com.wzw.knowledge.config.SummaryConfig;
+import com.wzw.knowledge.exception.BusinessException;
+import com.wzw.knowledge.mapper.DocumentMapper;
+import com.wzw.knowledge.model.entity.Document;
+import com.wzw.knowledge.model.vo.SummaryJobVO;
+import com.wzw.knowledge.service.OllamaService;
+import com.wzw.knowledge.service.SummaryService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 分层摘要服务实现类
+ * <p>
+ * map：按段落将全文切分为若干段，在有界线程池中并行生成分段摘要
+ * reduce：将分段摘要按批合并，逐层归约直到只剩一个整体摘要
+ * 每一层的结果按（层级 + 内容）哈希缓存，文档重新生成摘要时未变化的分段直接命中缓存
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class SummaryServiceImpl implements SummaryService {
+
+    private final OllamaService ollamaService;
+    private final DocumentMapper documentMapper;
+    private final SummaryConfig summaryConfig;
+    private final RagNearCache ragNearCache;
+    private final RetrievalCache retrievalCache;
+
+    /**
+     * 分段摘要线程池（限制同时调用大模型的并发数）
+     */
+    private final ExecutorService summaryExecutor;
+
+    /**
+     * 摘要缓存（内容哈希 -> 摘要）
+     */
+    private final LRUCache<String, String> summaryCache;
+
+    /**
+     * 文档摘要任务（文档ID -> 任务），已结束的任务保留一段时间后清除
+     */
+    private final Map<Long, SummaryJob> jobs = new ConcurrentHashMap<>();
+
+    public SummaryServiceImpl(OllamaService ollamaService, DocumentMapper documentMapper, SummaryConfig summaryConfig,
+                              RagNearCache ragNearCache, RetrievalCache retrievalCache) {
+        this.ollamaService = ollamaService;
+        this.documentMapper = documentMapper;
+        this.summaryConfig = summaryConfig;
+        this.ragNearCache = ragNearCache;
+        this.retrievalCache = retrievalCache;
+        this.summaryExecutor = Executors.newFixedThreadPool(summaryConfig.getConcurrency());
+        this.summaryCache = CacheUtil.newLRUCache(summaryConfig.getCacheSize());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        summaryExecutor.shutdownNow();
+    }
+
+    /**
+     * 分层摘要（同步）
+     */
+    @Override
+    public String summarize(String text) {
+        return summarize(text, (completed, total) -> { });
+    }
+
+    /**
+     * 分层摘要（同步，带进度回调）
+     */
+    @Override
+    public String summarize(String text, ProgressListener listener) {
+        if (StrUtil.isBlank(text)) {
+            return "";
+        }
+
+        List<String> chunks = splitText(text, summaryConfig.getChunkSize());
+        int totalSteps = countSteps(chunks.size());
+        AtomicInteger completed = new AtomicInteger();
+        Runnable step = () -> listener.onProgress(completed.incrementAndGet(), totalSteps);
+
+        long start = System.currentTimeMillis();
+
+        // map：分段并行摘要
+        List<String> current = parallelMap(chunks, chunk -> cached("map", chunk, () -> ollamaService.generateSummary(chunk)), step);
+
+        // reduce：逐层合并
+        int level = 1;
+        while (current.size() > 1) {
+            List<String> groups = partition(current, summaryConfig.getReduceBatch());
+            String levelKey = "reduce" + level;
+            current = parallelMap(groups, group -> cached(levelKey, group, () -> reduce(group)), step);
+            level++;
+        }
+
+        log.info("分层摘要完成, textLength={}, chunks={}, levels={}, cost={}ms",
+                text.length(), chunks.size(), level, System.currentTimeMillis() - start);
+        return current.get(0);
+    }
+
+    /**
+     * 提交文档摘要任务
+     */
+    @Override
+    public SummaryJobVO submitDocumentJob(Long documentId) {
+        evictFinishedJobs();
+        SummaryJob job = jobs.compute(documentId, (id, existing) -> {
+            if (existing != null && existing.isActive()) {
+                return existing;
+            }
+            return new SummaryJob(id);
+        });
+        return job.toVO();
+    }
+
+    /**
+     * 执行文档摘要任务
+     */
+    @Override
+    public void runDocumentJob(Long documentId) {
+        SummaryJob job = jobs.computeIfAbsent(documentId, SummaryJob::new);
+        synchronized (job) {
+            // 同一任务只执行一次
+            if (!SummaryJobVO.STATUS_PENDING.equals(job.status)) {
+                return;
+            }
+            job.status = SummaryJobVO.STATUS_RUNNING;
+        }
+
+        try {
+            Document document = documentMapper.selectById(documentId);
+            if (document == null) {
+                throw new BusinessException(ResultCode.NOT_FOUND);
+            }
+            if (StrUtil.isBlank(document.getContent())) {
+                throw new BusinessException("文档内容为空，无法生成摘要");
+            }
+
+            String summary = summarize(document.getContent(), (completed, total) -> {
+                job.completedSteps = completed;
+                job.totalSteps = total;
+            });
+
+            // 只更新摘要字段，不在事务中等待大模型
+            Document update = new Document();
+            update.setId(documentId);
+            update.setSummary(summary);
+            documentMapper.updateById(update);
+            // 检索结果中带有文档摘要，摘要不改变语料版本，单独失效缓存的文档头和包含该文档的检索结果
+            ragNearCache.invalidateDocument(documentId);
+            retrievalCache.invalidateDocument(documentId);
+
+            job.summary = summary;
+            job.status = SummaryJobVO.STATUS_COMPLETED;
+            log.info("文档摘要任务完成, documentId={}", documentId);
+        } catch (Exception e) {
+            log.error("文档摘要任务失败, documentId={}", documentId, e);
+            job.errorMsg = e.getMessage();
+            job.status = SummaryJobVO.STATUS_FAILED;
+        } finally {
+            job.finishTime = LocalDateTime.now();
+            job.finishedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * 获取文档摘要任务状态
+     */
+    @Override
+    public SummaryJobVO getDocumentJob(Long documentId) {
+        evictFinishedJobs();
+        SummaryJob job = jobs.get(documentId);
+        return job != null ? job.toVO() : null;
+    }
+
+    /**
+     * 清除超过保留时间的已结束任务
+     */
+    private void evictFinishedJobs() {
+        long deadline = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(summaryConfig.getJobRetention());
+        jobs.values().removeIf(job -> !job.isActive() && job.finishedAt != 0 && job.finishedAt - deadline <= 0);
+    }
+
+    /**
+     * 合并多个分段摘要
+     */
+    private String reduce(String summaries) {
+        String prompt = """
+                以下是同一篇文档按顺序排列的各部分摘要，请整合为一个连贯的整体摘要，要求：
+                1. 摘要长度在100-300字之间
+                2. 覆盖各部分的核心要点，按原文顺序组织
+                3. 保留原文中的数值和单位，不要改写
+                4. 直接输出摘要内容，不要添加额外说明
+
+                各部分摘要：
+                %s
+                """.formatted(summaries);
+        return ollamaService.chat(prompt, OllamaService.ModelTask.SUMMARY);
+    }
+
+    /**
+     * 按内容哈希读取缓存，未命中时生成并写入
+     */
+    private String cached(String level, String content, Supplier<String> generator) {
+        String key = level + ":" + DigestUtil.sha256Hex(content);
+        String cached = summaryCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        String result = generator.get();
+        if (StrUtil.isNotBlank(result)) {
+            summaryCache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * 在有界线程池中并行处理，结果保持输入顺序
+     */
+    private List<String> parallelMap(List<String> inputs, Function<String, String> fn, Runnable onStep) {
+        List<CompletableFuture<String>> futures = inputs.stream()
+                .map(input -> CompletableFuture.supplyAsync(() -> {
+                    String result = fn.apply(input);
+                    onStep.run();
+                    return result;
+                }, summaryExecutor))
+                .toList();
+        try {
+            return futures.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+    }
+
+    /**
+     * 将摘要按批次拼接
+     */
+    private List<String> partition(List<String> summaries, int batch) {
+        List<String> groups = new ArrayList<>();
+        for (int i = 0; i < summaries.size(); i += batch) {
+            StringBuilder sb = new StringBuilder();
+            List<String> group = summaries.subList(i, Math.min(i + batch, summaries.size()));
+            for (int j = 0; j < group.size(); j++) {
+                sb.append("【第").append(i + j + 1).append("部分】").append(group.get(j).trim()).append("\n\n");
+            }
+            groups.add(sb.toString());
+        }
+        return groups;
+    }
+
+    /**
+     * 计算总步骤数（分段数 + 各层合并次数）
+     */
+    private int countSteps(int chunkCount) {
+        int steps = chunkCount;
+        int n = chunkCount;
+        while (n > 1) {
+            n = (n + summaryConfig.getReduceBatch() - 1) / summaryConfig.getReduceBatch();
+            steps += n;
+        }
+        return steps;
+    }
+
+    /**
+     * 将长文本按段落切分
+     */
+    private List<String> splitText(String text, int chunkSize) {
+        List<String> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+
+        for (String paragraph : text.split("\n\n")) {
+            if (current.length() + paragraph.length() > chunkSize && current.length() > 0) {
+                chunks.add(current.toString());
+                current.setLength(0);
+            }
+            // 单个段落超过限制时强制切分
+            if (paragraph.length() > chunkSize) {
+                for (int i = 0; i < paragraph.length(); i += chunkSize) {
+                    chunks.add(paragraph.substring(i, Math.min(i + chunkSize, paragraph.length())));
+                }
+                continue;
+            }
+            if (current.length() > 0) {
+                current.append("\n\n");
+            }
+            current.append(paragraph);
+        }
+        if (StrUtil.isNotBlank(current)) {
+            chunks.add(current.toString());
+        }
+        return chunks;
+    }
+
+    /**
+     * 文档摘要任务
+     */
+    private static final class SummaryJob {
+        private final Long documentId;
+        private final LocalDateTime startTime = LocalDateTime.now();
+        private volatile String status = SummaryJobVO.STATUS_PENDING;
+        private volatile int totalSteps;
+        private volatile int completedSteps;
+        private volatile String summary;
+        private volatile String errorMsg;
+        private volatile LocalDateTime finishTime;
+        private volatile long finishedAt;
+
+        SummaryJob(Long documentId) {
+            this.documentId = documentId;
+        }
+
+        boolean isActive() {
+            return SummaryJobVO.STATUS_PENDING.equals(status) || SummaryJobVO.STATUS_RUNNING.equals(status);
+        }
+
+        SummaryJobVO toVO() {
+            SummaryJobVO vo = new SummaryJobVO();
+            vo.setDocumentId(documentId);
+            vo.setStatus(status);
+            vo.setTotalSteps(totalSteps);
+            vo.setCompletedSteps(completedSteps);
+            if (SummaryJobVO.STATUS_COMPLETED.equals(status)) {
+                vo.setProgress(100);
+            } else {
+                vo.setProgress(totalSteps == 0 ? 0 : completedSteps * 100 / totalSteps);
+            }
+            vo.setSummary(summary);
+            vo.setErrorMsg(errorMsg);
+            vo.setStartTime(startTime);
+            vo.setFinishTime(finishTime);
+            return vo;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.wzw.knowledge.config.MilvusConfig;
 import io.milvus.client.MilvusServiceClient;
 import io.milvus.grpc.DataType;
 import io.milvus.grpc.MutationResult;
+import io.milvus.grpc.QueryResults;
 import io.milvus.grpc.SearchResults;
 import io.milvus.param.IndexType;
 import io.milvus.param.MetricType;
@@ -18,8 +19,10 @@ import io.milvus.param.collection.HasCollectionParam;
 import io.milvus.param.collection.LoadCollectionParam;
 import io.milvus.param.dml.DeleteParam;
 import io.milvus.param.dml.InsertParam;
+import io.milvus.param.dml.QueryParam;
 import io.milvus.param.dml.SearchParam;
 import io.milvus.param.index.CreateIndexParam;
+import io.milvus.response.QueryResultsWrapper;
 import io.milvus.response.SearchResultsWrapper;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
@@ -315,8 +318,17 @@ public class VectorServiceImpl implements VectorService {
      */
     @Override
     public List<VectorSearchResult> hybridSearch(float[] queryVector, String queryText, int topK, String type) {
+        return hybridSearch(queryVector, queryText, topK, type, null);
+    }
+
+    /**
+     * 混合检索，类型过滤之外再按业务ID范围过滤
+     */
+    @Override
+    public List<VectorSearchResult> hybridSearch(float[] queryVector, String queryText, int topK, String type,
+                                                 Collection<Long> businessIds) {
         // 先做纯向量检索
-        List<VectorSearchResult> vectorResults = search(queryVector, topK * 2, type);
+        List<VectorSearchResult> vectorResults = searchByExpr(queryVector, topK * 2, filterExpr(type, businessIds));
 
         if (queryText == null || queryText.isBlank()) {
             return vectorResults.stream().limit(topK).toList();
@@ -324,7 +336,8 @@ public class VectorServiceImpl implements VectorService {
 
         // 尝试基于text_content字段做文本匹配（Milvus v2.5 text_match）
         try {
-            List<VectorSearchResult> textMatchResults = searchWithTextMatch(queryVector, queryText, topK, type);
+            List<VectorSearchResult> textMatchResults =
+                    searchWithTextMatch(queryVector, queryText, topK, filterExpr(type, businessIds));
             if (!textMatchResults.isEmpty()) {
                 // RRF融合排序
                 return rrfFusion(vectorResults, textMatchResults, topK);
@@ -339,7 +352,7 @@ public class VectorServiceImpl implements VectorService {
     /**
      * 带文本匹配的向量搜索
      */
-    private List<VectorSearchResult> searchWithTextMatch(float[] queryVector, String queryText, int topK, String type) {
+    private List<VectorSearchResult> searchWithTextMatch(float[] queryVector, String queryText, int topK, String filter) {
         List<List<Float>> searchVectors = new ArrayList<>();
         List<Float> v = new ArrayList<>();
         for (float f : queryVector) {
@@ -347,11 +360,8 @@ public class VectorServiceImpl implements VectorService {
         }
         searchVectors.add(v);
 
-        // 构建过滤表达式：类型过滤 + 文本匹配
-        StringBuilder expr = new StringBuilder();
-        if (type != null && !type.isEmpty()) {
-            expr.append(FIELD_TYPE).append(" == \"").append(type).append("\"");
-        }
+        // 构建过滤表达式：类型和ID范围过滤 + 文本匹配
+        StringBuilder expr = new StringBuilder(filter);
 
         // 添加text_match条件（Milvus v2.5.x 全文检索）
         String sanitizedText = queryText.replace("\"", "\\\"");
@@ -384,6 +394,13 @@ public class VectorServiceImpl implements VectorService {
      */
     @Override
     public List<VectorSearchResult> search(float[] queryVector, int topK, String type) {
+        return searchByExpr(queryVector, topK, filterExpr(type, null));
+    }
+
+    /**
+     * 按过滤表达式做纯向量搜索
+     */
+    private List<VectorSearchResult> searchByExpr(float[] queryVector, int topK, String filter) {
         List<List<Float>> searchVectors = new ArrayList<>();
         List<Float> v = new ArrayList<>();
         for (float f : queryVector) {
@@ -400,8 +417,8 @@ public class VectorServiceImpl implements VectorService {
                 .withVectorFieldName(FIELD_VECTOR)
                 .withParams("{\"nprobe\": 10}");
 
-        if (type != null && !type.isEmpty()) {
-            searchBuilder.withExpr(FIELD_TYPE + " == \"" + type + "\"");
+        if (!filter.isEmpty()) {
+            searchBuilder.withExpr(filter);
         }
 
         R<SearchResults> searchResult = milvusClient.search(searchBuilder.build());
@@ -413,6 +430,55 @@ public class VectorServiceImpl implements VectorService {
         return parseSearchResults(searchResult);
     }
 
+    @Override
+    public Map<Long, float[]> getVectors(Collection<Long> businessIds, String type) {
+        Map<Long, float[]> vectors = new HashMap<>();
+        if (businessIds == null || businessIds.isEmpty()) {
+            return vectors;
+        }
+        QueryParam queryParam = QueryParam.newBuilder()
+                .withCollectionName(milvusConfig.getCollectionName())
+                .withExpr(filterExpr(type, businessIds))
+                .withOutFields(Arrays.asList(FIELD_BUSINESS_ID, FIELD_VECTOR))
+                .build();
+        R<QueryResults> queryResult = milvusClient.query(queryParam);
+        if (queryResult.getStatus() != R.Status.Success.getCode()) {
+            log.error("读取向量失败: {}", queryResult.getMessage());
+            return vectors;
+        }
+        for (QueryResultsWrapper.RowRecord row : new QueryResultsWrapper(queryResult.getData()).getRowRecords()) {
+            Object businessId = row.get(FIELD_BUSINESS_ID);
+            if (businessId instanceof Number id && row.get(FIELD_VECTOR) instanceof List<?> values) {
+                float[] vector = new float[values.size()];
+                for (int i = 0; i < vector.length; i++) {
+                    vector[i] = ((Number) values.get(i)).floatValue();
+                }
+                vectors.putIfAbsent(id.longValue(), vector);
+            }
+        }
+        return vectors;
+    }
+
+    /**
+     * 构建过滤表达式：类型过滤 + 业务ID范围过滤（均为可选）
+     */
+    private static String filterExpr(String type, Collection<Long> businessIds) {
+        StringBuilder expr = new StringBuilder();
+        if (type != null && !type.isEmpty()) {
+            expr.append(FIELD_TYPE).append(" == \"").append(type).append("\"");
+        }
+        if (businessIds != null && !businessIds.isEmpty()) {
+            if (!expr.isEmpty()) {
+                expr.append(" and ");
+            }
+            expr.append(FIELD_BUSINESS_ID).append(" in [");
+            StringJoiner ids = new StringJoiner(",");
+            businessIds.forEach(id -> ids.add(String.valueOf(id)));
+            expr.append(ids).append("]");
+        }
+        return expr.toString();
+    }
+
     /**
      * 解析Milvus搜索结果
      */
@@ -461,6 +527,8 @@ public class VectorServiceImpl implements VectorService {
         final int K = 60; // RRF常数
         Map<Long, Float> scoreMap = new LinkedHashMap<>();
         Map<Long, VectorSearchResult> resultMap = new HashMap<>();
+        // 两路检索中的最高余弦相似度（RRF分数只反映排名，不能用来判断是否相关）
+        Map<Long, Float> similarityMap = new HashMap<>();
 
         // 向量检索结果的RRF分数
         for (int i = 0; i < vectorResults.size(); i++) {
@@ -469,6 +537,7 @@ public class VectorServiceImpl implements VectorService {
                 float rrfScore = 1.0f / (K + i + 1);
                 scoreMap.merge(r.id(), rrfScore, Float::sum);
                 resultMap.putIfAbsent(r.id(), r);
+                similarityMap.merge(r.id(), r.similarity(), Math::max);
             }
         }
 
@@ -479,6 +548,7 @@ public class VectorServiceImpl implements VectorService {
                 float rrfScore = 1.0f / (K + i + 1);
                 scoreMap.merge(r.id(), rrfScore, Float::sum);
                 resultMap.putIfAbsent(r.id(), r);
+                similarityMap.merge(r.id(), r.similarity(), Math::max);
             }
         }
 
@@ -488,8 +558,8 @@ public class VectorServiceImpl implements VectorService {
                 .limit(topK)
                 .map(entry -> {
                     VectorSearchResult original = resultMap.get(entry.getKey());
-                    return new VectorSearchResult(
-                            original.id(), original.type(), entry.getValue(), original.parentId());
+                    return new VectorSearchResult(original.id(), original.type(), entry.getValue(),
+                            original.parentId(), similarityMap.get(entry.getKey()));
                 })
                 .toList();
     }
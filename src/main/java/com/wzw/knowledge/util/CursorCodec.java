@@ -0,0 +1,73 @@
+package com.wzw.knowledge.util;
+
+import cn.hutool.core.util.StrUtil;
+import com.wzw.knowledge.common.ResultCode;
+import com.wzw.knowledge.exception.BusinessException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 分页游标编解码工具
+ * <p>
+ * 游标由排序键的各个字段拼接后做URL安全的Base64编码，前端只需原样传回，
+ * 排序键变化时不影响接口形式
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public final class CursorCodec {
+
+    private static final String SEPARATOR = "|";
+
+    private CursorCodec() {
+    }
+
+    /**
+     * 编码游标
+     *
+     * @param parts 排序键字段（不能包含分隔符"|"）
+     * @return 游标
+     */
+    public static String encode(Object... parts) {
+        String raw = StrUtil.join(SEPARATOR, parts);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解码游标
+     *
+     * @param cursor        游标
+     * @param expectedParts 排序键字段数
+     * @return 排序键字段
+     * @throws BusinessException 游标格式错误
+     */
+    public static String[] decode(String cursor, int expectedParts) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            if (parts.length == expectedParts) {
+                return parts;
+            }
+        } catch (IllegalArgumentException e) {
+            // 按格式错误处理
+        }
+        throw new BusinessException(ResultCode.PARAM_ERROR, "无效的分页游标");
+    }
+
+    /**
+     * 解码单个ID组成的游标
+     *
+     * @param cursor 游标
+     * @return ID
+     * @throws BusinessException 游标格式错误
+     */
+    public static long decodeId(String cursor) {
+        try {
+            return Long.parseLong(decode(cursor, 1)[0]);
+        } catch (NumberFormatException e) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "无效的分页游标");
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.wzw.knowledge.util;
+
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import com.wzw.knowledge.common.CountMode;
+import com.wzw.knowledge.common.CursorPageResult;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 主键游标分页工具
+ * <p>
+ * 按主键倒序翻页：WHERE 筛选条件 AND id &lt; 游标 ORDER BY id DESC LIMIT size+1，
+ * 多查的一条用于判断是否还有下一页。雪花ID随时间递增，主键倒序即创建时间倒序；
+ * 配合 (筛选列, deleted, id) 联合索引，任意深度的翻页都是一次索引范围扫描
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public final class KeysetPager {
+
+    /**
+     * 默认每页数量
+     */
+    public static final int DEFAULT_PAGE_SIZE = 10;
+
+    /**
+     * 每页数量上限
+     */
+    public static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * 估算总数时的计数上限
+     */
+    public static final int ESTIMATE_LIMIT = 1000;
+
+    private KeysetPager() {
+    }
+
+    /**
+     * 游标分页查询
+     *
+     * @param mapper    Mapper
+     * @param filter    筛选条件（每次调用返回新的条件对象，查询和统计各用一个）
+     * @param idColumn  主键列
+     * @param cursor    上一页返回的游标，首页传null
+     * @param size      每页数量
+     * @param countMode 总数统计方式（通常只在首页统计）
+     * @param converter 实体转VO
+     * @param <E>       实体类型
+     * @param <V>       VO类型
+     * @return 游标分页结果
+     */
+    public static <E, V> CursorPageResult<V> page(BaseMapper<E> mapper, Supplier<LambdaQueryWrapper<E>> filter,
+                                                  SFunction<E, Long> idColumn, String cursor, Integer size,
+                                                  CountMode countMode, Function<E, V> converter) {
+        int limit = normalizeSize(size, DEFAULT_PAGE_SIZE);
+        LambdaQueryWrapper<E> wrapper = filter.get();
+        if (StrUtil.isNotBlank(cursor)) {
+            wrapper.lt(idColumn, CursorCodec.decodeId(cursor));
+        }
+        wrapper.orderByDesc(idColumn).last("LIMIT " + (limit + 1));
+
+        List<E> rows = mapper.selectList(wrapper);
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            nextCursor = CursorCodec.encode(idColumn.apply(rows.get(limit - 1)));
+        }
+        CursorPageResult<V> result = CursorPageResult.of(rows.stream().map(converter).toList(), nextCursor);
+
+        if (countMode == CountMode.EXACT) {
+            result.withTotal(mapper.selectCount(filter.get()), true);
+        } else if (countMode == CountMode.ESTIMATE) {
+            // 只取主键且最多取 ESTIMATE_LIMIT+1 条，统计代价有上限
+            int counted = mapper.selectObjs(filter.get().select(idColumn).last("LIMIT " + (ESTIMATE_LIMIT + 1))).size();
+            result.withTotal((long) Math.min(counted, ESTIMATE_LIMIT), counted <= ESTIMATE_LIMIT);
+        }
+        return result;
+    }
+
+    /**
+     * 规范每页数量
+     *
+     * @param size        请求的每页数量
+     * @param defaultSize 未传时的默认值
+     * @return 1 ~ MAX_PAGE_SIZE 之间的每页数量
+     */
+    public static int normalizeSize(Integer size, int defaultSize) {
+        if (size == null || size <= 0) {
+            return defaultSize;
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+}
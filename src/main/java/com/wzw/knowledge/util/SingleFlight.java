@@ -0,0 +1,92 @@
+package com.wzw.knowledge.util;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 同键请求合并器
+ * <p>
+ * 同一个键同时只执行一次：第一个到达的请求在自己的线程上执行加载，
+ * 执行期间到达的相同请求等待并共享同一个结果（或同一个异常）。执行结束后立即移除，不缓存结果。
+ * </p>
+ * 线程安全。
+ *
+ * @param <K> 键类型
+ * @param <V> 结果类型
+ * @author wzw
+ * @version 1.0
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    private final LongAdder executedCount = new LongAdder();
+    private final LongAdder sharedCount = new LongAdder();
+
+    /**
+     * 执行加载，相同键的并发请求只执行一次
+     *
+     * @param key    键
+     * @param loader 加载函数（在第一个请求的线程上执行）
+     * @return 加载结果
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            sharedCount.increment();
+            return await(existing);
+        }
+
+        executedCount.increment();
+        try {
+            V value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 正在执行的键数量
+     */
+    public int getInFlight() {
+        return flights.size();
+    }
+
+    /**
+     * 实际执行加载的次数
+     */
+    public long getExecutedCount() {
+        return executedCount.sum();
+    }
+
+    /**
+     * 共享了其他请求结果的次数
+     */
+    public long getSharedCount() {
+        return sharedCount.sum();
+    }
+}
@@ -0,0 +1,168 @@
+package com.wzw.knowledge.util;
+
+/**
+ * SSE帧合并写入器
+ * <p>
+ * 流式输出时模型每次只产出一两个字，逐字发送会导致每个token一次Map分配、一次JSON序列化和一次socket flush。
+ * 本类将连续的token合并为一帧：
+ * - 累计时间达到 flushIntervalMs 或累计字节数达到 flushBytes 时输出一帧
+ * - 直接把转义后的token拼接进预先构造好的JSON信封模板，不分配Map、不走序列化
+ * </p>
+ * 非线程安全，由调用方加锁。
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public class SseFrameWriter {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * chunk事件信封模板
+     */
+    private static final String CHUNK_PREFIX = "{\"type\":\"chunk\",\"content\":\"";
+    private static final String CHUNK_SUFFIX = "\"}";
+
+    private final long flushIntervalMs;
+    private final int flushBytes;
+
+    /**
+     * 待发送内容（已转义）
+     */
+    private final StringBuilder pending = new StringBuilder(512);
+    private int pendingBytes;
+    private int pendingTokens;
+
+    /**
+     * @param flushIntervalMs 合并时间窗口（毫秒），小于等于0表示每个token单独成帧
+     * @param flushBytes      单帧字节数上限（UTF-8）
+     */
+    public SseFrameWriter(long flushIntervalMs, int flushBytes) {
+        this.flushIntervalMs = flushIntervalMs;
+        this.flushBytes = flushBytes;
+    }
+
+    /**
+     * 追加一个token
+     *
+     * @param token 模型输出片段
+     * @return 是否应立即输出一帧（字节数达到上限或未开启合并），否则由调用方在时间窗口结束时输出
+     */
+    public boolean append(CharSequence token) {
+        if (token == null || token.isEmpty()) {
+            return false;
+        }
+        pendingTokens++;
+        pendingBytes += utf8Length(token);
+        appendEscaped(pending, token);
+        return flushIntervalMs <= 0 || pendingBytes >= flushBytes;
+    }
+
+    /**
+     * 是否有待发送的内容
+     */
+    public boolean hasPending() {
+        return pendingTokens > 0;
+    }
+
+    /**
+     * 待发送的token数
+     */
+    public int getPendingTokens() {
+        return pendingTokens;
+    }
+
+    public long getFlushIntervalMs() {
+        return flushIntervalMs;
+    }
+
+    /**
+     * 取出待发送内容，生成一个chunk事件
+     *
+     * @return chunk事件JSON，没有待发送内容时返回null
+     */
+    public String drain() {
+        if (!hasPending()) {
+            return null;
+        }
+        String frame = new StringBuilder(CHUNK_PREFIX.length() + pending.length() + CHUNK_SUFFIX.length())
+                .append(CHUNK_PREFIX)
+                .append(pending)
+                .append(CHUNK_SUFFIX)
+                .toString();
+        pending.setLength(0);
+        pendingBytes = 0;
+        pendingTokens = 0;
+        return frame;
+    }
+
+    /**
+     * 按模板生成事件JSON：{"type":"...","字段1":"值1",...}
+     *
+     * @param type   事件类型
+     * @param fields 字段名和值交替排列，值为null时输出null
+     * @return 事件JSON
+     */
+    public static String envelope(String type, String... fields) {
+        StringBuilder sb = new StringBuilder(64).append("{\"type\":\"").append(type).append('"');
+        for (int i = 0; i + 1 < fields.length; i += 2) {
+            sb.append(",\"").append(fields[i]).append("\":");
+            String value = fields[i + 1];
+            if (value == null) {
+                sb.append("null");
+            } else {
+                appendEscaped(sb.append('"'), value).append('"');
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * 按JSON字符串规则转义后追加
+     */
+    public static StringBuilder appendEscaped(StringBuilder sb, CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                case '\b' -> sb.append("\\b");
+                case '\f' -> sb.append("\\f");
+                default -> {
+                    // 控制字符以及 U+2028/U+2029（部分JS解析器视为换行）使用unicode转义
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        sb.append("\\u")
+                                .append(HEX[(c >> 12) & 0xF])
+                                .append(HEX[(c >> 8) & 0xF])
+                                .append(HEX[(c >> 4) & 0xF])
+                                .append(HEX[c & 0xF]);
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb;
+    }
+
+    private static int utf8Length(CharSequence s) {
+        int bytes = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
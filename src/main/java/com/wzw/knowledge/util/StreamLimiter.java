@@ -0,0 +1,134 @@
+package com.wzw.knowledge.util;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 流式请求并发限制器
+ * <p>
+ * 信号量限制同时进行的流数量，额外提供一个有界的等待队列：
+ * - tryAcquire：有空闲名额时立即进入
+ * - tryEnqueue + awaitPermit：没有名额时占用一个排队位置，在调用线程（虚拟线程）上等待
+ * - 两者都失败时由调用方拒绝请求
+ * </p>
+ * 线程安全。
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public class StreamLimiter {
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LongAdder admittedCount = new LongAdder();
+    private final LongAdder queuedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public StreamLimiter(int maxConcurrent, int maxQueued) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * 尝试立即获取名额（有请求在排队时不插队）
+     *
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire() {
+        if (queued.get() == 0 && permits.tryAcquire()) {
+            admittedCount.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 尝试占用一个排队位置
+     *
+     * @return 排队位置（从1开始），队列已满时返回-1
+     */
+    public int tryEnqueue() {
+        while (true) {
+            int current = queued.get();
+            if (current >= maxQueued) {
+                rejectedCount.increment();
+                return -1;
+            }
+            if (queued.compareAndSet(current, current + 1)) {
+                queuedCount.increment();
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * 排队等待名额，无论成功与否都会释放排队位置
+     *
+     * @param timeoutMs 等待超时时间（毫秒）
+     * @return 是否获取成功
+     */
+    public boolean awaitPermit(long timeoutMs) {
+        try {
+            if (permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                admittedCount.increment();
+                return true;
+            }
+            rejectedCount.increment();
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejectedCount.increment();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    /**
+     * 释放名额
+     */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * 当前进行中的流数量
+     */
+    public int getActive() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * 当前排队数量
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * 累计放行数
+     */
+    public long getAdmittedCount() {
+        return admittedCount.sum();
+    }
+
+    /**
+     * 累计进入排队数
+     */
+    public long getQueuedCount() {
+        return queuedCount.sum();
+    }
+
+    /**
+     * 累计拒绝数（队列已满或排队超时）
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+}
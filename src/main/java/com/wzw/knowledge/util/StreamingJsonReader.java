@@ -0,0 +1,355 @@
+package com.wzw.knowledge.util;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.BiConsumer;
+
+/**
+ * 增量容错JSON读取器
+ * <p>
+ * 用于解析大模型流式输出的结构化结果，例如：
+ * {"entities": [{...}, {...}], "relations": [{...}]}
+ * 或顶层直接为数组：[{...}, {...}]
+ * </p>
+ * <p>
+ * 特点：
+ * - 按片段增量喂入（feed），每读完一个完整的数组元素对象立即回调
+ * - 输出被截断时，已读完的元素全部保留，只丢弃未完成的那一个
+ * - 单个元素解析失败只跳过该元素，不影响其他元素
+ * - 线性扫描，修复常见的非法格式："a" + "b" 字符串拼接、字符串内换行、尾随逗号
+ * - 跳过JSON之前的前导内容（&lt;think&gt;思考链、```json 代码块标记等）
+ * </p>
+ * 非线程安全，每次解析创建新实例。
+ *
+ * @author wzw
+ * @version 1.0
+ */
+@Slf4j
+public class StreamingJsonReader {
+
+    private static final String THINK_OPEN = "<think>";
+    private static final String THINK_CLOSE = "</think>";
+
+    /**
+     * 元素回调（数组字段名, 元素对象），顶层数组的字段名为空字符串
+     */
+    private final BiConsumer<String, JSONObject> listener;
+
+    /**
+     * 结构层级栈（'{' 或 '['）
+     */
+    private final Deque<Character> containers = new ArrayDeque<>();
+
+    /**
+     * 前导内容缓冲（用于识别 &lt;think&gt; 标签）
+     */
+    private final StringBuilder preamble = new StringBuilder();
+    private boolean inThink;
+
+    private boolean started;
+    private boolean finished;
+    private boolean inString;
+    private boolean escaped;
+
+    /**
+     * 顶层对象中的key读取状态
+     */
+    private boolean expectKey;
+    private boolean readingKey;
+    private final StringBuilder keyBuffer = new StringBuilder();
+    private String lastKey;
+
+    /**
+     * 当前正在收集元素的数组字段名
+     */
+    private String currentArrayKey;
+
+    /**
+     * 当前元素缓冲（非空表示正在读取元素）
+     */
+    private StringBuilder element;
+    private int elementDepth;
+    private boolean pendingConcat;
+
+    private int emittedCount;
+    private int skippedCount;
+
+    public StreamingJsonReader(BiConsumer<String, JSONObject> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 喂入一段输出
+     *
+     * @param chunk 输出片段
+     */
+    public void feed(CharSequence chunk) {
+        if (chunk == null) {
+            return;
+        }
+        for (int i = 0; i < chunk.length(); i++) {
+            accept(chunk.charAt(i));
+        }
+    }
+
+    /**
+     * 结束读取，未完成的元素计为丢弃
+     */
+    public void finish() {
+        if (element != null) {
+            skippedCount++;
+            log.debug("输出被截断，丢弃未完成的元素, arrayKey={}, length={}", currentArrayKey, element.length());
+            element = null;
+        }
+    }
+
+    /**
+     * 是否被截断（顶层结构未闭合）
+     */
+    public boolean isTruncated() {
+        return !finished;
+    }
+
+    /**
+     * 已回调的元素数
+     */
+    public int getEmittedCount() {
+        return emittedCount;
+    }
+
+    /**
+     * 解析失败或不完整而丢弃的元素数
+     */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    private void accept(char c) {
+        if (finished) {
+            return;
+        }
+        if (!started) {
+            acceptPreamble(c);
+            return;
+        }
+        if (element != null) {
+            acceptElement(c);
+            return;
+        }
+        acceptStructure(c);
+    }
+
+    /**
+     * 处理JSON开始之前的内容
+     */
+    private void acceptPreamble(char c) {
+        preamble.append(c);
+        if (inThink) {
+            if (endsWith(preamble, THINK_CLOSE)) {
+                inThink = false;
+                preamble.setLength(0);
+            }
+            return;
+        }
+        if (endsWith(preamble, THINK_OPEN)) {
+            inThink = true;
+            preamble.setLength(0);
+            return;
+        }
+        if (c == '{' || c == '[') {
+            started = true;
+            containers.push(c);
+            expectKey = c == '{';
+            if (c == '[') {
+                currentArrayKey = "";
+            }
+            preamble.setLength(0);
+            return;
+        }
+        // 只需保留能匹配标签的尾部
+        if (preamble.length() > 64) {
+            preamble.delete(0, preamble.length() - THINK_OPEN.length());
+        }
+    }
+
+    /**
+     * 处理元素之外的结构字符
+     */
+    private void acceptStructure(char c) {
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+                if (readingKey) {
+                    keyBuffer.append(c);
+                }
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '"') {
+                inString = false;
+                if (readingKey) {
+                    lastKey = keyBuffer.toString();
+                    readingKey = false;
+                }
+            } else if (readingKey) {
+                keyBuffer.append(c);
+            }
+            return;
+        }
+
+        int depth = containers.size();
+        char top = depth > 0 ? containers.peek() : 0;
+
+        switch (c) {
+            case '"' -> {
+                inString = true;
+                if (depth == 1 && top == '{' && expectKey) {
+                    readingKey = true;
+                    keyBuffer.setLength(0);
+                }
+            }
+            case ':' -> {
+                if (depth == 1) {
+                    expectKey = false;
+                }
+            }
+            case ',' -> {
+                if (depth == 1 && top == '{') {
+                    expectKey = true;
+                }
+            }
+            case '{' -> {
+                if (top == '[' && currentArrayKey != null) {
+                    element = new StringBuilder(256).append('{');
+                    elementDepth = 1;
+                    pendingConcat = false;
+                } else {
+                    containers.push('{');
+                }
+            }
+            case '[' -> {
+                containers.push('[');
+                if (depth == 1 && top == '{') {
+                    currentArrayKey = lastKey;
+                }
+            }
+            case '}', ']' -> {
+                if (containers.isEmpty()) {
+                    return;
+                }
+                char popped = containers.pop();
+                if (popped == '[' && containers.size() <= 1) {
+                    currentArrayKey = null;
+                }
+                if (containers.isEmpty()) {
+                    finished = true;
+                }
+            }
+            default -> {
+                // 其他字符（空白、数值、布尔值等）在元素之外无需处理
+            }
+        }
+    }
+
+    /**
+     * 收集数组元素，同时修复常见的格式问题
+     */
+    private void acceptElement(char c) {
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+                element.append(c);
+            } else if (c == '\\') {
+                escaped = true;
+                element.append(c);
+            } else if (c == '"') {
+                inString = false;
+                element.append(c);
+            } else if (c == '\n' || c == '\r') {
+                // 字符串内的非法换行替换为空格
+                element.append(' ');
+            } else if (c == '\t') {
+                element.append("\\t");
+            } else if (c >= 0x20) {
+                element.append(c);
+            }
+            return;
+        }
+
+        if (Character.isWhitespace(c)) {
+            return;
+        }
+
+        if (c == '"') {
+            if (pendingConcat) {
+                // "a" + "b" -> "ab"：去掉前一个字符串的结束引号，继续读取
+                element.setLength(element.length() - 1);
+                pendingConcat = false;
+            } else {
+                element.append(c);
+            }
+            inString = true;
+            return;
+        }
+
+        if (c == '+' && lastChar() == '"') {
+            pendingConcat = true;
+            return;
+        }
+        pendingConcat = false;
+
+        switch (c) {
+            case '{', '[' -> {
+                elementDepth++;
+                element.append(c);
+            }
+            case '}', ']' -> {
+                // 去掉尾随逗号
+                if (lastChar() == ',') {
+                    element.setLength(element.length() - 1);
+                }
+                element.append(c);
+                elementDepth--;
+                if (elementDepth == 0) {
+                    emit();
+                }
+            }
+            default -> element.append(c);
+        }
+    }
+
+    private void emit() {
+        String json = element.toString();
+        element = null;
+        try {
+            JSONObject obj = JSON.parseObject(json);
+            if (obj != null) {
+                emittedCount++;
+                listener.accept(currentArrayKey, obj);
+            }
+        } catch (Exception e) {
+            skippedCount++;
+            log.debug("跳过无法解析的元素: {}, error={}", json.length() > 200 ? json.substring(0, 200) : json, e.getMessage());
+        }
+    }
+
+    private char lastChar() {
+        return element.isEmpty() ? 0 : element.charAt(element.length() - 1);
+    }
+
+    private static boolean endsWith(StringBuilder sb, String suffix) {
+        int offset = sb.length() - suffix.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (sb.charAt(offset + i) != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
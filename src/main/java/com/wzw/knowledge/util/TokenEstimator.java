@@ -0,0 +1,67 @@
+package com.wzw.knowledge.util;
+
+/**
+ * token数估算工具
+ * <p>
+ * 不依赖具体模型的分词器，按字符类别粗略估算：
+ * - 中日韩字符及全角标点按每字1个token计
+ * - 其他字符（英文、数字、半角符号）按每4个字符1个token计
+ * 用于在拼装提示词时控制上下文预算，偏保守即可
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public final class TokenEstimator {
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * 估算文本的token数
+     *
+     * @param text 文本
+     * @return token数
+     */
+    public static int estimate(CharSequence text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int wide = 0;
+        int narrow = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x2E80) {
+                wide++;
+            } else {
+                narrow++;
+            }
+        }
+        return wide + (narrow + 3) / 4;
+    }
+
+    /**
+     * 截取不超过指定token数的前缀
+     *
+     * @param text      文本
+     * @param maxTokens token上限
+     * @return 前缀（不超过上限时返回原文）
+     */
+    public static String truncate(String text, int maxTokens) {
+        if (text == null || maxTokens <= 0) {
+            return "";
+        }
+        int wide = 0;
+        int narrow = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x2E80) {
+                wide++;
+            } else {
+                narrow++;
+            }
+            if (wide + (narrow + 3) / 4 > maxTokens) {
+                return text.substring(0, i);
+            }
+        }
+        return text;
+    }
+}
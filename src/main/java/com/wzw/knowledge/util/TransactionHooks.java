@@ -0,0 +1,38 @@
+package com.wzw.knowledge.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 事务回调工具
+ * <p>
+ * 内存索引、缓存等只能在数据提交后更新：提交前更新会让回滚的数据进入内存，
+ * 或让其他线程在提交前读到旧数据后以新状态写回缓存
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public final class TransactionHooks {
+
+    private TransactionHooks() {
+    }
+
+    /**
+     * 在当前事务提交后执行，没有事务时立即执行
+     *
+     * @param action 要执行的操作（事务回滚时不执行）
+     */
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
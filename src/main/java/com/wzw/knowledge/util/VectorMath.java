@@ -0,0 +1,65 @@
+package com.wzw.knowledge.util;
+
+/**
+ * 向量运算工具
+ * <p>
+ * 嵌入向量先归一化为单位长度，余弦相似度即为点积
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+public final class VectorMath {
+
+    private VectorMath() {
+    }
+
+    /**
+     * 计算向量模长
+     *
+     * @param vector 向量
+     * @return 模长
+     */
+    public static double norm(float[] vector) {
+        double total = 0;
+        for (float value : vector) {
+            total += value * value;
+        }
+        return Math.sqrt(total);
+    }
+
+    /**
+     * 归一化为单位长度
+     *
+     * @param vector 向量
+     * @return 新的单位向量（零向量原样返回）
+     */
+    public static float[] normalize(float[] vector) {
+        double norm = norm(vector);
+        if (norm == 0) {
+            return vector;
+        }
+        float scale = (float) (1 / norm);
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    /**
+     * 计算点积（长度不同时按较短的计算）
+     *
+     * @param a 向量
+     * @param b 向量
+     * @return 点积，两个单位向量的点积即余弦相似度
+     */
+    public static double dot(float[] a, float[] b) {
+        int length = Math.min(a.length, b.length);
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
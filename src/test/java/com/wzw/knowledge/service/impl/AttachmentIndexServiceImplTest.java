@@ -0,0 +1,121 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.config.ChatAttachmentConfig;
+import com.wzw.knowledge.model.entity.ChatAttachment;
+import com.wzw.knowledge.service.AttachmentIndexService;
+import com.wzw.knowledge.service.OllamaService;
+import com.wzw.knowledge.util.TokenEstimator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 附件索引服务测试类
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class AttachmentIndexServiceImplTest {
+
+    private static final int TOPICS = 8;
+
+    private final OllamaService ollamaService = mock(OllamaService.class);
+    private final ChatAttachmentConfig config = new ChatAttachmentConfig();
+    private final AtomicInteger embeddings = new AtomicInteger();
+    private AttachmentIndexServiceImpl indexService;
+
+    @AfterEach
+    void tearDown() {
+        if (indexService != null) {
+            indexService.destroy();
+        }
+    }
+
+    /**
+     * 测试大附件只拼入与问题相关的片段，总长度受token预算限制；同一附件只建立一次索引
+     */
+    @Test
+    void testRetrievesRelevantChunksWithinBudget() {
+        config.setChunkSize(200);
+        config.setContextTokenBudget(400);
+        init();
+        // 40段，每段属于一个主题，全文远超预算
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            content.append("主题").append(i % TOPICS).append("：第").append(i).append("段说明。")
+                    .append("这是一段用于填充长度的附件正文内容。".repeat(8)).append("\n\n");
+        }
+        ChatAttachment attachment = attachment(1L, "手册.pdf", content.toString());
+
+        indexService.indexAsync(10L, attachment);
+        String context = indexService.buildContext(10L, "主题3是什么", List.of(attachment));
+
+        assertTrue(context.startsWith("文件「手册.pdf」相关片段:"));
+        assertTrue(context.contains("主题3：第3段"));
+        assertFalse(context.contains("主题4："));
+        assertTrue(TokenEstimator.estimate(context) <= 400);
+        // 40个分块 + 1次问题向量，第二次提问复用索引
+        indexService.buildContext(10L, "主题5是什么", List.of(attachment));
+        assertEquals(42, embeddings.get());
+
+        AttachmentIndexService.IndexStats stats = indexService.getStats();
+        assertEquals(1, stats.sessions());
+        assertEquals(40, stats.chunks());
+        indexService.evict(10L);
+        assertEquals(0, indexService.getStats().sessions());
+    }
+
+    /**
+     * 测试小附件直接全文拼入，不生成向量；索引失败时退化为截取开头
+     */
+    @Test
+    void testSmallAttachmentAndFallback() {
+        config.setContextTokenBudget(300);
+        init();
+        ChatAttachment small = attachment(1L, "说明.txt", "设备A额定功率15kW。");
+        ChatAttachment large = attachment(2L, "日志.txt", "日志内容。".repeat(2000));
+        when(ollamaService.generateEmbedding(contains("日志"))).thenThrow(new RuntimeException("embedding unavailable"));
+
+        String context = indexService.buildContext(null, "主题1", List.of(small, large));
+
+        assertTrue(context.startsWith("文件「说明.txt」内容:\n设备A额定功率15kW。"));
+        assertTrue(context.contains("文件「日志.txt」开头部分:\n日志内容。"));
+        assertTrue(TokenEstimator.estimate(context) <= 300);
+    }
+
+    private void init() {
+        when(ollamaService.generateEmbedding(anyString())).thenAnswer(inv -> {
+            embeddings.incrementAndGet();
+            return topicVector(inv.getArgument(0));
+        });
+        indexService = new AttachmentIndexServiceImpl(ollamaService, config);
+    }
+
+    /**
+     * 按文本中出现的"主题N"生成向量
+     */
+    private static float[] topicVector(String text) {
+        float[] vector = new float[TOPICS + 1];
+        vector[TOPICS] = 0.01f;
+        for (int i = 0; i < TOPICS; i++) {
+            if (text.contains("主题" + i)) {
+                vector[i] = 1;
+            }
+        }
+        return vector;
+    }
+
+    private static ChatAttachment attachment(Long id, String fileName, String content) {
+        ChatAttachment attachment = new ChatAttachment();
+        attachment.setId(id);
+        attachment.setFileName(fileName);
+        attachment.setParsedContent(content);
+        return attachment;
+    }
+}
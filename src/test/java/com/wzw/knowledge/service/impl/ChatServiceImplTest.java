@@ -0,0 +1,466 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.common.CursorPageResult;
+import com.wzw.knowledge.config.ChatJournalConfig;
+import com.wzw.knowledge.config.ChatSingleFlightConfig;
+import com.wzw.knowledge.config.ChatStreamConfig;
+import com.wzw.knowledge.config.FileConfig;
+import com.wzw.knowledge.config.RetrievalGateConfig;
+import com.wzw.knowledge.mapper.ChatAttachmentMapper;
+import com.wzw.knowledge.mapper.ChatMessageMapper;
+import com.wzw.knowledge.mapper.ChatSessionMapper;
+import com.wzw.knowledge.mapper.DocumentChunkMapper;
+import com.wzw.knowledge.mapper.DocumentMapper;
+import com.wzw.knowledge.mapper.KnowledgeNodeMapper;
+import com.wzw.knowledge.mapper.KnowledgeRelationMapper;
+import com.wzw.knowledge.mapper.OcrRecordMapper;
+import com.wzw.knowledge.model.dto.ChatSendRequest;
+import com.wzw.knowledge.model.entity.ChatAttachment;
+import com.wzw.knowledge.model.entity.ChatMessage;
+import com.wzw.knowledge.model.entity.ChatSession;
+import com.wzw.knowledge.model.vo.ChatMessageVO;
+import com.wzw.knowledge.model.vo.ChatSendResponse;
+import com.wzw.knowledge.model.vo.RagDocument;
+import com.wzw.knowledge.model.vo.RagContextVO;
+import com.wzw.knowledge.service.AttachmentIndexService;
+import com.wzw.knowledge.service.ChatService;
+import com.wzw.knowledge.service.ConversationMemoryService;
+import com.wzw.knowledge.service.CorpusVersionService;
+import com.wzw.knowledge.service.OllamaService;
+import com.wzw.knowledge.service.RagProvenanceService;
+import com.wzw.knowledge.service.RagService;
+import com.wzw.knowledge.service.RetrievalGateService;
+import com.wzw.knowledge.util.CursorCodec;
+import com.wzw.knowledge.util.DocumentParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 聊天服务测试类
+ * <p>
+ * 在带事务代理的最小Spring容器中运行，数据源只统计借出的连接数
+ * </p>
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class ChatServiceImplTest {
+
+    /**
+     * 连接池大小，小于并发对话数
+     */
+    private static final int POOL_SIZE = 2;
+
+    private final CountingDataSource dataSource = new CountingDataSource(POOL_SIZE);
+    private final ChatSessionMapper sessionMapper = mock(ChatSessionMapper.class);
+    private final ChatMessageMapper messageMapper = mock(ChatMessageMapper.class);
+    private final OllamaService ollamaService = mock(OllamaService.class);
+    private final ChatAttachmentMapper attachmentMapper = mock(ChatAttachmentMapper.class);
+    private final ChatJournalConfig journalConfig = new ChatJournalConfig();
+
+    private AnnotationConfigApplicationContext context;
+
+    @BeforeEach
+    void setUp() {
+        // 由测试显式刷写
+        journalConfig.setFlushInterval(60_000L);
+
+        context = new AnnotationConfigApplicationContext();
+        context.register(TransactionConfig.class);
+        context.registerBean(DataSource.class, () -> dataSource);
+        context.registerBean(PlatformTransactionManager.class, () -> new DataSourceTransactionManager(dataSource));
+        context.registerBean(ChatSessionMapper.class, () -> sessionMapper);
+        context.registerBean(ChatMessageMapper.class, () -> messageMapper);
+        context.registerBean(ChatAttachmentMapper.class, () -> attachmentMapper);
+        context.registerBean(OllamaService.class, () -> ollamaService);
+        context.registerBean(RagService.class, () -> mock(RagService.class));
+        context.registerBean(RetrievalGateService.class, () -> mock(RetrievalGateService.class));
+        context.registerBean(RetrievalGateConfig.class, RetrievalGateConfig::new);
+        context.registerBean(ConversationMemoryService.class, () -> mock(ConversationMemoryService.class));
+        context.registerBean(AttachmentIndexService.class, () -> mock(AttachmentIndexService.class));
+        context.registerBean(RagProvenanceService.class, () -> new RagProvenanceServiceImpl(
+                mock(DocumentChunkMapper.class), mock(DocumentMapper.class), mock(KnowledgeNodeMapper.class),
+                mock(KnowledgeRelationMapper.class), messageMapper, mock(OcrRecordMapper.class),
+                mock(CorpusVersionService.class)));
+        context.registerBean(DocumentParser.class, () -> mock(DocumentParser.class));
+        context.registerBean(FileConfig.class, FileConfig::new);
+        context.registerBean(ChatStreamConfig.class, ChatStreamConfig::new);
+        context.registerBean(ChatJournalConfig.class, () -> journalConfig);
+        context.registerBean(ChatStreamManager.class);
+        context.registerBean(ChatSingleFlightConfig.class, ChatSingleFlightConfig::new);
+        context.registerBean(ChatSingleFlight.class);
+        context.registerBean(ChatMessageJournal.class);
+        context.registerBean(ChatServiceImpl.class);
+        context.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    /**
+     * 测试模型生成期间不占用连接：并发对话数超过连接池大小时全部同时生成，生成期间借出连接数为0，
+     * 消息和计数在生成结束后以一个短事务批量写入
+     */
+    @Test
+    void testPoolStaysFreeDuringGeneration() throws Exception {
+        int conversations = 10;
+        when(sessionMapper.selectById(any())).thenAnswer(inv -> {
+            ChatSession session = new ChatSession();
+            session.setId(inv.getArgument(0));
+            session.setMessageCount(2);
+            return session;
+        });
+
+        CountDownLatch generating = new CountDownLatch(conversations);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger maxBorrowedDuringGeneration = new AtomicInteger();
+        AtomicBoolean transactionDuringGeneration = new AtomicBoolean();
+        when(ollamaService.chat(anyString(), any())).thenAnswer(inv -> {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                transactionDuringGeneration.set(true);
+            }
+            generating.countDown();
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            maxBorrowedDuringGeneration.accumulateAndGet(dataSource.borrowed.get(), Math::max);
+            return "回答";
+        });
+
+        // 批量插入的列表在写入后会被复用，在调用时记录
+        List<Integer> insertedBatches = new ArrayList<>();
+        when(messageMapper.insertBatch(anyList())).thenAnswer(inv -> {
+            List<ChatMessage> messages = inv.getArgument(0);
+            assertTrue(messages.stream().allMatch(m -> m.getId() != null && m.getCreateTime() != null));
+            insertedBatches.add(messages.size());
+            return messages.size();
+        });
+
+        ChatService chatService = context.getBean(ChatService.class);
+        assertTrue(AopUtils.isAopProxy(chatService));
+
+        ExecutorService executor = Executors.newFixedThreadPool(conversations);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < conversations; i++) {
+                long sessionId = i + 1;
+                ChatSendRequest request = new ChatSendRequest();
+                request.setMessage("问题" + sessionId);
+                request.setEnableRag(false);
+                futures.add(executor.submit(() -> chatService.sendMessage(sessionId, request)));
+            }
+
+            // 所有对话同时处于生成阶段（超过连接池大小），此时没有借出任何连接
+            assertTrue(generating.await(10, TimeUnit.SECONDS));
+            assertEquals(0, dataSource.borrowed.get());
+            release.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertFalse(transactionDuringGeneration.get());
+        assertEquals(0, maxBorrowedDuringGeneration.get());
+        assertEquals(0, dataSource.totalBorrowed.get());
+
+        // 一次刷写：一个事务、一条多行INSERT、一条计数UPDATE
+        context.getBean(ChatMessageJournal.class).flushAll();
+        assertEquals(1, dataSource.totalBorrowed.get());
+        assertEquals(0, dataSource.borrowed.get());
+
+        assertEquals(List.of(conversations * 2), insertedBatches);
+        verify(sessionMapper, times(1)).addMessageCounts(argThat(deltas -> deltas.size() == conversations
+                && deltas.values().stream().allMatch(delta -> delta == 2)));
+        verify(sessionMapper, never()).incrementMessageCount(any());
+    }
+
+    /**
+     * 测试更新在同一批次的插入之后执行
+     */
+    @Test
+    void testUpdateAppliedAfterInsert() {
+        ChatMessageJournal journal = context.getBean(ChatMessageJournal.class);
+        List<String> calls = new ArrayList<>();
+        when(messageMapper.insertBatch(anyList())).thenAnswer(inv -> {
+            calls.add("insert:" + ((List<?>) inv.getArgument(0)).size());
+            return 1;
+        });
+        when(messageMapper.updateById(any(ChatMessage.class))).thenAnswer(inv -> {
+            calls.add("update");
+            return 1;
+        });
+        doAnswer(inv -> calls.add("count:" + inv.<Map<Long, Integer>>getArgument(0).get(1L)))
+                .when(sessionMapper).addMessageCounts(anyMap());
+
+        ChatMessage user = message(1L, ChatMessage.ROLE_USER, "问题");
+        ChatMessage assistant = message(1L, ChatMessage.ROLE_ASSISTANT, "");
+        journal.append(user);
+        journal.append(assistant);
+        ChatMessage update = message(1L, null, "回答");
+        update.setId(assistant.getId());
+        journal.update(update);
+        journal.flush(1L);
+
+        assertEquals(List.of("insert:2", "update", "count:2"), calls);
+        assertEquals(0, journal.getPendingCount());
+        assertTrue(user.getId() < assistant.getId());
+    }
+
+    /**
+     * 测试写入失败的操作不丢弃：同一会话后续的操作排在其后，数据库恢复后按原顺序写入并累加消息计数
+     */
+    @Test
+    void testFailedWritesRetried() {
+        ChatMessageJournal journal = context.getBean(ChatMessageJournal.class);
+        journalConfig.setRetryBackoff(0L);
+        List<String> calls = new ArrayList<>();
+        AtomicBoolean databaseDown = new AtomicBoolean(true);
+        when(messageMapper.insertBatch(anyList())).thenAnswer(inv -> {
+            if (databaseDown.get()) {
+                throw new IllegalStateException("connection refused");
+            }
+            calls.add("insert:" + ((List<?>) inv.getArgument(0)).size());
+            return 1;
+        });
+        when(messageMapper.updateById(any(ChatMessage.class))).thenAnswer(inv -> {
+            calls.add("update");
+            return 1;
+        });
+        doAnswer(inv -> calls.add("count:" + inv.<Map<Long, Integer>>getArgument(0).get(1L)))
+                .when(sessionMapper).addMessageCounts(anyMap());
+
+        ChatMessage assistant = message(1L, ChatMessage.ROLE_ASSISTANT, "");
+        journal.append(message(1L, ChatMessage.ROLE_USER, "问题"));
+        journal.append(assistant);
+        ChatMessage update = message(1L, null, "回答");
+        update.setId(assistant.getId());
+        journal.update(update);
+        journal.flush(1L);
+
+        ChatService.JournalStats stats = journal.getStats();
+        assertEquals(3, stats.retrying());
+        assertEquals(1, stats.failures());
+        assertTrue(calls.isEmpty());
+
+        databaseDown.set(false);
+        journal.flush(1L);
+
+        assertEquals(List.of("insert:1", "count:1", "insert:1", "count:1", "update"), calls);
+        stats = journal.getStats();
+        assertEquals(0, stats.retrying());
+        assertEquals(3, stats.written());
+        assertEquals(1, stats.recovered());
+    }
+
+    /**
+     * 测试消息历史游标分页：每页一次附件查询，RAG上下文只返回引用，展开时一次解析
+     */
+    @Test
+    void testMessagePageWithBatchedAttachments() {
+        ChatService chatService = context.getBean(ChatService.class);
+        ChatSession session = new ChatSession();
+        session.setId(1L);
+        when(sessionMapper.selectById(1L)).thenReturn(session);
+
+        // 按ID倒序返回 size + 1 条
+        List<ChatMessage> page = new ArrayList<>();
+        for (long id = 105; id >= 102; id--) {
+            ChatMessage msg = message(1L, id % 2 == 0 ? ChatMessage.ROLE_USER : ChatMessage.ROLE_ASSISTANT, "消息" + id);
+            msg.setId(id);
+            msg.setAttachments(id % 2 == 0 ? "[{\"id\":" + id * 10 + ",\"fileName\":\"f" + id + ".pdf\"}]" : null);
+            msg.setHasRagContext(id % 2 == 1);
+            page.add(msg);
+        }
+        when(messageMapper.selectPageBefore(1L, Long.MAX_VALUE, 4)).thenReturn(page);
+        when(attachmentMapper.selectBriefByIds(anyList())).thenAnswer(inv -> inv.<List<Long>>getArgument(0).stream().map(id -> {
+            ChatAttachment attachment = new ChatAttachment();
+            attachment.setId(id);
+            attachment.setFileName("f" + id / 10 + ".pdf");
+            return attachment;
+        }).toList());
+
+        CursorPageResult<ChatMessageVO> result = chatService.getMessages(1L, null, 3);
+
+        // 页内按时间正序，游标指向本页最早的消息
+        assertEquals(List.of(103L, 104L, 105L), result.getRecords().stream().map(ChatMessageVO::getId).toList());
+        assertTrue(result.getHasMore());
+        assertEquals(103L, CursorCodec.decodeId(result.getNextCursor()));
+        verify(attachmentMapper, times(1)).selectBriefByIds(List.of(104L * 10));
+        assertEquals("f104.pdf", result.getRecords().get(1).getAttachments().get(0).getFileName());
+        assertEquals(105L, result.getRecords().get(2).getRagContextId());
+        assertNull(result.getRecords().get(2).getRagDocuments());
+        assertNull(result.getRecords().get(1).getRagContextId());
+
+        // 下一页从游标位置继续
+        when(messageMapper.selectPageBefore(1L, 103L, 4)).thenReturn(List.of());
+        assertFalse(chatService.getMessages(1L, result.getNextCursor(), 3).getHasMore());
+
+        when(messageMapper.selectRagContext(105L)).thenReturn(
+                "{\"documents\":[{\"name\":\"手册\",\"pageNum\":3}],\"nodes\":[{\"name\":\"设备A\"}]}");
+        RagContextVO ragContext = chatService.getRagContext(105L);
+        assertEquals("手册", ragContext.getDocuments().get(0).getName());
+        assertEquals(3, ragContext.getDocuments().get(0).getPageNum());
+        assertEquals("设备A", ragContext.getNodes().get(0).getName());
+    }
+
+    /**
+     * 测试检索置信度不足时直接返回模板回答、不调用大模型；用户要求通用知识回答时不带参考内容调用模型
+     */
+    @Test
+    void testNoAnswerBypassesModel() {
+        ChatService chatService = context.getBean(ChatService.class);
+        RagService ragService = context.getBean(RagService.class);
+        RetrievalGateService gate = context.getBean(RetrievalGateService.class);
+        ChatSession session = new ChatSession();
+        session.setId(1L);
+        session.setMessageCount(2);
+        when(sessionMapper.selectById(1L)).thenReturn(session);
+        when(gate.decide(eq(1L), anyString()))
+                .thenReturn(new RetrievalGateService.Decision(RetrievalGateService.Action.RETRIEVE, "新问题", null));
+        RagDocument weak = new RagDocument();
+        weak.setId(1L);
+        weak.setSimilarity(0.2);
+        when(ragService.search(anyString(), anyInt(), any()))
+                .thenReturn(new RagService.RagResult(List.of(weak), List.of(), "参考内容"));
+        when(gate.isConfident(any())).thenReturn(false);
+
+        ChatSendRequest request = new ChatSendRequest();
+        request.setMessage("火星上的设备怎么维护？");
+        ChatSendResponse response = chatService.sendMessage(1L, request);
+
+        assertEquals(new RetrievalGateConfig().getNoAnswerMessage(), response.getAssistantMessage().getContent());
+        assertTrue(response.getAssistantMessage().getNoAnswer());
+        assertNull(response.getRagDocuments());
+        verifyNoInteractions(ollamaService);
+
+        when(ollamaService.chat(anyString(), any())).thenReturn("通用回答");
+        request.setGeneralKnowledge(true);
+        response = chatService.sendMessage(1L, request);
+
+        verify(ollamaService).chat(eq("火星上的设备怎么维护？"), any());
+        assertTrue(response.getAssistantMessage().getContent().endsWith("\n\n通用回答"));
+        assertNull(response.getAssistantMessage().getNoAnswer());
+        assertNull(response.getAssistantMessage().getRagContextId());
+    }
+
+    private static ChatMessage message(Long sessionId, String role, String content) {
+        ChatMessage message = new ChatMessage();
+        message.setSessionId(sessionId);
+        message.setRole(role);
+        message.setContent(content);
+        return message;
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    static class TransactionConfig {
+    }
+
+    /**
+     * 只统计借出连接数的数据源，超过池大小时抛出异常
+     */
+    static class CountingDataSource implements DataSource {
+
+        private final int poolSize;
+        final AtomicInteger borrowed = new AtomicInteger();
+        final AtomicInteger totalBorrowed = new AtomicInteger();
+
+        CountingDataSource(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (borrowed.incrementAndGet() > poolSize) {
+                borrowed.decrementAndGet();
+                throw new SQLException("连接池已耗尽");
+            }
+            totalBorrowed.incrementAndGet();
+            AtomicBoolean closed = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "close" -> {
+                            if (closed.compareAndSet(false, true)) {
+                                borrowed.decrementAndGet();
+                            }
+                            yield null;
+                        }
+                        case "isClosed" -> closed.get();
+                        case "getAutoCommit" -> true;
+                        case "isReadOnly" -> false;
+                        case "getTransactionIsolation" -> Connection.TRANSACTION_READ_COMMITTED;
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == args[0];
+                        case "toString" -> "CountingConnection";
+                        default -> null;
+                    });
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return getConnection();
+        }
+
+        @Override
+        public java.io.PrintWriter getLogWriter() {
+            return null;
+        }
+
+        @Override
+        public void setLogWriter(java.io.PrintWriter out) {
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) {
+        }
+
+        @Override
+        public int getLoginTimeout() {
+            return 0;
+        }
+
+        @Override
+        public java.util.logging.Logger getParentLogger() {
+            return java.util.logging.Logger.getGlobal();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) {
+            return null;
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) {
+            return false;
+        }
+    }
+}
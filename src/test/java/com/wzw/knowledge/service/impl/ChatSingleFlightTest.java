@@ -0,0 +1,133 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.config.ChatSingleFlightConfig;
+import com.wzw.knowledge.model.vo.RagDocument;
+import com.wzw.knowledge.service.ChatService;
+import com.wzw.knowledge.service.OllamaService;
+import com.wzw.knowledge.service.RagService;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 对话请求合并器测试类
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class ChatSingleFlightTest {
+
+    private final ChatSingleFlight singleFlight = new ChatSingleFlight(new ChatSingleFlightConfig());
+
+    /**
+     * 测试相同问题共享一个生成流：后加入的订阅者先收到已输出的片段，单个订阅者断开不影响其他订阅者
+     */
+    @Test
+    void testIdenticalStreamsShareOneGeneration() {
+        AtomicInteger generatorCalls = new AtomicInteger();
+        AtomicBoolean upstreamCancelled = new AtomicBoolean();
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        String key = ChatSingleFlight.generationKey("设备A的功率是多少？", null, null, OllamaService.ModelTask.CHAT);
+
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+        List<String> leaving = new ArrayList<>();
+        singleFlight.generateStream(key, () -> {
+            generatorCalls.incrementAndGet();
+            return upstream.asFlux().doOnCancel(() -> upstreamCancelled.set(true));
+        }).subscribe(first::add);
+        upstream.tryEmitNext("设备A");
+
+        // 规范化后相同的问题加入同一个生成，并回放已输出的内容
+        String sameKey = ChatSingleFlight.generationKey("  设备A的功率是多少?", null, "", OllamaService.ModelTask.CHAT);
+        assertEquals(key, sameKey);
+        singleFlight.generateStream(sameKey, Flux::empty).subscribe(second::add);
+        Disposable leaver = singleFlight.generateStream(sameKey, Flux::empty).subscribe(leaving::add);
+        leaver.dispose();
+        upstream.tryEmitNext("功率15kW");
+        upstream.tryEmitComplete();
+
+        assertEquals(1, generatorCalls.get());
+        assertFalse(upstreamCancelled.get());
+        assertEquals(List.of("设备A", "功率15kW"), first);
+        assertEquals(first, second);
+        assertEquals(List.of("设备A"), leaving);
+
+        ChatService.SingleFlightStats stats = singleFlight.getStats();
+        assertEquals(0, stats.inFlight());
+        assertEquals(1, stats.generations());
+        assertEquals(2, stats.sharedGenerations());
+        assertEquals(3, stats.requestsInWindow());
+        assertEquals(1, stats.modelCallsInWindow());
+
+        // 生成结束后不缓存，再次提问重新调用模型
+        singleFlight.generateStream(key, () -> {
+            generatorCalls.incrementAndGet();
+            return Flux.just("新回答");
+        }).blockLast();
+        assertEquals(2, generatorCalls.get());
+    }
+
+    /**
+     * 测试不同档位、不同检索结果或不同会话上下文不合并；并发的相同检索只执行一次
+     */
+    @Test
+    void testKeysAndConcurrentRetrieval() throws Exception {
+        String key = ChatSingleFlight.generationKey("问题", rag(11L), null, OllamaService.ModelTask.CHAT);
+        assertNotEquals(key, ChatSingleFlight.generationKey("问题", rag(11L), null, OllamaService.ModelTask.CHAT_FAST));
+        assertNotEquals(key, ChatSingleFlight.generationKey("问题", rag(12L), null, OllamaService.ModelTask.CHAT));
+        assertNotEquals(key, ChatSingleFlight.generationKey("问题", rag(11L), "【对话摘要】", OllamaService.ModelTask.CHAT));
+
+        int requests = 8;
+        AtomicInteger searches = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        List<Future<RagService.RagResult>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < requests; i++) {
+                futures.add(executor.submit(() -> singleFlight.search("问题", 10, () -> {
+                    searches.incrementAndGet();
+                    try {
+                        assertTrue(release.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return rag(11L);
+                })));
+            }
+            // 等所有请求都进入后放行
+            while (singleFlight.getStats().sharedRetrievals() < requests - 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            RagService.RagResult firstResult = futures.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<RagService.RagResult> future : futures) {
+                assertSame(firstResult, future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, searches.get());
+        assertEquals(1, singleFlight.getStats().retrievals());
+    }
+
+    private static RagService.RagResult rag(Long chunkId) {
+        RagDocument doc = new RagDocument();
+        doc.setId(1L);
+        doc.setChunkId(chunkId);
+        return new RagService.RagResult(List.of(doc), List.of(), "上下文");
+    }
+}
@@ -0,0 +1,371 @@
+package com.wzw.knowledge.service.impl;
+
+import com.alibaba.fastjson2.JSON;
+import com.wzw.knowledge.config.ChatStreamConfig;
+import com.wzw.knowledge.service.ChatService;
+import com.wzw.knowledge.util.StreamLimiter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式对话管理器测试类
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class ChatStreamManagerTest {
+
+    private final ChatStreamManager manager = new ChatStreamManager(immediateCancelConfig());
+
+    /**
+     * 断开后立即取消上游生成（不设宽限时间）
+     */
+    private static ChatStreamConfig immediateCancelConfig() {
+        ChatStreamConfig config = new ChatStreamConfig();
+        config.setCancelGrace(0L);
+        return config;
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.destroy();
+    }
+
+    /**
+     * 测试客户端断开后立即取消上游生成，并计入放弃统计
+     */
+    @Test
+    void testDisconnectCancelsUpstream() {
+        RecordingEmitter emitter = new RecordingEmitter(3);
+        ChatStreamManager.StreamChannel channel = manager.open(1L, emitter);
+
+        AtomicBoolean upstreamCancelled = new AtomicBoolean();
+        List<Long> generated = Flux.interval(Duration.ofMillis(5))
+                .doOnCancel(() -> upstreamCancelled.set(true))
+                .takeUntilOther(channel.cancelSignal())
+                .doOnNext(i -> channel.publish("{\"type\":\"chunk\",\"content\":\"" + i + "\"}"))
+                .take(1000)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+        channel.close();
+
+        // 第4个事件发送失败后立即取消，不再继续生成
+        assertTrue(upstreamCancelled.get());
+        assertTrue(channel.isCancelled());
+        assertEquals(4, generated.size());
+        assertEquals(List.of("1", "2", "3"), emitter.ids);
+
+        ChatService.StreamStats stats = manager.getStats();
+        assertEquals(1, stats.abandonedStreams());
+        assertEquals(1, stats.cancelledGenerations());
+        assertEquals(0, stats.completedStreams());
+    }
+
+    /**
+     * 测试按 Last-Event-ID 回放缺失的事件，不重新生成
+     */
+    @Test
+    void testResumeReplaysMissedEvents() {
+        RecordingEmitter first = new RecordingEmitter(2);
+        ChatStreamManager.StreamChannel channel = manager.open(2L, first);
+        channel.publish("{\"n\":1}");
+        channel.publish("{\"n\":2}");
+        // 第3个事件时连接断开
+        channel.publish("{\"n\":3}");
+        assertTrue(channel.isCancelled());
+        channel.publish("{\"n\":4}");
+        channel.close();
+
+        RecordingEmitter resumed = new RecordingEmitter(Integer.MAX_VALUE);
+        manager.resume(2L, 2, resumed);
+
+        assertEquals(List.of("1", "2"), first.ids);
+        assertEquals(List.of("3", "4"), resumed.ids);
+        assertEquals(1, manager.getStats().resumedStreams());
+    }
+
+    /**
+     * 测试进行中的流重连后继续接收新事件
+     */
+    @Test
+    void testResumeLiveStream() {
+        ChatStreamConfig config = new ChatStreamConfig();
+        config.setCancelGrace(60_000L);
+        ChatStreamManager graceManager = new ChatStreamManager(config);
+        try {
+            RecordingEmitter first = new RecordingEmitter(1);
+            ChatStreamManager.StreamChannel channel = graceManager.open(3L, first);
+            channel.publish("{\"n\":1}");
+            channel.publish("{\"n\":2}");
+
+            // 宽限期内重连，上游未被取消
+            RecordingEmitter resumed = new RecordingEmitter(Integer.MAX_VALUE);
+            graceManager.resume(3L, 1, resumed);
+            channel.publish("{\"n\":3}");
+            channel.close();
+
+            assertFalse(channel.isCancelled());
+            assertEquals(List.of("2", "3"), resumed.ids);
+            assertEquals(1, graceManager.getStats().completedStreams());
+        } finally {
+            graceManager.destroy();
+        }
+    }
+
+    /**
+     * 测试超过宽限时间才重连：上游已取消，回放中带有终止事件，客户端据此停止重试
+     */
+    @Test
+    void testResumeAfterGraceGetsTerminalEvent() throws InterruptedException {
+        ChatStreamConfig config = new ChatStreamConfig();
+        config.setCancelGrace(20L);
+        ChatStreamManager graceManager = new ChatStreamManager(config);
+        try {
+            RecordingEmitter first = new RecordingEmitter(1);
+            ChatStreamManager.StreamChannel channel = graceManager.open(4L, first);
+            channel.publish("{\"n\":1}");
+            channel.publish("{\"n\":2}");
+            assertFalse(channel.isCancelled());
+
+            Thread.sleep(200);
+            assertTrue(channel.isCancelled());
+            channel.publish("{\"type\":\"cancelled\"}");
+            channel.close();
+
+            RecordingEmitter resumed = new RecordingEmitter(Integer.MAX_VALUE);
+            graceManager.resume(4L, 1, resumed);
+            assertEquals(List.of("2", "3"), resumed.ids);
+            assertTrue(resumed.frames.get(1).contains("cancelled"));
+        } finally {
+            graceManager.destroy();
+        }
+    }
+
+    /**
+     * 测试不存在的流返回过期事件
+     */
+    @Test
+    void testResumeUnknownStream() {
+        RecordingEmitter emitter = new RecordingEmitter(Integer.MAX_VALUE);
+        manager.resume(404L, 0, emitter);
+
+        assertEquals(1, emitter.frames.size());
+        assertTrue(emitter.frames.get(0).contains("expired"));
+        assertEquals(0, manager.getStats().resumedStreams());
+    }
+
+    /**
+     * 测试合并后的chunk内容与逐个发送一致，且在其他事件之前输出
+     */
+    @Test
+    void testChunksCoalescedInOrder() {
+        RecordingEmitter emitter = new RecordingEmitter(Integer.MAX_VALUE);
+        ChatStreamManager.StreamChannel channel = manager.open(5L, emitter);
+        channel.publishChunk("知识");
+        channel.publishChunk("图谱");
+        channel.publish("{\"type\":\"done\"}");
+        channel.close();
+
+        assertEquals(2, emitter.frames.size());
+        assertTrue(emitter.frames.get(0).contains("{\"type\":\"chunk\",\"content\":\"知识图谱\"}"));
+        assertTrue(emitter.frames.get(1).contains("done"));
+    }
+
+    /**
+     * 基准：2000个token的回答，逐token发送 vs 合并发送的CPU耗时和send（flush）次数
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkCoalescedWriter() {
+        int tokens = 2000;
+        int rounds = 200;
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+        // 逐token：每个token一个Map、一次序列化、一次send
+        long perTokenSends = 0;
+        long start = threadBean.getCurrentThreadCpuTime();
+        for (int r = 0; r < rounds; r++) {
+            CountingEmitter emitter = new CountingEmitter();
+            for (int i = 0; i < tokens; i++) {
+                Map<String, Object> chunkData = new HashMap<>();
+                chunkData.put("type", "chunk");
+                chunkData.put("content", "词" + (i % 10));
+                try {
+                    emitter.send(SseEmitter.event().name("message").data(JSON.toJSONString(chunkData)));
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+            perTokenSends = emitter.sends;
+        }
+        long perTokenCpu = (threadBean.getCurrentThreadCpuTime() - start) / rounds;
+
+        // 合并：模板拼接，按字节数/时间窗口输出
+        long coalescedSends = 0;
+        start = threadBean.getCurrentThreadCpuTime();
+        for (int r = 0; r < rounds; r++) {
+            CountingEmitter emitter = new CountingEmitter();
+            ChatStreamManager.StreamChannel channel = manager.open(10_000L + r, emitter);
+            for (int i = 0; i < tokens; i++) {
+                channel.publishChunk("词" + (i % 10));
+            }
+            channel.close();
+            coalescedSends = emitter.sends;
+        }
+        long coalescedCpu = (threadBean.getCurrentThreadCpuTime() - start) / rounds;
+
+        // 按真实节奏（约1ms一个token）输出时的帧数
+        CountingEmitter pacedEmitter = new CountingEmitter();
+        ChatStreamManager.StreamChannel paced = manager.open(20_000L, pacedEmitter);
+        for (int i = 0; i < tokens; i++) {
+            paced.publishChunk("词" + (i % 10));
+            LockSupport.parkNanos(1_000_000);
+        }
+        paced.close();
+
+        assertEquals(tokens, perTokenSends);
+        assertTrue(coalescedSends < tokens / 100, "coalesced sends=" + coalescedSends);
+        assertTrue(pacedEmitter.sends < tokens / 10, "paced sends=" + pacedEmitter.sends);
+        // 合并发送省去逐token的Map和序列化
+        assertTrue(coalescedCpu < perTokenCpu,
+                "coalesced cpu=" + coalescedCpu / 1000 + "us, perToken cpu=" + perTokenCpu / 1000 + "us");
+    }
+
+    /**
+     * 负载测试：5000个并发流在虚拟线程上经过限流器和SSE通道输出，
+     * 全部流同时在线时平台线程数和每个流的堆内存占用保持在固定范围内
+     */
+    @Test
+    @Tag("benchmark")
+    void loadTestConcurrentStreams() throws InterruptedException {
+        int streams = 5000;
+        StreamLimiter limiter = new StreamLimiter(streams, 0);
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        int threadsBefore = threadBean.getThreadCount();
+        long heapBefore = memoryBean.getHeapMemoryUsage().getUsed();
+
+        CountDownLatch online = new CountDownLatch(streams);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(streams);
+        AtomicInteger completed = new AtomicInteger();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < streams; i++) {
+                long messageId = 100_000L + i;
+                executor.execute(() -> {
+                    try {
+                        assertTrue(limiter.tryAcquire());
+                        CountingEmitter emitter = new CountingEmitter();
+                        ChatStreamManager.StreamChannel channel = manager.open(messageId, emitter);
+                        try {
+                            channel.publish("{\"type\":\"init\"}");
+                            channel.publishChunk("开始");
+                            online.countDown();
+                            release.await();
+                            for (int chunk = 0; chunk < 10; chunk++) {
+                                channel.publishChunk("词" + chunk);
+                                Thread.sleep(5);
+                            }
+                            channel.publish("{\"type\":\"done\"}");
+                            completed.incrementAndGet();
+                        } finally {
+                            channel.close();
+                            limiter.release();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        online.countDown();
+                        done.countDown();
+                    }
+                });
+            }
+
+            // 全部流同时在线时测量
+            assertTrue(online.await(60, TimeUnit.SECONDS));
+            System.gc();
+            int threadsDuring = threadBean.getThreadCount();
+            long bytesPerStream = (memoryBean.getHeapMemoryUsage().getUsed() - heapBefore) / streams;
+            release.countDown();
+            assertTrue(done.await(60, TimeUnit.SECONDS));
+
+            assertEquals(streams, completed.get());
+            assertEquals(streams, manager.getStats().completedStreams());
+            // 虚拟线程只占用少量载体线程（与CPU核数相关），不随流数量增长
+            assertTrue(threadsDuring - threadsBefore <= Runtime.getRuntime().availableProcessors() + 8,
+                    "platform threads before=" + threadsBefore + ", during=" + threadsDuring);
+            // 每个在线流（虚拟线程栈 + 通道 + 回放缓冲）的堆占用
+            assertTrue(bytesPerStream < 64 * 1024, "heap per stream=" + bytesPerStream + "B");
+        }
+    }
+
+    /**
+     * 只计数的连接
+     */
+    static class CountingEmitter extends SseEmitter {
+
+        int sends;
+
+        CountingEmitter() {
+            super(0L);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            builder.build();
+            sends++;
+        }
+    }
+
+    /**
+     * 记录发送内容的连接，发送指定次数后模拟客户端断开
+     */
+    static class RecordingEmitter extends SseEmitter {
+
+        private final int failAfter;
+        final List<String> ids = new ArrayList<>();
+        final List<String> frames = new ArrayList<>();
+
+        RecordingEmitter(int failAfter) {
+            super(0L);
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (frames.size() >= failAfter) {
+                throw new IOException("Broken pipe");
+            }
+            StringBuilder frame = new StringBuilder();
+            builder.build().forEach(d -> frame.append(d.getData()));
+            frames.add(frame.toString());
+            int start = frame.indexOf("id:");
+            if (start >= 0) {
+                ids.add(frame.substring(start + 3, frame.indexOf("\n", start)));
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.config.RagCompressionConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 上下文压缩器测试类
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class ContextCompressorTest {
+
+    private static final String CONTENT = """
+            ## 维生素C
+            维生素C又称抗坏血酸，是一种水溶性维生素。人体不能自行合成维生素C，需要从食物中获取。\
+            新鲜的水果和蔬菜是主要来源，例如柑橘、猕猴桃和青椒。烹调加热会破坏其中的一部分。\
+            成年人每日推荐摄入量为100mg，孕妇为115mg。长期缺乏可导致坏血病，表现为牙龈出血。\
+            维生素C还能促进非血红素铁的吸收。过量补充可能引起腹泻，可耐受最高摄入量为2000mg。\
+            储存时应避光密封，开封后尽快食用。不同品牌的片剂含量差异较大，购买时注意查看标签。
+            | 人群 | 推荐摄入量 |
+            | --- | --- |
+            | 儿童 | 40mg |
+            | 成人 | 100mg |
+            """;
+
+    private final RagCompressionConfig config = new RagCompressionConfig();
+    private final ContextCompressor compressor = new ContextCompressor(config);
+
+    /**
+     * 测试切分句子：拼接后与原文一致，小数不被切开
+     */
+    @Test
+    void testSplitSentences() {
+        String text = "含量为2.5mg。第二句！\n1. 列表项\nEnd here. Next";
+        List<String> sentences = ContextCompressor.splitSentences(text);
+        assertEquals(text, String.join("", sentences));
+        assertEquals(List.of("含量为2.5mg。", "第二句！\n", "1. 列表项\n", "End here.", " Next"), sentences);
+        assertEquals(String.join("", ContextCompressor.splitSentences(CONTENT)), CONTENT);
+    }
+
+    /**
+     * 测试召回：答案所在句子、数值和单位原样保留，无关句子被删除
+     */
+    @Test
+    void testRecallOfAnswerSentences() {
+        config.setMinChars(50);
+        String query = "维生素C的成人推荐摄入量是多少";
+        String result = compressor.compress(query, CONTENT);
+
+        assertTrue(result.length() < CONTENT.length());
+        assertTrue(result.startsWith("## 维生素C\n"));
+        assertTrue(result.contains("成年人每日推荐摄入量为100mg，孕妇为115mg。"));
+        assertTrue(result.contains("| 成人 | 100mg |"));
+        // 表格命中行补上表头
+        assertTrue(result.contains("| 人群 | 推荐摄入量 |"));
+        assertFalse(result.contains("储存时应避光密封"));
+        assertTrue(result.contains(ContextCompressor.GAP));
+
+        // 召回校验：原文中出现的查询词项压缩后都保留
+        for (String term : LexicalReranker.tokenize(query)) {
+            if (LexicalReranker.tokenize(CONTENT).contains(term)) {
+                assertTrue(LexicalReranker.tokenize(result).contains(term), term);
+            }
+        }
+        assertEquals(1, compressor.getStats().compressed());
+    }
+
+    /**
+     * 测试不压缩：内容过短、与问题无关或关闭时返回原文
+     */
+    @Test
+    void testFallbackToOriginal() {
+        assertEquals(CONTENT, compressor.compress("推荐摄入量", CONTENT));
+
+        config.setMinChars(50);
+        assertEquals(CONTENT, compressor.compress("量子计算机", CONTENT));
+
+        config.setEnabled(false);
+        assertEquals(CONTENT, compressor.compress("推荐摄入量", CONTENT));
+        assertEquals(0, compressor.getStats().compressed());
+        assertEquals(3, compressor.getStats().chunks());
+    }
+}
@@ -0,0 +1,116 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.config.ChatMemoryConfig;
+import com.wzw.knowledge.mapper.ChatMessageMapper;
+import com.wzw.knowledge.mapper.ChatSessionMapper;
+import com.wzw.knowledge.model.entity.ChatMessage;
+import com.wzw.knowledge.model.entity.ChatSession;
+import com.wzw.knowledge.service.OllamaService;
+import com.wzw.knowledge.util.TokenEstimator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 对话记忆服务测试类
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class ConversationMemoryServiceImplTest {
+
+    private final ChatSessionMapper sessionMapper = mock(ChatSessionMapper.class);
+    private final ChatMessageMapper messageMapper = mock(ChatMessageMapper.class);
+    private final OllamaService ollamaService = mock(OllamaService.class);
+    private final ChatMemoryConfig config = new ChatMemoryConfig();
+    private final ConversationMemoryServiceImpl memoryService = new ConversationMemoryServiceImpl(
+            sessionMapper, messageMapper, mock(ChatMessageJournal.class), ollamaService, config);
+
+    /**
+     * 测试长对话的历史上下文受token预算限制，最近的消息完整保留，摘要放在最前面
+     */
+    @Test
+    void testHistoryContextWithinBudget() {
+        config.setHistoryTokenBudget(300);
+        ChatSession session = session(100L, "用户在询问设备A的额定功率，已确认为15kW。");
+        // 50轮长对话，每条消息约100个token，按ID倒序返回
+        List<ChatMessage> history = conversation(100);
+        when(messageMapper.selectRecentAfter(eq(1L), eq(100L), anyInt()))
+                .thenReturn(history.reversed().subList(0, Math.min(26, history.size())));
+
+        String context = memoryService.buildHistoryContext(session);
+
+        assertTrue(context.startsWith("【对话摘要】\n用户在询问设备A的额定功率"));
+        assertTrue(TokenEstimator.estimate(context) <= 300 + 10);
+        // 最新的消息完整出现，没有被截断
+        ChatMessage last = history.get(history.size() - 1);
+        assertTrue(context.contains(last.getContent()));
+        assertFalse(context.contains("..."));
+        assertFalse(context.contains(history.get(0).getContent()));
+    }
+
+    /**
+     * 测试合并最近窗口之外的消息，不拆开一问一答，并带上合并前的摘要位置
+     */
+    @Test
+    void testCompactFoldsOlderTurns() {
+        config.setRecentTurns(2);
+        ChatSession session = session(0L, null);
+        when(sessionMapper.selectById(1L)).thenReturn(session);
+        // 7条消息：3轮完整对话 + 1条新提问，保留最近4条
+        List<ChatMessage> pending = conversation(7);
+        when(messageMapper.selectAfter(eq(1L), eq(0L), anyInt())).thenReturn(pending);
+        when(ollamaService.chat(anyString(), eq(OllamaService.ModelTask.SUMMARY)))
+                .thenReturn("<think>整理</think>用户询问了第1轮和第2轮的问题。");
+        when(sessionMapper.updateSummary(anyLong(), anyString(), anyLong(), anyLong())).thenReturn(1);
+
+        assertTrue(memoryService.compact(1L));
+
+        // 前3条中第3条是提问，留到下次与回答一起合并
+        verify(sessionMapper).updateSummary(1L, "用户询问了第1轮和第2轮的问题。", pending.get(1).getId(), 0L);
+        verify(ollamaService).chat(argThat(prompt -> prompt.contains(pending.get(0).getContent())
+                && prompt.contains(pending.get(1).getContent())
+                && !prompt.contains(pending.get(2).getContent())), eq(OllamaService.ModelTask.SUMMARY));
+    }
+
+    /**
+     * 测试未超出最近窗口时不调用模型
+     */
+    @Test
+    void testCompactSkipsWithinWindow() {
+        when(sessionMapper.selectById(1L)).thenReturn(session(0L, null));
+        when(messageMapper.selectAfter(eq(1L), eq(0L), anyInt())).thenReturn(conversation(6));
+
+        assertFalse(memoryService.compact(1L));
+        verifyNoInteractions(ollamaService);
+    }
+
+    private static ChatSession session(Long summarizedMessageId, String summary) {
+        ChatSession session = new ChatSession();
+        session.setId(1L);
+        session.setSummary(summary);
+        session.setSummarizedMessageId(summarizedMessageId);
+        return session;
+    }
+
+    /**
+     * 生成一问一答交替的对话，ID从1000递增
+     */
+    private static List<ChatMessage> conversation(int size) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            ChatMessage msg = new ChatMessage();
+            msg.setId(1000L + i);
+            msg.setSessionId(1L);
+            msg.setRole(i % 2 == 0 ? ChatMessage.ROLE_USER : ChatMessage.ROLE_ASSISTANT);
+            msg.setContent("第" + (i / 2 + 1) + "轮第" + i + "条消息，" + "设备参数说明".repeat(15));
+            messages.add(msg);
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,96 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.config.RagCacheConfig;
+import com.wzw.knowledge.mapper.CorpusVersionMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 语料版本服务测试类
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class CorpusVersionServiceImplTest {
+
+    private final CorpusVersionMapper mapper = mock(CorpusVersionMapper.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final AtomicLong stored = new AtomicLong();
+    private CorpusVersionServiceImpl service;
+
+    private CorpusVersionServiceImpl newService() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        doAnswer(inv -> stored.incrementAndGet()).when(mapper).increment();
+        when(mapper.selectVersion()).thenAnswer(inv -> stored.get());
+        RagCacheConfig config = new RagCacheConfig();
+        config.setVersionRefreshInterval(0L);
+        service = new CorpusVersionServiceImpl(mapper, config, transactionManager);
+        service.init();
+        return service;
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.destroy();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    /**
+     * 测试事务内多次变更在提交后合并为一次加一，事务期间不更新版本行；回滚时不变更
+     */
+    @Test
+    void testBumpCoalescedAfterCommit() {
+        newService();
+
+        beginTransaction();
+        service.bump("create node 1");
+        service.bump("create node 2");
+        service.bump("parse document 7");
+        verify(mapper, never()).increment();
+        completeTransaction(true);
+
+        verify(mapper, times(1)).increment();
+        assertEquals(1, service.current());
+
+        beginTransaction();
+        service.bump("delete node 1");
+        completeTransaction(false);
+        verify(mapper, times(1)).increment();
+
+        // 事务外立即执行
+        service.bump("backfill");
+        assertEquals(2, service.current());
+    }
+
+    private static void beginTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+    }
+
+    private static void completeTransaction(boolean commit) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        for (TransactionSynchronization synchronization : synchronizations) {
+            if (commit) {
+                synchronization.afterCommit();
+            }
+            synchronization.afterCompletion(commit ? TransactionSynchronization.STATUS_COMMITTED
+                    : TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.config.RagRetrievalConfig;
+import com.wzw.knowledge.mapper.DocumentChunkMapper;
+import com.wzw.knowledge.mapper.DocumentMapper;
+import com.wzw.knowledge.model.entity.Document;
+import com.wzw.knowledge.model.entity.DocumentChunk;
+import com.wzw.knowledge.model.vo.RagDocument;
+import com.wzw.knowledge.service.DocumentVectorService;
+import com.wzw.knowledge.service.RagService;
+import com.wzw.knowledge.service.Retriever;
+import com.wzw.knowledge.service.VectorService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 文档检索器回表测试类
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class DocumentRetrieverTest {
+
+    private final VectorService vectorService = mock(VectorService.class);
+    private final DocumentChunkMapper chunkMapper = mock(DocumentChunkMapper.class);
+    private final DocumentMapper documentMapper = mock(DocumentMapper.class);
+    private final DocumentVectorService documentVectorService = mock(DocumentVectorService.class);
+    private final RagRetrievalConfig retrievalConfig = new RagRetrievalConfig();
+    private RagNearCache nearCache;
+    private DocumentRetriever retriever;
+
+    private final Retriever.QueryContext context =
+            new Retriever.QueryContext("额定功率", "额定功率", new float[]{1, 0}, 5, Map.of());
+
+    @BeforeEach
+    void setUp() {
+        nearCache = new RagNearCache(retrievalConfig);
+        retriever = new DocumentRetriever(vectorService, chunkMapper, documentMapper, nearCache,
+                documentVectorService, retrievalConfig);
+
+        // 三个Child块：101、102属于同一个Parent，103没有Parent
+        when(vectorService.hybridSearch(any(), anyString(), anyInt(), eq("child"))).thenReturn(List.of(
+                new VectorService.VectorSearchResult(101L, "child", 0.9f, 201L),
+                new VectorService.VectorSearchResult(102L, "child", 0.8f, 201L),
+                new VectorService.VectorSearchResult(103L, "child", 0.7f, null)));
+        when(chunkMapper.selectHitsByIds(anyCollection())).thenReturn(List.of(
+                chunk(103L, 1L, null, "child-103"), chunk(101L, 1L, 201L, "child-101"), chunk(102L, 1L, 201L, "child-102")));
+        when(chunkMapper.selectParentsByIds(anyCollection())).thenAnswer(inv -> {
+            Collection<Long> ids = inv.getArgument(0);
+            return ids.contains(201L) ? List.of(chunk(201L, 1L, null, "parent-201")) : List.of();
+        });
+        when(documentMapper.selectHeadersByIds(anyCollection())).thenAnswer(inv -> List.of(document(1L, "手册")));
+    }
+
+    /**
+     * 测试回表最多三次批量查询，保持检索顺序并按Parent去重，第二次检索命中近端缓存
+     */
+    @Test
+    void testBatchedHydrationAndNearCache() {
+        List<RagDocument> first = retriever.retrieve(context).documents();
+
+        assertEquals(List.of(101L, 103L), first.stream().map(RagDocument::getChunkId).toList());
+        assertEquals("parent-201", first.get(0).getMatchedContent());
+        assertEquals(201L, first.get(0).getParentChunkId());
+        assertEquals("child-103", first.get(1).getMatchedContent());
+        assertEquals("手册", first.get(1).getName());
+        verify(chunkMapper, times(1)).selectHitsByIds(anyCollection());
+        verify(chunkMapper, times(1)).selectParentsByIds(anyCollection());
+        verify(documentMapper, times(1)).selectHeadersByIds(anyCollection());
+        verify(chunkMapper, never()).selectByChunkId(anyLong());
+        verify(chunkMapper, never()).selectParentById(anyLong());
+
+        retriever.retrieve(context);
+
+        // Parent块和文档头命中缓存，只查询Child块
+        verify(chunkMapper, times(2)).selectHitsByIds(anyCollection());
+        verify(chunkMapper, times(1)).selectParentsByIds(anyCollection());
+        verify(documentMapper, times(1)).selectHeadersByIds(anyCollection());
+        RagService.HydrationStats stats = nearCache.getStats();
+        assertEquals(2, stats.hydrations());
+        assertEquals(2.0, stats.avgQueries());
+        assertEquals(0.5, stats.parentHitRate());
+        assertEquals(0.5, stats.documentHitRate());
+    }
+
+    /**
+     * 测试按文档失效：其他文档失效不影响缓存，所属文档失效后父块和文档头都重新加载
+     */
+    @Test
+    void testInvalidation() {
+        retriever.retrieve(context);
+
+        nearCache.invalidateDocument(2L);
+        retriever.retrieve(context);
+        verify(chunkMapper, times(1)).selectParentsByIds(anyCollection());
+        verify(documentMapper, times(1)).selectHeadersByIds(anyCollection());
+
+        nearCache.invalidateDocument(1L);
+        retriever.retrieve(context);
+        verify(chunkMapper, times(2)).selectParentsByIds(anyCollection());
+        verify(documentMapper, times(2)).selectHeadersByIds(anyCollection());
+
+        retriever.retrieve(context);
+        verify(chunkMapper, times(2)).selectParentsByIds(anyCollection());
+        verify(documentMapper, times(2)).selectHeadersByIds(anyCollection());
+    }
+
+    /**
+     * 测试两阶段检索：第二阶段只在选出文档的分块中检索；没有选出文档或分块过多时退回全库检索
+     */
+    @Test
+    void testHierarchicalRouting() {
+        retrievalConfig.setHierarchical(true);
+        retrievalConfig.setHierarchicalDocuments(3);
+        List<Long> scope = List.of(101L, 102L, 103L, 104L);
+        when(documentVectorService.route(any(), eq(3))).thenReturn(List.of(1L));
+        when(chunkMapper.selectIdsByDocumentIds(eq(List.of(1L)), anyInt())).thenReturn(scope);
+        when(vectorService.hybridSearch(any(), anyString(), anyInt(), eq("child"), eq(scope))).thenReturn(List.of(
+                new VectorService.VectorSearchResult(103L, "child", 0.7f, null)));
+
+        Retriever.Contribution routed = retriever.retrieve(context);
+
+        assertEquals(List.of(103L), routed.documents().stream().map(RagDocument::getChunkId).toList());
+        assertTrue(routed.timings().containsKey(DocumentRetriever.STAGE_ROUTE));
+        verify(vectorService, never()).hybridSearch(any(), anyString(), anyInt(), anyString());
+
+        // 分块超过上限时退回全库检索
+        retrievalConfig.setHierarchicalMaxChunks(3);
+        assertEquals(2, retriever.retrieve(context).documents().size());
+        verify(vectorService, times(1)).hybridSearch(any(), anyString(), anyInt(), anyString());
+
+        // 没有选出文档（文档级向量尚未补建）时退回全库检索
+        retrievalConfig.setHierarchicalMaxChunks(10000);
+        when(documentVectorService.route(any(), anyInt())).thenReturn(List.of());
+        assertEquals(2, retriever.retrieve(context).documents().size());
+        verify(vectorService, times(2)).hybridSearch(any(), anyString(), anyInt(), anyString());
+        verify(vectorService, times(1)).hybridSearch(any(), anyString(), anyInt(), anyString(), anyCollection());
+    }
+
+    private static DocumentChunk chunk(Long id, Long documentId, Long parentId, String content) {
+        DocumentChunk chunk = new DocumentChunk();
+        chunk.setId(id);
+        chunk.setDocumentId(documentId);
+        chunk.setParentId(parentId);
+        chunk.setContent(content);
+        return chunk;
+    }
+
+    private static Document document(Long id, String name) {
+        Document document = new Document();
+        document.setId(id);
+        document.setName(name);
+        return document;
+    }
+}
@@ -0,0 +1,121 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.mapper.DocumentChunkMapper;
+import com.wzw.knowledge.mapper.EntityMentionMapper;
+import com.wzw.knowledge.mapper.KnowledgeNodeMapper;
+import com.wzw.knowledge.model.entity.DocumentChunk;
+import com.wzw.knowledge.model.entity.EntityMention;
+import com.wzw.knowledge.service.EntityMentionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 实体提及索引服务测试类
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class EntityMentionServiceImplTest {
+
+    private final EntityMentionMapper mentionMapper = mock(EntityMentionMapper.class);
+    private final DocumentChunkMapper chunkMapper = mock(DocumentChunkMapper.class);
+    private final KnowledgeNodeMapper nodeMapper = mock(KnowledgeNodeMapper.class);
+    private final EntityMentionServiceImpl service = new EntityMentionServiceImpl(mentionMapper, chunkMapper, nodeMapper);
+
+    /**
+     * 测试扫描分块生成提及：记录次数和位置，跳过Child块和单字实体；索引后可识别实体并按提及查分块；删除文档后失效
+     */
+    @Test
+    void testIndexLookupAndRemove() {
+        when(mentionMapper.selectAllBrief()).thenReturn(List.of());
+        List<EntityMention> inserted = new ArrayList<>();
+        when(mentionMapper.insertBatch(anyList())).thenAnswer(inv -> {
+            inserted.addAll(inv.getArgument(0));
+            return inserted.size();
+        });
+        when(chunkMapper.selectByDocumentId(7L)).thenReturn(List.of(
+                chunk(1L, null, "维生素C能促进铁吸收。维生素C主要来自新鲜果蔬。"),
+                chunk(2L, DocumentChunk.TYPE_PARENT, "铁是血红蛋白的组成成分。"),
+                chunk(3L, DocumentChunk.TYPE_CHILD, "维生素C与铁的摘要")));
+        // 先加载内存索引（此时为空），之后的索引操作同步更新内存
+        assertTrue(service.linkEntities("维生素C", 5).isEmpty());
+
+        Map<String, Long> entities = new LinkedHashMap<>();
+        entities.put("维生素C", 100L);
+        entities.put("铁", 200L);
+        entities.put("铁吸收", 300L);
+        int count = service.indexDocument(7L, entities);
+
+        assertEquals(2, count);
+        verify(mentionMapper).deleteByDocumentId(7L);
+        EntityMention vitaminC = inserted.get(0);
+        assertEquals(1L, vitaminC.getChunkId());
+        assertEquals(2, vitaminC.getMentionCount());
+        assertEquals("0:4,11:15", vitaminC.getOffsets());
+
+        assertEquals(List.of(100L, 300L), service.linkEntities("维生素c和铁吸收有什么关系", 5));
+        List<EntityMentionService.ChunkMention> chunks = service.lookup(List.of(100L, 300L), 10);
+        assertEquals(1, chunks.size());
+        assertEquals(2, chunks.get(0).entities());
+        assertEquals(3, chunks.get(0).mentions());
+
+        service.removeDocument(7L);
+        assertTrue(service.lookup(List.of(100L, 300L), 10).isEmpty());
+        assertTrue(service.linkEntities("维生素C", 5).isEmpty());
+    }
+
+    /**
+     * 测试事务中的索引在提交后才进入内存；删除节点后不再识别它的名称，同名的其他节点不受影响
+     */
+    @Test
+    void testAfterCommitAndRemoveNode() {
+        when(mentionMapper.selectAllBrief()).thenReturn(List.of());
+        when(chunkMapper.selectByDocumentId(7L)).thenReturn(List.of(
+                chunk(1L, null, "苹果富含维生素C。"), chunk(2L, null, "苹果公司发布了新手机。")));
+        assertTrue(service.linkEntities("苹果", 5).isEmpty());
+
+        Map<String, Long> entities = new LinkedHashMap<>();
+        entities.put("苹果", 100L);
+        entities.put("维生素C", 200L);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.indexDocument(7L, entities);
+            assertTrue(service.linkEntities("苹果", 5).isEmpty());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(List.of(200L, 100L), service.linkEntities("苹果和维生素c", 5));
+
+        // 另一个文档中同名的节点
+        when(chunkMapper.selectByDocumentId(8L)).thenReturn(List.of(chunk(3L, null, "苹果手机")));
+        service.indexDocument(8L, Map.of("苹果", 101L));
+        assertEquals(List.of(100L, 101L), service.linkEntities("苹果", 5));
+
+        service.removeNode(100L);
+        verify(mentionMapper).deleteByNodeId(100L);
+        assertEquals(List.of(101L), service.linkEntities("苹果", 5));
+        service.removeNode(101L);
+        assertTrue(service.linkEntities("苹果", 5).isEmpty());
+        assertEquals(1, service.getStats().names());
+    }
+
+    private static DocumentChunk chunk(Long id, String type, String content) {
+        DocumentChunk chunk = new DocumentChunk();
+        chunk.setId(id);
+        chunk.setDocumentId(7L);
+        chunk.setChunkType(type);
+        chunk.setContent(content);
+        return chunk;
+    }
+}
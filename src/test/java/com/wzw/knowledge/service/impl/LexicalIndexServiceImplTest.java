@@ -0,0 +1,168 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.mapper.DocumentChunkMapper;
+import com.wzw.knowledge.mapper.KnowledgeNodeMapper;
+import com.wzw.knowledge.mapper.OcrRecordMapper;
+import com.wzw.knowledge.model.entity.DocumentChunk;
+import com.wzw.knowledge.model.entity.KnowledgeNode;
+import com.wzw.knowledge.model.entity.OcrRecord;
+import com.wzw.knowledge.service.LexicalIndexService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 本地词项索引服务测试类
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class LexicalIndexServiceImplTest {
+
+    private static final List<String> ALL = List.of(
+            LexicalIndexService.TYPE_CHUNK, LexicalIndexService.TYPE_NODE, LexicalIndexService.TYPE_OCR);
+
+    private final DocumentChunkMapper chunkMapper = mock(DocumentChunkMapper.class);
+    private final KnowledgeNodeMapper nodeMapper = mock(KnowledgeNodeMapper.class);
+    private final OcrRecordMapper ocrMapper = mock(OcrRecordMapper.class);
+    private final LexicalIndexServiceImpl service = new LexicalIndexServiceImpl(chunkMapper, nodeMapper, ocrMapper);
+
+    @BeforeEach
+    void setUp() {
+        when(chunkMapper.selectIndexPage(eq(0L), anyInt())).thenReturn(List.of(
+                chunk(1L, 7L, "设备A的额定功率为5kW，额定电压为380V。"),
+                chunk(2L, 7L, "设备A的功率因数不低于0.9，额定电流为10A。"),
+                chunk(3L, 8L, "保修期为两年，自购买之日起计算。")));
+        when(chunkMapper.selectIndexPage(eq(3L), anyInt())).thenReturn(List.of());
+        KnowledgeNode node = new KnowledgeNode();
+        node.setId(100L);
+        node.setName("额定功率");
+        node.setDescription("设备在额定条件下的输出功率");
+        when(nodeMapper.selectIndexPage(anyLong(), anyInt())).thenReturn(List.of(node));
+        OcrRecord ocr = new OcrRecord();
+        ocr.setId(200L);
+        ocr.setOcrText("铭牌：额定功率 5kW");
+        when(ocrMapper.selectIndexPage(anyLong(), anyInt())).thenReturn(List.of(ocr));
+    }
+
+    /**
+     * 测试首次检索时加载全部来源，BM25排序、类型过滤和短语匹配
+     */
+    @Test
+    void testSearch() {
+        List<LexicalIndexService.LexicalHit> hits = service.search("额定功率", ALL, 10);
+        // 完整包含"额定功率"的节点、OCR文本和分块1排在前面
+        assertEquals(Set.of(100L, 200L, 1L), hits.stream().limit(3).map(LexicalIndexService.LexicalHit::id).collect(Collectors.toSet()));
+        assertTrue(hits.get(0).score() >= hits.get(1).score());
+        verify(chunkMapper).selectIndexPage(eq(0L), anyInt());
+
+        List<LexicalIndexService.LexicalHit> chunks = service.search("额定功率", List.of(LexicalIndexService.TYPE_CHUNK), 10);
+        assertEquals(1L, chunks.get(0).id());
+        assertEquals(7L, chunks.get(0).documentId());
+        assertTrue(chunks.stream().allMatch(hit -> LexicalIndexService.TYPE_CHUNK.equals(hit.type())));
+
+        // 分块2同时包含"额定"和"功率"但不连续，短语查询不命中
+        List<Long> phrase = service.search("\"额定功率\"", List.of(LexicalIndexService.TYPE_CHUNK), 10).stream()
+                .map(LexicalIndexService.LexicalHit::id).toList();
+        assertEquals(List.of(1L), phrase);
+        assertTrue(service.search("\"额定 电流\"", List.of(LexicalIndexService.TYPE_CHUNK), 10).isEmpty());
+
+        assertTrue(service.search("保修", ALL, 10).stream().anyMatch(hit -> hit.id() == 3L));
+        assertEquals(5, service.getStats().searches());
+    }
+
+    /**
+     * 测试增量维护：替换和删除文档分块、更新和删除节点
+     */
+    @Test
+    void testIncrementalUpdates() {
+        assertEquals(4, service.search("功率", ALL, 10).size());
+
+        service.indexDocument(7L, List.of(chunk(11L, 7L, "新版设备A的额定功率为7kW。")));
+        List<Long> ids = service.search("功率", List.of(LexicalIndexService.TYPE_CHUNK), 10).stream()
+                .map(LexicalIndexService.LexicalHit::id).toList();
+        assertEquals(List.of(11L), ids);
+
+        service.removeDocument(7L);
+        assertTrue(service.search("功率", List.of(LexicalIndexService.TYPE_CHUNK), 10).isEmpty());
+
+        KnowledgeNode renamed = new KnowledgeNode();
+        renamed.setId(100L);
+        renamed.setName("保修期限");
+        service.indexNode(renamed);
+        assertTrue(service.search("功率", List.of(LexicalIndexService.TYPE_NODE), 10).isEmpty());
+        assertEquals(100L, service.search("保修", List.of(LexicalIndexService.TYPE_NODE), 10).get(0).id());
+
+        service.removeNode(100L);
+        service.removeOcr(200L);
+        assertEquals(List.of(3L), service.search("保修", ALL, 10).stream().map(LexicalIndexService.LexicalHit::id).toList());
+        assertEquals(1, service.getStats().entries());
+    }
+
+    /**
+     * 测试已删除条目超过有效条目后压缩：倒排记录只剩有效条目，重新编号后检索、短语匹配和后续增删仍然正确
+     */
+    @Test
+    void testCompaction() {
+        assertEquals(4, service.search("功率", ALL, 10).size());
+        assertEquals(5, service.getStats().entries());
+        for (long id = 1000; id < 3000; id++) {
+            KnowledgeNode node = new KnowledgeNode();
+            node.setId(id);
+            node.setName("临时节点" + id);
+            service.indexNode(node);
+        }
+        long before = service.getStats().postings();
+        // 删除1024条时已删除条目超过剩余有效条目（981条），触发压缩
+        for (long id = 1000; id < 2024; id++) {
+            service.removeNode(id);
+        }
+
+        LexicalIndexService.IndexStats stats = service.getStats();
+        assertEquals(981, stats.entries());
+        assertTrue(stats.postings() < before / 2, "postings=" + stats.postings() + ", before=" + before);
+        for (long id = 2024; id < 2999; id++) {
+            service.removeNode(id);
+        }
+        assertEquals(6, service.getStats().entries());
+        assertEquals(List.of(2999L), service.search("临时节点", List.of(LexicalIndexService.TYPE_NODE), 10).stream()
+                .map(LexicalIndexService.LexicalHit::id).toList());
+        assertEquals(List.of(1L), service.search("\"额定功率\"", List.of(LexicalIndexService.TYPE_CHUNK), 10).stream()
+                .map(LexicalIndexService.LexicalHit::id).toList());
+
+        service.removeDocument(7L);
+        service.indexDocument(8L, List.of(chunk(12L, 8L, "保修期延长为三年。")));
+        assertEquals(List.of(12L), service.search("保修", List.of(LexicalIndexService.TYPE_CHUNK), 10).stream()
+                .map(LexicalIndexService.LexicalHit::id).toList());
+        assertEquals(4, service.getStats().entries());
+    }
+
+    /**
+     * 测试高亮摘要：命中部分加标记，长文本截取命中最密集的片段
+     */
+    @Test
+    void testHighlight() {
+        assertEquals("设备A的<em>额定功率</em>为5kW", service.highlight("设备A的额定功率为5kW", "额定功率"));
+        assertNull(service.highlight("保修期为两年", "额定功率"));
+
+        String text = "无关内容。".repeat(50) + "额定功率为5kW" + "无关内容。".repeat(50);
+        String snippet = service.highlight(text, "额定功率");
+        assertTrue(snippet.startsWith("…") && snippet.endsWith("…"));
+        assertTrue(snippet.contains("<em>额定功率</em>为5kW"));
+    }
+
+    private static DocumentChunk chunk(Long id, Long documentId, String content) {
+        DocumentChunk chunk = new DocumentChunk();
+        chunk.setId(id);
+        chunk.setDocumentId(documentId);
+        chunk.setContent(content);
+        return chunk;
+    }
+}
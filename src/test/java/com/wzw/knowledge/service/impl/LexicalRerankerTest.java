@@ -0,0 +1,72 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.model.vo.RagDocument;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 词项重排序器测试类
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class LexicalRerankerTest {
+
+    private final LexicalReranker reranker = new LexicalReranker();
+
+    /**
+     * 测试中文按两字切分，英文数字按单词切分
+     */
+    @Test
+    void testTokenize() {
+        assertEquals(List.of("维生", "生素", "c", "每日", "100mg"), LexicalReranker.tokenize("维生素C 每日100mg"));
+        assertEquals(List.of("钙"), LexicalReranker.tokenize("钙"));
+    }
+
+    /**
+     * 测试覆盖全部查询词项且位置集中的内容得分最高，无关内容得分最低
+     */
+    @Test
+    void testScore() {
+        double[] scores = reranker.score("成人每日钙推荐摄入量", List.of(
+                doc("钙是人体含量最多的矿物质。"),
+                doc("成人每日钙推荐摄入量为800mg。"),
+                doc("成人应保证睡眠。每日适量运动。钙可以从奶制品中获取。推荐摄入多样化食物。"),
+                doc("铁缺乏会导致贫血。")));
+
+        assertTrue(scores[1] > scores[2], "exact=" + scores[1] + ", scattered=" + scores[2]);
+        assertTrue(scores[2] > scores[0]);
+        assertTrue(scores[0] > scores[3]);
+    }
+
+    /**
+     * 测试查询词项覆盖率：重复词项只计一次，与其他候选无关
+     */
+    @Test
+    void testCoverage() {
+        assertEquals(1.0, LexicalReranker.coverage("每日补钙", "每日补钙，钙片每日一片"));
+        assertEquals(0.5, LexicalReranker.coverage("补钙 每日", "每日一片"));
+        assertEquals(0.0, LexicalReranker.coverage("", "每日一片"));
+    }
+
+    /**
+     * 测试邻近度：最短覆盖窗口越短得分越高
+     */
+    @Test
+    void testProximity() {
+        Set<String> matched = Set.of("a", "b");
+        assertEquals(1.0, LexicalReranker.proximity(List.of("a", "b", "x", "a"), matched));
+        assertEquals(0.5, LexicalReranker.proximity(List.of("a", "x", "x", "b"), matched));
+        assertEquals(0.0, LexicalReranker.proximity(List.of("a", "x"), Set.of("a")));
+    }
+
+    private static RagDocument doc(String content) {
+        RagDocument doc = new RagDocument();
+        doc.setMatchedContent(content);
+        return doc;
+    }
+}
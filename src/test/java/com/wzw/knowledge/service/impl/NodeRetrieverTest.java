@@ -0,0 +1,71 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.mapper.KnowledgeNodeMapper;
+import com.wzw.knowledge.model.vo.NodeRelationRow;
+import com.wzw.knowledge.model.vo.RagNode;
+import com.wzw.knowledge.service.Retriever;
+import com.wzw.knowledge.service.VectorService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 知识图谱节点检索器测试类
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class NodeRetrieverTest {
+
+    private final VectorService vectorService = mock(VectorService.class);
+    private final KnowledgeNodeMapper nodeMapper = mock(KnowledgeNodeMapper.class);
+    private final NodeRetriever retriever = new NodeRetriever(vectorService, nodeMapper);
+
+    /**
+     * 测试一次查询组装节点和出边，保持检索顺序，跳过已删除的节点和目标节点
+     */
+    @Test
+    void testOneShotHydration() {
+        when(vectorService.hybridSearch(any(), anyString(), anyInt(), eq("node"))).thenReturn(List.of(
+                new VectorService.VectorSearchResult(2L, "node", 0.9f, null),
+                new VectorService.VectorSearchResult(1L, "node", 0.8f, null),
+                new VectorService.VectorSearchResult(3L, "node", 0.7f, null)));
+        when(nodeMapper.selectWithOutgoingRelations(anyCollection())).thenReturn(List.of(
+                row(1L, "维生素C", "{\"unit\":\"mg\"}", "来源", 4L, "柑橘"),
+                row(1L, "维生素C", "{\"unit\":\"mg\"}", "功效", null, null),
+                row(1L, "维生素C", "{\"unit\":\"mg\"}", "功效", 5L, "抗氧化"),
+                row(2L, "柑橘", null, null, null, null)));
+
+        List<RagNode> nodes = retriever.retrieve(
+                new Retriever.QueryContext("维生素C", "维生素C", new float[]{1, 0}, 5, Map.of())).nodes();
+
+        verify(nodeMapper, times(1)).selectWithOutgoingRelations(anyCollection());
+        assertEquals(List.of(2L, 1L), nodes.stream().map(RagNode::getId).toList());
+        assertTrue(nodes.get(0).getRelations().isEmpty());
+        assertNull(nodes.get(0).getProperties());
+        assertEquals(0.8, nodes.get(1).getScore(), 1e-6);
+        assertEquals(List.of("柑橘", "抗氧化"),
+                nodes.get(1).getRelations().stream().map(RagNode.RagRelation::getTargetNodeName).toList());
+        assertEquals("mg", nodes.get(1).getProperties().get("unit"));
+        // 只解析一次，结果在缓存的节点间共享，不可修改
+        assertSame(nodes.get(1).getProperties(), nodes.get(1).getProperties());
+        assertThrows(UnsupportedOperationException.class, () -> nodes.get(1).getProperties().put("unit", "g"));
+    }
+
+    private static NodeRelationRow row(Long nodeId, String name, String properties,
+                                       String relationName, Long targetId, String targetName) {
+        NodeRelationRow row = new NodeRelationRow();
+        row.setNodeId(nodeId);
+        row.setNodeName(name);
+        row.setProperties(properties);
+        row.setRelationName(relationName);
+        row.setTargetNodeId(targetId);
+        row.setTargetNodeName(targetName);
+        return row;
+    }
+}
@@ -0,0 +1,95 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.config.OllamaRoutingConfig;
+import com.wzw.knowledge.service.OllamaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.OllamaEmbeddingModel;
+import org.springframework.ai.ollama.api.OllamaChatOptions;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Ollama服务测试类（任务路由和思考标签处理）
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class OllamaServiceImplTest {
+
+    private final OllamaChatModel chatModel = mock(OllamaChatModel.class);
+    private final OllamaRoutingConfig routingConfig = new OllamaRoutingConfig();
+    private final OllamaServiceImpl service =
+            new OllamaServiceImpl(chatModel, mock(OllamaEmbeddingModel.class), routingConfig);
+
+    /**
+     * 测试任务按路由使用对应档位的模型和参数，未配置路由的任务使用同名档位
+     */
+    @Test
+    void testTaskRouting() {
+        OllamaRoutingConfig.ModelProfile fast = new OllamaRoutingConfig.ModelProfile();
+        fast.setModel("qwen3:4b");
+        fast.setThinking(false);
+        fast.setNumPredict(512);
+        OllamaRoutingConfig.ModelProfile extract = new OllamaRoutingConfig.ModelProfile();
+        extract.setModel("qwen3:8b");
+        extract.setTemperature(0.1);
+        routingConfig.getProfiles().put("fast", fast);
+        routingConfig.getProfiles().put("extract", extract);
+        routingConfig.getRoutes().put("chat-fast", "fast");
+        when(chatModel.call(any(Prompt.class))).thenReturn(response("回答", null));
+
+        assertEquals("回答", service.chat("你好", OllamaService.ModelTask.CHAT_FAST));
+        service.chat("抽取", OllamaService.ModelTask.EXTRACT);
+
+        ArgumentCaptor<Prompt> prompts = ArgumentCaptor.forClass(Prompt.class);
+        verify(chatModel, times(2)).call(prompts.capture());
+        OllamaChatOptions fastOptions = (OllamaChatOptions) prompts.getAllValues().get(0).getOptions();
+        assertEquals("qwen3:4b", fastOptions.getModel());
+        assertEquals(512, fastOptions.getNumPredict());
+        OllamaChatOptions extractOptions = (OllamaChatOptions) prompts.getAllValues().get(1).getOptions();
+        assertEquals("qwen3:8b", extractOptions.getModel());
+        assertEquals(0.1, extractOptions.getTemperature());
+        assertEquals(1, service.getTaskStats().get("chat-fast").calls());
+    }
+
+    /**
+     * 测试流式思考内容包裹在标签中；只输出思考内容就结束时补上结束标签；取消的调用计入统计
+     */
+    @Test
+    void testStreamThinkTags() {
+        when(chatModel.getDefaultOptions()).thenReturn(OllamaChatOptions.builder().model("qwen3:14b").build());
+        when(chatModel.stream(any(Prompt.class))).thenReturn(Flux.just(
+                response("", "先想"), response("", "一想"), response("答案", null), response("完毕", null)));
+        assertEquals("<think>先想一想</think>答案完毕",
+                String.join("", service.chatStream("问题").collectList().block()));
+
+        when(chatModel.stream(any(Prompt.class))).thenReturn(Flux.just(response("", "只有思考")));
+        assertEquals("<think>只有思考</think>",
+                String.join("", service.chatStream("问题").collectList().block()));
+
+        when(chatModel.stream(any(Prompt.class))).thenReturn(Flux.just(response("a", null), response("b", null)));
+        assertEquals("a", service.chatStream("问题").blockFirst());
+        OllamaService.TaskStats stats = service.getTaskStats().get("chat");
+        assertEquals(3, stats.calls());
+        assertEquals("qwen3:14b", stats.model());
+    }
+
+    private static ChatResponse response(String text, String thinking) {
+        AssistantMessage message = new AssistantMessage(text);
+        if (thinking != null) {
+            message.getMetadata().put("thinking", thinking);
+        }
+        return new ChatResponse(List.of(new Generation(message)));
+    }
+}
@@ -0,0 +1,181 @@
+package com.wzw.knowledge.service.impl;
+
+import com.alibaba.fastjson2.JSON;
+import com.wzw.knowledge.config.RagCacheConfig;
+import com.wzw.knowledge.config.RagCompressionConfig;
+import com.wzw.knowledge.config.RagRerankConfig;
+import com.wzw.knowledge.config.RagRetrievalConfig;
+import com.wzw.knowledge.exception.BusinessException;
+import com.wzw.knowledge.mapper.DocumentChunkMapper;
+import com.wzw.knowledge.mapper.DocumentMapper;
+import com.wzw.knowledge.model.entity.Document;
+import com.wzw.knowledge.model.entity.DocumentChunk;
+import com.wzw.knowledge.service.CorpusVersionService;
+import com.wzw.knowledge.service.DocumentVectorService;
+import com.wzw.knowledge.service.OllamaService;
+import com.wzw.knowledge.service.RagEvalService;
+import com.wzw.knowledge.service.RagService;
+import com.wzw.knowledge.service.VectorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * RAG离线评测服务测试类（桩Ollama和向量库，检索引擎、文档检索器、提示词构建为真实实现）
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class RagEvalServiceImplTest {
+
+    private static final String DATASET = """
+            # 额定功率命中Parent块；保修期只召回两个标准答案中的一个，且排在第二
+            {"id":"power","question":"设备A的额定功率","goldChunkIds":[201]}
+
+            {"id":"warranty","question":"保修期多久","goldChunkIds":[202,105]}
+            """;
+
+    private final OllamaService ollamaService = mock(OllamaService.class);
+    private final VectorService vectorService = mock(VectorService.class);
+    private final DocumentChunkMapper chunkMapper = mock(DocumentChunkMapper.class);
+    private final DocumentMapper documentMapper = mock(DocumentMapper.class);
+    private final CorpusVersionService corpusVersionService = mock(CorpusVersionService.class);
+    private RetrievalEngine engine;
+    private RetrievalCache retrievalCache;
+    private RagNearCache nearCache;
+    private RagEvalServiceImpl evalService;
+
+    @BeforeEach
+    void setUp() {
+        when(corpusVersionService.current()).thenReturn(1L);
+        when(ollamaService.generateEmbedding(anyString())).thenReturn(new float[]{1, 0});
+        when(vectorService.hybridSearch(any(), eq("设备A的额定功率"), anyInt(), eq("child"))).thenReturn(List.of(
+                new VectorService.VectorSearchResult(101L, "child", 0.9f, 201L),
+                new VectorService.VectorSearchResult(103L, "child", 0.7f, null)));
+        when(vectorService.hybridSearch(any(), eq("保修期多久"), anyInt(), eq("child"))).thenReturn(List.of(
+                new VectorService.VectorSearchResult(103L, "child", 0.8f, null),
+                new VectorService.VectorSearchResult(104L, "child", 0.6f, 202L)));
+        when(chunkMapper.selectHitsByIds(anyCollection())).thenReturn(List.of(
+                chunk(101L, 201L, "额定功率为5kW"), chunk(103L, null, "整机重量为30kg"), chunk(104L, 202L, "保修两年")));
+        when(chunkMapper.selectParentsByIds(anyCollection())).thenAnswer(inv -> {
+            Collection<Long> ids = inv.getArgument(0);
+            return ids.stream().map(id -> chunk(id, null, "parent-" + id)).toList();
+        });
+        when(documentMapper.selectHeadersByIds(anyCollection())).thenAnswer(inv -> {
+            Document document = new Document();
+            document.setId(1L);
+            document.setName("手册");
+            return List.of(document);
+        });
+
+        RagRetrievalConfig retrievalConfig = new RagRetrievalConfig();
+        nearCache = new RagNearCache(retrievalConfig);
+        retrievalCache = new RetrievalCache(new RagCacheConfig(), corpusVersionService);
+        RagRerankConfig rerankConfig = new RagRerankConfig();
+        rerankConfig.setEnabled(false);
+        engine = new RetrievalEngine(ollamaService,
+                List.of(new DocumentRetriever(vectorService, chunkMapper, documentMapper, nearCache,
+                        mock(DocumentVectorService.class), retrievalConfig)),
+                retrievalConfig, List.of(), rerankConfig, retrievalCache, corpusVersionService);
+        RagServiceImpl ragService = new RagServiceImpl(engine, nearCache, retrievalCache,
+                new ContextCompressor(new RagCompressionConfig()));
+        evalService = new RagEvalServiceImpl(ragService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.destroy();
+    }
+
+    /**
+     * 测试质量指标和各阶段耗时分布，报告可序列化为JSON
+     */
+    @Test
+    void testEvaluate() {
+        List<RagEvalService.EvalCase> cases = evalService.parseDataset(DATASET);
+        assertEquals(2, cases.size());
+
+        RagEvalService.EvalReport report = evalService.evaluate(cases, 5, true);
+
+        assertEquals(2, report.cases());
+        RagEvalService.CaseResult power = report.results().get(0);
+        assertEquals(List.of(201L, 103L), power.retrieved());
+        assertEquals(1.0, power.recall());
+        assertEquals(1.0, power.reciprocalRank());
+        assertEquals(1.0, power.ndcg(), 1e-9);
+        RagEvalService.CaseResult warranty = report.results().get(1);
+        assertEquals(0.5, warranty.recall());
+        assertEquals(0.5, warranty.reciprocalRank());
+        double discounted = 1 / (Math.log(3) / Math.log(2));
+        assertEquals(discounted / (1 + discounted), warranty.ndcg(), 1e-9);
+        assertEquals(0.75, report.recallAtK(), 1e-9);
+        assertEquals(0.75, report.mrr(), 1e-9);
+
+        assertTrue(report.stages().keySet().containsAll(List.of(
+                "embedding", "document", "document.search", "document.hydration", "prompt", "total")));
+        assertEquals(2, report.stages().get("total").count());
+
+        RagEvalService.EvalReport parsed = JSON.parseObject(JSON.toJSONString(report), RagEvalService.EvalReport.class);
+        assertEquals(report.recallAtK(), parsed.recallAtK());
+        assertEquals(report.stages().keySet(), parsed.stages().keySet());
+    }
+
+    /**
+     * 测试非冷缓存模式重复评测命中检索结果缓存；冷缓存模式跳过缓存重新检索，且不清空、不写入线上缓存
+     */
+    @Test
+    void testColdCache() {
+        List<RagEvalService.EvalCase> cases = evalService.parseDataset(DATASET);
+        evalService.evaluate(cases, 5, true);
+        assertEquals(0, retrievalCache.getStats().entries());
+        assertEquals(0, nearCache.getStats().parentMisses());
+
+        evalService.evaluate(cases, 5, false);
+        assertTrue(evalService.evaluate(cases, 5, false).stages().containsKey(RetrievalEngine.STAGE_CACHE));
+        RagService.CacheStats warm = retrievalCache.getStats();
+
+        assertFalse(evalService.evaluate(cases, 5, true).stages().containsKey(RetrievalEngine.STAGE_CACHE));
+        RagService.CacheStats after = retrievalCache.getStats();
+        assertEquals(warm.entries(), after.entries());
+        assertEquals(warm.hits(), after.hits());
+        assertEquals(warm.misses(), after.misses());
+    }
+
+    /**
+     * 测试分位数（最近秩法）和超时计数
+     */
+    @Test
+    void testLatency() {
+        List<Long> values = new ArrayList<>();
+        for (long i = 1; i <= 100; i++) {
+            values.add(i);
+        }
+        values.add(-1L);
+        RagEvalService.StageLatency latency = RagEvalServiceImpl.latency(values);
+        assertEquals(100, latency.count());
+        assertEquals(1, latency.timeouts());
+        assertEquals(50, latency.p50());
+        assertEquals(95, latency.p95());
+        assertEquals(99, latency.p99());
+        assertEquals(100, latency.max());
+
+        assertThrows(BusinessException.class, () -> evalService.parseDataset("{\"id\":\"x\"}"));
+    }
+
+    private static DocumentChunk chunk(Long id, Long parentId, String content) {
+        DocumentChunk chunk = new DocumentChunk();
+        chunk.setId(id);
+        chunk.setDocumentId(1L);
+        chunk.setParentId(parentId);
+        chunk.setContent(content);
+        return chunk;
+    }
+}
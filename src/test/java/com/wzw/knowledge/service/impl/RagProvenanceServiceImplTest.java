@@ -0,0 +1,220 @@
+package com.wzw.knowledge.service.impl;
+
+import com.alibaba.fastjson2.JSON;
+import com.wzw.knowledge.mapper.ChatMessageMapper;
+import com.wzw.knowledge.mapper.DocumentChunkMapper;
+import com.wzw.knowledge.mapper.DocumentMapper;
+import com.wzw.knowledge.mapper.KnowledgeNodeMapper;
+import com.wzw.knowledge.mapper.KnowledgeRelationMapper;
+import com.wzw.knowledge.mapper.OcrRecordMapper;
+import com.wzw.knowledge.model.entity.ChatMessage;
+import com.wzw.knowledge.model.entity.Document;
+import com.wzw.knowledge.model.entity.DocumentChunk;
+import com.wzw.knowledge.model.entity.KnowledgeNode;
+import com.wzw.knowledge.model.entity.KnowledgeRelation;
+import com.wzw.knowledge.model.entity.OcrRecord;
+import com.wzw.knowledge.model.vo.RagContextVO;
+import com.wzw.knowledge.model.vo.RagDocument;
+import com.wzw.knowledge.model.vo.RagNode;
+import com.wzw.knowledge.service.CorpusVersionService;
+import com.wzw.knowledge.service.RagProvenanceService;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * RAG来源服务测试类
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class RagProvenanceServiceImplTest {
+
+    private final DocumentChunkMapper chunkMapper = mock(DocumentChunkMapper.class);
+    private final DocumentMapper documentMapper = mock(DocumentMapper.class);
+    private final KnowledgeNodeMapper nodeMapper = mock(KnowledgeNodeMapper.class);
+    private final KnowledgeRelationMapper relationMapper = mock(KnowledgeRelationMapper.class);
+    private final ChatMessageMapper messageMapper = mock(ChatMessageMapper.class);
+    private final OcrRecordMapper ocrRecordMapper = mock(OcrRecordMapper.class);
+    private final CorpusVersionService corpusVersionService = mock(CorpusVersionService.class);
+    private final RagProvenanceServiceImpl provenanceService = new RagProvenanceServiceImpl(
+            chunkMapper, documentMapper, nodeMapper, relationMapper, messageMapper, ocrRecordMapper, corpusVersionService);
+
+    /**
+     * 测试编码后只保存引用，还原出的文档内容取自父块，文档重新解析后标记为已变化
+     */
+    @Test
+    void testEncodeAndResolve() {
+        when(corpusVersionService.current()).thenReturn(7L);
+        String encoded = provenanceService.encode(List.of(ragDocument(11L, 10L, 0.912345)), List.of(ragNode(21L)));
+
+        assertEquals("{\"v\":2,\"cv\":7,\"d\":[{\"c\":11,\"p\":10,\"s\":0.9123}],\"n\":[{\"i\":21,\"s\":0.8}]}", encoded);
+
+        when(chunkMapper.selectByIdsIncludingDeleted(anyCollection()))
+                .thenReturn(List.of(chunk(10L, null, "父块完整内容", 0), chunk(11L, 10L, "子块", 0)));
+        when(documentMapper.selectBriefByIds(anyCollection())).thenReturn(List.of(document(0)));
+        when(nodeMapper.selectBatchIds(anyCollection()))
+                .thenReturn(List.of(node(21L, "设备A")))
+                .thenReturn(List.of(node(22L, "电机")));
+        KnowledgeRelation relation = new KnowledgeRelation();
+        relation.setSourceNodeId(21L);
+        relation.setTargetNodeId(22L);
+        relation.setName("包含");
+        when(relationMapper.selectBySourceNodeIds(anyCollection())).thenReturn(List.of(relation));
+
+        RagContextVO context = provenanceService.resolve(5L, encoded);
+
+        assertEquals(7L, context.getCorpusVersion());
+        assertFalse(context.getStale());
+        RagDocument doc = context.getDocuments().get(0);
+        assertEquals(1L, doc.getId());
+        assertEquals("手册", doc.getName());
+        assertEquals("父块完整内容", doc.getMatchedContent());
+        assertEquals(3, doc.getPageNum());
+        assertEquals("电机", context.getNodes().get(0).getRelations().get(0).getTargetNodeName());
+
+        // 重新解析后旧分块被逻辑删除，内容仍可还原
+        when(chunkMapper.selectByIdsIncludingDeleted(anyCollection()))
+                .thenReturn(List.of(chunk(10L, null, "父块完整内容", 1), chunk(11L, 10L, "子块", 1)));
+        when(nodeMapper.selectBatchIds(anyCollection())).thenReturn(List.of());
+        RagContextVO staleContext = provenanceService.resolve(5L, encoded);
+        assertTrue(staleContext.getStale());
+        assertEquals("父块完整内容", staleContext.getDocuments().get(0).getMatchedContent());
+    }
+
+    /**
+     * 测试OCR来源按记录ID保存，还原后保持在分块文档之间的位置，图片删除后仍能还原并标记为已变化
+     */
+    @Test
+    void testEncodeAndResolveOcr() {
+        when(corpusVersionService.current()).thenReturn(7L);
+        RagDocument ocrDoc = new RagDocument();
+        ocrDoc.setSourceType(RagDocument.SOURCE_OCR);
+        ocrDoc.setId(30L);
+        ocrDoc.setScore(0.5);
+        String encoded = provenanceService.encode(
+                List.of(ragDocument(11L, null, 0.9), ocrDoc, ragDocument(12L, null, 0.4)), List.of());
+
+        assertEquals("{\"v\":2,\"cv\":7,\"d\":[{\"c\":11,\"s\":0.9},{\"c\":12,\"s\":0.4}],\"n\":[],"
+                + "\"o\":[{\"i\":30,\"s\":0.5,\"t\":\"ocr\",\"x\":1}]}", encoded);
+
+        when(chunkMapper.selectByIdsIncludingDeleted(anyCollection()))
+                .thenReturn(List.of(chunk(11L, null, "分块一", 0), chunk(12L, null, "分块二", 0)));
+        when(documentMapper.selectBriefByIds(anyCollection())).thenReturn(List.of(document(0)));
+        when(ocrRecordMapper.selectBriefByIdsIncludingDeleted(anyCollection())).thenReturn(List.of(ocrRecord(0)));
+
+        RagContextVO context = provenanceService.resolve(5L, encoded);
+
+        assertFalse(context.getStale());
+        assertEquals(List.of("分块一", "铭牌识别文本", "分块二"),
+                context.getDocuments().stream().map(RagDocument::getMatchedContent).toList());
+        RagDocument resolved = context.getDocuments().get(1);
+        assertEquals(RagDocument.SOURCE_OCR, resolved.getSourceType());
+        assertEquals(30L, resolved.getId());
+        assertEquals("铭牌.png", resolved.getName());
+        assertEquals(0.5, resolved.getScore());
+
+        when(ocrRecordMapper.selectBriefByIdsIncludingDeleted(anyCollection())).thenReturn(List.of(ocrRecord(1)));
+        RagContextVO staleContext = provenanceService.resolve(5L, encoded);
+        assertTrue(staleContext.getStale());
+        assertEquals("铭牌识别文本", staleContext.getDocuments().get(1).getMatchedContent());
+    }
+
+    /**
+     * 测试旧格式压缩：父块由分块的parentId推导，报告节省的字节数
+     */
+    @Test
+    void testCompactLegacyRows() {
+        RagDocument legacyDoc = ragDocument(11L, null, 0.91);
+        legacyDoc.setMatchedContent("父块完整内容".repeat(200));
+        Map<String, Object> legacy = new HashMap<>();
+        legacy.put("documents", List.of(legacyDoc));
+        legacy.put("nodes", List.of(ragNode(21L)));
+        ChatMessage msg = new ChatMessage();
+        msg.setId(100L);
+        msg.setRagContext(JSON.toJSONString(legacy));
+        when(messageMapper.selectLegacyRagContexts(0L, 10)).thenReturn(List.of(msg));
+
+        RagProvenanceService.CompactionReport report = provenanceService.compactLegacy(10);
+
+        assertEquals(1, report.scannedRows());
+        assertEquals(1, report.compactedRows());
+        assertEquals(0, report.failedRows());
+        assertTrue(report.savedRatio() > 0.9);
+        assertEquals(report.bytesBefore() - report.bytesAfter(), report.savedBytes());
+        verify(messageMapper).updateRagContext(100L, "{\"v\":2,\"d\":[{\"c\":11,\"s\":0.91}],\"n\":[{\"i\":21,\"s\":0.8}]}");
+
+        // 旧格式压缩后没有父块ID，还原时补查父块
+        when(chunkMapper.selectByIdsIncludingDeleted(anyCollection()))
+                .thenReturn(List.of(chunk(11L, 10L, "子块", 0)))
+                .thenReturn(List.of(chunk(10L, null, "父块完整内容", 0)));
+        when(documentMapper.selectBriefByIds(anyCollection())).thenReturn(List.of(document(0)));
+        RagContextVO context = provenanceService.resolve(100L,
+                "{\"v\":2,\"d\":[{\"c\":11,\"s\":0.91}],\"n\":[]}");
+        assertEquals("父块完整内容", context.getDocuments().get(0).getMatchedContent());
+        assertEquals(10L, context.getDocuments().get(0).getParentChunkId());
+        verify(chunkMapper, times(2)).selectByIdsIncludingDeleted(anyCollection());
+    }
+
+    private static RagDocument ragDocument(Long chunkId, Long parentChunkId, double score) {
+        RagDocument doc = new RagDocument();
+        doc.setId(1L);
+        doc.setChunkId(chunkId);
+        doc.setParentChunkId(parentChunkId);
+        doc.setName("手册");
+        doc.setScore(score);
+        return doc;
+    }
+
+    private static RagNode ragNode(Long id) {
+        RagNode node = new RagNode();
+        node.setId(id);
+        node.setName("设备A");
+        node.setScore(0.8);
+        return node;
+    }
+
+    private static DocumentChunk chunk(Long id, Long parentId, String content, int deleted) {
+        DocumentChunk chunk = new DocumentChunk();
+        chunk.setId(id);
+        chunk.setDocumentId(1L);
+        chunk.setParentId(parentId);
+        chunk.setContent(content);
+        chunk.setPageNum(3);
+        chunk.setDeleted(deleted);
+        return chunk;
+    }
+
+    private static Document document(int deleted) {
+        Document document = new Document();
+        document.setId(1L);
+        document.setName("手册");
+        document.setFileType("pdf");
+        document.setDeleted(deleted);
+        return document;
+    }
+
+    private static OcrRecord ocrRecord(int deleted) {
+        OcrRecord record = new OcrRecord();
+        record.setId(30L);
+        record.setImageName("a1b2.png");
+        record.setOriginalName("铭牌.png");
+        record.setImageType("png");
+        record.setOcrText("铭牌识别文本");
+        record.setDeleted(deleted);
+        return record;
+    }
+
+    private static KnowledgeNode node(Long id, String name) {
+        KnowledgeNode node = new KnowledgeNode();
+        node.setId(id);
+        node.setName(name);
+        return node;
+    }
+}
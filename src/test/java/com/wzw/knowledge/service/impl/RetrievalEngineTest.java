@@ -0,0 +1,294 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.config.RagCacheConfig;
+import com.wzw.knowledge.config.RagRerankConfig;
+import com.wzw.knowledge.config.RagRetrievalConfig;
+import com.wzw.knowledge.model.vo.RagDocument;
+import com.wzw.knowledge.model.vo.RagNode;
+import com.wzw.knowledge.service.CorpusVersionService;
+import com.wzw.knowledge.service.OllamaService;
+import com.wzw.knowledge.service.Reranker;
+import com.wzw.knowledge.service.Retriever;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 并行检索引擎测试类
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class RetrievalEngineTest {
+
+    private final OllamaService ollamaService = mock(OllamaService.class);
+    private final RagRetrievalConfig config = new RagRetrievalConfig();
+    private final RagRerankConfig rerankConfig = new RagRerankConfig();
+    private final RagCacheConfig cacheConfig = new RagCacheConfig();
+    private final CorpusVersionService corpusVersionService = mock(CorpusVersionService.class);
+    private final RetrievalCache cache = new RetrievalCache(cacheConfig, corpusVersionService);
+    private final List<float[]> receivedEmbeddings = new CopyOnWriteArrayList<>();
+    private RetrievalEngine engine;
+
+    @AfterEach
+    void tearDown() {
+        engine.destroy();
+    }
+
+    /**
+     * 测试查询向量只生成一次，检索器并行执行，结果按分块和节点去重合并，各阶段耗时写入结果
+     */
+    @Test
+    void testSharedContextAndParallelDispatch() {
+        when(ollamaService.generateEmbedding(anyString())).thenReturn(new float[]{1, 0});
+        engine = new RetrievalEngine(ollamaService, List.of(
+                retriever("document", 300, ctx -> Retriever.Contribution.ofDocuments(List.of(doc(11L), doc(12L)))),
+                retriever("node", 300, ctx -> Retriever.Contribution.ofNodes(List.of(node(21L)))),
+                retriever("extra", 300, ctx -> new Retriever.Contribution(List.of(doc(12L), doc(13L)), List.of(node(21L))))
+        ), config, List.of(), rerankConfig, cache, corpusVersionService);
+
+        long start = System.currentTimeMillis();
+        RetrievalEngine.Outcome outcome = engine.retrieve("  设备A   额定功率 ", 10);
+        long elapsed = System.currentTimeMillis() - start;
+
+        verify(ollamaService, times(1)).generateEmbedding("设备A 额定功率");
+        assertEquals(3, receivedEmbeddings.size());
+        assertTrue(receivedEmbeddings.stream().allMatch(e -> e == receivedEmbeddings.get(0)));
+        // 三个检索器各300ms，并行执行
+        assertTrue(elapsed < 800, "elapsed=" + elapsed);
+        assertEquals(List.of(11L, 12L, 13L), outcome.documents().stream().map(RagDocument::getChunkId).toList());
+        assertEquals(1, outcome.nodes().size());
+        assertEquals(List.of("embedding", "document", "node", "extra"), List.copyOf(outcome.timings().keySet()));
+        assertTrue(outcome.timings().get("node") >= 300);
+    }
+
+    /**
+     * 测试超过截止时间的检索器被丢弃、失败的检索器不影响其他结果，只运行指定的检索器
+     */
+    @Test
+    void testDeadlineAndFailure() {
+        when(ollamaService.generateEmbedding(anyString())).thenReturn(new float[]{1, 0});
+        config.setDeadlines(Map.of("node", 100L));
+        engine = new RetrievalEngine(ollamaService, List.of(
+                retriever("document", 0, ctx -> Retriever.Contribution.ofDocuments(List.of(doc(11L)))),
+                retriever("node", 2000, ctx -> Retriever.Contribution.ofNodes(List.of(node(21L)))),
+                retriever("broken", 0, ctx -> {
+                    throw new IllegalStateException("milvus unavailable");
+                })
+        ), config, List.of(), rerankConfig, cache, corpusVersionService);
+
+        long start = System.currentTimeMillis();
+        RetrievalEngine.Outcome outcome = engine.retrieve("设备A", 10);
+
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertEquals(1, outcome.documents().size());
+        assertTrue(outcome.nodes().isEmpty());
+        assertEquals(-1L, outcome.timings().get("node"));
+        assertTrue(outcome.timings().containsKey("broken"));
+
+        outcome = engine.retrieve("设备A", 10, List.of("document"));
+        assertEquals(List.of("embedding", "document"), List.copyOf(outcome.timings().keySet()));
+    }
+
+    /**
+     * 测试调用方已生成查询向量时直接传给检索器，不再调用嵌入模型
+     */
+    @Test
+    void testPrecomputedEmbedding() {
+        engine = new RetrievalEngine(ollamaService, List.of(
+                retriever("document", 0, ctx -> Retriever.Contribution.ofDocuments(List.of(doc(11L))))
+        ), config, List.of(), rerankConfig, cache, corpusVersionService);
+
+        float[] embedding = {0, 1};
+        RetrievalEngine.Outcome outcome = engine.retrieve("设备B保修期", 5, embedding);
+
+        verify(ollamaService, never()).generateEmbedding(anyString());
+        assertSame(embedding, receivedEmbeddings.get(0));
+        assertEquals(1, outcome.documents().size());
+    }
+
+    /**
+     * 测试重排序：检索器收到放宽后的候选数，按得分截取topK并丢弃低分候选；超出预算时按RRF顺序截取
+     */
+    @Test
+    void testRerankWithinBudget() {
+        when(ollamaService.generateEmbedding(anyString())).thenReturn(new float[]{1, 0});
+        List<Integer> receivedTopK = new CopyOnWriteArrayList<>();
+        Map<Long, Double> relevance = Map.of(11L, 0.1, 12L, 0.9, 13L, 0.8, 14L, 0.2);
+        Reranker fast = reranker("fast", 0, relevance);
+        Reranker slow = reranker("slow", 1000, relevance);
+        rerankConfig.setReranker("fast");
+        rerankConfig.setBudget(200L);
+        engine = new RetrievalEngine(ollamaService, List.of(
+                retriever("document", 0, ctx -> {
+                    receivedTopK.add(ctx.topK());
+                    return Retriever.Contribution.ofDocuments(List.of(doc(11L), doc(12L), doc(13L), doc(14L)));
+                })
+        ), config, List.of(fast, slow), rerankConfig, cache, corpusVersionService);
+
+        RetrievalEngine.Outcome outcome = engine.retrieve("设备A", 3);
+        assertEquals(List.of(9), receivedTopK);
+        // 14 低于第一名的30%，被丢弃
+        assertEquals(List.of(12L, 13L), outcome.documents().stream().map(RagDocument::getChunkId).toList());
+        assertTrue(outcome.timings().get("rerank") >= 0);
+
+        rerankConfig.setReranker("slow");
+        long start = System.currentTimeMillis();
+        outcome = engine.retrieve("设备A", 3);
+        assertTrue(System.currentTimeMillis() - start < 800);
+        assertEquals(List.of(11L, 12L, 13L), outcome.documents().stream().map(RagDocument::getChunkId).toList());
+        assertEquals(-1L, outcome.timings().get("rerank"));
+    }
+
+    /**
+     * 测试未启用重排序时合并结果按先注册的检索器优先截取到topK
+     */
+    @Test
+    void testTruncateWithoutRerank() {
+        when(ollamaService.generateEmbedding(anyString())).thenReturn(new float[]{1, 0});
+        rerankConfig.setEnabled(false);
+        engine = new RetrievalEngine(ollamaService, List.of(
+                retriever("document", 0, ctx -> new Retriever.Contribution(
+                        List.of(doc(11L), doc(12L)), List.of(node(21L), node(22L)))),
+                retriever("lexical", 0, ctx -> new Retriever.Contribution(
+                        List.of(doc(13L), doc(14L)), List.of(node(23L))))
+        ), config, List.of(reranker("lexical", 0, Map.of())), rerankConfig, cache, corpusVersionService);
+
+        RetrievalEngine.Outcome outcome = engine.retrieve("设备A", 3);
+
+        assertEquals(List.of(11L, 12L, 13L), outcome.documents().stream().map(RagDocument::getChunkId).toList());
+        assertEquals(List.of(21L, 22L, 23L), outcome.nodes().stream().map(RagNode::getId).toList());
+        outcome = engine.retrieve("设备B", 2);
+        assertEquals(List.of(11L, 12L), outcome.documents().stream().map(RagDocument::getChunkId).toList());
+        assertEquals(2, outcome.nodes().size());
+    }
+
+    /**
+     * 测试检索结果缓存：相同问题（规范化后）命中缓存，跳过向量生成和检索；语料版本变化后重新检索；不完整的结果不缓存
+     */
+    @Test
+    void testResultCache() {
+        when(ollamaService.generateEmbedding(anyString())).thenReturn(new float[]{1, 0});
+        when(corpusVersionService.current()).thenReturn(1L);
+        engine = new RetrievalEngine(ollamaService, List.of(
+                retriever("document", 0, ctx -> Retriever.Contribution.ofDocuments(List.of(doc(11L))))
+        ), config, List.of(), rerankConfig, cache, corpusVersionService);
+
+        engine.retrieve("设备A 额定功率？", 5);
+        RetrievalEngine.Outcome cached = engine.retrieve("设备a   额定功率", 5);
+
+        verify(ollamaService, times(1)).generateEmbedding(anyString());
+        assertEquals(1, receivedEmbeddings.size());
+        assertEquals(List.of(11L), cached.documents().stream().map(RagDocument::getChunkId).toList());
+        assertEquals(List.of("cache"), List.copyOf(cached.timings().keySet()));
+
+        // 不同topK不命中
+        engine.retrieve("设备A 额定功率", 3);
+        assertEquals(2, receivedEmbeddings.size());
+
+        when(corpusVersionService.current()).thenReturn(2L);
+        engine.retrieve("设备A 额定功率", 5);
+        assertEquals(3, receivedEmbeddings.size());
+        assertEquals(1, cache.getStats().hits());
+        assertEquals(3, cache.getStats().misses());
+
+        // 查询向量生成失败时不缓存
+        when(ollamaService.generateEmbedding(anyString())).thenThrow(new IllegalStateException("ollama unavailable"));
+        engine.retrieve("另一个问题", 5);
+        engine.retrieve("另一个问题", 5);
+        verify(ollamaService, times(5)).generateEmbedding(anyString());
+    }
+
+    /**
+     * 测试单独失效文档：只删除包含该文档的结果；检索过程中被失效的文档，结果不写入缓存
+     */
+    @Test
+    void testDocumentInvalidation() {
+        when(ollamaService.generateEmbedding(anyString())).thenReturn(new float[]{1, 0});
+        engine = new RetrievalEngine(ollamaService, List.of(
+                retriever("document", 0, ctx -> Retriever.Contribution.ofDocuments(
+                        ctx.query().contains("设备A") ? List.of(doc(11L)) : List.of())),
+                retriever("summary", 0, ctx -> {
+                    // 模拟检索过程中文档摘要更新
+                    if (ctx.query().contains("进行中")) {
+                        cache.invalidateDocument(1L);
+                    }
+                    return Retriever.Contribution.ofDocuments(List.of());
+                })
+        ), config, List.of(), rerankConfig, cache, corpusVersionService);
+
+        engine.retrieve("设备A", 5);
+        engine.retrieve("设备B", 5);
+        assertEquals(2, cache.getStats().entries());
+
+        cache.invalidateDocument(1L);
+        assertEquals(1, cache.getStats().entries());
+        engine.retrieve("设备B", 5);
+        assertEquals(1, cache.getStats().hits());
+
+        engine.retrieve("设备A 进行中", 5);
+        engine.retrieve("设备A 进行中", 5);
+        assertEquals(1, cache.getStats().hits());
+    }
+
+    private Reranker reranker(String name, long delayMs, Map<Long, Double> relevance) {
+        return new Reranker() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public double[] score(String query, List<RagDocument> candidates) {
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return candidates.stream().mapToDouble(doc -> relevance.get(doc.getChunkId())).toArray();
+            }
+        };
+    }
+
+    private Retriever retriever(String name, long delayMs, Function<Retriever.QueryContext, Retriever.Contribution> body) {
+        return new Retriever() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public Contribution retrieve(QueryContext context) {
+                receivedEmbeddings.add(context.embedding());
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return Contribution.empty();
+                }
+                return body.apply(context);
+            }
+        };
+    }
+
+    private static RagDocument doc(Long chunkId) {
+        RagDocument doc = new RagDocument();
+        doc.setId(1L);
+        doc.setChunkId(chunkId);
+        return doc;
+    }
+
+    private static RagNode node(Long id) {
+        RagNode node = new RagNode();
+        node.setId(id);
+        return node;
+    }
+}
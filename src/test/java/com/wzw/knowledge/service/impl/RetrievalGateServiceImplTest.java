@@ -0,0 +1,140 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.config.RetrievalGateConfig;
+import com.wzw.knowledge.model.vo.RagDocument;
+import com.wzw.knowledge.service.OllamaService;
+import com.wzw.knowledge.service.RagService;
+import com.wzw.knowledge.service.RetrievalGateService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 检索门控服务测试类
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class RetrievalGateServiceImplTest {
+
+    private final OllamaService ollamaService = mock(OllamaService.class);
+    private final RagService ragService = mock(RagService.class);
+    private final RetrievalGateConfig config = new RetrievalGateConfig();
+    private final RetrievalGateServiceImpl gate = new RetrievalGateServiceImpl(config, ollamaService, ragService);
+
+    /**
+     * 测试寒暄不检索，追问和指代上一轮的短问题复用上一轮结果，新问题执行检索；统计跳过比例和节省的时间
+     */
+    @Test
+    void testSkipAndReuse() {
+        when(ragService.buildContextPrompt(anyList(), anyString()))
+                .thenAnswer(inv -> "参考内容 + " + inv.getArgument(1));
+
+        assertEquals(RetrievalGateService.Action.SKIP, gate.decide(1L, "谢谢！").action());
+        assertEquals(RetrievalGateService.Action.SKIP, gate.decide(1L, " OK ").action());
+        // 没有上一轮检索时追问也要检索
+        assertEquals(RetrievalGateService.Action.RETRIEVE, gate.decide(1L, "继续").action());
+
+        assertEquals(RetrievalGateService.Action.RETRIEVE, gate.decide(1L, "设备A的额定功率是多少？").action());
+        RagService.RagResult first = rag();
+        gate.record(1L, "设备A的额定功率是多少？", first, 400);
+
+        RetrievalGateService.Decision followUp = gate.decide(1L, "再解释一下");
+        assertEquals(RetrievalGateService.Action.REUSE, followUp.action());
+        assertSame(first.documents(), followUp.reused().documents());
+        assertEquals("参考内容 + 再解释一下", followUp.reused().contextPrompt());
+        assertEquals(RetrievalGateService.Action.REUSE, gate.decide(1L, "它的重量呢？").action());
+        assertEquals(RetrievalGateService.Action.RETRIEVE,
+                gate.decide(1L, "设备B在低温环境下应该如何进行日常维护和保养？").action());
+        // 其他会话不能复用
+        assertEquals(RetrievalGateService.Action.RETRIEVE, gate.decide(2L, "继续").action());
+        verifyNoInteractions(ollamaService);
+
+        RetrievalGateService.GateStats stats = gate.getStats();
+        assertEquals(8, stats.decisions());
+        assertEquals(2, stats.skipped());
+        assertEquals(2, stats.reused());
+        assertEquals(0.5, stats.skipRate(), 1e-9);
+        assertEquals(400, stats.avgRetrievalMs());
+        assertTrue(stats.savedMs() >= 2 * 390);
+
+        gate.evict(1L);
+        assertEquals(RetrievalGateService.Action.RETRIEVE, gate.decide(1L, "继续").action());
+    }
+
+    /**
+     * 测试短问题按与上一轮问题的向量相似度判断，上一轮问题的向量只生成一次，本轮问题的向量交给检索复用
+     */
+    @Test
+    void testEmbeddingSimilarity() {
+        when(ragService.buildContextPrompt(anyList(), anyString())).thenReturn("参考内容");
+        when(ollamaService.generateEmbedding("设备A功率")).thenReturn(new float[]{1, 0, 0});
+        when(ollamaService.generateEmbedding("设备A的功率")).thenReturn(new float[]{0.98f, 0.1f, 0});
+        when(ollamaService.generateEmbedding("设备B保修期")).thenReturn(new float[]{0, 1, 0});
+        gate.record(1L, "设备A功率", rag(), 300);
+
+        assertEquals(RetrievalGateService.Action.REUSE, gate.decide(1L, "设备A的功率").action());
+        RetrievalGateService.Decision decision = gate.decide(1L, "设备B保修期");
+        assertEquals(RetrievalGateService.Action.RETRIEVE, decision.action());
+        // 判断时生成的问题向量随结果返回，检索时复用
+        assertArrayEquals(new float[]{0, 1, 0}, decision.queryVector());
+        verify(ollamaService, times(1)).generateEmbedding("设备A功率");
+
+        config.setEnabled(false);
+        assertEquals(RetrievalGateService.Action.RETRIEVE, gate.decide(1L, "谢谢").action());
+    }
+
+    /**
+     * 测试检索置信度：没有命中或最高相关度低于阈值时不可信
+     */
+    @Test
+    void testConfidence() {
+        assertFalse(gate.isConfident(new RagService.RagResult(List.of(), List.of(), "参考内容")));
+        RagService.RagResult result = rag();
+        result.documents().get(0).setRelevance(0.42);
+        assertFalse(gate.isConfident(result));
+        result.documents().get(0).setRelevance(0.71);
+        assertTrue(gate.isConfident(result));
+        assertEquals(2, gate.getStats().lowConfidence());
+
+        config.setMinSimilarity(0.0);
+        assertTrue(gate.isConfident(new RagService.RagResult(List.of(), List.of(), "参考内容")));
+    }
+
+    /**
+     * 测试只有词项检索或图谱扩展命中时按词项覆盖率判断，没有相关度的结果不可信；
+     * 向量命中较弱但词项命中覆盖了问题时可信
+     */
+    @Test
+    void testLexicalAndMixedConfidence() {
+        String question = "成人每日钙推荐摄入量";
+        RagDocument graphOnly = rag().documents().get(0);
+        assertFalse(gate.isConfident(new RagService.RagResult(List.of(graphOnly), List.of(), "参考内容")));
+
+        RagDocument junk = rag().documents().get(0);
+        junk.setRelevance(LexicalReranker.coverage(question, "儿童每日应保证充足睡眠。"));
+        assertFalse(gate.isConfident(new RagService.RagResult(List.of(junk, graphOnly), List.of(), "参考内容")));
+
+        RagDocument lexical = rag().documents().get(0);
+        lexical.setRelevance(LexicalReranker.coverage(question, "成人每日钙推荐摄入量为800mg。"));
+        assertTrue(gate.isConfident(new RagService.RagResult(List.of(lexical), List.of(), "参考内容")));
+
+        RagDocument weakDense = rag().documents().get(0);
+        weakDense.setSimilarity(0.3);
+        weakDense.setRelevance(0.3);
+        assertTrue(gate.isConfident(new RagService.RagResult(List.of(weakDense, lexical), List.of(), "参考内容")));
+        assertFalse(gate.isConfident(new RagService.RagResult(List.of(weakDense, junk), List.of(), "参考内容")));
+    }
+
+    private static RagService.RagResult rag() {
+        RagDocument doc = new RagDocument();
+        doc.setId(1L);
+        doc.setChunkId(11L);
+        doc.setName("手册");
+        return new RagService.RagResult(List.of(doc), List.of(), "参考内容");
+    }
+}
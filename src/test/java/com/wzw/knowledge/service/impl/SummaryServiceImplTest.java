@@ -0,0 +1,102 @@
+package com.wzw.knowledge.service.impl;
+
+import com.wzw.knowledge.config.SummaryConfig;
+import com.wzw.knowledge.mapper.DocumentMapper;
+import com.wzw.knowledge.model.entity.Document;
+import com.wzw.knowledge.model.vo.SummaryJobVO;
+import com.wzw.knowledge.service.OllamaService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 分层摘要服务测试类
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class SummaryServiceImplTest {
+
+    private final OllamaService ollamaService = mock(OllamaService.class);
+    private final DocumentMapper documentMapper = mock(DocumentMapper.class);
+    private final RagNearCache nearCache = mock(RagNearCache.class);
+    private final RetrievalCache retrievalCache = mock(RetrievalCache.class);
+    private final SummaryConfig config = new SummaryConfig();
+    private SummaryServiceImpl service;
+
+    /**
+     * 五个段落：map阶段5次摘要，按每批2个逐层合并 5 -> 3 -> 2 -> 1
+     */
+    private static final String TEXT = "第一段内容\n\n第二段内容\n\n第三段内容\n\n第四段内容\n\n第五段内容";
+
+    private SummaryServiceImpl newService() {
+        config.setChunkSize(6);
+        config.setReduceBatch(2);
+        config.setConcurrency(2);
+        when(ollamaService.generateSummary(anyString())).thenAnswer(inv -> "摘要(" + inv.getArgument(0) + ")");
+        when(ollamaService.chat(anyString(), eq(OllamaService.ModelTask.SUMMARY)))
+                .thenAnswer(inv -> "合并" + Integer.toHexString(inv.getArgument(0, String.class).hashCode()));
+        service = new SummaryServiceImpl(ollamaService, documentMapper, config, nearCache, retrievalCache);
+        return service;
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.destroy();
+    }
+
+    /**
+     * 测试分段并行摘要后逐层合并，进度覆盖所有步骤；再次摘要相同内容时每一层都命中缓存
+     */
+    @Test
+    void testMapReduceAndCache() {
+        newService();
+        AtomicInteger lastCompleted = new AtomicInteger();
+        AtomicInteger lastTotal = new AtomicInteger();
+
+        String summary = service.summarize(TEXT, (completed, total) -> {
+            lastCompleted.accumulateAndGet(completed, Math::max);
+            lastTotal.set(total);
+        });
+
+        assertTrue(summary.startsWith("合并"));
+        verify(ollamaService, times(5)).generateSummary(anyString());
+        verify(ollamaService, times(6)).chat(anyString(), eq(OllamaService.ModelTask.SUMMARY));
+        assertEquals(11, lastTotal.get());
+        assertEquals(11, lastCompleted.get());
+
+        assertEquals(summary, service.summarize(TEXT));
+        verify(ollamaService, times(5)).generateSummary(anyString());
+        verify(ollamaService, times(6)).chat(anyString(), eq(OllamaService.ModelTask.SUMMARY));
+    }
+
+    /**
+     * 测试文档摘要任务完成后保存摘要，超过保留时间的已结束任务被清除
+     */
+    @Test
+    void testDocumentJobAndEviction() {
+        newService();
+        Document document = new Document();
+        document.setId(7L);
+        document.setContent(TEXT);
+        when(documentMapper.selectById(7L)).thenReturn(document);
+
+        assertEquals(SummaryJobVO.STATUS_PENDING, service.submitDocumentJob(7L).getStatus());
+        service.runDocumentJob(7L);
+
+        SummaryJobVO job = service.getDocumentJob(7L);
+        assertEquals(SummaryJobVO.STATUS_COMPLETED, job.getStatus());
+        assertEquals(100, job.getProgress());
+        verify(documentMapper).updateById(argThat((Document update) -> job.getSummary().equals(update.getSummary())));
+        verify(nearCache).invalidateDocument(7L);
+        verify(retrievalCache).invalidateDocument(7L);
+
+        config.setJobRetention(0L);
+        assertNull(service.getDocumentJob(7L));
+    }
+}
@@ -0,0 +1,104 @@
+package com.wzw.knowledge.util;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.wzw.knowledge.common.CountMode;
+import com.wzw.knowledge.common.CursorPageResult;
+import com.wzw.knowledge.mapper.DocumentMapper;
+import com.wzw.knowledge.model.entity.Document;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 主键游标分页工具测试类
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class KeysetPagerTest {
+
+    private final DocumentMapper mapper = mock(DocumentMapper.class);
+
+    @BeforeAll
+    static void initTableInfo() {
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Document.class);
+    }
+
+    /**
+     * 测试按主键倒序翻页：多查一条判断下一页，下一页从游标位置继续，不使用OFFSET
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSeekByCursor() {
+        // 第一页：返回 size+1 条
+        when(mapper.selectList(any(Wrapper.class))).thenReturn(documents(100, 11));
+        CursorPageResult<Long> first = KeysetPager.page(mapper, LambdaQueryWrapper::new, Document::getId,
+                null, 10, CountMode.NONE, Document::getId);
+
+        assertEquals(10, first.getRecords().size());
+        assertTrue(first.getHasMore());
+        assertNull(first.getTotal());
+        assertEquals(91L, CursorCodec.decodeId(first.getNextCursor()));
+
+        // 第二页：条件中带上游标位置，最后一页没有下一页游标
+        when(mapper.selectList(any(Wrapper.class))).thenReturn(documents(90, 3));
+        CursorPageResult<Long> second = KeysetPager.page(mapper, LambdaQueryWrapper::new, Document::getId,
+                first.getNextCursor(), 10, CountMode.NONE, Document::getId);
+
+        assertEquals(List.of(90L, 89L, 88L), second.getRecords());
+        assertFalse(second.getHasMore());
+        ArgumentCaptor<LambdaQueryWrapper<Document>> captor = ArgumentCaptor.forClass(LambdaQueryWrapper.class);
+        verify(mapper, times(2)).selectList(captor.capture());
+        LambdaQueryWrapper<Document> wrapper = captor.getValue();
+        String sql = wrapper.getCustomSqlSegment();
+        assertTrue(sql.contains("id <"), sql);
+        assertTrue(sql.contains("ORDER BY id DESC"), sql);
+        assertTrue(sql.endsWith("LIMIT 11"), sql);
+        assertTrue(wrapper.getParamNameValuePairs().containsValue(91L));
+        assertFalse(sql.contains("OFFSET"));
+    }
+
+    /**
+     * 测试总数估算有上限，超过上限时标记为不精确
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testEstimatedCount() {
+        when(mapper.selectList(any(Wrapper.class))).thenReturn(documents(5000, 11));
+        when(mapper.selectObjs(any(Wrapper.class)))
+                .thenReturn(new ArrayList<>(Collections.nCopies(KeysetPager.ESTIMATE_LIMIT + 1, 1L)))
+                .thenReturn(new ArrayList<>(Collections.nCopies(42, 1L)));
+
+        CursorPageResult<Long> estimated = KeysetPager.page(mapper, LambdaQueryWrapper::new, Document::getId,
+                null, 10, CountMode.ESTIMATE, Document::getId);
+        assertEquals(KeysetPager.ESTIMATE_LIMIT, estimated.getTotal());
+        assertFalse(estimated.getTotalExact());
+
+        CursorPageResult<Long> small = KeysetPager.page(mapper, LambdaQueryWrapper::new, Document::getId,
+                null, 10, CountMode.ESTIMATE, Document::getId);
+        assertEquals(42L, small.getTotal());
+        assertTrue(small.getTotalExact());
+        verify(mapper, never()).selectCount(any());
+    }
+
+    private static List<Document> documents(long fromId, int count) {
+        return LongStream.range(0, count).mapToObj(i -> {
+            Document document = new Document();
+            document.setId(fromId - i);
+            return document;
+        }).toList();
+    }
+}
@@ -0,0 +1,72 @@
+package com.wzw.knowledge.util;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SSE帧合并写入器测试类
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class SseFrameWriterTest {
+
+    /**
+     * 测试合并后的帧能被标准JSON解析且内容不变
+     */
+    @Test
+    void testEscapedTokensRoundTrip() {
+        SseFrameWriter writer = new SseFrameWriter(50, 4096);
+        String[] tokens = {"<think>", "引号\"", "反斜杠\\", "换行\n", "\t制表", "\u0001控制", " 分隔", "😀"};
+        StringBuilder expected = new StringBuilder();
+        for (String token : tokens) {
+            assertFalse(writer.append(token));
+            expected.append(token);
+        }
+        assertEquals(tokens.length, writer.getPendingTokens());
+
+        JSONObject frame = JSON.parseObject(writer.drain());
+        assertEquals("chunk", frame.getString("type"));
+        assertEquals(expected.toString(), frame.getString("content"));
+        assertFalse(writer.hasPending());
+        assertNull(writer.drain());
+    }
+
+    /**
+     * 测试字节数达到上限时要求立即输出
+     */
+    @Test
+    void testFlushByBytes() {
+        SseFrameWriter writer = new SseFrameWriter(50, 10);
+        // 每个汉字3字节
+        assertFalse(writer.append("知识"));
+        assertFalse(writer.append("图"));
+        assertTrue(writer.append("谱"));
+    }
+
+    /**
+     * 测试关闭合并时每个token单独成帧
+     */
+    @Test
+    void testCoalescingDisabled() {
+        SseFrameWriter writer = new SseFrameWriter(0, 2048);
+        assertTrue(writer.append("a"));
+        assertFalse(writer.append(""));
+    }
+
+    /**
+     * 测试事件信封模板
+     */
+    @Test
+    void testEnvelope() {
+        String json = SseFrameWriter.envelope("done", "thinkingContent", null, "content", "答案\"1\"");
+        JSONObject obj = JSON.parseObject(json);
+        assertEquals("done", obj.getString("type"));
+        assertTrue(obj.containsKey("thinkingContent"));
+        assertNull(obj.get("thinkingContent"));
+        assertEquals("答案\"1\"", obj.getString("content"));
+    }
+}
@@ -0,0 +1,54 @@
+package com.wzw.knowledge.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式请求并发限制器测试类
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class StreamLimiterTest {
+
+    /**
+     * 测试名额用完后排队，队列满后拒绝
+     */
+    @Test
+    void testAcquireQueueReject() {
+        StreamLimiter limiter = new StreamLimiter(2, 1);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+
+        assertEquals(1, limiter.tryEnqueue());
+        assertEquals(-1, limiter.tryEnqueue());
+        assertEquals(1, limiter.getRejectedCount());
+
+        // 排队超时
+        assertFalse(limiter.awaitPermit(10));
+        assertEquals(0, limiter.getQueued());
+
+        // 释放后排队请求可以进入
+        limiter.release();
+        assertEquals(1, limiter.tryEnqueue());
+        assertTrue(limiter.awaitPermit(10));
+        assertEquals(2, limiter.getActive());
+    }
+
+    /**
+     * 测试有请求排队时新请求不插队
+     */
+    @Test
+    void testNoBargingWhileQueued() {
+        StreamLimiter limiter = new StreamLimiter(1, 10);
+        assertTrue(limiter.tryAcquire());
+        assertEquals(1, limiter.tryEnqueue());
+
+        limiter.release();
+        assertFalse(limiter.tryAcquire());
+        assertTrue(limiter.awaitPermit(10));
+    }
+}
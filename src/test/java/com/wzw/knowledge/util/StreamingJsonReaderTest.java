@@ -0,0 +1,189 @@
+package com.wzw.knowledge.util;
+
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 增量容错JSON读取器测试类
+ *
+ * @author wzw
+ * @version 1.0
+ */
+class StreamingJsonReaderTest {
+
+    /**
+     * 测试完整输出
+     */
+    @Test
+    void testCompleteOutput() {
+        Collected c = read("""
+                {"entities": [{"name": "张三", "type": "Person"}, {"name": "AI", "type": "Concept"}],
+                 "relations": [{"source": "张三", "target": "AI", "relation": "研究", "type": "RELATED_TO"}]}
+                """);
+
+        assertEquals(2, c.entities.size());
+        assertEquals(1, c.relations.size());
+        assertEquals("张三", c.entities.get(0).getString("name"));
+        assertFalse(c.reader.isTruncated());
+    }
+
+    /**
+     * 测试输出被截断时保留已完成的元素
+     */
+    @Test
+    void testTruncatedOutput() {
+        Collected c = read("""
+                {"entities": [{"name": "A", "type": "Concept"}, {"name": "B", "type": "Concept"}],
+                 "relations": [{"source": "A", "target": "B", "relation": "包含"}, {"source": "A", "targ""");
+
+        assertEquals(2, c.entities.size());
+        assertEquals(1, c.relations.size());
+        assertTrue(c.reader.isTruncated());
+        assertEquals(1, c.reader.getSkippedCount());
+    }
+
+    /**
+     * 测试修复字符串拼接、字符串内换行和尾随逗号
+     */
+    @Test
+    void testMalformedElements() {
+        Collected c = read("""
+                {"entities": [
+                  {"name": "知识" + "图谱", "type": "Concept", "description": "第一行
+                第二行",},
+                  {"name": "Neo4j", "type": "Technology"}
+                ]}
+                """);
+
+        assertEquals(2, c.entities.size());
+        assertEquals("知识图谱", c.entities.get(0).getString("name"));
+        assertEquals("第一行 第二行", c.entities.get(0).getString("description"));
+    }
+
+    /**
+     * 测试单个元素损坏不影响其他元素
+     */
+    @Test
+    void testBrokenElementIsolated() {
+        Collected c = read("""
+                {"entities": [{"name": "A", "type": }, {"name": "B", "type": "Concept"}]}
+                """);
+
+        assertEquals(1, c.entities.size());
+        assertEquals("B", c.entities.get(0).getString("name"));
+        assertEquals(1, c.reader.getSkippedCount());
+    }
+
+    /**
+     * 测试跳过思考链和代码块标记
+     */
+    @Test
+    void testPreambleSkipped() {
+        Collected c = read("""
+                <think>先列出实体 {"name": "误识别"} 再输出</think>
+                ```json
+                {"entities": [{"name": "A", "type": "Concept"}], "relations": []}
+                ```
+                """);
+
+        assertEquals(1, c.entities.size());
+        assertEquals("A", c.entities.get(0).getString("name"));
+    }
+
+    /**
+     * 测试逐字符喂入与一次性喂入结果一致
+     */
+    @Test
+    void testCharByCharFeed() {
+        String text = """
+                {"entities": [{"name": "A\\"1", "type": "Concept"}, {"name": "B", "type": "Event"}],
+                 "relations": [{"source": "A", "target": "B", "relation": "r"}]}
+                """;
+        List<JSONObject> items = new ArrayList<>();
+        StreamingJsonReader reader = new StreamingJsonReader((key, obj) -> items.add(obj));
+        for (int i = 0; i < text.length(); i++) {
+            reader.feed(String.valueOf(text.charAt(i)));
+        }
+        reader.finish();
+
+        assertEquals(3, items.size());
+        assertEquals("A\"1", items.get(0).getString("name"));
+    }
+
+    /**
+     * 测试顶层数组
+     */
+    @Test
+    void testTopLevelArray() {
+        List<String> keys = new ArrayList<>();
+        StreamingJsonReader reader = new StreamingJsonReader((key, obj) -> keys.add(key));
+        reader.feed("[{\"name\": \"A\"}, {\"name\": \"B\"}]");
+        reader.finish();
+
+        assertEquals(List.of("", ""), keys);
+    }
+
+    /**
+     * 基准：大体量畸形输出（拼接、换行、截断）的解析耗时应随长度线性增长
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkMalformedOutput() {
+        for (int count : new int[]{1_000, 10_000, 50_000}) {
+            String text = buildMalformedOutput(count);
+            // 预热
+            read(text);
+
+            long start = System.nanoTime();
+            Collected c = read(text);
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            assertEquals(count, c.entities.size());
+            assertEquals(count - 1, c.relations.size());
+            assertTrue(elapsedMs < 5_000, "解析耗时过长: elements=" + count + ", chars=" + text.length()
+                    + ", skipped=" + c.reader.getSkippedCount() + ", elapsed=" + elapsedMs + "ms");
+        }
+    }
+
+    private String buildMalformedOutput(int count) {
+        StringBuilder sb = new StringBuilder("<think>分析文本</think>\n{\"entities\": [\n");
+        for (int i = 0; i < count; i++) {
+            sb.append("{\"name\": \"实体\" + \"").append(i)
+                    .append("\", \"type\": \"Concept\", \"description\": \"描述\n换行\"},\n");
+        }
+        sb.append("],\n\"relations\": [\n");
+        for (int i = 0; i < count; i++) {
+            sb.append("{\"source\": \"实体").append(i).append("\", \"target\": \"实体")
+                    .append(i + 1).append("\", \"relation\": \"相关\"},\n");
+        }
+        // 截断最后一个关系
+        sb.setLength(sb.length() - 20);
+        return sb.toString();
+    }
+
+    private Collected read(String text) {
+        Collected c = new Collected();
+        c.reader = new StreamingJsonReader((key, obj) -> {
+            if ("entities".equals(key)) {
+                c.entities.add(obj);
+            } else if ("relations".equals(key)) {
+                c.relations.add(obj);
+            }
+        });
+        c.reader.feed(text);
+        c.reader.finish();
+        return c;
+    }
+
+    private static class Collected {
+        StreamingJsonReader reader;
+        final List<JSONObject> entities = new ArrayList<>();
+        final List<JSONObject> relations = new ArrayList<>();
+    }
+}